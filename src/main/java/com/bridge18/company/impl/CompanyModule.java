@@ -1,8 +1,19 @@
 package com.bridge18.company.impl;
 
+import com.bridge18.company.impl.entities.CompanyEventShards;
+import com.bridge18.company.impl.metrics.JmxMetricsReporter;
+import com.bridge18.company.impl.repository.ExportSettings;
+import com.bridge18.company.impl.repository.PaginationSettings;
+import com.bridge18.company.impl.repository.ProjectionMetricsSettings;
+import com.bridge18.company.impl.repository.ProjectionSettings;
+import com.bridge18.company.impl.repository.RevisionWaitSettings;
 import com.bridge18.company.impl.services.lagom.LagomCompanyServiceImpl;
+import com.bridge18.company.impl.services.objects.CompanyCacheInvalidator;
+import com.bridge18.company.impl.services.objects.CompanyCacheSettings;
 import com.bridge18.company.impl.services.objects.CompanyService;
 import com.bridge18.company.impl.services.objects.CompanyServiceImpl;
+import com.bridge18.company.impl.services.objects.CompanyServiceSettings;
+import com.bridge18.company.impl.tracing.TracingSettings;
 import com.bridge18.company.v1.api.LagomCompanyService;
 import com.google.inject.AbstractModule;
 import com.lightbend.lagom.javadsl.server.ServiceGuiceSupport;
@@ -20,7 +31,29 @@ public class CompanyModule extends AbstractModule implements ServiceGuiceSupport
 
     @Override
     protected void configure() {
+        CompanyEventShards eventShards =
+                new CompanyEventShards(configuration.underlying().getConfig("company.event-shards"));
+        CompanyEventShards.use(eventShards);
+        bind(CompanyEventShards.class).toInstance(eventShards);
         bind(CompanyService.class).to(CompanyServiceImpl.class);
+        bind(CompanyServiceSettings.class).toInstance(
+                new CompanyServiceSettings(configuration.underlying().getConfig("company.service")));
+        bind(PaginationSettings.class).toInstance(
+                new PaginationSettings(configuration.underlying().getConfig("company.pagination")));
+        bind(ExportSettings.class).toInstance(
+                new ExportSettings(configuration.underlying().getConfig("company.export")));
+        bind(ProjectionSettings.class).toInstance(
+                new ProjectionSettings(configuration.underlying().getConfig("company.read-side")));
+        bind(ProjectionMetricsSettings.class).toInstance(
+                new ProjectionMetricsSettings(configuration.underlying().getConfig("company.read-side.metrics")));
+        bind(RevisionWaitSettings.class).toInstance(
+                new RevisionWaitSettings(configuration.underlying().getConfig("company.read-side.revision-wait")));
+        bind(CompanyCacheSettings.class).toInstance(
+                new CompanyCacheSettings(configuration.underlying().getConfig("company.cache")));
+        bind(TracingSettings.class).toInstance(
+                new TracingSettings(configuration.underlying().getConfig("company.tracing")));
+        bind(CompanyCacheInvalidator.class).asEagerSingleton();
+        bind(JmxMetricsReporter.class).asEagerSingleton();
         bindServices(
                 serviceBinding(LagomCompanyService.class, LagomCompanyServiceImpl.class));
     }
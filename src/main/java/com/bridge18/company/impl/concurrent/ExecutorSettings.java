@@ -0,0 +1,28 @@
+package com.bridge18.company.impl.concurrent;
+
+import com.typesafe.config.Config;
+
+public class ExecutorSettings {
+    private final int threads;
+    private final int queueSize;
+
+    public ExecutorSettings(Config config) {
+        this(config.getInt("threads"), config.getInt("queue-size"));
+    }
+
+    public ExecutorSettings(int threads, int queueSize) {
+        if (threads < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("Executor needs at least one thread and one queue slot");
+        }
+        this.threads = threads;
+        this.queueSize = queueSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+}
@@ -0,0 +1,110 @@
+package com.bridge18.company.impl.concurrent;
+
+import com.bridge18.company.impl.metrics.LatencyHistogram;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Fixed-size thread pool with a bounded queue for blocking I/O. Publishes queue depth, utilization, queue wait and
+ * execution latency, and rejections under {@code executors.<name>.*}. A full queue fails the returned stage with
+ * {@link RejectedExecutionException} instead of blocking the caller.
+ */
+public class InstrumentedExecutor implements Executor {
+    private final String name;
+    private final ThreadPoolExecutor pool;
+    private final LatencyHistogram queueWait;
+    private final LatencyHistogram execution;
+    private final LongAdder rejected;
+
+    public InstrumentedExecutor(String name, ExecutorSettings settings, MetricsRegistry metricsRegistry) {
+        this.name = name;
+        this.pool = new ThreadPoolExecutor(
+                settings.getThreads(),
+                settings.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.getQueueSize()),
+                new NamedThreadFactory(name),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        String prefix = "executors." + name;
+        this.queueWait = metricsRegistry.histogram(prefix + ".queue-wait");
+        this.execution = metricsRegistry.histogram(prefix + ".execution");
+        this.rejected = metricsRegistry.counter(prefix + ".rejected");
+        metricsRegistry.gauge(prefix + ".queue-depth", () -> pool.getQueue().size());
+        metricsRegistry.gauge(prefix + ".active-threads", pool::getActiveCount);
+        metricsRegistry.gauge(prefix + ".utilization",
+                () -> (double) pool.getActiveCount() / pool.getMaximumPoolSize());
+        metricsRegistry.gauge(prefix + ".completed", pool::getCompletedTaskCount);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                queueWait.recordNanosSince(enqueuedAt);
+                long startedAt = System.nanoTime();
+                try {
+                    command.run();
+                } finally {
+                    execution.recordNanosSince(startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public <T> CompletionStage<T> supply(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, this);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    public CompletionStage<Void> run(Runnable runnable) {
+        return supply(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    public CompletionStage<Void> shutdown() {
+        pool.shutdown();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                pool.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
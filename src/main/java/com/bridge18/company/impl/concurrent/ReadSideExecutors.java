@@ -0,0 +1,60 @@
+package com.bridge18.company.impl.concurrent;
+
+import com.bridge18.company.impl.entities.CompanyEventShards;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.typesafe.config.Config;
+import play.Configuration;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Executors that keep blocking Mongo calls of the read side off the Akka/Play dispatchers.
+ */
+@Singleton
+public class ReadSideExecutors {
+    private final InstrumentedExecutor queries;
+    private final InstrumentedExecutor projections;
+
+    @Inject
+    public ReadSideExecutors(Configuration configuration, MetricsRegistry metricsRegistry,
+                             ApplicationLifecycle lifecycle) {
+        this.queries = new InstrumentedExecutor("read-side-queries",
+                new ExecutorSettings(configuration.underlying().getConfig("company.executors.read-side-queries")),
+                metricsRegistry);
+        this.projections = new InstrumentedExecutor("read-side-projections",
+                projectionSettings(configuration.underlying().getConfig("company")),
+                metricsRegistry);
+
+        lifecycle.addStopHook(queries::shutdown);
+        lifecycle.addStopHook(projections::shutdown);
+    }
+
+    /**
+     * With {@code threads = auto}, one thread per lane of every projected tag, as no more writes are ever in flight.
+     */
+    static ExecutorSettings projectionSettings(Config company) {
+        Config executor = company.getConfig("executors.read-side-projections");
+        if (!"auto".equals(executor.getString("threads"))) {
+            return new ExecutorSettings(executor);
+        }
+        int tags = new CompanyEventShards(company.getConfig("event-shards")).readSideTags().size();
+        return new ExecutorSettings(tags * company.getInt("read-side.lanes.count"), executor.getInt("queue-size"));
+    }
+
+    /**
+     * For repository reads serving HTTP requests.
+     */
+    public InstrumentedExecutor queries() {
+        return queries;
+    }
+
+    /**
+     * For projection writes of the read-side processors, so that a replay cannot starve query threads or the
+     * common ForkJoinPool.
+     */
+    public InstrumentedExecutor projections() {
+        return projections;
+    }
+}
@@ -28,4 +28,21 @@ public interface AbstractCompanyState extends Jsonable {
     Optional<PVector<Contact>> getContacts();
     @Value.Parameter
     Optional<PVector<Location>> getLocations();
+
+    /**
+     * Number of events applied to the company, which is the revision of the last of them. Returned from writes so
+     * that a client can wait for the read side to reach it.
+     */
+    @Value.Default
+    default long getRevision() {
+        return 0;
+    }
+
+    /**
+     * Whether the company has been deleted, so that an entity recovered from a snapshot keeps rejecting commands.
+     */
+    @Value.Default
+    default boolean isDeleted() {
+        return false;
+    }
 }
@@ -0,0 +1,93 @@
+package com.bridge18.company.impl.entities;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.pcollections.PVector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Brings company states into the form the entity keeps in memory. Lists become {@link CompactVector}s, and values
+ * that repeat across contacts, locations and companies are shared: the strings of cities, states, zip codes,
+ * positions and contact info labels, and whole addresses, as a contact often has the address of a location.
+ * <p>
+ * Sharing goes through weak interners, so a value is only kept while some state refers to it. Immutables already
+ * stores optional attributes unwrapped, as nullable fields, so there is nothing to gain there.
+ */
+public final class CompactStates {
+    private static final Interner<String> STRINGS = Interners.newWeakInterner();
+    private static final Interner<Address> ADDRESSES = Interners.newWeakInterner();
+
+    private CompactStates() {
+    }
+
+    public static CompanyState compact(CompanyState state) {
+        return CompanyState.builder()
+                .from(state)
+                .contacts(contacts(state.getContacts()))
+                .locations(locations(state.getLocations()))
+                .build();
+    }
+
+    public static Optional<PVector<Contact>> contacts(Optional<PVector<Contact>> contacts) {
+        if (!contacts.isPresent()) {
+            return contacts;
+        }
+        List<Contact> compacted = new ArrayList<>(contacts.get().size());
+        for (Contact contact : contacts.get()) {
+            compacted.add(compact(contact));
+        }
+        return Optional.of(CompactVector.from(compacted));
+    }
+
+    public static Optional<PVector<Location>> locations(Optional<PVector<Location>> locations) {
+        if (!locations.isPresent()) {
+            return locations;
+        }
+        List<Location> compacted = new ArrayList<>(locations.get().size());
+        for (Location location : locations.get()) {
+            compacted.add(compact(location));
+        }
+        return Optional.of(CompactVector.from(compacted));
+    }
+
+    public static Contact compact(Contact contact) {
+        return Contact.builder()
+                .from(contact)
+                .position(contact.getPosition().map(STRINGS::intern))
+                .contactInfo(contactInfos(contact.getContactInfo()))
+                .address(contact.getAddress().map(CompactStates::compact))
+                .build();
+    }
+
+    public static Location compact(Location location) {
+        return Location.builder()
+                .from(location)
+                .address(location.getAddress().map(CompactStates::compact))
+                .contactInfo(contactInfos(location.getContactInfo()))
+                .build();
+    }
+
+    private static Optional<PVector<ContactInfo>> contactInfos(Optional<PVector<ContactInfo>> contactInfos) {
+        if (!contactInfos.isPresent()) {
+            return contactInfos;
+        }
+        List<ContactInfo> compacted = new ArrayList<>(contactInfos.get().size());
+        for (ContactInfo contactInfo : contactInfos.get()) {
+            compacted.add(contactInfo.getLabel().isPresent() ?
+                    contactInfo.withLabel(STRINGS.intern(contactInfo.getLabel().get())) : contactInfo);
+        }
+        return Optional.of(CompactVector.from(compacted));
+    }
+
+    private static Address compact(Address address) {
+        return ADDRESSES.intern(Address.builder()
+                .from(address)
+                .city(address.getCity().map(STRINGS::intern))
+                .state(address.getState().map(STRINGS::intern))
+                .zip(address.getZip().map(STRINGS::intern))
+                .build());
+    }
+}
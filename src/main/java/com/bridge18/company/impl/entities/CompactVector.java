@@ -0,0 +1,133 @@
+package com.bridge18.company.impl.entities;
+
+import org.pcollections.PVector;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable {@link PVector} backed by a single array sized to its elements. Compared to
+ * {@link org.pcollections.TreePVector}, which keeps a tree node per element, it holds a list in a fraction of the
+ * memory, at the price of copying the array on every change. That suits the lists of a company, which are read far
+ * more often than they change and stay small.
+ */
+public final class CompactVector<E> extends AbstractList<E> implements PVector<E>, RandomAccess {
+    private static final CompactVector<Object> EMPTY = new CompactVector<>(new Object[0]);
+
+    private final Object[] elements;
+
+    private CompactVector(Object[] elements) {
+        this.elements = elements;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> CompactVector<E> empty() {
+        return (CompactVector<E>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> CompactVector<E> from(Collection<? extends E> elements) {
+        if (elements instanceof CompactVector) {
+            return (CompactVector<E>) elements;
+        }
+        return elements.isEmpty() ? empty() : new CompactVector<>(elements.toArray(new Object[0]));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        return (E) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    @Override
+    public CompactVector<E> plus(E element) {
+        return plus(elements.length, element);
+    }
+
+    @Override
+    public CompactVector<E> plusAll(Collection<? extends E> list) {
+        return plusAll(elements.length, list);
+    }
+
+    @Override
+    public CompactVector<E> with(int index, E element) {
+        checkIndex(index, elements.length - 1);
+        Object[] changed = elements.clone();
+        changed[index] = element;
+        return new CompactVector<>(changed);
+    }
+
+    @Override
+    public CompactVector<E> plus(int index, E element) {
+        checkIndex(index, elements.length);
+        Object[] changed = new Object[elements.length + 1];
+        System.arraycopy(elements, 0, changed, 0, index);
+        changed[index] = element;
+        System.arraycopy(elements, index, changed, index + 1, elements.length - index);
+        return new CompactVector<>(changed);
+    }
+
+    @Override
+    public CompactVector<E> plusAll(int index, Collection<? extends E> list) {
+        checkIndex(index, elements.length);
+        if (list.isEmpty()) {
+            return this;
+        }
+        Object[] added = list.toArray(new Object[0]);
+        Object[] changed = new Object[elements.length + added.length];
+        System.arraycopy(elements, 0, changed, 0, index);
+        System.arraycopy(added, 0, changed, index, added.length);
+        System.arraycopy(elements, index, changed, index + added.length, elements.length - index);
+        return new CompactVector<>(changed);
+    }
+
+    @Override
+    public CompactVector<E> minus(Object element) {
+        int index = indexOf(element);
+        return index < 0 ? this : minus(index);
+    }
+
+    @Override
+    public CompactVector<E> minusAll(Collection<?> list) {
+        List<Object> kept = new ArrayList<>(elements.length);
+        for (Object element : elements) {
+            if (!list.contains(element)) {
+                kept.add(element);
+            }
+        }
+        return kept.size() == elements.length ? this : new CompactVector<>(kept.toArray());
+    }
+
+    @Override
+    public CompactVector<E> minus(int index) {
+        checkIndex(index, elements.length - 1);
+        Object[] changed = new Object[elements.length - 1];
+        System.arraycopy(elements, 0, changed, 0, index);
+        System.arraycopy(elements, index + 1, changed, index, elements.length - index - 1);
+        return new CompactVector<>(changed);
+    }
+
+    @Override
+    public CompactVector<E> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > elements.length || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("[" + fromIndex + ", " + toIndex + ") of " + elements.length);
+        }
+        return fromIndex == 0 && toIndex == elements.length ?
+                this : new CompactVector<>(Arrays.copyOfRange(elements, fromIndex, toIndex));
+    }
+
+    private static void checkIndex(int index, int max) {
+        if (index < 0 || index > max) {
+            throw new IndexOutOfBoundsException("Index " + index + ", max " + max);
+        }
+    }
+}
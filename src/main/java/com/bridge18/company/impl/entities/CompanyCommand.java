@@ -15,10 +15,17 @@ import java.util.Optional;
 
 public interface CompanyCommand extends Jsonable {
 
+    /**
+     * A command sent on behalf of a traced request, whose spans the entity continues under the same trace id.
+     */
+    interface Traced extends CompanyCommand {
+        Optional<String> getTraceId();
+    }
+
     @Value.Immutable
     @ImmutableStyle
     @JsonDeserialize
-    interface AbstractCreateCompany extends CompanyCommand, CompressedJsonable, PersistentEntity.ReplyType<CompanyState> {
+    interface AbstractCreateCompany extends Traced, CompressedJsonable, PersistentEntity.ReplyType<CompanyState> {
         @Value.Parameter
         String getName();
         @Value.Parameter
@@ -36,7 +43,7 @@ public interface CompanyCommand extends Jsonable {
     @Value.Immutable
     @ImmutableStyle
     @JsonDeserialize
-    interface AbstractUpdateCompany extends CompanyCommand, CompressedJsonable, PersistentEntity.ReplyType<CompanyState> {
+    interface AbstractUpdateCompany extends Traced, CompressedJsonable, PersistentEntity.ReplyType<CompanyState> {
         @Value.Parameter
         String getName();
         @Value.Parameter
@@ -61,8 +68,31 @@ public interface CompanyCommand extends Jsonable {
     @Value.Immutable
     @ImmutableStyle
     @JsonDeserialize
-    interface AbstractDeleteCompany extends CompanyCommand, CompressedJsonable, PersistentEntity
-            .ReplyType<Done> {
+    interface AbstractDeleteCompany extends Traced, CompressedJsonable, PersistentEntity.ReplyType<Done> {
+    }
+
+    /**
+     * Changes only what is present: contacts are added or replaced by id, {@code removedContactIds} are removed,
+     * and {@code locations} is the new list of locations, of which only the changed positions are journaled.
+     */
+    @Value.Immutable
+    @ImmutableStyle
+    @JsonDeserialize
+    interface AbstractPatchCompany extends Traced, CompressedJsonable, PersistentEntity.ReplyType<CompanyState> {
+        @Value.Parameter
+        Optional<String> getName();
+        @Value.Parameter
+        Optional<String> getMc();
+        @Value.Parameter
+        Optional<String> getTaxId();
+        @Value.Parameter
+        Optional<CompanyType> getCompanyType();
+        @Value.Parameter
+        Optional<PVector<Contact>> getContacts();
+        @Value.Parameter
+        Optional<PVector<String>> getRemovedContactIds();
+        @Value.Parameter
+        Optional<PVector<Location>> getLocations();
     }
 
 }
@@ -0,0 +1,182 @@
+package com.bridge18.company.impl.entities;
+
+import com.bridge18.company.entities.CompanyType;
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Computes the {@link CompanyEvent.CompanyDelta} events for a {@link PatchCompany} and applies them to a
+ * {@link CompanyState}. Both the entity and the read side apply deltas through here.
+ */
+public final class CompanyDeltas {
+    private CompanyDeltas() {
+    }
+
+    /**
+     * @return the deltas that turn {@code state} into the patched company, empty if the patch changes nothing. They
+     * carry consecutive revisions following that of {@code state}.
+     */
+    public static List<CompanyEvent> diff(CompanyState state, PatchCompany patch) {
+        String id = state.getId();
+        long revision = state.getRevision();
+        List<CompanyEvent> deltas = new ArrayList<>();
+
+        Optional<String> name = patch.getName().filter(value -> !value.equals(state.getName()));
+        if (name.isPresent()) {
+            deltas.add(CompanyNameChanged.of(id, name.get()).withRevision(++revision));
+        }
+
+        Optional<String> mc = patch.getMc().filter(value -> !state.getMc().equals(Optional.of(value)));
+        Optional<String> taxId = patch.getTaxId().filter(value -> !state.getTaxId().equals(Optional.of(value)));
+        Optional<CompanyType> companyType = patch.getCompanyType()
+                .filter(value -> !state.getCompanyType().equals(Optional.of(value)));
+        if (mc.isPresent() || taxId.isPresent() || companyType.isPresent()) {
+            deltas.add(CompanyDetailsChanged.of(id, mc, taxId, companyType).withRevision(++revision));
+        }
+
+        PVector<Contact> contacts = state.getContacts().orElse(TreePVector.empty());
+        for (String contactId : patch.getRemovedContactIds().orElse(TreePVector.empty())) {
+            if (indexOfContact(contacts, contactId) >= 0) {
+                contacts = withoutContact(contacts, contactId);
+                deltas.add(ContactRemoved.of(id, contactId).withRevision(++revision));
+            }
+        }
+        for (Contact contact : patch.getContacts().orElse(TreePVector.empty())) {
+            // a contact without an id can only be told apart by its content, so resending it adds nothing
+            int index = contact.getId().isPresent()
+                    ? indexOfContact(contacts, contact.getId().get())
+                    : contacts.indexOf(contact);
+            if (index < 0) {
+                contacts = contacts.plus(contact);
+                deltas.add(ContactAdded.of(id, contact).withRevision(++revision));
+            } else if (!contacts.get(index).equals(contact)) {
+                contacts = contacts.with(index, contact);
+                deltas.add(ContactUpdated.of(id, contact).withRevision(++revision));
+            }
+        }
+
+        if (patch.getLocations().isPresent()) {
+            PVector<Location> current = state.getLocations().orElse(TreePVector.empty());
+            PVector<Location> target = patch.getLocations().get();
+            for (int i = 0; i < target.size(); i++) {
+                if (i >= current.size() || !current.get(i).equals(target.get(i))) {
+                    deltas.add(LocationChanged.of(id, i, target.get(i)).withRevision(++revision));
+                }
+            }
+            // from the end, so that every removal is of the last location
+            for (int i = current.size() - 1; i >= target.size(); i--) {
+                deltas.add(LocationRemoved.of(id, i).withRevision(++revision));
+            }
+        }
+
+        return deltas;
+    }
+
+    /**
+     * @return whether {@code update} would leave {@code state} as it is. Integrations re-send whole companies on a
+     * schedule, so most updates are of this kind.
+     */
+    public static boolean isUnchanged(CompanyState state, UpdateCompany update) {
+        return update.getName().equals(state.getName())
+                && update.getMc().equals(state.getMc())
+                && update.getTaxId().equals(state.getTaxId())
+                && update.getCompanyType().equals(state.getCompanyType())
+                && update.getContacts().equals(state.getContacts())
+                && update.getLocations().equals(state.getLocations());
+    }
+
+    /**
+     * Applies the change of {@code delta}, leaving the revision of {@code state} as it is. Changed lists and the
+     * contacts and locations they gain are kept in the form of {@link CompactStates}.
+     */
+    public static CompanyState apply(CompanyState state, CompanyEvent.CompanyDelta delta) {
+        CompanyState.Builder builder = CompanyState.builder().from(state);
+
+        if (delta instanceof CompanyNameChanged) {
+            builder.name(((CompanyNameChanged) delta).getName());
+        } else if (delta instanceof CompanyDetailsChanged) {
+            CompanyDetailsChanged changed = (CompanyDetailsChanged) delta;
+            if (changed.getMc().isPresent()) builder.mc(changed.getMc());
+            if (changed.getTaxId().isPresent()) builder.taxId(changed.getTaxId());
+            if (changed.getCompanyType().isPresent()) builder.companyType(changed.getCompanyType());
+        } else if (delta instanceof ContactAdded) {
+            builder.contacts(state.getContacts().orElse(CompactVector.empty())
+                    .plus(CompactStates.compact(((ContactAdded) delta).getContact())));
+        } else if (delta instanceof ContactUpdated) {
+            Contact contact = ((ContactUpdated) delta).getContact();
+            PVector<Contact> contacts = state.getContacts().orElse(CompactVector.empty());
+            int index = indexOfContact(contacts, contact.getId().orElse(null));
+            if (index >= 0) {
+                builder.contacts(contacts.with(index, CompactStates.compact(contact)));
+            }
+        } else if (delta instanceof ContactRemoved) {
+            // every contact of the id, as the read side's $pull does, should an old company have it more than once
+            PVector<Contact> contacts = state.getContacts().orElse(CompactVector.empty());
+            builder.contacts(withoutContact(contacts, ((ContactRemoved) delta).getContactId()));
+        } else if (delta instanceof LocationChanged) {
+            LocationChanged changed = (LocationChanged) delta;
+            PVector<Location> locations = state.getLocations().orElse(CompactVector.empty());
+            Location location = CompactStates.compact(changed.getLocation());
+            if (changed.getIndex() < locations.size()) {
+                builder.locations(locations.with(changed.getIndex(), location));
+            } else {
+                builder.locations(locations.plus(location));
+            }
+        } else if (delta instanceof LocationRemoved) {
+            PVector<Location> locations = state.getLocations().orElse(CompactVector.empty());
+            int index = ((LocationRemoved) delta).getIndex();
+            if (index < locations.size()) {
+                builder.locations(locations.minus(index));
+            }
+        }
+
+        return builder.build();
+    }
+
+    private static int indexOfContact(PVector<Contact> contacts, String contactId) {
+        if (contactId == null) {
+            return -1;
+        }
+        for (int i = 0; i < contacts.size(); i++) {
+            if (contacts.get(i).getId().equals(Optional.of(contactId))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static PVector<Contact> withoutContact(PVector<Contact> contacts, String contactId) {
+        for (int index = indexOfContact(contacts, contactId); index >= 0; index = indexOfContact(contacts, contactId)) {
+            contacts = contacts.minus(index);
+        }
+        return contacts;
+    }
+
+    /**
+     * The id of a contact that {@code contacts} has more than once, if any. Such a company could not be patched:
+     * contacts are told apart by their id.
+     */
+    public static Optional<String> duplicateContactId(Optional<PVector<Contact>> contacts) {
+        Set<String> ids = new HashSet<>();
+        for (Contact contact : contacts.orElse(TreePVector.empty())) {
+            if (contact.getId().isPresent() && !ids.add(contact.getId().get())) {
+                return contact.getId();
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The revision of the company once {@code event} is applied to {@code state}. An event persisted before revisions
+     * were recorded counts as one more.
+     */
+    public static long revisionAfter(CompanyState state, CompanyEvent event) {
+        return event.getRevision() > 0 ? event.getRevision() : state.getRevision() + 1;
+    }
+}
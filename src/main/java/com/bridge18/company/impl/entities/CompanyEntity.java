@@ -1,34 +1,79 @@
 package com.bridge18.company.impl.entities;
 
 import akka.Done;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.bridge18.company.impl.tracing.RequestTracing;
 import com.lightbend.lagom.javadsl.persistence.PersistentEntity;
 
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Commands that persist events record how long the journal took to write them as {@code entity.<command>.persist}.
+ * An {@link UpdateCompany} that changes nothing is answered without persisting an event and counted in
+ * {@code entity.UpdateCompany.skipped}.
+ */
 public class CompanyEntity extends PersistentEntity<CompanyCommand, CompanyEvent, CompanyState> {
+    private final RequestTracing tracing;
+    private final LongAdder skippedUpdates;
 
+    @Inject
+    public CompanyEntity(RequestTracing tracing, MetricsRegistry metricsRegistry) {
+        this.tracing = tracing;
+        this.skippedUpdates = metricsRegistry.counter("entity.UpdateCompany.skipped");
+    }
+
+    public CompanyEntity() {
+        this(RequestTracing.disabled(), new MetricsRegistry());
+    }
 
     @Override
     public Behavior initialBehavior(Optional<CompanyState> snapshotState) {
-
-        BehaviorBuilder b = newBehaviorBuilder(
-                snapshotState.orElse(CompanyState.builder().id(entityId()).name(entityTypeName()).build()));
-
-        b.setCommandHandler(CreateCompany.class, (cmd, ctx) ->
-                ctx.thenPersistAll(
-                        () -> ctx.reply(state()),
-
-                        CompanyCreated.builder()
-                                .id(entityId())
-                                .name(cmd.getName())
-                                .mc(cmd.getMc())
-                                .taxId(cmd.getTaxId())
-                                .companyType(cmd.getCompanyType())
-                                .contacts(cmd.getContacts())
-                                .locations(cmd.getLocations())
-                                .build()
-                )
-        );
+        // snapshots are only taken once the company has been created
+        if (snapshotState.isPresent()) {
+            CompanyState state = CompactStates.compact(snapshotState.get());
+            return state.isDeleted() ? deleted(state) : created(state);
+        }
+
+        BehaviorBuilder b = newBehaviorBuilder(CompanyState.builder().id(entityId()).name(entityTypeName()).build());
+
+        b.setCommandHandler(CreateCompany.class, (cmd, ctx) -> {
+            Optional<String> duplicateContactId = CompanyDeltas.duplicateContactId(cmd.getContacts());
+            if (duplicateContactId.isPresent()) {
+                ctx.commandFailed(CompanyErrors.duplicateContactId(duplicateContactId.get()));
+                return ctx.done();
+            }
+            long startNanos = System.nanoTime();
+            return ctx.thenPersistAll(
+                    () -> {
+                        persisted(cmd, startNanos);
+                        ctx.reply(state());
+                    },
+
+                    CompanyCreated.builder()
+                            .id(entityId())
+                            .name(cmd.getName())
+                            .mc(cmd.getMc())
+                            .taxId(cmd.getTaxId())
+                            .companyType(cmd.getCompanyType())
+                            .contacts(cmd.getContacts())
+                            .locations(cmd.getLocations())
+                            .revision(state().getRevision() + 1)
+                            .build()
+            );
+        });
+
+        b.setReadOnlyCommandHandler(UpdateCompany.class, (cmd, ctx) ->
+                ctx.commandFailed(CompanyErrors.notFound(entityId())));
+        b.setReadOnlyCommandHandler(PatchCompany.class, (cmd, ctx) ->
+                ctx.commandFailed(CompanyErrors.notFound(entityId())));
+        b.setReadOnlyCommandHandler(GetCompanyInformation.class, (cmd, ctx) ->
+                ctx.commandFailed(CompanyErrors.notFound(entityId())));
+        b.setReadOnlyCommandHandler(DeleteCompany.class, (cmd, ctx) ->
+                ctx.commandFailed(CompanyErrors.notFound(entityId())));
 
         b.setEventHandlerChangingBehavior(
                 CompanyCreated.class,
@@ -41,8 +86,9 @@ public class CompanyEntity extends PersistentEntity<CompanyCommand, CompanyEvent
                                 .mc(evt.getMc())
                                 .taxId(evt.getTaxId())
                                 .companyType(evt.getCompanyType())
-                                .contacts(evt.getContacts())
-                                .locations(evt.getLocations())
+                                .contacts(CompactStates.contacts(evt.getContacts()))
+                                .locations(CompactStates.locations(evt.getLocations()))
+                                .revision(CompanyDeltas.revisionAfter(state(), evt))
                                 .build())
         );
         return b.build();
@@ -53,20 +99,34 @@ public class CompanyEntity extends PersistentEntity<CompanyCommand, CompanyEvent
 
         b.setCommandHandler(
                 UpdateCompany.class,
-                (cmd, ctx) ->
-                        ctx.thenPersist(
-                                CompanyUpdated.builder()
-                                        .id(entityId())
-                                        .name(cmd.getName())
-                                        .mc(cmd.getMc())
-                                        .taxId(cmd.getTaxId())
-                                        .companyType(cmd.getCompanyType())
-                                        .contacts(cmd.getContacts())
-                                        .locations(cmd.getLocations())
-                                        .build(),
-                                evt -> {
-                                    ctx.reply(state());
-                                })
+                (cmd, ctx) -> {
+                    Optional<String> duplicateContactId = CompanyDeltas.duplicateContactId(cmd.getContacts());
+                    if (duplicateContactId.isPresent()) {
+                        ctx.commandFailed(CompanyErrors.duplicateContactId(duplicateContactId.get()));
+                        return ctx.done();
+                    }
+                    if (CompanyDeltas.isUnchanged(state(), cmd)) {
+                        skippedUpdates.increment();
+                        ctx.reply(state());
+                        return ctx.done();
+                    }
+                    long startNanos = System.nanoTime();
+                    return ctx.thenPersist(
+                            CompanyUpdated.builder()
+                                    .id(entityId())
+                                    .name(cmd.getName())
+                                    .mc(cmd.getMc())
+                                    .taxId(cmd.getTaxId())
+                                    .companyType(cmd.getCompanyType())
+                                    .contacts(cmd.getContacts())
+                                    .locations(cmd.getLocations())
+                                    .revision(state().getRevision() + 1)
+                                    .build(),
+                            evt -> {
+                                persisted(cmd, startNanos);
+                                ctx.reply(state());
+                            });
+                }
         );
 
         b.setEventHandler(
@@ -80,20 +140,45 @@ public class CompanyEntity extends PersistentEntity<CompanyCommand, CompanyEvent
                                 .mc(evt.getMc())
                                 .taxId(evt.getTaxId())
                                 .companyType(evt.getCompanyType())
-                                .contacts(evt.getContacts())
-                                .locations(evt.getLocations())
+                                .contacts(CompactStates.contacts(evt.getContacts()))
+                                .locations(CompactStates.locations(evt.getLocations()))
+                                .revision(CompanyDeltas.revisionAfter(state(), evt))
                                 .build()
         );
 
 
+        b.setCommandHandler(PatchCompany.class, (cmd, ctx) -> {
+            List<CompanyEvent> deltas = CompanyDeltas.diff(state(), cmd);
+            if (deltas.isEmpty()) {
+                ctx.reply(state());
+                return ctx.done();
+            }
+            long startNanos = System.nanoTime();
+            return ctx.thenPersistAll(deltas, () -> {
+                persisted(cmd, startNanos);
+                ctx.reply(state());
+            });
+        });
+
+        b.setEventHandler(CompanyNameChanged.class, this::applyDelta);
+        b.setEventHandler(CompanyDetailsChanged.class, this::applyDelta);
+        b.setEventHandler(ContactAdded.class, this::applyDelta);
+        b.setEventHandler(ContactUpdated.class, this::applyDelta);
+        b.setEventHandler(ContactRemoved.class, this::applyDelta);
+        b.setEventHandler(LocationChanged.class, this::applyDelta);
+        b.setEventHandler(LocationRemoved.class, this::applyDelta);
+
         b.setCommandHandler(
                 DeleteCompany.class,
-                (cmd, ctx) ->
-                        ctx.thenPersist(
-                                CompanyDeleted.builder().id(entityId()).build(),
-                                evt -> {
-                                    ctx.reply(Done.getInstance());
-                                })
+                (cmd, ctx) -> {
+                    long startNanos = System.nanoTime();
+                    return ctx.thenPersist(
+                            CompanyDeleted.builder().id(entityId()).revision(state().getRevision() + 1).build(),
+                            evt -> {
+                                persisted(cmd, startNanos);
+                                ctx.reply(Done.getInstance());
+                            });
+                }
         );
 
         b.setReadOnlyCommandHandler(GetCompanyInformation.class, (cmd, ctx) ->
@@ -102,17 +187,39 @@ public class CompanyEntity extends PersistentEntity<CompanyCommand, CompanyEvent
 
         b.setEventHandlerChangingBehavior(
                 CompanyDeleted.class,
-                companyDeleted -> deleted(state())
+                companyDeleted -> deleted(state()
+                        .withRevision(CompanyDeltas.revisionAfter(state(), companyDeleted))
+                        .withDeleted(true))
         );
 
         return b.build();
     }
 
+    private void persisted(CompanyCommand.Traced command, long startNanos) {
+        tracing.record("entity", command.getClass().getSimpleName(), "persist", startNanos,
+                command.getTraceId().orElseGet(RequestTracing::newTraceId),
+                Collections.singletonMap("entityId", entityId()));
+    }
+
+    private CompanyState applyDelta(CompanyEvent.CompanyDelta delta) {
+        return CompanyDeltas.apply(state(), delta).withRevision(CompanyDeltas.revisionAfter(state(), delta));
+    }
+
     private Behavior deleted(CompanyState state) {
         BehaviorBuilder b = newBehaviorBuilder(state);
 
         b.setReadOnlyCommandHandler(DeleteCompany.class, (cmd, ctx) -> ctx.reply(Done.getInstance()));
 
+        // a deleted company stays deleted: its id cannot be created again
+        b.setReadOnlyCommandHandler(CreateCompany.class, (cmd, ctx) ->
+                ctx.commandFailed(CompanyErrors.deleted(entityId())));
+        b.setReadOnlyCommandHandler(UpdateCompany.class, (cmd, ctx) ->
+                ctx.commandFailed(CompanyErrors.deleted(entityId())));
+        b.setReadOnlyCommandHandler(PatchCompany.class, (cmd, ctx) ->
+                ctx.commandFailed(CompanyErrors.deleted(entityId())));
+        b.setReadOnlyCommandHandler(GetCompanyInformation.class, (cmd, ctx) ->
+                ctx.commandFailed(CompanyErrors.deleted(entityId())));
+
         return b.build();
     }
 }
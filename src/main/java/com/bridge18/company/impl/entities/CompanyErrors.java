@@ -0,0 +1,39 @@
+package com.bridge18.company.impl.entities;
+
+import com.bridge18.exception.LagomException;
+
+/**
+ * Failures replied to company commands: sent to a company that is not there, or refused by it.
+ */
+public final class CompanyErrors {
+    private static final int NOT_FOUND = 404;
+    private static final int GONE = 410;
+
+    private CompanyErrors() {
+    }
+
+    public static LagomException notFound(String id) {
+        return new LagomException("COMPANY_NOT_FOUND", NOT_FOUND, "Company " + id + " does not exist", "id");
+    }
+
+    public static LagomException deleted(String id) {
+        return new LagomException("COMPANY_DELETED", GONE, "Company " + id + " has been deleted", "id");
+    }
+
+    public static LagomException duplicateContactId(String contactId) {
+        return new LagomException("CONTACT_ID_DUPLICATE", 400, "Contact id " + contactId + " is used more than once",
+                "contacts");
+    }
+
+    /**
+     * Whether {@code error} is a {@link #notFound} or {@link #deleted} failure, told by its status so that it does not
+     * depend on the wording of the message.
+     */
+    public static boolean isMissing(Throwable error) {
+        if (!(error instanceof LagomException)) {
+            return false;
+        }
+        int status = ((LagomException) error).errorCode().http();
+        return status == NOT_FOUND || status == GONE;
+    }
+}
@@ -4,8 +4,6 @@ import com.bridge18.company.entities.CompanyType;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.lightbend.lagom.javadsl.immutable.ImmutableStyle;
 import com.lightbend.lagom.javadsl.persistence.AggregateEvent;
-import com.lightbend.lagom.javadsl.persistence.AggregateEventShards;
-import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
 import com.lightbend.lagom.javadsl.persistence.AggregateEventTagger;
 import com.lightbend.lagom.serialization.Jsonable;
 import org.immutables.value.Value;
@@ -15,13 +13,23 @@ import java.util.Optional;
 
 public interface CompanyEvent extends Jsonable, AggregateEvent<CompanyEvent> {
 
-    int NUM_SHARDS = 4;
-    AggregateEventShards<CompanyEvent> COMPANY_EVENT_SHARDS =
-            AggregateEventTag.sharded(CompanyEvent.class, NUM_SHARDS);
-
     @Override
     default AggregateEventTagger<CompanyEvent> aggregateTag() {
-        return COMPANY_EVENT_SHARDS;
+        return CompanyEventShards.current().getShards();
+    }
+
+    /**
+     * Id of the company the event belongs to.
+     */
+    String getId();
+
+    /**
+     * Revision of the company once the event is applied: 1 for its creation, one more for every following event.
+     * 0 in events persisted before revisions were recorded.
+     */
+    @Value.Default
+    default long getRevision() {
+        return 0;
     }
 
     @Value.Immutable
@@ -73,4 +81,105 @@ public interface CompanyEvent extends Jsonable, AggregateEvent<CompanyEvent> {
         @Value.Parameter
         String getId();
     }
+
+    /**
+     * A change to part of a company, as opposed to {@link CompanyUpdated} which carries the whole company.
+     */
+    interface CompanyDelta extends CompanyEvent {
+    }
+
+    @Value.Immutable
+    @ImmutableStyle
+    @JsonDeserialize
+    interface AbstractCompanyNameChanged extends CompanyDelta {
+        @Value.Parameter
+        String getId();
+
+        @Value.Parameter
+        String getName();
+    }
+
+    /**
+     * Carries only the fields that changed; absent fields keep their value.
+     */
+    @Value.Immutable
+    @ImmutableStyle
+    @JsonDeserialize
+    interface AbstractCompanyDetailsChanged extends CompanyDelta {
+        @Value.Parameter
+        String getId();
+
+        @Value.Parameter
+        Optional<String> getMc();
+        @Value.Parameter
+        Optional<String> getTaxId();
+        @Value.Parameter
+        Optional<CompanyType> getCompanyType();
+    }
+
+    @Value.Immutable
+    @ImmutableStyle
+    @JsonDeserialize
+    interface AbstractContactAdded extends CompanyDelta {
+        @Value.Parameter
+        String getId();
+
+        @Value.Parameter
+        Contact getContact();
+    }
+
+    /**
+     * Replaces the contact with the same id.
+     */
+    @Value.Immutable
+    @ImmutableStyle
+    @JsonDeserialize
+    interface AbstractContactUpdated extends CompanyDelta {
+        @Value.Parameter
+        String getId();
+
+        @Value.Parameter
+        Contact getContact();
+    }
+
+    @Value.Immutable
+    @ImmutableStyle
+    @JsonDeserialize
+    interface AbstractContactRemoved extends CompanyDelta {
+        @Value.Parameter
+        String getId();
+
+        @Value.Parameter
+        String getContactId();
+    }
+
+    /**
+     * Sets the location at {@code index}; an index equal to the number of locations appends one.
+     */
+    @Value.Immutable
+    @ImmutableStyle
+    @JsonDeserialize
+    interface AbstractLocationChanged extends CompanyDelta {
+        @Value.Parameter
+        String getId();
+
+        @Value.Parameter
+        int getIndex();
+        @Value.Parameter
+        Location getLocation();
+    }
+
+    /**
+     * Removes the last location, which is at {@code index}.
+     */
+    @Value.Immutable
+    @ImmutableStyle
+    @JsonDeserialize
+    interface AbstractLocationRemoved extends CompanyDelta {
+        @Value.Parameter
+        String getId();
+
+        @Value.Parameter
+        int getIndex();
+    }
 }
@@ -0,0 +1,131 @@
+package com.bridge18.company.impl.entities;
+
+import com.lightbend.lagom.javadsl.persistence.AggregateEventShards;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.typesafe.config.Config;
+import org.pcollections.PSequence;
+import org.pcollections.TreePVector;
+
+import java.util.Optional;
+
+/**
+ * Shard tags of {@link CompanyEvent}, sized by {@code company.event-shards}.
+ * <p>
+ * The original four shards keep their tag names; any other count gets tags of its own
+ * ({@code <event class>-<count>-<shard>}), so that the tags written before and after a change of the count never
+ * overlap. Events are tagged by {@link CompanyEvent#aggregateTag()}, which has no access to the injector, so the
+ * module hands the configured shards over with {@link #use} before any entity runs. They are fixed from then on: the
+ * tags of the events of a company must not change while the service runs.
+ * <p>
+ * A change of the count is a reshard in two steps, each a full stop and start of the service, never a rolling
+ * deploy: with nodes on both counts, the events of one company could alternate between the old and the new tags.
+ * First {@code count} is set to the new count and {@code previous-count} to the old one. Events are then written with
+ * the new tags while the read side only drains the old ones, so that no event of a company written after the change
+ * is applied before one written earlier. Once the old tags have no lag left, {@code previous-count} is set back to
+ * 0 and the read side follows the new tags from their first event.
+ * <p>
+ * Between the two steps the read side is behind by every event written since the first one: those companies keep
+ * their old state in listings and searches, new companies are missing from them, and requests waiting for their
+ * revision to be projected time out. Reads of a single company fall back to the entity when the read side lacks it.
+ * The window should therefore be kept as short as draining the old tags allows.
+ */
+public final class CompanyEventShards {
+    static final int LEGACY_COUNT = 4;
+
+    private static final CompanyEventShards DEFAULT = new CompanyEventShards(LEGACY_COUNT, 0);
+
+    private static volatile CompanyEventShards current = DEFAULT;
+    private static boolean configured;
+
+    private final int count;
+    private final int previousCount;
+    private final AggregateEventShards<CompanyEvent> shards;
+
+    public CompanyEventShards(Config config) {
+        this(config.getInt("count"), config.getInt("previous-count"));
+    }
+
+    public CompanyEventShards(int count, int previousCount) {
+        if (count < 1 || previousCount < 0) {
+            throw new IllegalArgumentException("Company events need at least one shard, got " + count
+                    + " and previous count " + previousCount);
+        }
+        this.count = count;
+        this.previousCount = previousCount;
+        this.shards = forCount(count);
+    }
+
+    /**
+     * Makes {@code shards} the ones new events are tagged with. Further calls must pass the same counts, as another
+     * module started in the same JVM does.
+     *
+     * @throws IllegalStateException if shards of other counts are already in use
+     */
+    public static synchronized void use(CompanyEventShards shards) {
+        if (configured && !current.hasCountsOf(shards)) {
+            throw new IllegalStateException("Company events are already tagged with " + current.count
+                    + " shards (previous count " + current.previousCount + "), cannot switch to " + shards.count
+                    + " (previous count " + shards.previousCount + ") without a restart");
+        }
+        current = shards;
+        configured = true;
+    }
+
+    /**
+     * Back to the legacy shards, with none configured, so that tests can {@link #use} others.
+     */
+    static synchronized void reset() {
+        current = DEFAULT;
+        configured = false;
+    }
+
+    public static CompanyEventShards current() {
+        return current;
+    }
+
+    public static AggregateEventShards<CompanyEvent> forCount(int count) {
+        if (count == LEGACY_COUNT) {
+            return AggregateEventTag.sharded(CompanyEvent.class, count);
+        }
+        return AggregateEventTag.sharded(CompanyEvent.class, CompanyEvent.class.getName() + "-" + count + "-", count);
+    }
+
+    private boolean hasCountsOf(CompanyEventShards other) {
+        return count == other.count && getPreviousCount().equals(other.getPreviousCount());
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Optional<Integer> getPreviousCount() {
+        return previousCount > 0 && previousCount != count ? Optional.of(previousCount) : Optional.empty();
+    }
+
+    /**
+     * The tagger of new events.
+     */
+    public AggregateEventShards<CompanyEvent> getShards() {
+        return shards;
+    }
+
+    /**
+     * Tags the read side projects: during a reshard only those of the previous count, otherwise those of the count.
+     */
+    public PSequence<AggregateEventTag<CompanyEvent>> readSideTags() {
+        return getPreviousCount()
+                .map(previous -> forCount(previous).allTags())
+                .orElse(shards.allTags());
+    }
+
+    /**
+     * Every tag events may currently be written with, for consumers that do not depend on the order of the events of
+     * a company.
+     */
+    public PSequence<AggregateEventTag<CompanyEvent>> allTags() {
+        return getPreviousCount()
+                .map(previous -> (PSequence<AggregateEventTag<CompanyEvent>>)
+                        TreePVector.from(forCount(previous).allTags()).plusAll(shards.allTags()))
+                .orElse(shards.allTags());
+    }
+}
@@ -0,0 +1,84 @@
+package com.bridge18.company.impl.metrics;
+
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes the {@link MetricsRegistry} as a read-only dynamic MBean, one attribute per metric, so that it can be
+ * scraped by JConsole, jmxtrans or a Prometheus JMX exporter. Reading an attribute reads only its metric, and
+ * listing the attributes reads none.
+ */
+@Singleton
+public class JmxMetricsReporter implements DynamicMBean {
+    static final String OBJECT_NAME = "com.bridge18.company:type=Metrics";
+
+    private final MetricsRegistry metricsRegistry;
+
+    @Inject
+    public JmxMetricsReporter(MetricsRegistry metricsRegistry, ApplicationLifecycle lifecycle) throws JMException {
+        this.metricsRegistry = metricsRegistry;
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+
+        lifecycle.addStopHook(() -> {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Number value = metricsRegistry.value(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Number value = metricsRegistry.value(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attributes = metricsRegistry.names().stream()
+                .map(name -> new MBeanAttributeInfo(name, Number.class.getName(), name, true, false, false))
+                .toArray(MBeanAttributeInfo[]::new);
+        return new MBeanInfo(getClass().getName(), "Company service metrics", attributes, null, null, null);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new UnsupportedOperationException(actionName));
+    }
+}
@@ -0,0 +1,130 @@
+package com.bridge18.company.impl.metrics;
+
+import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Node-local registry of the service's counters, gauges, rate meters and latency histograms, keyed by dotted names.
+ */
+@Singleton
+public class MetricsRegistry {
+    private static final List<String> HISTOGRAM_FIELDS =
+            Arrays.asList("count", "mean-us", "p50-us", "p95-us", "p99-us", "p999-us", "max-us");
+    private static final List<String> METER_FIELDS = Arrays.asList("count", "per-second");
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, RateMeter> meters = new ConcurrentHashMap<>();
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public void gauge(String name, Supplier<? extends Number> gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public RateMeter meter(String name) {
+        return meters.computeIfAbsent(name, key -> new RateMeter());
+    }
+
+    /**
+     * Names of every published value, without reading any of them: histograms are flattened into count, mean,
+     * percentiles and max, meters into count and rate.
+     */
+    public SortedSet<String> names() {
+        SortedSet<String> names = new TreeSet<>();
+        names.addAll(counters.keySet());
+        names.addAll(gauges.keySet());
+        histograms.keySet().forEach(name -> HISTOGRAM_FIELDS.forEach(field -> names.add(name + "." + field)));
+        meters.keySet().forEach(name -> METER_FIELDS.forEach(field -> names.add(name + "." + field)));
+        return names;
+    }
+
+    /**
+     * @return the current value of the published value {@code name}, reading only that metric, or null if there is
+     * no such value
+     */
+    public Number value(String name) {
+        LongAdder counter = counters.get(name);
+        if (counter != null) {
+            return counter.sum();
+        }
+        Supplier<? extends Number> gauge = gauges.get(name);
+        if (gauge != null) {
+            return gauge.get();
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        String metric = name.substring(0, dot);
+        String field = name.substring(dot + 1);
+        LatencyHistogram histogram = histograms.get(metric);
+        if (histogram != null) {
+            return histogramValue(histogram, field);
+        }
+        RateMeter meter = meters.get(metric);
+        return meter != null ? meterValue(meter, field) : null;
+    }
+
+    /**
+     * Point-in-time values of every metric, named as in {@link #names()}.
+     */
+    public SortedMap<String, Number> snapshot() {
+        SortedMap<String, Number> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> snapshot.put(name, gauge.get()));
+        histograms.forEach((name, histogram) -> HISTOGRAM_FIELDS.forEach(field ->
+                snapshot.put(name + "." + field, histogramValue(histogram, field))));
+        meters.forEach((name, meter) -> METER_FIELDS.forEach(field ->
+                snapshot.put(name + "." + field, meterValue(meter, field))));
+        return snapshot;
+    }
+
+    private static Number histogramValue(LatencyHistogram histogram, String field) {
+        switch (field) {
+            case "count":
+                return histogram.getCount();
+            case "mean-us":
+                return histogram.getMeanMicros();
+            case "p50-us":
+                return histogram.getPercentileMicros(50);
+            case "p95-us":
+                return histogram.getPercentileMicros(95);
+            case "p99-us":
+                return histogram.getPercentileMicros(99);
+            case "p999-us":
+                return histogram.getPercentileMicros(99.9);
+            case "max-us":
+                return histogram.getMaxMicros();
+            default:
+                return null;
+        }
+    }
+
+    private static Number meterValue(RateMeter meter, String field) {
+        switch (field) {
+            case "count":
+                return meter.getCount();
+            case "per-second":
+                return meter.getRatePerSecond();
+            default:
+                return null;
+        }
+    }
+}
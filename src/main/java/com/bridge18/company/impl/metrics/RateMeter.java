@@ -0,0 +1,70 @@
+package com.bridge18.company.impl.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts events and tracks their rate as a one-minute exponentially weighted moving average. The average is brought
+ * up to date in {@value #TICK_SECONDS} second steps whenever the meter is marked or read, so an idle meter decays
+ * towards zero without a timer.
+ */
+public class RateMeter {
+    private static final int TICK_SECONDS = 5;
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(TICK_SECONDS);
+    private static final double ALPHA = 1 - Math.exp(-TICK_SECONDS / 60.0);
+
+    private final LongSupplier nanoClock;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder uncounted = new LongAdder();
+    private final AtomicLong lastTick;
+    private volatile double ratePerSecond;
+    private volatile boolean initialized;
+
+    public RateMeter() {
+        this(System::nanoTime);
+    }
+
+    RateMeter(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.lastTick = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    public void mark(long events) {
+        tickIfNecessary();
+        count.add(events);
+        uncounted.add(events);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getRatePerSecond() {
+        tickIfNecessary();
+        return ratePerSecond;
+    }
+
+    private void tickIfNecessary() {
+        long previous = lastTick.get();
+        long now = nanoClock.getAsLong();
+        long age = now - previous;
+        // only the thread that moves lastTick on applies the elapsed ticks
+        if (age > TICK_NANOS && lastTick.compareAndSet(previous, now - age % TICK_NANOS)) {
+            for (long i = age / TICK_NANOS; i > 0; i--) {
+                tick();
+            }
+        }
+    }
+
+    private void tick() {
+        double instantRate = (double) uncounted.sumThenReset() / TICK_SECONDS;
+        if (initialized) {
+            ratePerSecond += ALPHA * (instantRate - ratePerSecond);
+        } else {
+            ratePerSecond = instantRate;
+            initialized = true;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.bridge18.company.impl.repository;
+
+import akka.Done;
+import akka.japi.Pair;
+import akka.stream.javadsl.Flow;
+import com.lightbend.lagom.javadsl.persistence.AggregateEvent;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.lightbend.lagom.javadsl.persistence.Offset;
+import com.lightbend.lagom.javadsl.persistence.ReadSideProcessor.ReadSideHandler;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Groups the events of a tag into batches of up to {@code maxBatchSize} events or {@code flushInterval}, applies each
+ * batch with {@code applyBatch} and then hands a single {@code commitMarker} carrying the batch's last offset to the
+ * wrapped handler, whose only job for that marker is to store the offset.
+ */
+class BatchingReadSideHandler<Event extends AggregateEvent<Event>> extends ReadSideHandler<Event> {
+    private final ReadSideHandler<Event> delegate;
+    private final Function<List<Event>, CompletionStage<Done>> applyBatch;
+    private final Event commitMarker;
+    private final int maxBatchSize;
+    private final FiniteDuration flushInterval;
+
+    BatchingReadSideHandler(ReadSideHandler<Event> delegate,
+                            Function<List<Event>, CompletionStage<Done>> applyBatch,
+                            Event commitMarker,
+                            int maxBatchSize,
+                            FiniteDuration flushInterval) {
+        this.delegate = delegate;
+        this.applyBatch = applyBatch;
+        this.commitMarker = commitMarker;
+        this.maxBatchSize = maxBatchSize;
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public CompletionStage<Done> globalPrepare() {
+        return delegate.globalPrepare();
+    }
+
+    @Override
+    public CompletionStage<Offset> prepare(AggregateEventTag<Event> tag) {
+        return delegate.prepare(tag);
+    }
+
+    @Override
+    public Flow<Pair<Event, Offset>, Done, ?> handle() {
+        return Flow.<Pair<Event, Offset>>create()
+                .groupedWithin(maxBatchSize, flushInterval)
+                .mapAsync(1, batch -> {
+                    Offset lastOffset = batch.get(batch.size() - 1).second();
+                    List<Event> events = batch.stream().map(Pair::first).collect(Collectors.toList());
+                    return applyBatch.apply(events).thenApply(done -> Pair.create(commitMarker, lastOffset));
+                })
+                .via(delegate.handle());
+    }
+}
@@ -0,0 +1,31 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.entities.Location;
+
+/**
+ * A company found by a location search, with its location nearest to the center of the area and the distance to it.
+ */
+public class CompanyLocationMatch {
+    private final CompanyState company;
+    private final Location location;
+    private final double distanceMeters;
+
+    public CompanyLocationMatch(CompanyState company, Location location, double distanceMeters) {
+        this.company = company;
+        this.location = location;
+        this.distanceMeters = distanceMeters;
+    }
+
+    public CompanyState getCompany() {
+        return company;
+    }
+
+    public Location getLocation() {
+        return location;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+}
@@ -1,129 +1,649 @@
 package com.bridge18.company.impl.repository;
 
 import akka.Done;
+import akka.NotUsed;
+import akka.actor.ActorSystem;
+import akka.japi.Pair;
+import akka.stream.ActorAttributes;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Source;
+import com.bridge18.company.impl.concurrent.InstrumentedExecutor;
+import com.bridge18.company.impl.concurrent.ReadSideExecutors;
 import com.bridge18.company.impl.entities.*;
+import com.bridge18.company.impl.metrics.LatencyHistogram;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
 import com.bridge18.readside.mongodb.readside.MongodbReadSide;
+import com.bridge18.exception.LagomException;
 import com.bridge18.v1.dto.PaginatedSequence;
 import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.lightbend.lagom.javadsl.persistence.PersistentEntityRegistry;
 import com.lightbend.lagom.javadsl.persistence.ReadSide;
 import com.lightbend.lagom.javadsl.persistence.ReadSideProcessor;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
 import org.mongodb.morphia.Datastore;
-import org.mongodb.morphia.query.FindOptions;
-import org.mongodb.morphia.query.UpdateOperations;
 import org.pcollections.PSequence;
 import org.pcollections.TreePVector;
+import scala.concurrent.duration.FiniteDuration;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import static com.bridge18.core.CompletionStageUtils.doAll;
 
 @Singleton
 public class CompanyMongoRepository {
+    private static final String SORT_KEY = "id";
+    private static final int UPGRADE_BATCH_SIZE = 500;
+    private static final String DISTANCE = "_distance";
+    private static final String MATCHED_POINT = "_matchedPoint";
+    private static final long LAG_CACHE_MILLIS = 1000;
+    private static final CompanyStateCodec CODEC = new CompanyStateCodec();
 
-    private final Datastore datastore;
+    private final MongoCollection<CompanyState> companies;
+    private final ReadSideExecutors readSideExecutors;
+    private final ExportSettings exportSettings;
+    private final ProjectionProgressStore progressStore;
+    private final RevisionWaitSettings revisionWaitSettings;
+    private final ProjectedRevisions projectedRevisions;
+    private final ActorSystem actorSystem;
+    private volatile CachedLag cachedLag = new CachedLag(Optional.empty(), 0);
 
     @Inject
-    public CompanyMongoRepository(ReadSide readSide, Datastore datastore) {
+    public CompanyMongoRepository(ReadSide readSide, Datastore datastore, ReadSideExecutors readSideExecutors,
+                                  ExportSettings exportSettings, RevisionWaitSettings revisionWaitSettings,
+                                  ProjectedRevisions projectedRevisions, ActorSystem actorSystem) {
+        this(CompanyStateWrites.companies(datastore), new ProjectionProgressStore(datastore), readSideExecutors,
+                exportSettings, revisionWaitSettings, projectedRevisions, actorSystem);
         readSide.register(CompanyEventProcessor.class);
-        this.datastore = datastore;
+    }
+
+    CompanyMongoRepository(MongoCollection<CompanyState> companies, ProjectionProgressStore progressStore,
+                           ReadSideExecutors readSideExecutors, ExportSettings exportSettings,
+                           RevisionWaitSettings revisionWaitSettings, ProjectedRevisions projectedRevisions,
+                           ActorSystem actorSystem) {
+        this.companies = companies;
+        this.readSideExecutors = readSideExecutors;
+        this.exportSettings = exportSettings;
+        this.progressStore = progressStore;
+        this.revisionWaitSettings = revisionWaitSettings;
+        this.projectedRevisions = projectedRevisions;
+        this.actorSystem = actorSystem;
+    }
+
+    public CompletionStage<Optional<CompanyState>> getCompany(String id) {
+        return readSideExecutors.queries().supply(() ->
+                Optional.ofNullable(companies.find(CompanyStateWrites.byId(id)).first()));
+    }
+
+    /**
+     * {@link #getCompany(String)} once the read side has reached the revision of {@code after}, if any.
+     */
+    public CompletionStage<Optional<CompanyState>> getCompany(String id, Optional<ConsistencyToken> after) {
+        return awaitRevision(after).thenCompose(done -> getCompany(id));
+    }
+
+    /**
+     * Completes once the document of the token's company has its revision, or a later one, or is gone (see
+     * {@link #caughtUp}). A wait is woken as soon as
+     * the projection on this node applies the revision; as the company may be projected on another node, its revision
+     * is also re-read every {@code company.read-side.revision-wait.poll-interval}. Fails with a 503 after
+     * {@code timeout}.
+     */
+    public CompletionStage<Done> awaitRevision(ConsistencyToken token, Duration timeout) {
+        CompletableFuture<Done> reached = projectedRevisions.await(token.getCompanyId(), token.getRevision());
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        pollRevision(token, deadline, reached);
+        return reached;
+    }
+
+    /**
+     * {@link #awaitRevision(ConsistencyToken, Duration)} with the configured timeout, immediately complete without a
+     * token.
+     */
+    public CompletionStage<Done> awaitRevision(Optional<ConsistencyToken> token) {
+        return token.map(t -> awaitRevision(t, revisionWaitSettings.getTimeout()))
+                .orElseGet(() -> CompletableFuture.completedFuture(Done.getInstance()));
+    }
+
+    private void pollRevision(ConsistencyToken token, long deadline, CompletableFuture<Done> reached) {
+        if (reached.isDone()) {
+            return;
+        }
+        getRevision(token.getCompanyId()).whenComplete((revision, failure) -> {
+            if (failure != null) {
+                reached.completeExceptionally(failure);
+            } else if (caughtUp(token, revision)) {
+                reached.complete(Done.getInstance());
+            } else if (System.currentTimeMillis() >= deadline) {
+                reached.completeExceptionally(new LagomException("READ_SIDE_BEHIND", 503,
+                        "The read side has not reached revision " + token.getRevision() + " of company "
+                                + token.getCompanyId() + " yet", "consistencyToken"));
+            } else {
+                long delay = Math.min(revisionWaitSettings.getPollInterval().toMillis(),
+                        Math.max(1, deadline - System.currentTimeMillis()));
+                actorSystem.scheduler().scheduleOnce(
+                        FiniteDuration.create(delay, TimeUnit.MILLISECONDS),
+                        () -> pollRevision(token, deadline, reached),
+                        actorSystem.dispatcher());
+            }
+        });
+    }
+
+    /**
+     * Whether the read side has applied the write of {@code token}, given the revision of the company's document. A
+     * company without a document is taken for deleted since, unless the token is of its creation: the document is
+     * then most likely one the read side has yet to write. A later write of a company whose creation is still
+     * pending thus ends the wait early, and the company reads as missing, as it would from an eventual read.
+     */
+    private static boolean caughtUp(ConsistencyToken token, Optional<Long> revision) {
+        return revision.map(projected -> projected >= token.getRevision()).orElse(token.getRevision() > 1);
+    }
+
+    /**
+     * The revision of the document of company {@code id}, 0 if it has none, empty if there is no document.
+     */
+    private CompletionStage<Optional<Long>> getRevision(String id) {
+        return readSideExecutors.queries().supply(() -> {
+            BsonDocument document = companies.withDocumentClass(BsonDocument.class)
+                    .find(CompanyStateWrites.byId(id))
+                    .projection(Projections.include(CompanyStateWrites.REVISION))
+                    .first();
+            if (document == null) {
+                return Optional.empty();
+            }
+            BsonValue revision = document.get(CompanyStateWrites.REVISION);
+            return Optional.of(revision != null && revision.isNumber() ? revision.asNumber().longValue() : 0L);
+        });
+    }
+
+    /**
+     * How stale a read from the read side may be, as the lag of the most lagging tag: how long its last event took
+     * to be applied, or while it has events pending, how long ago that was if longer. Empty until a tag has
+     * reported. Read at most once per second from Mongo.
+     */
+    public CompletionStage<Optional<Duration>> getProjectionLag() {
+        CachedLag cached = cachedLag;
+        if (System.currentTimeMillis() - cached.readAt < LAG_CACHE_MILLIS) {
+            return CompletableFuture.completedFuture(cached.lag);
+        }
+        return readSideExecutors.queries().supply(() -> {
+            long now = System.currentTimeMillis();
+            Optional<Duration> lag = progressStore.load().stream()
+                    .map(progress -> progress.lagMillis(now))
+                    .max(Long::compare)
+                    .map(Duration::ofMillis);
+            cachedLag = new CachedLag(lag, now);
+            return lag;
+        });
     }
 
     public CompletionStage<PaginatedSequence<CompanyState>> getCompanies(int pageNumber, int pageSize) {
+        return readSideExecutors.queries().supply(() -> {
+            List<CompanyState> page = companies.find()
+                    .sort(Sorts.ascending(SORT_KEY))
+                    .skip(pageNumber > 0 ? (pageNumber - 1) * pageSize : 0)
+                    .limit(pageSize)
+                    .into(new ArrayList<>(pageSize));
+
+            return new PaginatedSequence<>(
+                    TreePVector.from(page),
+                    pageNumber,
+                    pageSize);
+        });
+    }
+
+    public CompletionStage<PaginatedSequence<CompanyState>> getCompanies(int pageNumber, int pageSize,
+                                                                         Optional<ConsistencyToken> after) {
+        return awaitRevision(after).thenCompose(done -> getCompanies(pageNumber, pageSize));
+    }
+
+    /**
+     * Keyset pagination: a range query on the indexed sort key starting after the cursor, so the cost of a page does
+     * not depend on how deep into the collection it is.
+     * Companies with time-ordered ids come in creation order.
+     */
+    public CompletionStage<CursorPaginatedSequence<CompanyState>> getCompanies(Optional<String> cursor, int pageSize) {
+        Optional<String> lastId;
+        try {
+            lastId = cursor.map(PageCursors::decode);
+        } catch (LagomException e) {
+            return failed(e);
+        }
+
+        return readSideExecutors.queries().supply(() -> {
+            List<CompanyState> page = companies
+                    .find(lastId.map(id -> Filters.gt(SORT_KEY, id)).orElse(new BsonDocument()))
+                    .sort(Sorts.ascending(SORT_KEY))
+                    .limit(pageSize + 1)
+                    .into(new ArrayList<>(pageSize + 1));
+
+            Optional<String> nextCursor = Optional.empty();
+            if (page.size() > pageSize) {
+                page = page.subList(0, pageSize);
+                nextCursor = Optional.of(PageCursors.encode(page.get(pageSize - 1).getId()));
+            }
+
+            return new CursorPaginatedSequence<>(
+                    TreePVector.from(page),
+                    pageSize,
+                    nextCursor);
+        });
+    }
+
+    public CompletionStage<CursorPaginatedSequence<CompanyState>> getCompanies(Optional<String> cursor, int pageSize,
+                                                                               Optional<ConsistencyToken> after) {
+        return awaitRevision(after).thenCompose(done -> getCompanies(cursor, pageSize));
+    }
+
+    public CompletionStage<List<CompanyState>> getCompaniesByIds(Collection<String> ids) {
+        return readSideExecutors.queries().supply(() ->
+                companies.find(Filters.in(SORT_KEY, ids)).into(new ArrayList<CompanyState>(ids.size())));
+    }
+
+    public CompletionStage<List<CompanyState>> getCompaniesByIds(Collection<String> ids,
+                                                                 Optional<ConsistencyToken> after) {
+        return awaitRevision(after).thenCompose(done -> getCompaniesByIds(ids));
+    }
+
+    /**
+     * Companies matching {@code search}, a page at a time. Name searches are ordered by normalized name, all others
+     * by id; either way the order is that of one of the indexes created in {@code globalPrepare}, so a page is a
+     * range scan whatever the cursor.
+     */
+    public CompletionStage<CursorPaginatedSequence<CompanyState>> searchCompanies(CompanySearch search,
+                                                                                  Optional<String> cursor,
+                                                                                  int pageSize) {
+        boolean byName = search.getNamePrefix().isPresent();
+        Optional<String[]> lastKey;
+        try {
+            lastKey = cursor.map(c -> byName ? PageCursors.decode(c, 2) : new String[]{PageCursors.decode(c)});
+        } catch (LagomException e) {
+            return failed(e);
+        }
+
+        return readSideExecutors.queries().supply(() -> {
+            List<Bson> filters = new ArrayList<>();
+
+            search.getNamePrefix().ifPresent(prefix -> {
+                filters.add(Filters.gte(CompanyStateWrites.SEARCH_NAME, prefix));
+                CompanySearch.prefixUpperBound(prefix).ifPresent(bound ->
+                        filters.add(Filters.lt(CompanyStateWrites.SEARCH_NAME, bound)));
+            });
+            search.getMc().ifPresent(mc -> filters.add(Filters.eq("mc", mc)));
+            search.getTaxId().ifPresent(taxId -> filters.add(Filters.eq("taxId", taxId)));
+            search.getCompanyType().ifPresent(companyType ->
+                    filters.add(Filters.eq("companyType", companyType.name())));
+
+            Bson sort;
+            if (byName) {
+                lastKey.ifPresent(key -> filters.add(Filters.or(
+                        Filters.gt(CompanyStateWrites.SEARCH_NAME, key[0]),
+                        Filters.and(
+                                Filters.eq(CompanyStateWrites.SEARCH_NAME, key[0]),
+                                Filters.gt(SORT_KEY, key[1])))));
+                sort = Sorts.ascending(CompanyStateWrites.SEARCH_NAME, SORT_KEY);
+            } else {
+                lastKey.ifPresent(key -> filters.add(Filters.gt(SORT_KEY, key[0])));
+                sort = Sorts.ascending(SORT_KEY);
+            }
+
+            List<CompanyState> page = companies
+                    .find(filters.isEmpty() ? new BsonDocument() : Filters.and(filters))
+                    .sort(sort)
+                    .limit(pageSize + 1)
+                    .into(new ArrayList<>(pageSize + 1));
+
+            Optional<String> nextCursor = Optional.empty();
+            if (page.size() > pageSize) {
+                page = page.subList(0, pageSize);
+                CompanyState last = page.get(pageSize - 1);
+                nextCursor = Optional.of(byName ?
+                        PageCursors.encode(CompanyStateWrites.searchName(last.getName()), last.getId()) :
+                        PageCursors.encode(last.getId()));
+            }
 
-        List<CompanyState> companies = datastore.createQuery(CompanyState.class).asList(
-                new FindOptions()
-                        .skip(pageNumber > 0 ? (pageNumber - 1) * pageSize : 0)
-                        .limit(pageSize)
-        );
+            return new CursorPaginatedSequence<>(
+                    TreePVector.from(page),
+                    pageSize,
+                    nextCursor);
+        });
+    }
+
+    /**
+     * Companies with a location in {@code area}, nearest first, a page at a time. A company with several locations
+     * in the area is returned once, with the location nearest to the center of the area.
+     */
+    public CompletionStage<PaginatedSequence<CompanyLocationMatch>> findCompaniesNear(GeoArea area, int pageNumber,
+                                                                                     int pageSize) {
+        int skip = pageNumber > 0 ? (pageNumber - 1) * pageSize : 0;
+
+        return readSideExecutors.queries().supply(() -> {
+            List<CompanyLocationMatch> matches = new ArrayList<>(pageSize);
+            try (MongoCursor<RawBsonDocument> cursor = companies.withDocumentClass(RawBsonDocument.class)
+                    .aggregate(nearPipeline(area, skip, pageSize)).iterator()) {
+                while (cursor.hasNext()) {
+                    RawBsonDocument document = cursor.next();
+                    CompanyState company = document.decode(CODEC);
+                    matches.add(new CompanyLocationMatch(
+                            company,
+                            matchedLocation(company, document.getDocument(MATCHED_POINT)),
+                            document.getNumber(DISTANCE).doubleValue()));
+                }
+            }
+
+            return new PaginatedSequence<>(
+                    TreePVector.from(matches),
+                    pageNumber,
+                    pageSize);
+        });
+    }
+
+    /**
+     * {@code $geoNear} with the page cut by the {@code $skip} and {@code $limit} stages that follow it, as servers
+     * from 4.2 on no longer accept a {@code limit} in {@code $geoNear} itself. Servers before 4.2 still stop
+     * {@code $geoNear} at 100 documents, which bounds how deep pages can go there.
+     */
+    static List<Bson> nearPipeline(GeoArea area, int skip, int limit) {
+        BasicDBObject geoNear = new BasicDBObject("near",
+                CompanyStateWrites.geoJsonPoint(area.getCenterLatitude(), area.getCenterLongitude()))
+                .append("key", CompanyStateWrites.LOCATION_POINTS)
+                .append("spherical", true)
+                .append("maxDistance", area.getMaxDistanceMeters())
+                .append("distanceField", DISTANCE)
+                .append("includeLocs", MATCHED_POINT);
+        area.getBox().ifPresent(box -> geoNear.append("query", box));
+
+        List<Bson> pipeline = new ArrayList<>(3);
+        pipeline.add(new BasicDBObject("$geoNear", geoNear));
+        if (skip > 0) {
+            pipeline.add(new BasicDBObject("$skip", skip));
+        }
+        pipeline.add(new BasicDBObject("$limit", limit));
+        return pipeline;
+    }
+
+    private static Location matchedLocation(CompanyState company, BsonDocument point) {
+        BsonArray coordinates = point.getArray("coordinates");
+        double longitude = coordinates.get(0).asNumber().doubleValue();
+        double latitude = coordinates.get(1).asNumber().doubleValue();
+
+        Location nearest = null;
+        double nearestDistance = Double.MAX_VALUE;
+        for (Location location : company.getLocations().orElse(TreePVector.empty())) {
+            Optional<Address> address = location.getAddress();
+            Optional<Double> locationLatitude = address.flatMap(Address::getAddressLatitude);
+            Optional<Double> locationLongitude = address.flatMap(Address::getAddressLongitude);
+            if (locationLatitude.isPresent() && locationLongitude.isPresent()) {
+                double distance = GeoArea.distanceMeters(latitude, longitude,
+                        locationLatitude.get(), locationLongitude.get());
+                if (distance < nearestDistance) {
+                    nearest = location;
+                    nearestDistance = distance;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Every company of the read side in id order, read {@code company.export.batch-size} documents at a time as the
+     * stream demands them. Each batch is a range query on the id index resuming after the last id of the previous
+     * one, so no cursor is held open between batches however slowly the stream is consumed. The blocking reads run
+     * on Akka Streams' blocking IO dispatcher.
+     */
+    public Source<CompanyState, NotUsed> exportCompanies() {
+        return exportInBatches(lastId -> companies
+                .find(lastId.map(id -> Filters.gt(SORT_KEY, id)).orElse(new BsonDocument()))
+                .sort(Sorts.ascending(SORT_KEY))
+                .limit(exportSettings.getBatchSize())
+                .into(new ArrayList<>(exportSettings.getBatchSize())))
+                .withAttributes(ActorAttributes.dispatcher("akka.stream.default-blocking-io-dispatcher"));
+    }
+
+    /**
+     * The companies of the batches {@code nextBatch} returns after the last id of the previous batch, until it
+     * returns an empty one.
+     */
+    static Source<CompanyState, NotUsed> exportInBatches(Function<Optional<String>, List<CompanyState>> nextBatch) {
+        return Source.unfold(Optional.<String>empty(), lastId -> {
+            List<CompanyState> batch = nextBatch.apply(lastId);
+            return batch.isEmpty() ? Optional.empty() :
+                    Optional.of(Pair.create(Optional.of(batch.get(batch.size() - 1).getId()), batch));
+        }).mapConcat(batch -> batch);
+    }
 
-        return CompletableFuture.completedFuture(
-                new PaginatedSequence<>(
-                        TreePVector.from(companies),
-                        pageNumber,
-                        pageSize));
+    private static <T> CompletionStage<T> failed(Throwable error) {
+        CompletableFuture<T> failed = new CompletableFuture<>();
+        failed.completeExceptionally(error);
+        return failed;
     }
 
     private static class CompanyEventProcessor extends ReadSideProcessor<CompanyEvent> {
 
         private final MongodbReadSide mongodbReadSide;
+        private final Datastore datastore;
+        private final MongoCollection<CompanyState> companies;
+        private final InstrumentedExecutor executor;
+        private final ProjectionSettings settings;
+        private final ProjectedRevisions projectedRevisions;
+        private final MetricsRegistry metricsRegistry;
+        private final PersistentEntityRegistry persistentEntityRegistry;
+        private final Materializer materializer;
+        private final ProjectionMetricsSettings metricsSettings;
+        private final CompanyEventShards eventShards;
+        /**
+         * Of the tag this processor projects, set once the tag is prepared.
+         */
+        private volatile ProjectionMetrics metrics;
 
         @Inject
-        public CompanyEventProcessor(MongodbReadSide mongodbReadSide) {
+        public CompanyEventProcessor(MongodbReadSide mongodbReadSide, Datastore datastore,
+                                     ReadSideExecutors readSideExecutors, ProjectionSettings settings,
+                                     ProjectedRevisions projectedRevisions, MetricsRegistry metricsRegistry,
+                                     PersistentEntityRegistry persistentEntityRegistry, Materializer materializer,
+                                     ProjectionMetricsSettings metricsSettings, CompanyEventShards eventShards) {
             this.mongodbReadSide = mongodbReadSide;
+            this.datastore = datastore;
+            this.companies = CompanyStateWrites.companies(datastore);
+            this.executor = readSideExecutors.projections();
+            this.settings = settings;
+            this.projectedRevisions = projectedRevisions;
+            this.metricsRegistry = metricsRegistry;
+            this.persistentEntityRegistry = persistentEntityRegistry;
+            this.materializer = materializer;
+            this.metricsSettings = metricsSettings;
+            this.eventShards = eventShards;
         }
 
         @Override
         public ReadSideHandler<CompanyEvent> buildHandler() {
-            return mongodbReadSide.<CompanyEvent>builder("mongodbCompanyOffset")
+            ReadSideHandler<CompanyEvent> handler = mongodbReadSide.<CompanyEvent>builder("mongodbCompanyOffset")
                     .setGlobalPrepare(this::globalPrepare)
                     .setEventHandler(CompanyCreated.class,
                             this::insertCompany)
                     .setEventHandler(CompanyUpdated.class,
                             this::updateCompany)
                     .setEventHandler(CompanyDeleted.class,
-                            (datastore, e) -> deleteCompany(datastore, e.getId()))
+                            (datastore, e) -> deleteCompany(e))
+                    .setEventHandler(CompanyNameChanged.class, this::applyDelta)
+                    .setEventHandler(CompanyDetailsChanged.class, this::applyDelta)
+                    .setEventHandler(ContactAdded.class, this::applyDelta)
+                    .setEventHandler(ContactUpdated.class, this::applyDelta)
+                    .setEventHandler(ContactRemoved.class, this::applyDelta)
+                    .setEventHandler(LocationChanged.class, this::applyDelta)
+                    .setEventHandler(LocationRemoved.class, this::applyDelta)
+                    .setEventHandler(BatchApplied.class,
+                            (datastore, e) -> CompletableFuture.completedFuture(null))
                     .build();
+
+            ProjectionProgressStore progressStore = new ProjectionProgressStore(datastore);
+            handler = new ProgressReportingReadSideHandler<>(handler, tag -> {
+                metrics = new ProjectionMetrics(tag, metricsRegistry, persistentEntityRegistry, materializer,
+                        metricsSettings);
+                return new ProjectionProgress(tag.tag(), progressStore, executor,
+                        settings.getProgressInterval().toMillis(), metrics);
+            });
+
+            if (settings.getLanes() > 1) {
+                return new ParallelReadSideHandler<>(handler,
+                        this::applyEvent,
+                        CompanyEvent::getId,
+                        BatchApplied.INSTANCE,
+                        settings.getLanes(),
+                        settings.getMaxInFlight());
+            }
+            if (!settings.isBatchingEnabled()) {
+                return handler;
+            }
+            return new BatchingReadSideHandler<>(handler,
+                    this::applyBatch,
+                    BatchApplied.INSTANCE,
+                    settings.getMaxBatchSize(),
+                    settings.getFlushInterval());
+        }
+
+        @Override
+        public PSequence<AggregateEventTag<CompanyEvent>> aggregateTags() {
+            return eventShards.readSideTags();
         }
 
         private CompletionStage<Done> globalPrepare(Datastore datastore) {
             return doAll(
-                    CompletableFuture.runAsync(() ->
-                            datastore.ensureIndexes(CompanyState.class))
+                    executor.run(() -> {
+                        datastore.ensureIndexes(CompanyState.class);
+                        DBCollection collection = datastore.getCollection(CompanyState.class);
+                        collection.createIndex(new BasicDBObject(SORT_KEY, 1));
+                        collection.createIndex(
+                                new BasicDBObject(CompanyStateWrites.SEARCH_NAME, 1).append(SORT_KEY, 1));
+                        collection.createIndex(new BasicDBObject("mc", 1).append(SORT_KEY, 1));
+                        collection.createIndex(new BasicDBObject("taxId", 1).append(SORT_KEY, 1));
+                        collection.createIndex(new BasicDBObject("companyType", 1).append(SORT_KEY, 1));
+                        collection.createIndex(new BasicDBObject(CompanyStateWrites.LOCATION_POINTS, "2dsphere"));
+                        CompanyStateWrites.upgradeOutdated(companies, UPGRADE_BATCH_SIZE);
+                    })
             );
         }
 
-        @Override
-        public PSequence<AggregateEventTag<CompanyEvent>> aggregateTags() {
-            return CompanyEvent.COMPANY_EVENT_SHARDS.allTags();
+        /**
+         * Runs a Mongo write of the projection on the projection executor, recording its latency, without the wait
+         * for a thread, under {@code handler} and counting its {@code events} once it succeeded.
+         */
+        private CompletionStage<Void> write(String handler, int events, Runnable write) {
+            ProjectionMetrics tagMetrics = metrics;
+            LatencyHistogram latency = tagMetrics.write(handler);
+            return executor.run(() -> {
+                long start = System.nanoTime();
+                write.run();
+                latency.recordNanosSince(start);
+            }).thenRun(() -> tagMetrics.written(events));
         }
 
         private CompletionStage<Void> insertCompany(Datastore datastore, CompanyCreated created) {
-            return CompletableFuture.runAsync(() ->
-                    datastore.save(
-                            CompanyState.builder()
-                                    .id(created.getId())
-                                    .name(created.getName())
-                                    .mc(created.getMc().orElse(null))
-                                    .taxId(created.getTaxId().orElse(null))
-                                    .companyType(created.getCompanyType().orElse(null))
-                                    .contacts(created.getContacts().orElse(TreePVector.empty()))
-                                    .locations(created.getLocations().orElse(TreePVector.empty()))
-                                    .build()));
+            return write("insert", 1, () -> writeOne(created)).thenRun(() -> applied(created));
         }
 
         private CompletionStage<Void> updateCompany(Datastore datastore, CompanyUpdated companyUpdated) {
-            return CompletableFuture.runAsync(() -> {
-                UpdateOperations<CompanyState> updateCompanyState = setNotNullFieldsInUpdateOperations(datastore,
-                        companyUpdated);
-
-                datastore.update(
-                        datastore.find(CompanyState.class).field("id").equal(companyUpdated.getId()),
-                        updateCompanyState
-                );
-            });
+            return write("update", 1, () -> writeOne(companyUpdated)).thenRun(() -> applied(companyUpdated));
         }
 
-        private UpdateOperations<CompanyState> setNotNullFieldsInUpdateOperations(Datastore datastore, CompanyUpdated e) {
-            UpdateOperations updateOperations = datastore.createUpdateOperations(CompanyState.class);
+        private CompletionStage<Void> applyDelta(Datastore datastore, CompanyEvent.CompanyDelta delta) {
+            return write("delta", 1, () -> writeOne(delta)).thenRun(() -> applied(delta));
+        }
 
-            if (!e.getName().isEmpty()) updateOperations.set("name", e.getName());
-            if (e.getMc().isPresent()) updateOperations.set("mc", e.getMc());
-            if (e.getTaxId().isPresent()) updateOperations.set("taxId", e.getTaxId());
-            if (e.getCompanyType().isPresent()) updateOperations.set("companyType", e.getCompanyType());
-            if (e.getContacts().isPresent()) updateOperations.set("contacts", e.getContacts());
-            if (e.getLocations().isPresent()) updateOperations.set("locations", e.getLocations());
+        /**
+         * Writes a single event, the same way {@link CompanyProjectionBatch} writes it when it cannot be folded.
+         */
+        private void writeOne(CompanyEvent event) {
+            CompanyStateWrites.forEvent(event)
+                    .ifPresent(write -> companies.bulkWrite(Collections.singletonList(write)));
+        }
 
-            return updateOperations;
+        /**
+         * Wakes the reads on this node that wait for the revision of {@code event}.
+         */
+        private void applied(CompanyEvent event) {
+            if (event.getRevision() > 0) {
+                projectedRevisions.applied(event.getId(), event.getRevision());
+            }
         }
 
-        private CompletionStage<Void> deleteCompany(Datastore datastore, String id) {
-            return CompletableFuture.runAsync(() ->
-                    datastore.delete(datastore.find(CompanyState.class).field("id").equal(id))
-            );
+        private CompletionStage<Void> deleteCompany(CompanyDeleted deleted) {
+            return write("delete", 1, () -> writeOne(deleted)).thenRun(() -> applied(deleted));
+        }
+
+        /**
+         * Applies an event the way the handler registered for its class does, for the lanes of
+         * {@link ParallelReadSideHandler}.
+         */
+        private CompletionStage<Done> applyEvent(CompanyEvent event) {
+            CompletionStage<Void> applied;
+            if (event instanceof CompanyCreated) {
+                applied = insertCompany(datastore, (CompanyCreated) event);
+            } else if (event instanceof CompanyUpdated) {
+                applied = updateCompany(datastore, (CompanyUpdated) event);
+            } else if (event instanceof CompanyDeleted) {
+                applied = deleteCompany((CompanyDeleted) event);
+            } else if (event instanceof CompanyEvent.CompanyDelta) {
+                applied = applyDelta(datastore, (CompanyEvent.CompanyDelta) event);
+            } else {
+                applied = CompletableFuture.completedFuture(null);
+            }
+            return applied.thenApply(done -> Done.getInstance());
+        }
+
+        private CompletionStage<Done> applyBatch(List<CompanyEvent> events) {
+            CompanyProjectionBatch batch = new CompanyProjectionBatch();
+            events.forEach(batch::add);
+
+            return write("batch", events.size(), () -> batch.write(companies))
+                    .thenApply(done -> {
+                        events.forEach(this::applied);
+                        return Done.getInstance();
+                    });
+        }
+    }
+
+    private static final class CachedLag {
+        final Optional<Duration> lag;
+        final long readAt;
+
+        CachedLag(Optional<Duration> lag, long readAt) {
+            this.lag = lag;
+            this.readAt = readAt;
+        }
+    }
+
+    /**
+     * Stands in for events that {@link BatchingReadSideHandler} or {@link ParallelReadSideHandler} has already
+     * written, so that the offset store commits the offset it carries. Never persisted.
+     */
+    private static final class BatchApplied implements CompanyEvent {
+        static final BatchApplied INSTANCE = new BatchApplied();
+
+        @Override
+        public String getId() {
+            return "";
         }
     }
-}
\ No newline at end of file
+}
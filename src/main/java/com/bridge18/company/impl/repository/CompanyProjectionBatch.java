@@ -0,0 +1,134 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.impl.entities.*;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.WriteModel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A run of consecutive company events folded into as few writes per company as possible. Every company touched by
+ * the batch ends up exactly as if the events had been applied one by one.
+ * <p>
+ * A company created in the batch is folded into a single upsert, and so is a run of full updates. Deltas to a company
+ * whose document is not part of the batch cannot be folded into each other and stay separate updates; those
+ * companies are written with an ordered bulk write after the unordered one that carries everything else.
+ */
+class CompanyProjectionBatch {
+    private final Map<String, PendingWrite> writes = new LinkedHashMap<>();
+
+    void add(CompanyEvent event) {
+        if (event instanceof CompanyCreated) {
+            CompanyCreated created = (CompanyCreated) event;
+            writes.put(created.getId(), PendingWrite.replace(CompanyStateWrites.created(created)));
+        } else if (event instanceof CompanyDeleted) {
+            writes.put(((CompanyDeleted) event).getId(), PendingWrite.DELETE);
+        } else if (event instanceof CompanyUpdated) {
+            CompanyUpdated updated = (CompanyUpdated) event;
+            writes.merge(updated.getId(), PendingWrite.updates(updated), PendingWrite::then);
+        } else if (event instanceof CompanyEvent.CompanyDelta) {
+            CompanyEvent.CompanyDelta delta = (CompanyEvent.CompanyDelta) event;
+            writes.merge(delta.getId(), PendingWrite.updates(delta), PendingWrite::then);
+        }
+    }
+
+    boolean isEmpty() {
+        return writes.isEmpty();
+    }
+
+    int size() {
+        return writes.size();
+    }
+
+    void write(MongoCollection<CompanyState> companies) {
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        List<WriteModel<CompanyState>> unordered = new ArrayList<>();
+        List<WriteModel<CompanyState>> ordered = new ArrayList<>();
+
+        for (Map.Entry<String, PendingWrite> entry : writes.entrySet()) {
+            PendingWrite write = entry.getValue();
+            switch (write.kind) {
+                case REPLACE:
+                    unordered.add(CompanyStateWrites.upsert(write.state));
+                    break;
+                case DELETE:
+                    unordered.add(new DeleteOneModel<>(CompanyStateWrites.byId(entry.getKey())));
+                    break;
+                case UPDATES:
+                    // a company with a single write is independent of every other write in the batch
+                    List<WriteModel<CompanyState>> bulk = write.updates.size() == 1 ? unordered : ordered;
+                    for (CompanyEvent update : write.updates) {
+                        CompanyStateWrites.forEvent(update).ifPresent(bulk::add);
+                    }
+                    break;
+            }
+        }
+
+        if (!unordered.isEmpty()) {
+            companies.bulkWrite(unordered, new BulkWriteOptions().ordered(false));
+        }
+        if (!ordered.isEmpty()) {
+            companies.bulkWrite(ordered, new BulkWriteOptions().ordered(true));
+        }
+    }
+
+    private enum Kind {REPLACE, UPDATES, DELETE}
+
+    private static final class PendingWrite {
+        static final PendingWrite DELETE = new PendingWrite(Kind.DELETE, null, null);
+
+        final Kind kind;
+        final CompanyState state;
+        final List<CompanyEvent> updates;
+
+        private PendingWrite(Kind kind, CompanyState state, List<CompanyEvent> updates) {
+            this.kind = kind;
+            this.state = state;
+            this.updates = updates;
+        }
+
+        static PendingWrite replace(CompanyState state) {
+            return new PendingWrite(Kind.REPLACE, state, null);
+        }
+
+        static PendingWrite updates(CompanyEvent update) {
+            List<CompanyEvent> updates = new ArrayList<>();
+            updates.add(update);
+            return new PendingWrite(Kind.UPDATES, null, updates);
+        }
+
+        /**
+         * The writes equivalent to this one followed by {@code next}, a single update of the same company.
+         */
+        PendingWrite then(PendingWrite next) {
+            CompanyEvent update = next.updates.get(0);
+            switch (kind) {
+                case REPLACE:
+                    return replace(update instanceof CompanyUpdated
+                            ? CompanyStateWrites.updated(state, (CompanyUpdated) update)
+                            : CompanyDeltas.apply(state, (CompanyEvent.CompanyDelta) update)
+                                    .withRevision(Math.max(state.getRevision(), update.getRevision())));
+                case UPDATES:
+                    CompanyEvent last = updates.get(updates.size() - 1);
+                    if (last instanceof CompanyUpdated && update instanceof CompanyUpdated) {
+                        updates.set(updates.size() - 1,
+                                CompanyStateWrites.merged((CompanyUpdated) last, (CompanyUpdated) update));
+                    } else {
+                        updates.add(update);
+                    }
+                    return this;
+                default:
+                    // updates of a deleted company are a no-op, as they are for the per-event projection
+                    return this;
+            }
+        }
+    }
+}
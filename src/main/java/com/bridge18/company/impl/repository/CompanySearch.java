@@ -0,0 +1,58 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.entities.CompanyType;
+
+import java.util.Optional;
+
+/**
+ * Criteria of a company search; all present criteria must match. The name is matched case-insensitively as a prefix,
+ * the MC number and the tax id exactly.
+ */
+public class CompanySearch {
+    private final Optional<String> namePrefix;
+    private final Optional<String> mc;
+    private final Optional<String> taxId;
+    private final Optional<CompanyType> companyType;
+
+    public CompanySearch(Optional<String> namePrefix, Optional<String> mc, Optional<String> taxId,
+                         Optional<CompanyType> companyType) {
+        this.namePrefix = namePrefix.map(CompanyStateWrites::searchName).filter(prefix -> !prefix.isEmpty());
+        this.mc = mc;
+        this.taxId = taxId;
+        this.companyType = companyType;
+    }
+
+    public Optional<String> getNamePrefix() {
+        return namePrefix;
+    }
+
+    public Optional<String> getMc() {
+        return mc;
+    }
+
+    public Optional<String> getTaxId() {
+        return taxId;
+    }
+
+    public Optional<CompanyType> getCompanyType() {
+        return companyType;
+    }
+
+    /**
+     * The least string above every string starting with {@code prefix}, as Mongo orders strings: by their UTF-8 bytes,
+     * which is the order of their code points. That is the prefix with its last code point incremented, dropping
+     * trailing code points that cannot be; empty when every code point of the prefix is the highest.
+     */
+    static Optional<String> prefixUpperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            int last = prefix.codePointBefore(end);
+            end -= Character.charCount(last);
+            if (last < Character.MAX_CODE_POINT) {
+                int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+                return Optional.of(new StringBuilder(prefix.substring(0, end)).appendCodePoint(next).toString());
+            }
+        }
+        return Optional.empty();
+    }
+}
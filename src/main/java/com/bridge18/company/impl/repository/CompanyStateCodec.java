@@ -0,0 +1,435 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.entities.CompanyType;
+import com.bridge18.company.entities.ContactInfoType;
+import com.bridge18.company.impl.entities.*;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Reads and writes {@link CompanyState} documents of the read side field by field, in place of Morphia's reflective
+ * mapping. The layout is the one Morphia has always produced, so documents of either can be read by both: absent
+ * optionals are left out, present lists are written even when empty, enums are stored by name. A decoded document
+ * has an absent optional for every missing or null field and ignores fields it does not know, such as Morphia's
+ * {@code className} and {@code _id}. The top-level optionals may also be the {@code Optional} documents that the
+ * Morphia read side left behind when it set them on updates.
+ * <p>
+ * Documents carry the query-only fields of {@link CompanyStateWrites} too; see {@link #writeFields}.
+ */
+public final class CompanyStateCodec implements Codec<CompanyState> {
+    @Override
+    public void encode(BsonWriter writer, CompanyState state, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeString(CompanyStateWrites.ID, state.getId());
+        writeFields(writer, state);
+        writer.writeInt64(CompanyStateWrites.REVISION, state.getRevision());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Every field of the document of {@code state} other than its id and revision, which is what an upsert of the
+     * whole document sets: the id is its query and the revision only ever grows.
+     */
+    static void writeFields(BsonWriter writer, CompanyState state) {
+        writer.writeString("name", state.getName());
+        writer.writeString(CompanyStateWrites.SEARCH_NAME, CompanyStateWrites.searchName(state.getName()));
+        writer.writeInt32(CompanyStateWrites.SCHEMA_VERSION, CompanyStateWrites.CURRENT_SCHEMA_VERSION);
+        writeString(writer, "mc", state.getMc());
+        writeString(writer, "taxId", state.getTaxId());
+        if (state.getCompanyType().isPresent()) {
+            writer.writeString("companyType", state.getCompanyType().get().name());
+        }
+        if (state.getContacts().isPresent()) {
+            writer.writeStartArray("contacts");
+            for (Contact contact : state.getContacts().get()) {
+                writeContact(writer, contact);
+            }
+            writer.writeEndArray();
+        }
+        if (state.getLocations().isPresent()) {
+            writer.writeStartArray("locations");
+            for (Location location : state.getLocations().get()) {
+                writeLocation(writer, location);
+            }
+            writer.writeEndArray();
+        }
+    }
+
+    static BsonDocument toDocument(Contact contact) {
+        BsonDocument document = new BsonDocument();
+        writeContact(new BsonDocumentWriter(document), contact);
+        return document;
+    }
+
+    static BsonDocument toDocument(Location location) {
+        BsonDocument document = new BsonDocument();
+        writeLocation(new BsonDocumentWriter(document), location);
+        return document;
+    }
+
+    static BsonArray toContactArray(PVector<Contact> contacts) {
+        BsonArray array = new BsonArray();
+        for (Contact contact : contacts) {
+            array.add(toDocument(contact));
+        }
+        return array;
+    }
+
+    static BsonArray toLocationArray(PVector<Location> locations) {
+        BsonArray array = new BsonArray();
+        for (Location location : locations) {
+            array.add(toDocument(location));
+        }
+        return array;
+    }
+
+    private static void writeContact(BsonWriter writer, Contact contact) {
+        writer.writeStartDocument();
+        writeString(writer, "id", contact.getId());
+        writeString(writer, "firstName", contact.getFirstName());
+        writeString(writer, "middleName", contact.getMiddleName());
+        writeString(writer, "lastName", contact.getLastName());
+        writeContactInfos(writer, contact.getContactInfo());
+        writeString(writer, "position", contact.getPosition());
+        writeAddress(writer, contact.getAddress());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * A location with, if its address has valid coordinates, the GeoJSON point that geo searches match.
+     */
+    private static void writeLocation(BsonWriter writer, Location location) {
+        writer.writeStartDocument();
+        writeString(writer, "name", location.getName());
+        writeAddress(writer, location.getAddress());
+        writeContactInfos(writer, location.getContactInfo());
+        Optional<Double> latitude = location.getAddress().flatMap(Address::getAddressLatitude);
+        Optional<Double> longitude = location.getAddress().flatMap(Address::getAddressLongitude);
+        if (CompanyStateWrites.isValidPoint(latitude, longitude)) {
+            writer.writeStartDocument(CompanyStateWrites.POINT);
+            writer.writeString("type", "Point");
+            writer.writeStartArray("coordinates");
+            writer.writeDouble(longitude.get());
+            writer.writeDouble(latitude.get());
+            writer.writeEndArray();
+            writer.writeEndDocument();
+        }
+        writer.writeEndDocument();
+    }
+
+    private static void writeContactInfos(BsonWriter writer, Optional<PVector<ContactInfo>> contactInfos) {
+        if (!contactInfos.isPresent()) {
+            return;
+        }
+        writer.writeStartArray("contactInfo");
+        for (ContactInfo contactInfo : contactInfos.get()) {
+            writer.writeStartDocument();
+            writeString(writer, "label", contactInfo.getLabel());
+            writeString(writer, "value", contactInfo.getValue());
+            if (contactInfo.getType().isPresent()) {
+                writer.writeString("type", contactInfo.getType().get().name());
+            }
+            writer.writeEndDocument();
+        }
+        writer.writeEndArray();
+    }
+
+    private static void writeAddress(BsonWriter writer, Optional<Address> address) {
+        if (!address.isPresent()) {
+            return;
+        }
+        Address a = address.get();
+        writer.writeStartDocument("address");
+        if (a.getAddressId().isPresent()) {
+            writer.writeInt32("addressId", a.getAddressId().get());
+        }
+        writeString(writer, "addressName", a.getAddressName());
+        writeString(writer, "streetAddress1", a.getStreetAddress1());
+        writeString(writer, "streetAddress2", a.getStreetAddress2());
+        writeString(writer, "city", a.getCity());
+        writeString(writer, "addressPhone", a.getAddressPhone());
+        writeString(writer, "state", a.getState());
+        writeString(writer, "zip", a.getZip());
+        writeString(writer, "addressFax", a.getAddressFax());
+        writeString(writer, "addressPhoneExtension", a.getAddressPhoneExtension());
+        writeString(writer, "addressFaxExtension", a.getAddressFaxExtension());
+        if (a.getAddressLatitude().isPresent()) {
+            writer.writeDouble("addressLatitude", a.getAddressLatitude().get());
+        }
+        if (a.getAddressLongitude().isPresent()) {
+            writer.writeDouble("addressLongitude", a.getAddressLongitude().get());
+        }
+        writer.writeEndDocument();
+    }
+
+    private static void writeString(BsonWriter writer, String name, Optional<String> value) {
+        if (value.isPresent()) {
+            writer.writeString(name, value.get());
+        }
+    }
+
+    @Override
+    public CompanyState decode(BsonReader reader, DecoderContext decoderContext) {
+        CompanyState.Builder builder = CompanyState.builder();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (skipNull(reader)) {
+                continue;
+            }
+            switch (name) {
+                case CompanyStateWrites.ID:
+                    builder.id(reader.readString());
+                    break;
+                case "name":
+                    builder.name(reader.readString());
+                    break;
+                case "mc":
+                    builder.mc(readOptional(reader, BsonReader::readString));
+                    break;
+                case "taxId":
+                    builder.taxId(readOptional(reader, BsonReader::readString));
+                    break;
+                case "companyType":
+                    builder.companyType(readOptional(reader, r -> CompanyType.valueOf(r.readString())));
+                    break;
+                case "contacts":
+                    builder.contacts(readOptional(reader, CompanyStateCodec::readContacts));
+                    break;
+                case "locations":
+                    builder.locations(readOptional(reader, CompanyStateCodec::readLocations));
+                    break;
+                case CompanyStateWrites.REVISION:
+                    builder.revision(readNumber(reader).longValue());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return builder.build();
+    }
+
+    /**
+     * A field that is either its value or, as the Morphia read side set it on updates, the {@link Optional} holding
+     * it: a document with the value under {@code value}, and without it when empty.
+     */
+    private static <T> Optional<T> readOptional(BsonReader reader, Function<BsonReader, T> readValue) {
+        if (reader.getCurrentBsonType() != BsonType.DOCUMENT) {
+            return Optional.of(readValue.apply(reader));
+        }
+        T value = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (reader.readName().equals("value") && reader.getCurrentBsonType() != BsonType.NULL) {
+                value = readValue.apply(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return Optional.ofNullable(value);
+    }
+
+    private static PVector<Contact> readContacts(BsonReader reader) {
+        List<Contact> contacts = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            Contact.Builder builder = Contact.builder();
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = reader.readName();
+                if (skipNull(reader)) {
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        builder.id(reader.readString());
+                        break;
+                    case "firstName":
+                        builder.firstName(reader.readString());
+                        break;
+                    case "middleName":
+                        builder.middleName(reader.readString());
+                        break;
+                    case "lastName":
+                        builder.lastName(reader.readString());
+                        break;
+                    case "contactInfo":
+                        builder.contactInfo(readContactInfos(reader));
+                        break;
+                    case "position":
+                        builder.position(reader.readString());
+                        break;
+                    case "address":
+                        builder.address(readAddress(reader));
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+            contacts.add(builder.build());
+        }
+        reader.readEndArray();
+        return TreePVector.from(contacts);
+    }
+
+    private static PVector<Location> readLocations(BsonReader reader) {
+        List<Location> locations = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            Location.Builder builder = Location.builder();
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = reader.readName();
+                if (skipNull(reader)) {
+                    continue;
+                }
+                switch (name) {
+                    case "name":
+                        builder.name(reader.readString());
+                        break;
+                    case "address":
+                        builder.address(readAddress(reader));
+                        break;
+                    case "contactInfo":
+                        builder.contactInfo(readContactInfos(reader));
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+            locations.add(builder.build());
+        }
+        reader.readEndArray();
+        return TreePVector.from(locations);
+    }
+
+    private static PVector<ContactInfo> readContactInfos(BsonReader reader) {
+        List<ContactInfo> contactInfos = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            ContactInfo.Builder builder = ContactInfo.builder();
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = reader.readName();
+                if (skipNull(reader)) {
+                    continue;
+                }
+                switch (name) {
+                    case "label":
+                        builder.label(reader.readString());
+                        break;
+                    case "value":
+                        builder.value(reader.readString());
+                        break;
+                    case "type":
+                        builder.type(ContactInfoType.valueOf(reader.readString()));
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+            contactInfos.add(builder.build());
+        }
+        reader.readEndArray();
+        return TreePVector.from(contactInfos);
+    }
+
+    private static Address readAddress(BsonReader reader) {
+        Address.Builder builder = Address.builder();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (skipNull(reader)) {
+                continue;
+            }
+            switch (name) {
+                case "addressId":
+                    builder.addressId(readNumber(reader).intValue());
+                    break;
+                case "addressName":
+                    builder.addressName(reader.readString());
+                    break;
+                case "streetAddress1":
+                    builder.streetAddress1(reader.readString());
+                    break;
+                case "streetAddress2":
+                    builder.streetAddress2(reader.readString());
+                    break;
+                case "city":
+                    builder.city(reader.readString());
+                    break;
+                case "addressPhone":
+                    builder.addressPhone(reader.readString());
+                    break;
+                case "state":
+                    builder.state(reader.readString());
+                    break;
+                case "zip":
+                    builder.zip(reader.readString());
+                    break;
+                case "addressFax":
+                    builder.addressFax(reader.readString());
+                    break;
+                case "addressPhoneExtension":
+                    builder.addressPhoneExtension(reader.readString());
+                    break;
+                case "addressFaxExtension":
+                    builder.addressFaxExtension(reader.readString());
+                    break;
+                case "addressLatitude":
+                    builder.addressLatitude(readNumber(reader).doubleValue());
+                    break;
+                case "addressLongitude":
+                    builder.addressLongitude(readNumber(reader).doubleValue());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return builder.build();
+    }
+
+    private static boolean skipNull(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.NULL) {
+            reader.readNull();
+            return true;
+        }
+        return false;
+    }
+
+    private static Number readNumber(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            default:
+                return reader.readDouble();
+        }
+    }
+
+    @Override
+    public Class<CompanyState> getEncoderClass() {
+        return CompanyState.class;
+    }
+}
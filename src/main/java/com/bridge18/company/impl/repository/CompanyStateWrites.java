@@ -0,0 +1,328 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.impl.entities.*;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.bson.io.BasicOutputBuffer;
+import org.mongodb.morphia.Datastore;
+import org.pcollections.TreePVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * How company events change the {@link CompanyState} documents of the read side, shared by the per-event and the
+ * batched projection so that both produce the same documents.
+ * <p>
+ * Besides the fields of {@link CompanyState}, a document carries fields that only serve queries: {@value #SEARCH_NAME},
+ * the normalized name that name searches run against, and in every location with valid coordinates a GeoJSON
+ * {@value #POINT}. {@value #SCHEMA_VERSION} records which of these a document has; see {@link #CURRENT_SCHEMA_VERSION}.
+ * <p>
+ * {@value #REVISION} only ever grows: every write raises it to the revision of its event with {@code $max}, so that
+ * a replayed event cannot take it back and a read can tell whether the document reflects a given revision. Events
+ * from before revisions leave it as it is.
+ * <p>
+ * Documents are read and written with {@link CompanyStateCodec} through the collection of {@link #companies}; Morphia
+ * only maps the collection name.
+ */
+final class CompanyStateWrites {
+    static final String ID = "id";
+    static final String SEARCH_NAME = "searchName";
+    static final String POINT = "point";
+    static final String LOCATION_POINTS = "locations." + POINT;
+    static final String SCHEMA_VERSION = "schemaVersion";
+    static final String REVISION = "revision";
+    /**
+     * 1: search name, 2: location points. Documents written by an older version are rewritten in globalPrepare.
+     */
+    static final int CURRENT_SCHEMA_VERSION = 2;
+
+    private static final CodecRegistry CODECS = CodecRegistries.fromRegistries(
+            CodecRegistries.fromCodecs(new CompanyStateCodec()),
+            MongoClient.getDefaultCodecRegistry());
+
+    private CompanyStateWrites() {
+    }
+
+    /**
+     * The form of a name, or of a name prefix, that name searches compare.
+     */
+    static String searchName(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The collection of the read side, reading and writing {@link CompanyState} with {@link CompanyStateCodec}.
+     */
+    static MongoCollection<CompanyState> companies(Datastore datastore) {
+        return datastore.getMongo()
+                .getDatabase(datastore.getDB().getName())
+                .getCollection(datastore.getCollection(CompanyState.class).getName(), CompanyState.class)
+                .withCodecRegistry(CODECS);
+    }
+
+    /**
+     * Whether a location with these coordinates gets a GeoJSON point. Out of range coordinates are left out rather
+     * than stored, since the 2dsphere index would reject the whole document.
+     */
+    static boolean isValidPoint(Optional<Double> latitude, Optional<Double> longitude) {
+        return latitude.isPresent() && longitude.isPresent()
+                && Math.abs(latitude.get()) <= 90 && Math.abs(longitude.get()) <= 180;
+    }
+
+    static DBObject geoJsonPoint(double latitude, double longitude) {
+        return new BasicDBObject("type", "Point").append("coordinates", Arrays.asList(longitude, latitude));
+    }
+
+    static Bson byId(String id) {
+        return Filters.eq(ID, id);
+    }
+
+    /**
+     * Rewrites the documents of an older {@link #SCHEMA_VERSION}, {@code batchSize} at a time, so that they have
+     * every field the queries rely on.
+     */
+    static void upgradeOutdated(MongoCollection<CompanyState> companies, int batchSize) {
+        Bson outdated = Filters.not(Filters.gte(SCHEMA_VERSION, CURRENT_SCHEMA_VERSION));
+
+        try (MongoCursor<CompanyState> cursor = companies.find(outdated).batchSize(batchSize).iterator()) {
+            while (cursor.hasNext()) {
+                List<WriteModel<CompanyState>> bulk = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize && cursor.hasNext(); i++) {
+                    CompanyState company = cursor.next();
+                    bulk.add(new UpdateOneModel<>(byId(company.getId()), forReplace(company)));
+                }
+                companies.bulkWrite(bulk, new BulkWriteOptions().ordered(false));
+            }
+        }
+    }
+
+    static CompanyState created(CompanyCreated created) {
+        return CompanyState.builder()
+                .id(created.getId())
+                .name(created.getName())
+                .mc(created.getMc())
+                .taxId(created.getTaxId())
+                .companyType(created.getCompanyType())
+                .contacts(created.getContacts().orElse(TreePVector.empty()))
+                .locations(created.getLocations().orElse(TreePVector.empty()))
+                .revision(created.getRevision())
+                .build();
+    }
+
+    /**
+     * Applies an update the way the read side always has: fields missing from the event keep their current value.
+     */
+    static CompanyState updated(CompanyState state, CompanyUpdated e) {
+        CompanyState.Builder builder = CompanyState.builder().from(state);
+
+        if (!e.getName().isEmpty()) builder.name(e.getName());
+        if (e.getMc().isPresent()) builder.mc(e.getMc());
+        if (e.getTaxId().isPresent()) builder.taxId(e.getTaxId());
+        if (e.getCompanyType().isPresent()) builder.companyType(e.getCompanyType());
+        if (e.getContacts().isPresent()) builder.contacts(e.getContacts());
+        if (e.getLocations().isPresent()) builder.locations(e.getLocations());
+        builder.revision(Math.max(state.getRevision(), e.getRevision()));
+
+        return builder.build();
+    }
+
+    /**
+     * Folds two consecutive updates of the same company into one with the same effect.
+     */
+    static CompanyUpdated merged(CompanyUpdated first, CompanyUpdated second) {
+        return CompanyUpdated.builder()
+                .id(second.getId())
+                .name(second.getName().isEmpty() ? first.getName() : second.getName())
+                .mc(second.getMc().isPresent() ? second.getMc() : first.getMc())
+                .taxId(second.getTaxId().isPresent() ? second.getTaxId() : first.getTaxId())
+                .companyType(second.getCompanyType().isPresent() ? second.getCompanyType() : first.getCompanyType())
+                .contacts(second.getContacts().isPresent() ? second.getContacts() : first.getContacts())
+                .locations(second.getLocations().isPresent() ? second.getLocations() : first.getLocations())
+                .revision(Math.max(first.getRevision(), second.getRevision()))
+                .build();
+    }
+
+    static Update forUpdate(CompanyUpdated e) {
+        Update update = new Update(byId(e.getId()));
+
+        if (!e.getName().isEmpty()) {
+            update.set("name", new BsonString(e.getName()));
+            update.set(SEARCH_NAME, new BsonString(searchName(e.getName())));
+        }
+        if (e.getMc().isPresent()) update.set("mc", new BsonString(e.getMc().get()));
+        if (e.getTaxId().isPresent()) update.set("taxId", new BsonString(e.getTaxId().get()));
+        if (e.getCompanyType().isPresent()) {
+            update.set("companyType", new BsonString(e.getCompanyType().get().name()));
+        }
+        if (e.getContacts().isPresent()) {
+            update.set("contacts", CompanyStateCodec.toContactArray(e.getContacts().get()));
+        }
+        if (e.getLocations().isPresent()) {
+            update.set("locations", CompanyStateCodec.toLocationArray(e.getLocations().get()));
+        }
+        if (e.getRevision() > 0) update.max(REVISION, e.getRevision());
+
+        return update;
+    }
+
+    /**
+     * The write the per-event projection makes for {@code event}, empty if the event changes nothing.
+     */
+    static Optional<WriteModel<CompanyState>> forEvent(CompanyEvent event) {
+        if (event instanceof CompanyCreated) {
+            return Optional.of(upsert(created((CompanyCreated) event)));
+        }
+        if (event instanceof CompanyDeleted) {
+            return Optional.of(new DeleteOneModel<>(byId(event.getId())));
+        }
+        Update update;
+        if (event instanceof CompanyUpdated) {
+            update = forUpdate((CompanyUpdated) event);
+        } else if (event instanceof CompanyEvent.CompanyDelta) {
+            update = forDelta((CompanyEvent.CompanyDelta) event);
+        } else {
+            return Optional.empty();
+        }
+        return update.isEmpty() ? Optional.empty() : Optional.of(new UpdateOneModel<>(update.query, update.operations));
+    }
+
+    static WriteModel<CompanyState> upsert(CompanyState state) {
+        return new UpdateOneModel<>(byId(state.getId()), forReplace(state), new UpdateOptions().upsert(true));
+    }
+
+    /**
+     * The update that leaves the document equal to {@code state}, whether or not it already exists. Whole states are
+     * written for every created company and every batched write, so the update is encoded by the codec's writer
+     * straight into the bytes the driver sends, with no tree of {@link BsonValue}s built first.
+     */
+    static RawBsonDocument forReplace(CompanyState state) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        BsonBinaryWriter writer = new BsonBinaryWriter(buffer);
+        writer.writeStartDocument();
+        writer.writeStartDocument("$set");
+        CompanyStateCodec.writeFields(writer, state);
+        if (!state.getContacts().isPresent()) writeEmptyArray(writer, "contacts");
+        if (!state.getLocations().isPresent()) writeEmptyArray(writer, "locations");
+        writer.writeEndDocument();
+        if (!state.getMc().isPresent() || !state.getTaxId().isPresent() || !state.getCompanyType().isPresent()) {
+            writer.writeStartDocument("$unset");
+            if (!state.getMc().isPresent()) writer.writeString("mc", "");
+            if (!state.getTaxId().isPresent()) writer.writeString("taxId", "");
+            if (!state.getCompanyType().isPresent()) writer.writeString("companyType", "");
+            writer.writeEndDocument();
+        }
+        writer.writeStartDocument("$max");
+        writer.writeInt64(REVISION, state.getRevision());
+        writer.writeEndDocument();
+        writer.writeEndDocument();
+        writer.close();
+        return new RawBsonDocument(buffer.toByteArray());
+    }
+
+    private static void writeEmptyArray(BsonWriter writer, String name) {
+        writer.writeStartArray(name);
+        writer.writeEndArray();
+    }
+
+    /**
+     * The update that applies a delta to the document of its company.
+     */
+    static Update forDelta(CompanyEvent.CompanyDelta delta) {
+        Update update = new Update(byId(delta.getId()));
+
+        if (delta instanceof CompanyNameChanged) {
+            String name = ((CompanyNameChanged) delta).getName();
+            update.set("name", new BsonString(name));
+            update.set(SEARCH_NAME, new BsonString(searchName(name)));
+        } else if (delta instanceof CompanyDetailsChanged) {
+            CompanyDetailsChanged changed = (CompanyDetailsChanged) delta;
+            if (changed.getMc().isPresent()) update.set("mc", new BsonString(changed.getMc().get()));
+            if (changed.getTaxId().isPresent()) update.set("taxId", new BsonString(changed.getTaxId().get()));
+            if (changed.getCompanyType().isPresent()) {
+                update.set("companyType", new BsonString(changed.getCompanyType().get().name()));
+            }
+        } else if (delta instanceof ContactAdded) {
+            Contact contact = ((ContactAdded) delta).getContact();
+            update.operator("$push").put("contacts", CompanyStateCodec.toDocument(contact));
+        } else if (delta instanceof ContactUpdated) {
+            Contact contact = ((ContactUpdated) delta).getContact();
+            update = new Update(Filters.and(update.query, Filters.eq("contacts.id", contact.getId().orElse(null))));
+            update.set("contacts.$", CompanyStateCodec.toDocument(contact));
+        } else if (delta instanceof ContactRemoved) {
+            update.operator("$pull").put("contacts",
+                    new BsonDocument("id", new BsonString(((ContactRemoved) delta).getContactId())));
+        } else if (delta instanceof LocationChanged) {
+            LocationChanged changed = (LocationChanged) delta;
+            update.set("locations." + changed.getIndex(), CompanyStateCodec.toDocument(changed.getLocation()));
+        } else if (delta instanceof LocationRemoved) {
+            update.operator("$pop").put("locations", new BsonInt32(1));
+        }
+        if (delta.getRevision() > 0) {
+            update.max(REVISION, delta.getRevision());
+        }
+
+        return update;
+    }
+
+    /**
+     * An update of the document matching {@code query}. Empty when the event it was made from changes nothing, in
+     * which case there is nothing to write: Mongo rejects an update without operators.
+     */
+    static final class Update {
+        final Bson query;
+        final BsonDocument operations = new BsonDocument();
+
+        Update(Bson query) {
+            this.query = query;
+        }
+
+        void set(String field, BsonValue value) {
+            operator("$set").put(field, value);
+        }
+
+        void unset(String field) {
+            operator("$unset").put(field, new BsonString(""));
+        }
+
+        void max(String field, long value) {
+            operator("$max").put(field, new BsonInt64(value));
+        }
+
+        BsonDocument operator(String operator) {
+            BsonValue operands = operations.get(operator);
+            if (operands == null) {
+                operands = new BsonDocument();
+                operations.put(operator, operands);
+            }
+            return (BsonDocument) operands;
+        }
+
+        boolean isEmpty() {
+            return operations.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.exception.LagomException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * A revision of a company that a client has written, for a following read to wait until the read side has applied
+ * it. Encodes into an opaque string a client can carry between calls.
+ */
+public final class ConsistencyToken {
+    private static final String VERSION_PREFIX = "1:";
+    private static final String SEPARATOR = "\0";
+
+    private final String companyId;
+    private final long revision;
+
+    private ConsistencyToken(String companyId, long revision) {
+        this.companyId = companyId;
+        this.revision = revision;
+    }
+
+    public static ConsistencyToken of(String companyId, long revision) {
+        return new ConsistencyToken(companyId, revision);
+    }
+
+    /**
+     * The token of a company as a write returned it.
+     */
+    public static ConsistencyToken of(CompanyState companyState) {
+        return of(companyState.getId(), companyState.getRevision());
+    }
+
+    public String getCompanyId() {
+        return companyId;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                (VERSION_PREFIX + companyId + SEPARATOR + revision).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ConsistencyToken decode(String token) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalidToken();
+        }
+        int separator = decoded.lastIndexOf(SEPARATOR);
+        if (!decoded.startsWith(VERSION_PREFIX) || separator <= VERSION_PREFIX.length()) {
+            throw invalidToken();
+        }
+        try {
+            return of(decoded.substring(VERSION_PREFIX.length(), separator),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw invalidToken();
+        }
+    }
+
+    private static LagomException invalidToken() {
+        return new LagomException("CONSISTENCY_TOKEN_INVALID", 400, "Consistency token is malformed",
+                "consistencyToken");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConsistencyToken)) {
+            return false;
+        }
+        ConsistencyToken that = (ConsistencyToken) o;
+        return revision == that.revision && companyId.equals(that.companyId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * companyId.hashCode() + Long.hashCode(revision);
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistencyToken{companyId=" + companyId + ", revision=" + revision + "}";
+    }
+}
@@ -0,0 +1,33 @@
+package com.bridge18.company.impl.repository;
+
+import org.pcollections.PSequence;
+
+import java.util.Optional;
+
+/**
+ * A page of a keyset-paginated query. {@link #getNextCursor()} is the opaque token to pass back for the following
+ * page and is empty on the last page.
+ */
+public class CursorPaginatedSequence<T> {
+    private final PSequence<T> values;
+    private final int pageSize;
+    private final Optional<String> nextCursor;
+
+    public CursorPaginatedSequence(PSequence<T> values, int pageSize, Optional<String> nextCursor) {
+        this.values = values;
+        this.pageSize = pageSize;
+        this.nextCursor = nextCursor;
+    }
+
+    public PSequence<T> getValues() {
+        return values;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public Optional<String> getNextCursor() {
+        return nextCursor;
+    }
+}
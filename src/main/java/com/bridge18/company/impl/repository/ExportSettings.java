@@ -0,0 +1,22 @@
+package com.bridge18.company.impl.repository;
+
+import com.typesafe.config.Config;
+
+public class ExportSettings {
+    private final int batchSize;
+
+    public ExportSettings(Config config) {
+        this(config.getInt("batch-size"));
+    }
+
+    public ExportSettings(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch-size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
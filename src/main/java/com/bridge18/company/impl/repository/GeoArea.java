@@ -0,0 +1,96 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.exception.LagomException;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+import java.util.Optional;
+
+/**
+ * The area of a location search: a circle around a point, or a latitude/longitude box. Results are ordered by their
+ * distance to the center of the area.
+ */
+public final class GeoArea {
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private final double centerLatitude;
+    private final double centerLongitude;
+    private final double maxDistanceMeters;
+    private final Optional<DBObject> box;
+
+    private GeoArea(double centerLatitude, double centerLongitude, double maxDistanceMeters, Optional<DBObject> box) {
+        this.centerLatitude = centerLatitude;
+        this.centerLongitude = centerLongitude;
+        this.maxDistanceMeters = maxDistanceMeters;
+        this.box = box;
+    }
+
+    public static GeoArea circle(double latitude, double longitude, double radiusMeters) {
+        checkCoordinates(latitude, longitude);
+        if (radiusMeters <= 0) {
+            throw new LagomException("RADIUS_INVALID", 400, "Radius must be positive", "radius");
+        }
+        return new GeoArea(latitude, longitude, radiusMeters, Optional.empty());
+    }
+
+    public static GeoArea box(double south, double west, double north, double east) {
+        checkCoordinates(south, west);
+        checkCoordinates(north, east);
+        if (south >= north || west >= east) {
+            throw new LagomException("BOX_INVALID", 400, "Box corners must be south-west and north-east", "box");
+        }
+        double latitude = (south + north) / 2;
+        double longitude = (west + east) / 2;
+        double maxDistance = Math.max(distanceMeters(latitude, longitude, north, east),
+                distanceMeters(latitude, longitude, south, east));
+
+        // plain bounds rather than a GeoJSON polygon, whose edges are great circles: those bow towards the pole
+        // away from the parallels, by a degree and more on wide boxes
+        DBObject bounds = new BasicDBObject("address.addressLatitude",
+                new BasicDBObject("$gte", south).append("$lte", north))
+                .append("address.addressLongitude", new BasicDBObject("$gte", west).append("$lte", east));
+        return new GeoArea(latitude, longitude, maxDistance,
+                Optional.of(new BasicDBObject("locations", new BasicDBObject("$elemMatch", bounds))));
+    }
+
+    public double getCenterLatitude() {
+        return centerLatitude;
+    }
+
+    public double getCenterLongitude() {
+        return centerLongitude;
+    }
+
+    /**
+     * The radius of the circle, or for a box the distance from its center to its farthest corner.
+     */
+    public double getMaxDistanceMeters() {
+        return maxDistanceMeters;
+    }
+
+    /**
+     * The filter of the companies with a location within the latitudes and longitudes of a box, empty for a circle.
+     */
+    Optional<DBObject> getBox() {
+        return box;
+    }
+
+    /**
+     * Great-circle distance on the sphere that 2dsphere queries use.
+     */
+    static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static void checkCoordinates(double latitude, double longitude) {
+        if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+            throw new LagomException("COORDINATES_INVALID", 400,
+                    "Coordinates out of range: " + latitude + ", " + longitude, "coordinates");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.exception.LagomException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the sort key of the last document of a page into an opaque continuation token and back. A compound sort
+ * key is encoded as each of its parts preceded by its length, so that the parts may contain any character.
+ */
+public final class PageCursors {
+    private static final String VERSION_PREFIX = "1:";
+    private static final String COMPOUND_VERSION_PREFIX = "2:";
+
+    private PageCursors() {
+    }
+
+    public static String encode(String lastKey) {
+        return toBase64(VERSION_PREFIX + lastKey);
+    }
+
+    public static String encode(String... lastKeys) {
+        StringBuilder encoded = new StringBuilder(COMPOUND_VERSION_PREFIX);
+        for (String key : lastKeys) {
+            encoded.append(key.length()).append(':').append(key);
+        }
+        return toBase64(encoded.toString());
+    }
+
+    /**
+     * Decodes a cursor of a compound sort key with {@code parts} parts.
+     */
+    public static String[] decode(String cursor, int parts) {
+        String decoded = fromBase64(cursor);
+        if (!decoded.startsWith(COMPOUND_VERSION_PREFIX)) {
+            throw invalidCursor();
+        }
+        String[] keys = new String[parts];
+        int position = COMPOUND_VERSION_PREFIX.length();
+        for (int i = 0; i < parts; i++) {
+            int colon = decoded.indexOf(':', position);
+            if (colon < 0) {
+                throw invalidCursor();
+            }
+            int length;
+            try {
+                length = Integer.parseInt(decoded.substring(position, colon));
+            } catch (NumberFormatException e) {
+                throw invalidCursor();
+            }
+            if (length < 0 || length > decoded.length() - colon - 1) {
+                throw invalidCursor();
+            }
+            keys[i] = decoded.substring(colon + 1, colon + 1 + length);
+            position = colon + 1 + length;
+        }
+        if (position != decoded.length()) {
+            throw invalidCursor();
+        }
+        return keys;
+    }
+
+    public static String decode(String cursor) {
+        String decoded = fromBase64(cursor);
+        if (!decoded.startsWith(VERSION_PREFIX) || decoded.length() == VERSION_PREFIX.length()) {
+            throw invalidCursor();
+        }
+        return decoded.substring(VERSION_PREFIX.length());
+    }
+
+    private static String toBase64(String decoded) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String fromBase64(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalidCursor();
+        }
+    }
+
+    private static LagomException invalidCursor() {
+        return new LagomException("CURSOR_INVALID", 400, "Page cursor is malformed", "cursor");
+    }
+}
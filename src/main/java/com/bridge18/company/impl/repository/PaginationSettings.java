@@ -0,0 +1,39 @@
+package com.bridge18.company.impl.repository;
+
+import com.typesafe.config.Config;
+
+import java.util.Optional;
+
+public class PaginationSettings {
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public PaginationSettings(Config config) {
+        this(config.getInt("default-page-size"), config.getInt("max-page-size"));
+    }
+
+    public PaginationSettings(int defaultPageSize, int maxPageSize) {
+        if (defaultPageSize < 1 || maxPageSize < defaultPageSize) {
+            throw new IllegalArgumentException("Invalid page sizes: default " + defaultPageSize + ", max " + maxPageSize);
+        }
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    public int getDefaultPageSize() {
+        return defaultPageSize;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Resolves the page size requested by a client: the default when absent, otherwise clamped to [1, max].
+     */
+    public int pageSize(Optional<Integer> requested) {
+        return requested
+                .map(size -> Math.max(1, Math.min(size, maxPageSize)))
+                .orElse(defaultPageSize);
+    }
+}
@@ -0,0 +1,79 @@
+package com.bridge18.company.impl.repository;
+
+import akka.Done;
+import akka.japi.Pair;
+import akka.stream.javadsl.Flow;
+import com.lightbend.lagom.javadsl.persistence.AggregateEvent;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.lightbend.lagom.javadsl.persistence.Offset;
+import com.lightbend.lagom.javadsl.persistence.ReadSideProcessor.ReadSideHandler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Applies the events of a tag on {@code lanes} lanes at once. The lane of an event is chosen by the hash of its
+ * {@code laneKey}, so events with the same key, those of one company, are applied one after another in the order of
+ * the tag, while events of other lanes run concurrently. At most {@code maxInFlight} events are pending at a time.
+ * <p>
+ * Offsets are released in the order of the tag, each once its event and every event before it have been applied, so
+ * the committed offset never passes an event that is still pending: after a failure the tag resumes from the lowest
+ * position not known to be applied, and replays whatever later events had already been applied, as the sequential
+ * handler does for the event that was in flight. Offsets that become committable while the wrapped handler is still
+ * storing an earlier one are folded into the latest, which the wrapped handler receives as a {@code commitMarker}.
+ */
+class ParallelReadSideHandler<Event extends AggregateEvent<Event>> extends ReadSideHandler<Event> {
+    private final ReadSideHandler<Event> delegate;
+    private final Function<Event, CompletionStage<Done>> applyEvent;
+    private final Function<Event, String> laneKey;
+    private final Event commitMarker;
+    private final int lanes;
+    private final int maxInFlight;
+
+    ParallelReadSideHandler(ReadSideHandler<Event> delegate,
+                            Function<Event, CompletionStage<Done>> applyEvent,
+                            Function<Event, String> laneKey,
+                            Event commitMarker,
+                            int lanes,
+                            int maxInFlight) {
+        this.delegate = delegate;
+        this.applyEvent = applyEvent;
+        this.laneKey = laneKey;
+        this.commitMarker = commitMarker;
+        this.lanes = lanes;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public CompletionStage<Done> globalPrepare() {
+        return delegate.globalPrepare();
+    }
+
+    @Override
+    public CompletionStage<Offset> prepare(AggregateEventTag<Event> tag) {
+        return delegate.prepare(tag);
+    }
+
+    @Override
+    public Flow<Pair<Event, Offset>, Done, ?> handle() {
+        // the last event of each lane; only touched by mapAsync, which calls its function for one element at a time
+        @SuppressWarnings("unchecked")
+        CompletionStage<Done>[] lastOfLane = new CompletionStage[lanes];
+        for (int i = 0; i < lanes; i++) {
+            lastOfLane[i] = CompletableFuture.completedFuture(Done.getInstance());
+        }
+
+        return Flow.<Pair<Event, Offset>>create()
+                .mapAsync(maxInFlight, element -> {
+                    Event event = element.first();
+                    int lane = Math.floorMod(laneKey.apply(event).hashCode(), lanes);
+                    CompletionStage<Done> applied = lastOfLane[lane].thenCompose(done -> applyEvent.apply(event));
+                    lastOfLane[lane] = applied;
+                    return applied.thenApply(done -> element.second());
+                })
+                .conflate((older, newer) -> newer)
+                .map(offset -> Pair.create(commitMarker, offset))
+                .via(delegate.handle());
+    }
+}
@@ -0,0 +1,77 @@
+package com.bridge18.company.impl.repository;
+
+import akka.Done;
+import akka.japi.Pair;
+import akka.stream.javadsl.Flow;
+import com.lightbend.lagom.javadsl.persistence.AggregateEvent;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.lightbend.lagom.javadsl.persistence.Offset;
+import com.lightbend.lagom.javadsl.persistence.ReadSideProcessor.ReadSideHandler;
+
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Reports the offset of every element the wrapped handler has applied to the {@link ProjectionProgress} of its tag,
+ * and when the projection of the tag stops. Relies on the wrapped handler emitting one {@link Done} per element, in
+ * order.
+ */
+class ProgressReportingReadSideHandler<Event extends AggregateEvent<Event>> extends ReadSideHandler<Event> {
+    private final ReadSideHandler<Event> delegate;
+    private final Function<AggregateEventTag<Event>, ProjectionProgress> progressFactory;
+    private volatile ProjectionProgress progress;
+
+    ProgressReportingReadSideHandler(ReadSideHandler<Event> delegate,
+                                     Function<AggregateEventTag<Event>, ProjectionProgress> progressFactory) {
+        this.delegate = delegate;
+        this.progressFactory = progressFactory;
+    }
+
+    @Override
+    public CompletionStage<Done> globalPrepare() {
+        return delegate.globalPrepare();
+    }
+
+    @Override
+    public CompletionStage<Offset> prepare(AggregateEventTag<Event> tag) {
+        ProjectionProgress previous = progress;
+        if (previous != null) {
+            previous.stopped();
+        }
+        ProjectionProgress tagProgress = progressFactory.apply(tag);
+        progress = tagProgress;
+        return delegate.prepare(tag).thenApply(offset -> {
+            tagProgress.resumed(offset);
+            return offset;
+        });
+    }
+
+    @Override
+    public Flow<Pair<Event, Offset>, Done, ?> handle() {
+        Queue<Offset> inFlight = new ConcurrentLinkedQueue<>();
+        return Flow.<Pair<Event, Offset>>create()
+                .map(element -> {
+                    inFlight.add(element.second());
+                    return element;
+                })
+                .via(delegate.handle())
+                .map(done -> {
+                    Offset applied = inFlight.poll();
+                    if (applied != null && progress != null) {
+                        progress.applied(applied);
+                    }
+                    return done;
+                })
+                .watchTermination((mat, terminated) -> {
+                    ProjectionProgress tagProgress = progress;
+                    terminated.whenComplete((done, failure) -> {
+                        if (tagProgress != null) {
+                            tagProgress.stopped();
+                        }
+                    });
+                    return mat;
+                });
+    }
+}
@@ -0,0 +1,58 @@
+package com.bridge18.company.impl.repository;
+
+import akka.Done;
+
+import javax.inject.Singleton;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Revisions of companies that reads on this node are waiting for, completed as the projection on this node applies
+ * them. A company whose tag is projected on another node is never signalled here; its waits rely on re-reading the
+ * document.
+ */
+@Singleton
+public class ProjectedRevisions {
+    private final ConcurrentMap<String, Set<Wait>> waits = new ConcurrentHashMap<>();
+
+    /**
+     * @return completed once this node applies {@code revision} of company {@code id}, or a later one. Completing it
+     * otherwise, e.g. on timeout, unregisters it.
+     */
+    CompletableFuture<Done> await(String id, long revision) {
+        Wait wait = new Wait(revision);
+        waits.compute(id, (key, companyWaits) -> {
+            Set<Wait> registered = companyWaits != null ? companyWaits : ConcurrentHashMap.newKeySet();
+            registered.add(wait);
+            return registered;
+        });
+        wait.future.whenComplete((done, failure) -> waits.computeIfPresent(id, (key, companyWaits) -> {
+            companyWaits.remove(wait);
+            return companyWaits.isEmpty() ? null : companyWaits;
+        }));
+        return wait.future;
+    }
+
+    void applied(String id, long revision) {
+        Set<Wait> companyWaits = waits.get(id);
+        if (companyWaits == null) {
+            return;
+        }
+        for (Wait wait : companyWaits) {
+            if (wait.revision <= revision) {
+                wait.future.complete(Done.getInstance());
+            }
+        }
+    }
+
+    private static final class Wait {
+        final long revision;
+        final CompletableFuture<Done> future = new CompletableFuture<>();
+
+        Wait(long revision) {
+            this.revision = revision;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.bridge18.company.impl.repository;
+
+import akka.actor.Cancellable;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import com.bridge18.company.impl.entities.CompanyEvent;
+import com.bridge18.company.impl.metrics.LatencyHistogram;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.bridge18.company.impl.metrics.RateMeter;
+import com.datastax.driver.core.utils.UUIDs;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.lightbend.lagom.javadsl.persistence.Offset;
+import com.lightbend.lagom.javadsl.persistence.PersistentEntityRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+/**
+ * Metrics of the projection of one tag, registered on the node that runs it under {@code projection.<tag>}:
+ * <ul>
+ * <li>{@code events.count}, {@code events.per-second}: events written to Mongo, and their rate</li>
+ * <li>{@code write.<handler>}: latency of the Mongo writes, per kind of write</li>
+ * <li>{@code offset}: the last applied offset, as epoch millis for a time-based offset</li>
+ * <li>{@code lag-ms}: how long after it was journaled the last applied event was applied</li>
+ * <li>{@code idle-ms}: time since an event was last applied. Growing while {@code lag-events} is not 0 means the
+ * processor is stuck rather than slow.</li>
+ * <li>{@code lag-events}: journaled events of the tag not applied yet, as last counted in the background</li>
+ * </ul>
+ * The backlog is counted every {@code backlog.refresh-interval} from when the projection resumes until it stops.
+ */
+class ProjectionMetrics {
+    private static final Logger log = LoggerFactory.getLogger(ProjectionMetrics.class);
+
+    private final AggregateEventTag<CompanyEvent> tag;
+    private final String prefix;
+    private final MetricsRegistry metricsRegistry;
+    private final PersistentEntityRegistry persistentEntityRegistry;
+    private final Materializer materializer;
+    private final ProjectionMetricsSettings settings;
+    private final RateMeter events;
+    private final AtomicBoolean counting = new AtomicBoolean();
+
+    private volatile Offset offset = Offset.NONE;
+    private volatile long offsetValue;
+    private volatile long lagMillis;
+    private volatile long lastAppliedAt = System.currentTimeMillis();
+    private volatile long lagEvents;
+    private volatile Cancellable backlogCounting;
+    private volatile LongConsumer backlogListener = count -> { };
+
+    ProjectionMetrics(AggregateEventTag<CompanyEvent> tag, MetricsRegistry metricsRegistry,
+                      PersistentEntityRegistry persistentEntityRegistry, Materializer materializer,
+                      ProjectionMetricsSettings settings) {
+        this.tag = tag;
+        this.prefix = "projection." + tag.tag();
+        this.metricsRegistry = metricsRegistry;
+        this.persistentEntityRegistry = persistentEntityRegistry;
+        this.materializer = materializer;
+        this.settings = settings;
+        this.events = metricsRegistry.meter(prefix + ".events");
+
+        metricsRegistry.gauge(prefix + ".offset", () -> offsetValue);
+        metricsRegistry.gauge(prefix + ".lag-ms", () -> lagMillis);
+        metricsRegistry.gauge(prefix + ".idle-ms", () -> System.currentTimeMillis() - lastAppliedAt);
+        metricsRegistry.gauge(prefix + ".lag-events", () -> lagEvents);
+    }
+
+    LatencyHistogram write(String handler) {
+        return metricsRegistry.histogram(prefix + ".write." + handler);
+    }
+
+    /**
+     * Called with every new count of {@code lag-events}.
+     */
+    void onBacklogCounted(LongConsumer listener) {
+        this.backlogListener = listener;
+    }
+
+    void written(int count) {
+        events.mark(count);
+    }
+
+    /**
+     * The offset the projection resumes from.
+     */
+    void resumed(Offset offset) {
+        this.offset = offset;
+        this.offsetValue = valueOf(offset);
+        if (backlogCounting == null) {
+            FiniteDuration interval = FiniteDuration.create(settings.getBacklogRefreshInterval().toMillis(),
+                    TimeUnit.MILLISECONDS);
+            backlogCounting = materializer.schedulePeriodically(FiniteDuration.Zero(), interval, this::countBacklog);
+        }
+    }
+
+    /**
+     * The projection of the tag has stopped on this node; its backlog is no longer counted.
+     */
+    void stopped() {
+        Cancellable counting = backlogCounting;
+        if (counting != null) {
+            counting.cancel();
+        }
+    }
+
+    void applied(Offset offset) {
+        long now = System.currentTimeMillis();
+        this.offset = offset;
+        this.offsetValue = valueOf(offset);
+        this.lastAppliedAt = now;
+        if (offset instanceof Offset.TimeBasedUUID) {
+            lagMillis = Math.max(0, now - offsetValue);
+        }
+    }
+
+    private static long valueOf(Offset offset) {
+        if (offset instanceof Offset.TimeBasedUUID) {
+            return UUIDs.unixTimestamp(((Offset.TimeBasedUUID) offset).value());
+        }
+        if (offset instanceof Offset.Sequence) {
+            return ((Offset.Sequence) offset).value();
+        }
+        return 0;
+    }
+
+    /**
+     * Counts the events after the applied offset, unless the previous count is still running. A count reads the
+     * tag's event stream from the applied offset up to the events journaled when it started, for at most the backlog
+     * window and {@code max-events} events. It is therefore a lower bound, which also leaves out the events the
+     * journal does not deliver yet (its eventual consistency delay).
+     */
+    private void countBacklog() {
+        if (!counting.compareAndSet(false, true)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        persistentEntityRegistry.eventStream(tag, offset)
+                .takeWhile(element -> valueOf(element.second()) <= now)
+                .takeWithin(FiniteDuration.create(settings.getBacklogWindow().toMillis(), TimeUnit.MILLISECONDS))
+                .take(settings.getBacklogMaxEvents())
+                .runWith(Sink.fold(0L, (count, element) -> count + 1), materializer)
+                .whenComplete((count, failure) -> {
+                    counting.set(false);
+                    if (failure != null) {
+                        log.warn("Could not count the events {} has yet to apply", tag.tag(), failure);
+                    } else {
+                        lagEvents = count;
+                        backlogListener.accept(count);
+                    }
+                });
+    }
+}
@@ -0,0 +1,47 @@
+package com.bridge18.company.impl.repository;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+
+public class ProjectionMetricsSettings {
+    private final Duration backlogRefreshInterval;
+    private final Duration backlogWindow;
+    private final int backlogMaxEvents;
+
+    public ProjectionMetricsSettings(Config config) {
+        this(config.getDuration("backlog.refresh-interval"),
+                config.getDuration("backlog.window"),
+                config.getInt("backlog.max-events"));
+    }
+
+    public ProjectionMetricsSettings(Duration backlogRefreshInterval, Duration backlogWindow, int backlogMaxEvents) {
+        if (backlogMaxEvents < 1) {
+            throw new IllegalArgumentException("backlog.max-events must be positive");
+        }
+        this.backlogRefreshInterval = backlogRefreshInterval;
+        this.backlogWindow = backlogWindow;
+        this.backlogMaxEvents = backlogMaxEvents;
+    }
+
+    /**
+     * How often the events a tag has yet to apply are counted.
+     */
+    public Duration getBacklogRefreshInterval() {
+        return backlogRefreshInterval;
+    }
+
+    /**
+     * How long a count reads the journal for.
+     */
+    public Duration getBacklogWindow() {
+        return backlogWindow;
+    }
+
+    /**
+     * Where a count stops; a backlog of this size means at least this many events.
+     */
+    public int getBacklogMaxEvents() {
+        return backlogMaxEvents;
+    }
+}
@@ -0,0 +1,80 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.impl.concurrent.InstrumentedExecutor;
+import com.datastax.driver.core.utils.UUIDs;
+import com.lightbend.lagom.javadsl.persistence.Offset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Follows the offsets a tag's projection has applied: saves its lag to the {@link ProjectionProgressStore} at most
+ * once per {@code saveIntervalMillis}, off the projection stream, and keeps the tag's {@link ProjectionMetrics}
+ * current. Also saves the backlog the metrics count whenever it changes between none and some, which is what tells
+ * readers of the store that a projection with no recent progress is stalled rather than idle.
+ */
+class ProjectionProgress {
+    private static final Logger log = LoggerFactory.getLogger(ProjectionProgress.class);
+
+    private final String tag;
+    private final ProjectionProgressStore store;
+    private final InstrumentedExecutor executor;
+    private final long saveIntervalMillis;
+    private final ProjectionMetrics metrics;
+    private final AtomicBoolean saving = new AtomicBoolean();
+    private volatile long lastSavedAt;
+    private volatile long savedPendingEvents = -1;
+
+    ProjectionProgress(String tag, ProjectionProgressStore store, InstrumentedExecutor executor,
+                       long saveIntervalMillis, ProjectionMetrics metrics) {
+        this.tag = tag;
+        this.store = store;
+        this.executor = executor;
+        this.saveIntervalMillis = saveIntervalMillis;
+        this.metrics = metrics;
+        metrics.onBacklogCounted(this::backlogCounted);
+    }
+
+    void resumed(Offset offset) {
+        metrics.resumed(offset);
+    }
+
+    void stopped() {
+        metrics.stopped();
+    }
+
+    void applied(Offset offset) {
+        metrics.applied(offset);
+        if (!(offset instanceof Offset.TimeBasedUUID)) {
+            return;
+        }
+        long eventTime = UUIDs.unixTimestamp(((Offset.TimeBasedUUID) offset).value());
+        long now = System.currentTimeMillis();
+
+        if (now - lastSavedAt >= saveIntervalMillis && saving.compareAndSet(false, true)) {
+            lastSavedAt = now;
+            executor.run(() -> store.save(tag, eventTime, now))
+                    .whenComplete((done, failure) -> {
+                        saving.set(false);
+                        if (failure != null) {
+                            log.warn("Could not save the projection progress of {}", tag, failure);
+                        }
+                    });
+        }
+    }
+
+    private void backlogCounted(long pendingEvents) {
+        long saved = savedPendingEvents;
+        if (saved >= 0 && (pendingEvents > 0) == (saved > 0)) {
+            return;
+        }
+        savedPendingEvents = pendingEvents;
+        executor.run(() -> store.savePending(tag, pendingEvents))
+                .whenComplete((done, failure) -> {
+                    if (failure != null) {
+                        log.warn("Could not save the pending events of {}", tag, failure);
+                    }
+                });
+    }
+}
@@ -0,0 +1,99 @@
+package com.bridge18.company.impl.repository;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.mongodb.morphia.Datastore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where the projection records, per tag, how far behind the journal it is, so that every node can read it and not
+ * only the one running the processor for that tag. One small document per tag, keyed by tag name, with the times of
+ * the last applied event and the last counted number of events still to apply.
+ */
+class ProjectionProgressStore {
+    static final String COLLECTION = "companyProjectionProgress";
+    private static final String EVENT_TIME = "eventTime";
+    private static final String APPLIED_AT = "appliedAt";
+    private static final String PENDING_EVENTS = "pendingEvents";
+
+    private final Datastore datastore;
+
+    ProjectionProgressStore(Datastore datastore) {
+        this.datastore = datastore;
+    }
+
+    void save(String tag, long eventTime, long appliedAt) {
+        collection().update(
+                new BasicDBObject("_id", tag),
+                new BasicDBObject("$set", new BasicDBObject(EVENT_TIME, eventTime).append(APPLIED_AT, appliedAt)),
+                true,
+                false);
+    }
+
+    void savePending(String tag, long pendingEvents) {
+        collection().update(
+                new BasicDBObject("_id", tag),
+                new BasicDBObject("$set", new BasicDBObject(PENDING_EVENTS, pendingEvents)),
+                true,
+                false);
+    }
+
+    List<TagProgress> load() {
+        List<TagProgress> progress = new ArrayList<>();
+        try (DBCursor cursor = collection().find()) {
+            for (DBObject document : cursor) {
+                if (document.get(APPLIED_AT) == null) {
+                    continue;
+                }
+                Number pendingEvents = (Number) document.get(PENDING_EVENTS);
+                progress.add(new TagProgress(
+                        (String) document.get("_id"),
+                        ((Number) document.get(EVENT_TIME)).longValue(),
+                        ((Number) document.get(APPLIED_AT)).longValue(),
+                        pendingEvents != null ? pendingEvents.longValue() : 0));
+            }
+        }
+        return progress;
+    }
+
+    private DBCollection collection() {
+        return datastore.getDB().getCollection(COLLECTION);
+    }
+
+    static final class TagProgress {
+        final String tag;
+        /**
+         * When the last applied event was written to the journal, in epoch millis.
+         */
+        final long eventTime;
+        /**
+         * When it was applied to the read side, in epoch millis.
+         */
+        final long appliedAt;
+        /**
+         * How many events of the tag were journaled but not applied yet when they were last counted.
+         */
+        final long pendingEvents;
+
+        TagProgress(String tag, long eventTime, long appliedAt, long pendingEvents) {
+            this.tag = tag;
+            this.eventTime = eventTime;
+            this.appliedAt = appliedAt;
+            this.pendingEvents = pendingEvents;
+        }
+
+        /**
+         * How stale a read of the tag's companies may be at {@code now}: the time the last event took to be applied,
+         * and while events are pending, at least the time since then, so that a stalled projection shows a growing
+         * lag rather than the one of its last event.
+         */
+        long lagMillis(long now) {
+            long applying = appliedAt - eventTime;
+            return Math.max(0, pendingEvents > 0 ? Math.max(applying, now - appliedAt) : applying);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.bridge18.company.impl.repository;
+
+import com.typesafe.config.Config;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+public class ProjectionSettings {
+    private final boolean batchingEnabled;
+    private final int maxBatchSize;
+    private final FiniteDuration flushInterval;
+    private final Duration progressInterval;
+    private final int lanes;
+    private final int maxInFlight;
+
+    public ProjectionSettings(Config config) {
+        this(config.getBoolean("batching.enabled"),
+                config.getInt("batching.max-batch-size"),
+                FiniteDuration.create(config.getDuration("batching.flush-interval").toMillis(), TimeUnit.MILLISECONDS),
+                config.getDuration("progress-interval"),
+                config.getInt("lanes.count"),
+                config.getInt("lanes.max-in-flight"));
+    }
+
+    public ProjectionSettings(boolean batchingEnabled, int maxBatchSize, FiniteDuration flushInterval,
+                              Duration progressInterval) {
+        this(batchingEnabled, maxBatchSize, flushInterval, progressInterval, 1, 1);
+    }
+
+    public ProjectionSettings(boolean batchingEnabled, int maxBatchSize, FiniteDuration flushInterval,
+                              Duration progressInterval, int lanes, int maxInFlight) {
+        if (lanes < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("lanes.count and lanes.max-in-flight must be positive");
+        }
+        if (batchingEnabled && lanes > 1) {
+            throw new IllegalArgumentException("batching and lanes cannot be enabled at the same time");
+        }
+        this.batchingEnabled = batchingEnabled;
+        this.maxBatchSize = maxBatchSize;
+        this.flushInterval = flushInterval;
+        this.progressInterval = progressInterval;
+        this.lanes = lanes;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public boolean isBatchingEnabled() {
+        return batchingEnabled;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public FiniteDuration getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * How often each tag saves how far behind the journal it is.
+     */
+    public Duration getProgressInterval() {
+        return progressInterval;
+    }
+
+    /**
+     * Lanes each tag applies its events on; 1 applies them one at a time.
+     */
+    public int getLanes() {
+        return lanes;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+}
@@ -0,0 +1,36 @@
+package com.bridge18.company.impl.repository;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+
+public class RevisionWaitSettings {
+    private final Duration timeout;
+    private final Duration pollInterval;
+
+    public RevisionWaitSettings(Config config) {
+        this(config.getDuration("timeout"), config.getDuration("poll-interval"));
+    }
+
+    public RevisionWaitSettings(Duration timeout, Duration pollInterval) {
+        if (pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("poll-interval must be positive");
+        }
+        this.timeout = timeout;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * How long a read waits for the read side to reach the revision of its consistency token before it fails.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * How often a waiting read re-reads the revision of the company, for companies projected on another node.
+     */
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+}
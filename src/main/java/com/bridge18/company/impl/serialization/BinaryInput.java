@@ -0,0 +1,85 @@
+package com.bridge18.company.impl.serialization;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads what {@link BinaryOutput} writes.
+ */
+final class BinaryInput {
+    private final byte[] buffer;
+    private int position;
+
+    BinaryInput(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    int readByte() {
+        checkAvailable(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at " + position);
+    }
+
+    int readSignedVarInt() {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    double readDouble() {
+        checkAvailable(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits |= (long) (buffer[position++] & 0xFF) << (8 * i);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    String readString() {
+        int length = readVarInt();
+        checkAvailable(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Reads the length prefix of a nested object.
+     *
+     * @return the position the object ends at, to pass to {@link #endObject(int)}
+     */
+    int beginObject() {
+        int length = readVarInt();
+        checkAvailable(length);
+        return position + length;
+    }
+
+    /**
+     * Skips whatever fields of the object a newer writer appended and this reader does not know.
+     */
+    void endObject(int end) {
+        if (position > end) {
+            throw new IllegalArgumentException("Object overran its length at " + position);
+        }
+        position = end;
+    }
+
+    private void checkAvailable(int length) {
+        if (length < 0 || position + length > buffer.length) {
+            throw new IllegalArgumentException("Truncated input at " + position);
+        }
+    }
+}
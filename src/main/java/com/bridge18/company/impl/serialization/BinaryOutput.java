@@ -0,0 +1,97 @@
+package com.bridge18.company.impl.serialization;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the primitives of the company binary format: unsigned varints, zig-zag varints,
+ * length-prefixed UTF-8 strings and little-endian doubles.
+ */
+final class BinaryOutput {
+    private byte[] buffer;
+    private int position;
+
+    BinaryOutput(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    int position() {
+        return position;
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    void writeSignedVarInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    void writeDouble(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        ensureCapacity(8);
+        for (int i = 0; i < 8; i++) {
+            buffer[position++] = (byte) (bits >>> (8 * i));
+        }
+    }
+
+    void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * Reserves room for the length of a nested object, to be filled in by {@link #endObject(int)}.
+     *
+     * @return the marker to pass to {@link #endObject(int)}
+     */
+    int beginObject() {
+        // a nested object is almost always shorter than 16 KiB, i.e. fits a two-byte varint
+        ensureCapacity(2);
+        position += 2;
+        return position;
+    }
+
+    void endObject(int marker) {
+        int length = position - marker;
+        if (length < (1 << 14)) {
+            buffer[marker - 2] = (byte) ((length & 0x7F) | 0x80);
+            buffer[marker - 1] = (byte) (length >>> 7);
+        } else {
+            // rare: move the body to make room for a longer length prefix
+            byte[] body = Arrays.copyOfRange(buffer, marker, position);
+            position = marker - 2;
+            writeVarInt(length);
+            ensureCapacity(body.length);
+            System.arraycopy(body, 0, buffer, position, body.length);
+            position += body.length;
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.bridge18.company.impl.serialization;
+
+import com.bridge18.company.entities.CompanyType;
+import com.bridge18.company.entities.ContactInfoType;
+import com.bridge18.company.impl.entities.*;
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Binary encoding of {@link CompanyState} and the types it is made of.
+ * <p>
+ * Every object is written as its length, a bit mask of the optional fields that are present and then those fields in
+ * declaration order. New optional fields must be appended with the next free bit: older readers skip them thanks to
+ * the length, and newer readers see them as absent in older data. Enums are written by name, and flags are a bit of
+ * the mask with nothing written for them.
+ */
+final class CompanyBinaryCodec {
+    private CompanyBinaryCodec() {
+    }
+
+    static void writeCompanyState(BinaryOutput out, CompanyState state) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(state.getMc(), state.getTaxId(), state.getCompanyType(),
+                state.getContacts(), state.getLocations()) | revisionBit(state.getRevision(), 5)
+                | (state.isDeleted() ? 1 << 6 : 0));
+        out.writeString(state.getId());
+        out.writeString(state.getName());
+        state.getMc().ifPresent(out::writeString);
+        state.getTaxId().ifPresent(out::writeString);
+        state.getCompanyType().ifPresent(type -> out.writeString(type.name()));
+        state.getContacts().ifPresent(contacts -> writeContacts(out, contacts));
+        state.getLocations().ifPresent(locations -> writeLocations(out, locations));
+        writeRevision(out, state.getRevision());
+        out.endObject(marker);
+    }
+
+    static CompanyState readCompanyState(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        CompanyState.Builder builder = CompanyState.builder()
+                .id(in.readString())
+                .name(in.readString());
+        if (isSet(mask, 0)) builder.mc(in.readString());
+        if (isSet(mask, 1)) builder.taxId(in.readString());
+        if (isSet(mask, 2)) builder.companyType(CompanyType.valueOf(in.readString()));
+        if (isSet(mask, 3)) builder.contacts(readContacts(in));
+        if (isSet(mask, 4)) builder.locations(readLocations(in));
+        if (isSet(mask, 5)) builder.revision(in.readVarLong());
+        builder.deleted(isSet(mask, 6));
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static void writeContacts(BinaryOutput out, List<Contact> contacts) {
+        out.writeVarInt(contacts.size());
+        for (Contact contact : contacts) {
+            writeContact(out, contact);
+        }
+    }
+
+    static PVector<Contact> readContacts(BinaryInput in) {
+        return readList(in, CompanyBinaryCodec::readContact);
+    }
+
+    static void writeLocations(BinaryOutput out, List<Location> locations) {
+        out.writeVarInt(locations.size());
+        for (Location location : locations) {
+            writeLocation(out, location);
+        }
+    }
+
+    static PVector<Location> readLocations(BinaryInput in) {
+        return readList(in, CompanyBinaryCodec::readLocation);
+    }
+
+    static void writeContact(BinaryOutput out, Contact contact) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(contact.getId(), contact.getFirstName(), contact.getMiddleName(),
+                contact.getLastName(), contact.getContactInfo(), contact.getPosition(), contact.getAddress()));
+        contact.getId().ifPresent(out::writeString);
+        contact.getFirstName().ifPresent(out::writeString);
+        contact.getMiddleName().ifPresent(out::writeString);
+        contact.getLastName().ifPresent(out::writeString);
+        contact.getContactInfo().ifPresent(contactInfo -> writeContactInfos(out, contactInfo));
+        contact.getPosition().ifPresent(out::writeString);
+        contact.getAddress().ifPresent(address -> writeAddress(out, address));
+        out.endObject(marker);
+    }
+
+    static Contact readContact(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        Contact.Builder builder = Contact.builder();
+        if (isSet(mask, 0)) builder.id(in.readString());
+        if (isSet(mask, 1)) builder.firstName(in.readString());
+        if (isSet(mask, 2)) builder.middleName(in.readString());
+        if (isSet(mask, 3)) builder.lastName(in.readString());
+        if (isSet(mask, 4)) builder.contactInfo(readContactInfos(in));
+        if (isSet(mask, 5)) builder.position(in.readString());
+        if (isSet(mask, 6)) builder.address(readAddress(in));
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static void writeLocation(BinaryOutput out, Location location) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(location.getName(), location.getAddress(), location.getContactInfo()));
+        location.getName().ifPresent(out::writeString);
+        location.getAddress().ifPresent(address -> writeAddress(out, address));
+        location.getContactInfo().ifPresent(contactInfo -> writeContactInfos(out, contactInfo));
+        out.endObject(marker);
+    }
+
+    static Location readLocation(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        Location.Builder builder = Location.builder();
+        if (isSet(mask, 0)) builder.name(in.readString());
+        if (isSet(mask, 1)) builder.address(readAddress(in));
+        if (isSet(mask, 2)) builder.contactInfo(readContactInfos(in));
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static void writeContactInfos(BinaryOutput out, List<ContactInfo> contactInfos) {
+        out.writeVarInt(contactInfos.size());
+        for (ContactInfo contactInfo : contactInfos) {
+            writeContactInfo(out, contactInfo);
+        }
+    }
+
+    static PVector<ContactInfo> readContactInfos(BinaryInput in) {
+        return readList(in, CompanyBinaryCodec::readContactInfo);
+    }
+
+    static void writeContactInfo(BinaryOutput out, ContactInfo contactInfo) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(contactInfo.getLabel(), contactInfo.getValue(), contactInfo.getType()));
+        contactInfo.getLabel().ifPresent(out::writeString);
+        contactInfo.getValue().ifPresent(out::writeString);
+        contactInfo.getType().ifPresent(type -> out.writeString(type.name()));
+        out.endObject(marker);
+    }
+
+    static ContactInfo readContactInfo(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        ContactInfo.Builder builder = ContactInfo.builder();
+        if (isSet(mask, 0)) builder.label(in.readString());
+        if (isSet(mask, 1)) builder.value(in.readString());
+        if (isSet(mask, 2)) builder.type(ContactInfoType.valueOf(in.readString()));
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static void writeAddress(BinaryOutput out, Address address) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(address.getAddressId(), address.getAddressName(), address.getStreetAddress1(),
+                address.getStreetAddress2(), address.getCity(), address.getAddressPhone(), address.getState(),
+                address.getZip(), address.getAddressFax(), address.getAddressPhoneExtension(),
+                address.getAddressFaxExtension(), address.getAddressLatitude(), address.getAddressLongitude()));
+        address.getAddressId().ifPresent(out::writeSignedVarInt);
+        address.getAddressName().ifPresent(out::writeString);
+        address.getStreetAddress1().ifPresent(out::writeString);
+        address.getStreetAddress2().ifPresent(out::writeString);
+        address.getCity().ifPresent(out::writeString);
+        address.getAddressPhone().ifPresent(out::writeString);
+        address.getState().ifPresent(out::writeString);
+        address.getZip().ifPresent(out::writeString);
+        address.getAddressFax().ifPresent(out::writeString);
+        address.getAddressPhoneExtension().ifPresent(out::writeString);
+        address.getAddressFaxExtension().ifPresent(out::writeString);
+        address.getAddressLatitude().ifPresent(out::writeDouble);
+        address.getAddressLongitude().ifPresent(out::writeDouble);
+        out.endObject(marker);
+    }
+
+    static Address readAddress(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        Address.Builder builder = Address.builder();
+        if (isSet(mask, 0)) builder.addressId(in.readSignedVarInt());
+        if (isSet(mask, 1)) builder.addressName(in.readString());
+        if (isSet(mask, 2)) builder.streetAddress1(in.readString());
+        if (isSet(mask, 3)) builder.streetAddress2(in.readString());
+        if (isSet(mask, 4)) builder.city(in.readString());
+        if (isSet(mask, 5)) builder.addressPhone(in.readString());
+        if (isSet(mask, 6)) builder.state(in.readString());
+        if (isSet(mask, 7)) builder.zip(in.readString());
+        if (isSet(mask, 8)) builder.addressFax(in.readString());
+        if (isSet(mask, 9)) builder.addressPhoneExtension(in.readString());
+        if (isSet(mask, 10)) builder.addressFaxExtension(in.readString());
+        if (isSet(mask, 11)) builder.addressLatitude(in.readDouble());
+        if (isSet(mask, 12)) builder.addressLongitude(in.readDouble());
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static int mask(Optional<?>... fields) {
+        int mask = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].isPresent()) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    static boolean isSet(int mask, int bit) {
+        return (mask & (1 << bit)) != 0;
+    }
+
+    /**
+     * The mask bit of a revision, which is optional in that 0, for data from before revisions, is not written.
+     */
+    static int revisionBit(long revision, int bit) {
+        return revision > 0 ? 1 << bit : 0;
+    }
+
+    static void writeRevision(BinaryOutput out, long revision) {
+        if (revision > 0) {
+            out.writeVarLong(revision);
+        }
+    }
+
+    static void writeStrings(BinaryOutput out, List<String> strings) {
+        out.writeVarInt(strings.size());
+        for (String string : strings) {
+            out.writeString(string);
+        }
+    }
+
+    static PVector<String> readStrings(BinaryInput in) {
+        return readList(in, BinaryInput::readString);
+    }
+
+    private static <T> PVector<T> readList(BinaryInput in, Function<BinaryInput, T> readElement) {
+        int size = in.readVarInt();
+        List<T> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(readElement.apply(in));
+        }
+        return TreePVector.from(elements);
+    }
+}
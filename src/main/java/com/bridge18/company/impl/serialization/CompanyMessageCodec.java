@@ -0,0 +1,346 @@
+package com.bridge18.company.impl.serialization;
+
+import com.bridge18.company.entities.CompanyType;
+import com.bridge18.company.impl.entities.*;
+
+import static com.bridge18.company.impl.serialization.CompanyBinaryCodec.*;
+
+/**
+ * Binary encoding of the events and commands of the company entity, in the format described on
+ * {@link CompanyBinaryCodec}.
+ */
+final class CompanyMessageCodec {
+    private CompanyMessageCodec() {
+    }
+
+    static void writeCompanyCreated(BinaryOutput out, CompanyCreated e) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(e.getMc(), e.getTaxId(), e.getCompanyType(), e.getContacts(), e.getLocations())
+                | revisionBit(e.getRevision(), 5));
+        out.writeString(e.getId());
+        out.writeString(e.getName());
+        e.getMc().ifPresent(out::writeString);
+        e.getTaxId().ifPresent(out::writeString);
+        e.getCompanyType().ifPresent(type -> out.writeString(type.name()));
+        e.getContacts().ifPresent(contacts -> writeContacts(out, contacts));
+        e.getLocations().ifPresent(locations -> writeLocations(out, locations));
+        writeRevision(out, e.getRevision());
+        out.endObject(marker);
+    }
+
+    static CompanyCreated readCompanyCreated(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        CompanyCreated.Builder builder = CompanyCreated.builder()
+                .id(in.readString())
+                .name(in.readString());
+        if (isSet(mask, 0)) builder.mc(in.readString());
+        if (isSet(mask, 1)) builder.taxId(in.readString());
+        if (isSet(mask, 2)) builder.companyType(CompanyType.valueOf(in.readString()));
+        if (isSet(mask, 3)) builder.contacts(readContacts(in));
+        if (isSet(mask, 4)) builder.locations(readLocations(in));
+        if (isSet(mask, 5)) builder.revision(in.readVarLong());
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static void writeCompanyUpdated(BinaryOutput out, CompanyUpdated e) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(e.getMc(), e.getTaxId(), e.getCompanyType(), e.getContacts(), e.getLocations())
+                | revisionBit(e.getRevision(), 5));
+        out.writeString(e.getId());
+        out.writeString(e.getName());
+        e.getMc().ifPresent(out::writeString);
+        e.getTaxId().ifPresent(out::writeString);
+        e.getCompanyType().ifPresent(type -> out.writeString(type.name()));
+        e.getContacts().ifPresent(contacts -> writeContacts(out, contacts));
+        e.getLocations().ifPresent(locations -> writeLocations(out, locations));
+        writeRevision(out, e.getRevision());
+        out.endObject(marker);
+    }
+
+    static CompanyUpdated readCompanyUpdated(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        CompanyUpdated.Builder builder = CompanyUpdated.builder()
+                .id(in.readString())
+                .name(in.readString());
+        if (isSet(mask, 0)) builder.mc(in.readString());
+        if (isSet(mask, 1)) builder.taxId(in.readString());
+        if (isSet(mask, 2)) builder.companyType(CompanyType.valueOf(in.readString()));
+        if (isSet(mask, 3)) builder.contacts(readContacts(in));
+        if (isSet(mask, 4)) builder.locations(readLocations(in));
+        if (isSet(mask, 5)) builder.revision(in.readVarLong());
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static void writeCompanyDeleted(BinaryOutput out, CompanyDeleted e) {
+        int marker = out.beginObject();
+        out.writeVarInt(revisionBit(e.getRevision(), 0));
+        out.writeString(e.getId());
+        writeRevision(out, e.getRevision());
+        out.endObject(marker);
+    }
+
+    static CompanyDeleted readCompanyDeleted(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        CompanyDeleted deleted = CompanyDeleted.builder().id(in.readString()).build();
+        if (isSet(mask, 0)) deleted = deleted.withRevision(in.readVarLong());
+        in.endObject(end);
+        return deleted;
+    }
+
+    static void writeCompanyNameChanged(BinaryOutput out, CompanyNameChanged e) {
+        int marker = out.beginObject();
+        out.writeVarInt(revisionBit(e.getRevision(), 0));
+        out.writeString(e.getId());
+        out.writeString(e.getName());
+        writeRevision(out, e.getRevision());
+        out.endObject(marker);
+    }
+
+    static CompanyNameChanged readCompanyNameChanged(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        CompanyNameChanged changed = CompanyNameChanged.of(in.readString(), in.readString());
+        if (isSet(mask, 0)) changed = changed.withRevision(in.readVarLong());
+        in.endObject(end);
+        return changed;
+    }
+
+    static void writeCompanyDetailsChanged(BinaryOutput out, CompanyDetailsChanged e) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(e.getMc(), e.getTaxId(), e.getCompanyType()) | revisionBit(e.getRevision(), 3));
+        out.writeString(e.getId());
+        e.getMc().ifPresent(out::writeString);
+        e.getTaxId().ifPresent(out::writeString);
+        e.getCompanyType().ifPresent(type -> out.writeString(type.name()));
+        writeRevision(out, e.getRevision());
+        out.endObject(marker);
+    }
+
+    static CompanyDetailsChanged readCompanyDetailsChanged(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        CompanyDetailsChanged.Builder builder = CompanyDetailsChanged.builder().id(in.readString());
+        if (isSet(mask, 0)) builder.mc(in.readString());
+        if (isSet(mask, 1)) builder.taxId(in.readString());
+        if (isSet(mask, 2)) builder.companyType(CompanyType.valueOf(in.readString()));
+        if (isSet(mask, 3)) builder.revision(in.readVarLong());
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static void writeContactAdded(BinaryOutput out, ContactAdded e) {
+        int marker = out.beginObject();
+        out.writeVarInt(revisionBit(e.getRevision(), 0));
+        out.writeString(e.getId());
+        writeContact(out, e.getContact());
+        writeRevision(out, e.getRevision());
+        out.endObject(marker);
+    }
+
+    static ContactAdded readContactAdded(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        ContactAdded added = ContactAdded.of(in.readString(), readContact(in));
+        if (isSet(mask, 0)) added = added.withRevision(in.readVarLong());
+        in.endObject(end);
+        return added;
+    }
+
+    static void writeContactUpdated(BinaryOutput out, ContactUpdated e) {
+        int marker = out.beginObject();
+        out.writeVarInt(revisionBit(e.getRevision(), 0));
+        out.writeString(e.getId());
+        writeContact(out, e.getContact());
+        writeRevision(out, e.getRevision());
+        out.endObject(marker);
+    }
+
+    static ContactUpdated readContactUpdated(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        ContactUpdated updated = ContactUpdated.of(in.readString(), readContact(in));
+        if (isSet(mask, 0)) updated = updated.withRevision(in.readVarLong());
+        in.endObject(end);
+        return updated;
+    }
+
+    static void writeContactRemoved(BinaryOutput out, ContactRemoved e) {
+        int marker = out.beginObject();
+        out.writeVarInt(revisionBit(e.getRevision(), 0));
+        out.writeString(e.getId());
+        out.writeString(e.getContactId());
+        writeRevision(out, e.getRevision());
+        out.endObject(marker);
+    }
+
+    static ContactRemoved readContactRemoved(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        ContactRemoved removed = ContactRemoved.of(in.readString(), in.readString());
+        if (isSet(mask, 0)) removed = removed.withRevision(in.readVarLong());
+        in.endObject(end);
+        return removed;
+    }
+
+    static void writeLocationChanged(BinaryOutput out, LocationChanged e) {
+        int marker = out.beginObject();
+        out.writeVarInt(revisionBit(e.getRevision(), 0));
+        out.writeString(e.getId());
+        out.writeVarInt(e.getIndex());
+        writeLocation(out, e.getLocation());
+        writeRevision(out, e.getRevision());
+        out.endObject(marker);
+    }
+
+    static LocationChanged readLocationChanged(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        String id = in.readString();
+        int index = in.readVarInt();
+        LocationChanged changed = LocationChanged.of(id, index, readLocation(in));
+        if (isSet(mask, 0)) changed = changed.withRevision(in.readVarLong());
+        in.endObject(end);
+        return changed;
+    }
+
+    static void writeLocationRemoved(BinaryOutput out, LocationRemoved e) {
+        int marker = out.beginObject();
+        out.writeVarInt(revisionBit(e.getRevision(), 0));
+        out.writeString(e.getId());
+        out.writeVarInt(e.getIndex());
+        writeRevision(out, e.getRevision());
+        out.endObject(marker);
+    }
+
+    static LocationRemoved readLocationRemoved(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        String id = in.readString();
+        LocationRemoved removed = LocationRemoved.of(id, in.readVarInt());
+        if (isSet(mask, 0)) removed = removed.withRevision(in.readVarLong());
+        in.endObject(end);
+        return removed;
+    }
+
+    static void writeCreateCompany(BinaryOutput out, CreateCompany cmd) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(cmd.getMc(), cmd.getTaxId(), cmd.getCompanyType(), cmd.getContacts(),
+                cmd.getLocations(), cmd.getTraceId()));
+        out.writeString(cmd.getName());
+        cmd.getMc().ifPresent(out::writeString);
+        cmd.getTaxId().ifPresent(out::writeString);
+        cmd.getCompanyType().ifPresent(type -> out.writeString(type.name()));
+        cmd.getContacts().ifPresent(contacts -> writeContacts(out, contacts));
+        cmd.getLocations().ifPresent(locations -> writeLocations(out, locations));
+        cmd.getTraceId().ifPresent(out::writeString);
+        out.endObject(marker);
+    }
+
+    static CreateCompany readCreateCompany(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        CreateCompany.Builder builder = CreateCompany.builder().name(in.readString());
+        if (isSet(mask, 0)) builder.mc(in.readString());
+        if (isSet(mask, 1)) builder.taxId(in.readString());
+        if (isSet(mask, 2)) builder.companyType(CompanyType.valueOf(in.readString()));
+        if (isSet(mask, 3)) builder.contacts(readContacts(in));
+        if (isSet(mask, 4)) builder.locations(readLocations(in));
+        if (isSet(mask, 5)) builder.traceId(in.readString());
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static void writeUpdateCompany(BinaryOutput out, UpdateCompany cmd) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(cmd.getMc(), cmd.getTaxId(), cmd.getCompanyType(), cmd.getContacts(),
+                cmd.getLocations(), cmd.getTraceId()));
+        out.writeString(cmd.getName());
+        cmd.getMc().ifPresent(out::writeString);
+        cmd.getTaxId().ifPresent(out::writeString);
+        cmd.getCompanyType().ifPresent(type -> out.writeString(type.name()));
+        cmd.getContacts().ifPresent(contacts -> writeContacts(out, contacts));
+        cmd.getLocations().ifPresent(locations -> writeLocations(out, locations));
+        cmd.getTraceId().ifPresent(out::writeString);
+        out.endObject(marker);
+    }
+
+    static UpdateCompany readUpdateCompany(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        UpdateCompany.Builder builder = UpdateCompany.builder().name(in.readString());
+        if (isSet(mask, 0)) builder.mc(in.readString());
+        if (isSet(mask, 1)) builder.taxId(in.readString());
+        if (isSet(mask, 2)) builder.companyType(CompanyType.valueOf(in.readString()));
+        if (isSet(mask, 3)) builder.contacts(readContacts(in));
+        if (isSet(mask, 4)) builder.locations(readLocations(in));
+        if (isSet(mask, 5)) builder.traceId(in.readString());
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static void writePatchCompany(BinaryOutput out, PatchCompany cmd) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(cmd.getName(), cmd.getMc(), cmd.getTaxId(), cmd.getCompanyType(), cmd.getContacts(),
+                cmd.getRemovedContactIds(), cmd.getLocations(), cmd.getTraceId()));
+        cmd.getName().ifPresent(out::writeString);
+        cmd.getMc().ifPresent(out::writeString);
+        cmd.getTaxId().ifPresent(out::writeString);
+        cmd.getCompanyType().ifPresent(type -> out.writeString(type.name()));
+        cmd.getContacts().ifPresent(contacts -> writeContacts(out, contacts));
+        cmd.getRemovedContactIds().ifPresent(ids -> writeStrings(out, ids));
+        cmd.getLocations().ifPresent(locations -> writeLocations(out, locations));
+        cmd.getTraceId().ifPresent(out::writeString);
+        out.endObject(marker);
+    }
+
+    static PatchCompany readPatchCompany(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        PatchCompany.Builder builder = PatchCompany.builder();
+        if (isSet(mask, 0)) builder.name(in.readString());
+        if (isSet(mask, 1)) builder.mc(in.readString());
+        if (isSet(mask, 2)) builder.taxId(in.readString());
+        if (isSet(mask, 3)) builder.companyType(CompanyType.valueOf(in.readString()));
+        if (isSet(mask, 4)) builder.contacts(readContacts(in));
+        if (isSet(mask, 5)) builder.removedContactIds(readStrings(in));
+        if (isSet(mask, 6)) builder.locations(readLocations(in));
+        if (isSet(mask, 7)) builder.traceId(in.readString());
+        in.endObject(end);
+        return builder.build();
+    }
+
+    /**
+     * Written as an empty object before the trace id, which the readers of that time skip.
+     */
+    static void writeDeleteCompany(BinaryOutput out, DeleteCompany cmd) {
+        int marker = out.beginObject();
+        out.writeVarInt(mask(cmd.getTraceId()));
+        cmd.getTraceId().ifPresent(out::writeString);
+        out.endObject(marker);
+    }
+
+    static DeleteCompany readDeleteCompany(BinaryInput in) {
+        int end = in.beginObject();
+        int mask = in.readVarInt();
+        DeleteCompany.Builder builder = DeleteCompany.builder();
+        if (isSet(mask, 0)) builder.traceId(in.readString());
+        in.endObject(end);
+        return builder.build();
+    }
+
+    static void writeEmpty(BinaryOutput out) {
+        int marker = out.beginObject();
+        out.writeVarInt(0);
+        out.endObject(marker);
+    }
+
+    static <T> T readEmpty(BinaryInput in, T instance) {
+        in.endObject(in.beginObject());
+        return instance;
+    }
+}
@@ -0,0 +1,166 @@
+package com.bridge18.company.impl.serialization;
+
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.SerializerWithStringManifest;
+import com.bridge18.company.impl.entities.*;
+
+import java.io.NotSerializableException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Compact binary serializer for the commands, events and state of the company entity and the types they are made of,
+ * used for the journal, for snapshots and for remoting. The bindings are in {@code application.conf}.
+ * <p>
+ * The manifest names the type and the first byte of the payload is the version of its encoding, counted per type. A
+ * change that cannot be expressed by appending optional fields (see {@link CompanyBinaryCodec}) needs a new version
+ * of that type only: it is registered with the new version, and the reader of every previous version is kept with
+ * {@link #registerUpgrade} as the migration of the old data. Data written by the Jackson
+ * serializer before this one was bound keeps being read by Jackson, as Akka picks the deserializer by the
+ * serializer id stored with the data.
+ */
+public class CompanySerializer extends SerializerWithStringManifest {
+    static final int IDENTIFIER = 1801;
+
+    private static final int FIRST_VERSION = 1;
+
+    private final Map<Class<?>, Format<?>> formatsByClass = new HashMap<>();
+    private final Map<String, Format<?>> formatsByManifest = new HashMap<>();
+
+    public CompanySerializer(ExtendedActorSystem system) {
+        register(CompanyState.class, "CompanyState",
+                CompanyBinaryCodec::writeCompanyState, CompanyBinaryCodec::readCompanyState);
+        register(Contact.class, "Contact", CompanyBinaryCodec::writeContact, CompanyBinaryCodec::readContact);
+        register(Location.class, "Location", CompanyBinaryCodec::writeLocation, CompanyBinaryCodec::readLocation);
+        register(Address.class, "Address", CompanyBinaryCodec::writeAddress, CompanyBinaryCodec::readAddress);
+        register(ContactInfo.class, "ContactInfo",
+                CompanyBinaryCodec::writeContactInfo, CompanyBinaryCodec::readContactInfo);
+
+        register(CompanyCreated.class, "CompanyCreated",
+                CompanyMessageCodec::writeCompanyCreated, CompanyMessageCodec::readCompanyCreated);
+        register(CompanyUpdated.class, "CompanyUpdated",
+                CompanyMessageCodec::writeCompanyUpdated, CompanyMessageCodec::readCompanyUpdated);
+        register(CompanyDeleted.class, "CompanyDeleted",
+                CompanyMessageCodec::writeCompanyDeleted, CompanyMessageCodec::readCompanyDeleted);
+        register(CompanyNameChanged.class, "CompanyNameChanged",
+                CompanyMessageCodec::writeCompanyNameChanged, CompanyMessageCodec::readCompanyNameChanged);
+        register(CompanyDetailsChanged.class, "CompanyDetailsChanged",
+                CompanyMessageCodec::writeCompanyDetailsChanged, CompanyMessageCodec::readCompanyDetailsChanged);
+        register(ContactAdded.class, "ContactAdded",
+                CompanyMessageCodec::writeContactAdded, CompanyMessageCodec::readContactAdded);
+        register(ContactUpdated.class, "ContactUpdated",
+                CompanyMessageCodec::writeContactUpdated, CompanyMessageCodec::readContactUpdated);
+        register(ContactRemoved.class, "ContactRemoved",
+                CompanyMessageCodec::writeContactRemoved, CompanyMessageCodec::readContactRemoved);
+        register(LocationChanged.class, "LocationChanged",
+                CompanyMessageCodec::writeLocationChanged, CompanyMessageCodec::readLocationChanged);
+        register(LocationRemoved.class, "LocationRemoved",
+                CompanyMessageCodec::writeLocationRemoved, CompanyMessageCodec::readLocationRemoved);
+
+        register(CreateCompany.class, "CreateCompany",
+                CompanyMessageCodec::writeCreateCompany, CompanyMessageCodec::readCreateCompany);
+        register(UpdateCompany.class, "UpdateCompany",
+                CompanyMessageCodec::writeUpdateCompany, CompanyMessageCodec::readUpdateCompany);
+        register(PatchCompany.class, "PatchCompany",
+                CompanyMessageCodec::writePatchCompany, CompanyMessageCodec::readPatchCompany);
+        register(GetCompanyInformation.class, "GetCompanyInformation",
+                (out, cmd) -> CompanyMessageCodec.writeEmpty(out),
+                in -> CompanyMessageCodec.readEmpty(in, GetCompanyInformation.builder().build()));
+        register(DeleteCompany.class, "DeleteCompany",
+                CompanyMessageCodec::writeDeleteCompany, CompanyMessageCodec::readDeleteCompany);
+    }
+
+    @Override
+    public int identifier() {
+        return IDENTIFIER;
+    }
+
+    @Override
+    public String manifest(Object o) {
+        return formatFor(o).manifest;
+    }
+
+    @Override
+    public byte[] toBinary(Object o) {
+        return formatFor(o).toBinary(o);
+    }
+
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        Format<?> format = formatsByManifest.get(manifest);
+        if (format == null) {
+            throw new NotSerializableException("Unknown manifest " + manifest);
+        }
+
+        BinaryInput in = new BinaryInput(bytes);
+        int version = in.readByte();
+        Function<BinaryInput, ?> reader = version == format.version ? format.reader : format.upgrades.get(version);
+        if (reader == null) {
+            throw new NotSerializableException("Unknown version " + version + " of " + manifest);
+        }
+        return reader.apply(in);
+    }
+
+    private Format<?> formatFor(Object o) {
+        Format<?> format = formatsByClass.get(o.getClass());
+        if (format == null) {
+            throw new IllegalArgumentException("Cannot serialize " + o.getClass().getName());
+        }
+        return format;
+    }
+
+    private <T> void register(Class<T> type, String manifest,
+                              BiConsumer<BinaryOutput, T> writer, Function<BinaryInput, T> reader) {
+        register(type, manifest, FIRST_VERSION, writer, reader);
+    }
+
+    /**
+     * Writes and reads {@code type} in its {@code version}, replacing any earlier registration of the type along with
+     * its upgrades.
+     */
+    <T> void register(Class<T> type, String manifest, int version,
+                      BiConsumer<BinaryOutput, T> writer, Function<BinaryInput, T> reader) {
+        Format<T> format = new Format<>(type, manifest, version, writer, reader);
+        formatsByClass.put(type, format);
+        formatsByManifest.put(manifest, format);
+    }
+
+    /**
+     * Reads data of {@code type} written in an earlier {@code version} of its encoding.
+     */
+    <T> void registerUpgrade(Class<T> type, int version, Function<BinaryInput, ? extends T> reader) {
+        Format<?> format = formatsByClass.get(type);
+        if (format == null || version >= format.version) {
+            throw new IllegalArgumentException("Version " + version + " of " + type.getName()
+                    + " is not older than the registered one");
+        }
+        format.upgrades.put(version, reader);
+    }
+
+    private static final class Format<T> {
+        final Class<T> type;
+        final String manifest;
+        final int version;
+        final BiConsumer<BinaryOutput, T> writer;
+        final Function<BinaryInput, T> reader;
+        final Map<Integer, Function<BinaryInput, ?>> upgrades = new HashMap<>();
+
+        Format(Class<T> type, String manifest, int version, BiConsumer<BinaryOutput, T> writer,
+               Function<BinaryInput, T> reader) {
+            this.type = type;
+            this.manifest = manifest;
+            this.version = version;
+            this.writer = writer;
+            this.reader = reader;
+        }
+
+        byte[] toBinary(Object o) {
+            BinaryOutput out = new BinaryOutput(256);
+            out.writeByte(version);
+            writer.accept(out, type.cast(o));
+            return out.toByteArray();
+        }
+    }
+}
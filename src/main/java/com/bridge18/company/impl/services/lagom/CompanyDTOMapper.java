@@ -0,0 +1,161 @@
+package com.bridge18.company.impl.services.lagom;
+
+import com.bridge18.company.impl.entities.*;
+import com.bridge18.company.v1.dto.company.*;
+import com.bridge18.exception.LagomException;
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Conversions between the company DTOs of the API and the entity immutables. Every conversion walks its input once
+ * and builds fully materialized lists, so serializing the result does not run any mapping again. Every DTO and
+ * list it returns is a new instance that the caller may modify.
+ */
+public final class CompanyDTOMapper {
+    private static final Address EMPTY_ADDRESS = Address.builder().build();
+
+    private CompanyDTOMapper() {
+    }
+
+    public static CompanyDTO toCompanyDTO(CompanyState companyState) {
+        PVector<Contact> contacts = companyState.getContacts()
+                .orElseThrow(() ->
+                        new LagomException("CONTACTS_EMPTY", 404, "Contacts could not be empty", "contacts"));
+        PVector<Location> locations = companyState.getLocations()
+                .orElseThrow(() ->
+                        new LagomException("LOCATIONS_EMPTY", 404, "Locations could not be empty", "locations"));
+
+        List<ContactDTO> contactDTOs = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            contactDTOs.add(toContactDTO(contact));
+        }
+        List<LocationDTO> locationDTOs = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            locationDTOs.add(toLocationDTO(location));
+        }
+
+        return new CompanyDTO(companyState.getId(),
+                companyState.getName(),
+                companyState.getMc().orElse(null),
+                companyState.getTaxId().orElse(null),
+                companyState.getCompanyType().orElse(null),
+                contactDTOs,
+                locationDTOs
+        );
+    }
+
+    public static PVector<Contact> toContacts(List<ContactDTO> contactDTOs) {
+        if (contactDTOs == null) {
+            throw new LagomException("CONTACTS_EMPTY", 400, "Contacts could not be empty", "contacts");
+        }
+        List<Contact> contacts = new ArrayList<>(contactDTOs.size());
+        for (ContactDTO contactDTO : contactDTOs) {
+            Contact.Builder builder = Contact.builder();
+            if (contactDTO.id != null) builder.id(contactDTO.id);
+            if (contactDTO.firstName != null) builder.firstName(contactDTO.firstName);
+            if (contactDTO.middleName != null) builder.middleName(contactDTO.middleName);
+            if (contactDTO.lastName != null) builder.lastName(contactDTO.lastName);
+            if (contactDTO.contactInfo != null) builder.contactInfo(toContactInfos(contactDTO.contactInfo));
+            if (contactDTO.position != null) builder.position(contactDTO.position);
+            if (contactDTO.address != null) builder.address(toAddress(contactDTO.address));
+            contacts.add(builder.build());
+        }
+        return TreePVector.from(contacts);
+    }
+
+    public static PVector<Location> toLocations(List<LocationDTO> locationDTOs) {
+        if (locationDTOs == null) {
+            throw new LagomException("LOCATIONS_EMPTY", 400, "Locations could not be empty", "locations");
+        }
+        List<Location> locations = new ArrayList<>(locationDTOs.size());
+        for (LocationDTO locationDTO : locationDTOs) {
+            Location.Builder builder = Location.builder();
+            if (locationDTO.name != null) builder.name(locationDTO.name);
+            if (locationDTO.address != null) builder.address(toAddress(locationDTO.address));
+            if (locationDTO.contactInfo != null) builder.contactInfo(toContactInfos(locationDTO.contactInfo));
+            locations.add(builder.build());
+        }
+        return TreePVector.from(locations);
+    }
+
+    private static ContactDTO toContactDTO(Contact contact) {
+        return new ContactDTO(contact.getId().orElse(null),
+                contact.getFirstName().orElse(null),
+                contact.getMiddleName().orElse(null),
+                contact.getLastName().orElse(null),
+                toContactInfoDTOs(contact.getContactInfo()),
+                contact.getPosition().orElse(null),
+                toAddressDTO(contact.getAddress())
+        );
+    }
+
+    private static LocationDTO toLocationDTO(Location location) {
+        return new LocationDTO(location.getName().orElse(null),
+                toAddressDTO(location.getAddress()),
+                toContactInfoDTOs(location.getContactInfo())
+        );
+    }
+
+    private static List<ContactInfoDTO> toContactInfoDTOs(Optional<PVector<ContactInfo>> contactInfos) {
+        if (!contactInfos.isPresent() || contactInfos.get().isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        List<ContactInfoDTO> contactInfoDTOs = new ArrayList<>(contactInfos.get().size());
+        for (ContactInfo contactInfo : contactInfos.get()) {
+            contactInfoDTOs.add(new ContactInfoDTO(contactInfo.getLabel().orElse(null),
+                    contactInfo.getValue().orElse(null),
+                    contactInfo.getType().orElse(null)
+            ));
+        }
+        return contactInfoDTOs;
+    }
+
+    private static PVector<ContactInfo> toContactInfos(List<ContactInfoDTO> contactInfoDTOs) {
+        if (contactInfoDTOs.isEmpty()) {
+            return TreePVector.empty();
+        }
+        List<ContactInfo> contactInfos = new ArrayList<>(contactInfoDTOs.size());
+        for (ContactInfoDTO contactInfoDTO : contactInfoDTOs) {
+            ContactInfo.Builder builder = ContactInfo.builder();
+            if (contactInfoDTO.label != null) builder.label(contactInfoDTO.label);
+            if (contactInfoDTO.value != null) builder.value(contactInfoDTO.value);
+            if (contactInfoDTO.type != null) builder.type(contactInfoDTO.type);
+            contactInfos.add(builder.build());
+        }
+        return TreePVector.from(contactInfos);
+    }
+
+    private static AddressDTO toAddressDTO(Optional<Address> address) {
+        Address a = address.orElse(EMPTY_ADDRESS);
+        return new AddressDTO(a.getAddressId().orElse(null),
+                a.getAddressName().orElse(null), a.getStreetAddress1().orElse(null),
+                a.getStreetAddress2().orElse(null), a.getCity().orElse(null),
+                a.getAddressPhone().orElse(null), a.getState().orElse(null),
+                a.getZip().orElse(null), a.getAddressFax().orElse(null),
+                a.getAddressPhoneExtension().orElse(null), a.getAddressFaxExtension().orElse(null),
+                a.getAddressLatitude().orElse(null), a.getAddressLongitude().orElse(null)
+        );
+    }
+
+    private static Address toAddress(AddressDTO addressDTO) {
+        Address.Builder builder = Address.builder();
+        if (addressDTO.id != null) builder.addressId(addressDTO.id);
+        if (addressDTO.name != null) builder.addressName(addressDTO.name);
+        if (addressDTO.streetAddress1 != null) builder.streetAddress1(addressDTO.streetAddress1);
+        if (addressDTO.streetAddress2 != null) builder.streetAddress2(addressDTO.streetAddress2);
+        if (addressDTO.city != null) builder.city(addressDTO.city);
+        if (addressDTO.phone != null) builder.addressPhone(addressDTO.phone);
+        if (addressDTO.state != null) builder.state(addressDTO.state);
+        if (addressDTO.zip != null) builder.zip(addressDTO.zip);
+        if (addressDTO.fax != null) builder.addressFax(addressDTO.fax);
+        if (addressDTO.phoneExtension != null) builder.addressPhoneExtension(addressDTO.phoneExtension);
+        if (addressDTO.faxExtension != null) builder.addressFaxExtension(addressDTO.faxExtension);
+        if (addressDTO.latitude != null) builder.addressLatitude(addressDTO.latitude);
+        if (addressDTO.longitude != null) builder.addressLongitude(addressDTO.longitude);
+        return builder.build();
+    }
+}
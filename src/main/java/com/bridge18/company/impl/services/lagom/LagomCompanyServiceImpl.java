@@ -2,235 +2,235 @@ package com.bridge18.company.impl.services.lagom;
 
 import akka.Done;
 import akka.NotUsed;
+import akka.japi.Pair;
 import com.bridge18.company.impl.entities.*;
 import com.bridge18.company.impl.repository.CompanyMongoRepository;
+import com.bridge18.company.impl.repository.ConsistencyToken;
+import com.bridge18.company.impl.repository.PaginationSettings;
 import com.bridge18.company.impl.services.objects.CompanyService;
+import com.bridge18.company.impl.services.objects.ReadConsistency;
+import com.bridge18.company.impl.tracing.RequestTracing;
+import com.bridge18.company.impl.tracing.Trace;
 import com.bridge18.company.v1.api.LagomCompanyService;
 import com.bridge18.company.v1.dto.company.*;
 import com.bridge18.exception.LagomException;
 import com.bridge18.v1.dto.PaginatedSequence;
-import com.google.common.collect.Lists;
 import com.lightbend.lagom.javadsl.api.ServiceCall;
+import com.lightbend.lagom.javadsl.api.transport.RequestHeader;
+import com.lightbend.lagom.javadsl.api.transport.ResponseHeader;
+import com.lightbend.lagom.javadsl.server.HeaderServiceCall;
+import com.lightbend.lagom.javadsl.server.ServerServiceCall;
 import org.pcollections.PVector;
 import org.pcollections.TreePVector;
 
 import javax.inject.Inject;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Every call is timed by {@link RequestTracing} as {@code endpoints.<call>.*}: {@code to-command} converts the request
+ * DTO, {@code service} is the {@link CompanyService} call, which for writes is the ask of the entity, {@code to-dto}
+ * converts the result and {@code total} covers them all.
+ */
 public class LagomCompanyServiceImpl implements LagomCompanyService {
-    private static final int PAGE_SIZE = 20;
+    public static final String PAGE_CURSOR_HEADER = "X-Page-Cursor";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String READ_CONSISTENCY_HEADER = "X-Read-Consistency";
+    public static final String PROJECTION_LAG_HEADER = "X-Projection-Lag-Millis";
+    public static final String CONSISTENCY_TOKEN_HEADER = "X-Consistency-Token";
 
     private CompanyService companyService;
     private CompanyMongoRepository companyMongoRepository;
+    private PaginationSettings paginationSettings;
+    private RequestTracing requestTracing;
 
     @Inject
-    public LagomCompanyServiceImpl(CompanyService companyService, CompanyMongoRepository companyMongoRepository) {
+    public LagomCompanyServiceImpl(CompanyService companyService, CompanyMongoRepository companyMongoRepository,
+                                   PaginationSettings paginationSettings, RequestTracing requestTracing) {
         this.companyService = companyService;
         this.companyMongoRepository = companyMongoRepository;
+        this.paginationSettings = paginationSettings;
+        this.requestTracing = requestTracing;
     }
 
     @Override
     public ServiceCall<CompanyDTO, CompanyDTO> createCompany() {
-        return request -> {
-            PVector<Contact> contacts = convertContactDTOListToContactPVector(request.contacts);
-            PVector<Location> locations = convertLocationDTOListToLocationPVector(request.locations);
+        return tracedWithHeaders("createCompany", (trace, requestHeader) -> HeaderServiceCall.of((header, request) -> {
+            Pair<PVector<Contact>, PVector<Location>> converted = trace.stage("to-command", () -> Pair.create(
+                    CompanyDTOMapper.toContacts(request.contacts),
+                    CompanyDTOMapper.toLocations(request.locations)));
 
-            return companyService.createCompany(request.name,
+            return trace.stageAsync("service", () -> companyService.createCompany(request.name,
                     Optional.ofNullable(request.taxId),
                     Optional.ofNullable(request.mc),
                     Optional.ofNullable(request.companyType),
-                    Optional.ofNullable(contacts),
-                    Optional.ofNullable(locations))
+                    Optional.ofNullable(converted.first()),
+                    Optional.ofNullable(converted.second()),
+                    Optional.of(trace.getTraceId())))
 
-                    .thenApply(this::convertCompanyStateToCompanyDTO);
-        };
+                    .thenApply(companyState -> written(trace, companyState));
+        }));
     }
 
+    /**
+     * A page number gives the page at that offset. Otherwise pages follow each other by cursor: the first without
+     * one, each next one with the {@value #NEXT_CURSOR_HEADER} header of the previous page sent back as
+     * {@value #PAGE_CURSOR_HEADER}. The last page has no next cursor. With the {@value #CONSISTENCY_TOKEN_HEADER} of a
+     * write, the page is read once the read side has applied that write.
+     */
     @Override
     public ServiceCall<NotUsed, PaginatedSequence<CompanyDTO>> getCompanies(Optional<Integer> pageNumber,
                                                                             Optional<Integer> pageSize) {
-        return request ->
-                companyMongoRepository.getCompanies(pageNumber.orElse(0), PAGE_SIZE)
-                        .thenApply(e ->
-                                new PaginatedSequence<>(
-                                        TreePVector.from(e.getValues()
-                                                .stream().map(this::convertCompanyStateToCompanyDTO)
-                                                .collect(Collectors.toList())),
-                                        e.getPageNumber(),
-                                        e.getPageSize()));
-
+        int size = paginationSettings.pageSize(pageSize);
+        return tracedWithHeaders("getCompanies", (trace, requestHeader) -> {
+            Optional<String> cursor = requestHeader.getHeader(PAGE_CURSOR_HEADER);
+            Optional<String> token = requestHeader.getHeader(CONSISTENCY_TOKEN_HEADER);
+            return HeaderServiceCall.of((header, request) -> {
+                Optional<ConsistencyToken> after;
+                try {
+                    after = token.map(ConsistencyToken::decode);
+                } catch (LagomException e) {
+                    return failed(e);
+                }
+                if (pageNumber.isPresent() && !cursor.isPresent()) {
+                    return trace.stageAsync("service", () ->
+                            companyMongoRepository.getCompanies(pageNumber.get(), size, after))
+                            .thenApply(page -> Pair.create(ResponseHeader.OK, trace.stage("to-dto", () ->
+                                    new PaginatedSequence<>(toCompanyDTOs(page.getValues()),
+                                            page.getPageNumber(),
+                                            page.getPageSize()))));
+                }
+                return trace.stageAsync("service", () -> companyMongoRepository.getCompanies(cursor, size, after))
+                        .thenApply(page -> Pair.create(
+                                page.getNextCursor()
+                                        .map(next -> ResponseHeader.OK.withHeader(NEXT_CURSOR_HEADER, next))
+                                        .orElse(ResponseHeader.OK),
+                                trace.stage("to-dto", () ->
+                                        new PaginatedSequence<>(toCompanyDTOs(page.getValues()),
+                                                pageNumber.orElse(0),
+                                                page.getPageSize()))));
+            });
+        });
     }
 
     @Override
     public ServiceCall<CompanyDTO, CompanyDTO> updateCompany(String id) {
-        return request -> {
-            PVector<Contact> contacts = convertContactDTOListToContactPVector(request.contacts);
-            PVector<Location> locations = convertLocationDTOListToLocationPVector(request.locations);
+        return tracedWithHeaders("updateCompany", (trace, requestHeader) -> HeaderServiceCall.of((header, request) -> {
+            Pair<PVector<Contact>, PVector<Location>> converted = trace.stage("to-command", () -> Pair.create(
+                    CompanyDTOMapper.toContacts(request.contacts),
+                    CompanyDTOMapper.toLocations(request.locations)));
 
-            return companyService.updateCompany(
+            return trace.stageAsync("service", () -> companyService.updateCompany(
                     id,
                     request.name,
                     Optional.ofNullable(request.taxId),
                     Optional.ofNullable(request.mc),
                     Optional.ofNullable(request.companyType),
-                    Optional.ofNullable(contacts),
-                    Optional.ofNullable(locations))
+                    Optional.ofNullable(converted.first()),
+                    Optional.ofNullable(converted.second()),
+                    Optional.of(trace.getTraceId())))
 
-                    .thenApply(this::convertCompanyStateToCompanyDTO);
-        };
+                    .thenApply(companyState -> written(trace, companyState));
+        }));
     }
 
+    /**
+     * Read from the entity, unless the {@value #READ_CONSISTENCY_HEADER} header asks for an {@code eventual} read.
+     * Those are served from the read side, and their response says in {@value #PROJECTION_LAG_HEADER} how far behind
+     * the journal the read side was, once it has reported a lag.
+     */
     @Override
     public ServiceCall<NotUsed, CompanyDTO> getCompany(String id) {
-        return request ->
-                companyService.getCompany(id)
-                        .thenApply(this::convertCompanyStateToCompanyDTO);
+        return tracedWithHeaders("getCompany", (trace, requestHeader) -> {
+            Optional<String> consistency = requestHeader.getHeader(READ_CONSISTENCY_HEADER);
+            return HeaderServiceCall.of((header, request) -> {
+                ReadConsistency readConsistency;
+                try {
+                    readConsistency = readConsistency(consistency);
+                } catch (LagomException e) {
+                    return failed(e);
+                }
+                if (readConsistency == ReadConsistency.STRONG) {
+                    return trace.stageAsync("service", () -> companyService.getCompany(id))
+                            .thenApply(companyState -> Pair.create(ResponseHeader.OK, trace.stage("to-dto", () ->
+                                    CompanyDTOMapper.toCompanyDTO(companyState))));
+                }
+                return trace.stageAsync("service", () -> companyService.getCompany(id, ReadConsistency.EVENTUAL))
+                        .thenCombine(companyMongoRepository.getProjectionLag(), (companyState, lag) -> Pair.create(
+                                lag.map(duration -> ResponseHeader.OK.withHeader(PROJECTION_LAG_HEADER,
+                                        Long.toString(duration.toMillis())))
+                                        .orElse(ResponseHeader.OK),
+                                trace.stage("to-dto", () -> CompanyDTOMapper.toCompanyDTO(companyState))));
+            });
+        });
     }
 
     @Override
     public ServiceCall<NotUsed, Done> deleteCompany(String id) {
-        return request -> companyService.deleteCompany(id)
-                .thenApply(companyState ->
-                        Done.getInstance());
+        return traced("deleteCompany", trace -> request ->
+                trace.stageAsync("service", () -> companyService.deleteCompany(id,
+                        Optional.of(trace.getTraceId())))
+                        .thenApply(companyState ->
+                                Done.getInstance()));
     }
 
-    private CompanyDTO convertCompanyStateToCompanyDTO(CompanyState companyState) {
-        List<ContactDTO> contactDTOS = Lists.transform(companyState.getContacts()
-                        .orElseThrow(() ->
-                                new LagomException("CONTACTS_EMPTY", 404, "Contacts could not be empty", "contacts")),
-                contact ->
-                        new ContactDTO(contact.getId().orElse(null),
-                                contact.getFirstName().orElse(null),
-                                contact.getMiddleName().orElse(null),
-                                contact.getLastName().orElse(null),
-                                convertContactInfoPVectorToList(
-                                        contact.getContactInfo().orElse(TreePVector.empty())
-                                ),
-                                contact.getPosition().orElse(null),
-                                convertAddressToAddressDTO(contact.getAddress().orElse(Address.builder().build()))
-                        )
-        );
-
-        List<LocationDTO> locationDTOS = Lists.transform(companyState.getLocations()
-                        .orElseThrow(() ->
-                                new LagomException("LOCATIONS_EMPTY", 404, "Locations could not be empty", "locations")),
-                location ->
-                        new LocationDTO(location.getName().orElse(null),
-                                convertAddressToAddressDTO(location.getAddress().orElse(Address.builder().build())),
-                                convertContactInfoPVectorToList(
-                                        location.getContactInfo().orElse(TreePVector.empty())
-                                )
-                        )
-        );
-
-        CompanyDTO companyDTO = new CompanyDTO(companyState.getId(),
-                companyState.getName(),
-                companyState.getMc().orElse(null),
-                companyState.getTaxId().orElse(null),
-                companyState.getCompanyType().orElse(null),
-                contactDTOS,
-                locationDTOS
-        );
-        return companyDTO;
+    /**
+     * The response to a write: the company, and in {@value #CONSISTENCY_TOKEN_HEADER} the token that lets a following
+     * read wait for the read side to apply the write.
+     */
+    private static Pair<ResponseHeader, CompanyDTO> written(Trace trace, CompanyState companyState) {
+        return Pair.create(
+                ResponseHeader.OK.withHeader(CONSISTENCY_TOKEN_HEADER, ConsistencyToken.of(companyState).encode()),
+                trace.stage("to-dto", () -> CompanyDTOMapper.toCompanyDTO(companyState)));
     }
 
-    private PVector<Contact> convertContactDTOListToContactPVector(List<ContactDTO> contactDTOList) {
-        if (contactDTOList == null) {
-            throw new LagomException("CONTACTS_EMPTY", 400, "Contacts could not be empty", "contacts");
+    private static ReadConsistency readConsistency(Optional<String> header) {
+        if (!header.isPresent()) {
+            return ReadConsistency.STRONG;
         }
-        return TreePVector.from(
-                Lists.transform(contactDTOList, contactDTO ->
-                        Contact.builder()
-                                .id(Optional.ofNullable(contactDTO.id))
-                                .firstName(Optional.ofNullable(contactDTO.firstName))
-                                .middleName(Optional.ofNullable(contactDTO.middleName))
-                                .lastName(Optional.ofNullable(contactDTO.lastName))
-                                .contactInfo(Optional.ofNullable(contactDTO.contactInfo != null ?
-                                        convertContactInfoListToPVector(contactDTO.contactInfo) : null)
-                                )
-                                .position(Optional.ofNullable(contactDTO.position))
-                                .address(Optional.ofNullable(contactDTO.address != null ?
-                                        convertAddressDTOToAddress(contactDTO.address) : null)
-                                )
-                                .build()
-                )
-        );
-    }
-
-    private PVector<Location> convertLocationDTOListToLocationPVector(List<LocationDTO> locationDTOList) {
-        if (locationDTOList == null) {
-            throw new LagomException("LOCATIONS_EMPTY", 400, "Locations could not be empty", "locations");
+        try {
+            return ReadConsistency.valueOf(header.get().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new LagomException("READ_CONSISTENCY_INVALID", 400,
+                    "Read consistency must be strong or eventual, got " + header.get(), READ_CONSISTENCY_HEADER);
         }
-        return TreePVector.from(
-                Lists.transform(locationDTOList, locationDTO ->
-                        Location.builder()
-                                .name(Optional.ofNullable(locationDTO.name))
-                                .address(Optional.ofNullable(locationDTO.address != null ?
-                                        convertAddressDTOToAddress(locationDTO.address) : null)
-                                )
-                                .contactInfo(
-                                        Optional.ofNullable(locationDTO.contactInfo != null ?
-                                                convertContactInfoListToPVector(locationDTO.contactInfo) : null)
-                                )
-                                .build()
-                )
-        );
     }
 
-    private List<ContactInfoDTO> convertContactInfoPVectorToList(PVector<ContactInfo> contactInfos) {
-        contactInfos = Optional.ofNullable(contactInfos).orElse(TreePVector.empty());
-        return Lists.transform(contactInfos, contactInfo ->
-                new ContactInfoDTO(contactInfo.getLabel().orElse(null),
-                        contactInfo.getValue().orElse(null),
-                        contactInfo.getType().orElse(null)
-                )
-        );
+    private static <T> CompletionStage<T> failed(Throwable error) {
+        CompletableFuture<T> failed = new CompletableFuture<>();
+        failed.completeExceptionally(error);
+        return failed;
     }
 
-    private PVector<ContactInfo> convertContactInfoListToPVector(List<ContactInfoDTO> contactInfos) {
-        contactInfos = Optional.ofNullable(contactInfos).orElse(new ArrayList<>());
-        return TreePVector.from(
-                Lists.transform(contactInfos, contactInfoDTO ->
-                        ContactInfo.builder()
-                                .label(Optional.ofNullable(contactInfoDTO.label))
-                                .value(Optional.ofNullable(contactInfoDTO.value))
-                                .type(Optional.ofNullable(contactInfoDTO.type))
-                                .build()
-                )
-        );
+    private static PVector<CompanyDTO> toCompanyDTOs(List<CompanyState> companies) {
+        return TreePVector.from(companies.stream().map(CompanyDTOMapper::toCompanyDTO).collect(Collectors.toList()));
     }
 
-    private AddressDTO convertAddressToAddressDTO(Address address) {
-        address = Optional.ofNullable(address).orElse(Address.builder().build());
-        return new AddressDTO(address.getAddressId().orElse(null),
-                address.getAddressName().orElse(null), address.getStreetAddress1().orElse(null),
-                address.getStreetAddress2().orElse(null), address.getCity().orElse(null),
-                address.getAddressPhone().orElse(null), address.getState().orElse(null),
-                address.getZip().orElse(null), address.getAddressFax().orElse(null),
-                address.getAddressPhoneExtension().orElse(null), address.getAddressFaxExtension().orElse(null),
-                address.getAddressLatitude().orElse(null), address.getAddressLongitude().orElse(null)
-        );
+    /**
+     * The call {@code call} builds for the trace of each request, timed as a whole. The trace continues the one of
+     * the {@value RequestTracing#TRACE_ID_HEADER} header, if the request has one.
+     */
+    private <Request, Response> ServerServiceCall<Request, Response> traced(
+            String name, Function<Trace, ServerServiceCall<Request, Response>> call) {
+        return tracedWithHeaders(name, (trace, requestHeader) -> call.apply(trace));
     }
 
-    private Address convertAddressDTOToAddress(AddressDTO addressDTO) {
-        addressDTO = Optional.ofNullable(addressDTO).orElse(new AddressDTO());
-        return Address.builder()
-                .addressId(Optional.ofNullable(addressDTO.id))
-                .addressName(Optional.ofNullable(addressDTO.name))
-                .streetAddress1(Optional.ofNullable(addressDTO.streetAddress1))
-                .streetAddress2(Optional.ofNullable(addressDTO.streetAddress2))
-                .city(Optional.ofNullable(addressDTO.city))
-                .addressPhone(Optional.ofNullable(addressDTO.phone))
-                .state(Optional.ofNullable(addressDTO.state))
-                .zip(Optional.ofNullable(addressDTO.zip))
-                .addressFax(Optional.ofNullable(addressDTO.fax))
-                .addressPhoneExtension(Optional.ofNullable(addressDTO.phoneExtension))
-                .addressFaxExtension(Optional.ofNullable(addressDTO.faxExtension))
-                .addressLatitude(Optional.ofNullable(addressDTO.latitude))
-                .addressLongitude(Optional.ofNullable(addressDTO.longitude))
-                .build();
+    /**
+     * {@link #traced} for calls that also read the request header or set the response header.
+     */
+    private <Request, Response> ServerServiceCall<Request, Response> tracedWithHeaders(
+            String name, BiFunction<Trace, RequestHeader, ServerServiceCall<Request, Response>> call) {
+        return HeaderServiceCall.compose(requestHeader -> {
+            Trace trace = requestTracing.start("endpoints", name,
+                    requestHeader.getHeader(RequestTracing.TRACE_ID_HEADER));
+            ServerServiceCall<Request, Response> traced = call.apply(trace, requestHeader);
+            return HeaderServiceCall.of((header, request) -> trace.finish(traced.invokeWithHeaders(header, request)));
+        });
     }
 }
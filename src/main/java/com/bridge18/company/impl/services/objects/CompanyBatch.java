@@ -0,0 +1,46 @@
+package com.bridge18.company.impl.services.objects;
+
+import com.bridge18.company.impl.entities.CompanyState;
+import org.pcollections.PSequence;
+import org.pcollections.TreePVector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of fetching several companies by id: the companies found, in the order of the requested ids, and the
+ * requested ids that did not resolve to a company.
+ */
+public class CompanyBatch {
+    private final PSequence<CompanyState> found;
+    private final PSequence<String> missing;
+
+    public CompanyBatch(PSequence<CompanyState> found, PSequence<String> missing) {
+        this.found = found;
+        this.missing = missing;
+    }
+
+    static CompanyBatch of(Collection<String> ids, Map<String, CompanyState> companiesById) {
+        List<CompanyState> found = new ArrayList<>(companiesById.size());
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            CompanyState company = companiesById.get(id);
+            if (company != null) {
+                found.add(company);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new CompanyBatch(TreePVector.from(found), TreePVector.from(missing));
+    }
+
+    public PSequence<CompanyState> getFound() {
+        return found;
+    }
+
+    public PSequence<String> getMissing() {
+        return missing;
+    }
+}
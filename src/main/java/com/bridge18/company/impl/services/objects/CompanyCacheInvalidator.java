@@ -0,0 +1,104 @@
+package com.bridge18.company.impl.services.objects;
+
+import akka.Done;
+import akka.actor.ActorSystem;
+import akka.japi.Pair;
+import akka.stream.KillSwitches;
+import akka.stream.Materializer;
+import akka.stream.UniqueKillSwitch;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import com.bridge18.company.impl.entities.CompanyDeleted;
+import com.bridge18.company.impl.entities.CompanyEvent;
+import com.bridge18.company.impl.entities.CompanyEventShards;
+import com.datastax.driver.core.utils.UUIDs;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.lightbend.lagom.javadsl.persistence.Offset;
+import com.lightbend.lagom.javadsl.persistence.PersistentEntityRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.inject.ApplicationLifecycle;
+import scala.concurrent.duration.Duration;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Follows every company event tag from the time the node started and drops the cached state of each company that
+ * is written, on whichever node, recording deletions as tombstones. When a stream fails the whole cache is dropped,
+ * since events may have been missed, and the stream is resumed from its last offset.
+ */
+@Singleton
+public class CompanyCacheInvalidator {
+    private static final Logger log = LoggerFactory.getLogger(CompanyCacheInvalidator.class);
+    private static final long RESTART_DELAY_SECONDS = 5;
+
+    private final PersistentEntityRegistry persistentEntityRegistry;
+    private final CompanyStateCache cache;
+    private final ActorSystem actorSystem;
+    private final Materializer materializer;
+    private final List<UniqueKillSwitch> killSwitches = new CopyOnWriteArrayList<>();
+    private volatile boolean stopped;
+
+    @Inject
+    public CompanyCacheInvalidator(PersistentEntityRegistry persistentEntityRegistry, CompanyStateCache cache,
+                                   ActorSystem actorSystem, Materializer materializer,
+                                   CompanyEventShards eventShards, ApplicationLifecycle lifecycle) {
+        this.persistentEntityRegistry = persistentEntityRegistry;
+        this.cache = cache;
+        this.actorSystem = actorSystem;
+        this.materializer = materializer;
+
+        if (cache.isEnabled() || cache.keepsTombstones()) {
+            Offset now = Offset.timeBasedUUID(UUIDs.startOf(System.currentTimeMillis()));
+            for (AggregateEventTag<CompanyEvent> tag : eventShards.allTags()) {
+                follow(tag, new AtomicReference<>(now));
+            }
+        }
+
+        lifecycle.addStopHook(() -> {
+            stopped = true;
+            killSwitches.forEach(UniqueKillSwitch::shutdown);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private void follow(AggregateEventTag<CompanyEvent> tag, AtomicReference<Offset> offset) {
+        if (stopped) {
+            return;
+        }
+        Pair<UniqueKillSwitch, CompletionStage<Done>> running =
+                persistentEntityRegistry.eventStream(tag, offset.get())
+                        .viaMat(KillSwitches.single(), Keep.right())
+                        .toMat(Sink.foreach(pair -> {
+                            if (pair.first() instanceof CompanyDeleted) {
+                                cache.markDeleted(pair.first().getId());
+                            } else {
+                                cache.invalidate(pair.first().getId(), pair.first().getRevision());
+                            }
+                            offset.set(pair.second());
+                        }), Keep.both())
+                        .run(materializer);
+        killSwitches.add(running.first());
+
+        running.second().whenComplete((done, failure) -> {
+            killSwitches.remove(running.first());
+            if (stopped) {
+                return;
+            }
+            log.warn("Company cache invalidation stream for {} terminated, dropping the cache and resuming",
+                    tag.tag(), failure);
+            cache.invalidateAll();
+            actorSystem.scheduler().scheduleOnce(
+                    Duration.create(RESTART_DELAY_SECONDS, TimeUnit.SECONDS),
+                    () -> follow(tag, offset),
+                    actorSystem.dispatcher());
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package com.bridge18.company.impl.services.objects;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+
+public class CompanyCacheSettings {
+    private final boolean enabled;
+    private final long maxSize;
+    private final Duration expireAfterWrite;
+    private final long tombstonesMaxSize;
+
+    public CompanyCacheSettings(Config config) {
+        this(config.getBoolean("enabled"), config.getLong("max-size"), config.getDuration("expire-after-write"),
+                config.getLong("tombstones.max-size"));
+    }
+
+    public CompanyCacheSettings(boolean enabled, long maxSize, Duration expireAfterWrite, long tombstonesMaxSize) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.expireAfterWrite = expireAfterWrite;
+        this.tombstonesMaxSize = tombstonesMaxSize;
+    }
+
+    public static CompanyCacheSettings disabled() {
+        return new CompanyCacheSettings(false, 0, Duration.ZERO, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    public long getTombstonesMaxSize() {
+        return tombstonesMaxSize;
+    }
+}
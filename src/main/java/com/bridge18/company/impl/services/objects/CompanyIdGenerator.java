@@ -0,0 +1,28 @@
+package com.bridge18.company.impl.services.objects;
+
+import java.util.UUID;
+
+/**
+ * Ids of new companies, chosen by {@code company.service.id-generator}. Both schemes produce UUID strings, so ids of
+ * either scheme can live side by side.
+ */
+public interface CompanyIdGenerator {
+    /**
+     * Random (version 4) UUIDs, the ids of companies created before time-ordered ids.
+     */
+    CompanyIdGenerator RANDOM = () -> UUID.randomUUID().toString();
+
+    String nextId();
+
+    static CompanyIdGenerator forName(String name) {
+        switch (name) {
+            case "random":
+                return RANDOM;
+            case "time-ordered":
+                return new TimeOrderedIdGenerator();
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown id-generator " + name + ", expected random or time-ordered");
+        }
+    }
+}
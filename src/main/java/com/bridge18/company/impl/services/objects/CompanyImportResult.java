@@ -0,0 +1,68 @@
+package com.bridge18.company.impl.services.objects;
+
+import java.util.Optional;
+
+/**
+ * Outcome of one record of a bulk import: the id of the created company, or why the record was rejected.
+ * {@code index} is the zero-based position of the record in the input, since results are emitted in completion order.
+ * <p>
+ * A creation that got no reply in time is {@link Status#UNKNOWN}: the entity may still have created the company, under
+ * the id of the result, so the record must not simply be imported again.
+ */
+public final class CompanyImportResult {
+    public enum Status {
+        CREATED, FAILED, UNKNOWN
+    }
+
+    private final long index;
+    private final Status status;
+    private final Optional<String> id;
+    private final Optional<String> error;
+
+    private CompanyImportResult(long index, Status status, Optional<String> id, Optional<String> error) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.error = error;
+    }
+
+    public static CompanyImportResult created(long index, String id) {
+        return new CompanyImportResult(index, Status.CREATED, Optional.of(id), Optional.empty());
+    }
+
+    public static CompanyImportResult failed(long index, String error) {
+        return new CompanyImportResult(index, Status.FAILED, Optional.empty(), Optional.of(error));
+    }
+
+    public static CompanyImportResult unknown(long index, String id, String error) {
+        return new CompanyImportResult(index, Status.UNKNOWN, Optional.of(id), Optional.of(error));
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Id of the created company, or for an unknown outcome the id it has if it was created.
+     */
+    public Optional<String> getId() {
+        return id;
+    }
+
+    public Optional<String> getError() {
+        return error;
+    }
+
+    public boolean isCreated() {
+        return status == Status.CREATED;
+    }
+
+    @Override
+    public String toString() {
+        return "CompanyImportResult{index=" + index + ", status=" + status + ", id=" + id + ", error=" + error + "}";
+    }
+}
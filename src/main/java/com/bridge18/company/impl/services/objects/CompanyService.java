@@ -1,25 +1,68 @@
 package com.bridge18.company.impl.services.objects;
 
 import akka.Done;
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
 import com.bridge18.company.entities.CompanyType;
 import com.bridge18.company.impl.entities.CompanyState;
 import com.bridge18.company.impl.entities.Contact;
+import com.bridge18.company.impl.entities.CreateCompany;
 import com.bridge18.company.impl.entities.Location;
+import com.bridge18.company.impl.repository.ConsistencyToken;
 import org.pcollections.PVector;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
 public interface CompanyService {
+    /**
+     * Creates a company. The entity records its span under {@code traceId}, the trace of the request, when present;
+     * the same goes for the other writes.
+     */
     CompletionStage<CompanyState> createCompany(String name, Optional<String> taxId, Optional<String> mc,
                                                 Optional<CompanyType> companyType, Optional<PVector<Contact>> contacts,
-                                                Optional<PVector<Location>> locations);
+                                                Optional<PVector<Location>> locations, Optional<String> traceId);
+
+    /**
+     * Creates a company per record of {@code records}, with at most {@code company.service.import-parallelism}
+     * creations in flight. A record that cannot be converted or created yields a failed result, and one whose creation
+     * timed out an unknown result; neither stops the import. Results are emitted as creations complete.
+     */
+    <T> Source<CompanyImportResult, NotUsed> importCompanies(Source<T, ?> records,
+                                                             Function<? super T, CreateCompany> toCommand);
 
     CompletionStage<CompanyState> updateCompany(String id, String name, Optional<String> taxId, Optional<String> mc,
                                                 Optional<CompanyType> companyType, Optional<PVector<Contact>> contacts,
-                                                Optional<PVector<Location>> locations);
+                                                Optional<PVector<Location>> locations, Optional<String> traceId);
+
+    CompletionStage<CompanyState> patchCompany(String id, Optional<String> name, Optional<String> taxId,
+                                               Optional<String> mc, Optional<CompanyType> companyType,
+                                               Optional<PVector<Contact>> contacts,
+                                               Optional<PVector<String>> removedContactIds,
+                                               Optional<PVector<Location>> locations, Optional<String> traceId);
 
     CompletionStage<CompanyState> getCompany(String id);
 
-    CompletionStage<Done> deleteCompany(String id);
+    /**
+     * {@link #getCompany(String)} when {@code consistency} is strong. Otherwise served from the node cache or the read
+     * side, without loading the entity; only a company the read side does not have yet is asked of its entity.
+     */
+    CompletionStage<CompanyState> getCompany(String id, ReadConsistency consistency);
+
+    /**
+     * Fetches the companies with the given ids in one call, from the entities or from the read side depending on
+     * {@code consistency}. Duplicate ids are fetched once; ids without a company are reported as missing.
+     */
+    CompletionStage<CompanyBatch> getCompanies(Collection<String> ids, ReadConsistency consistency);
+
+    /**
+     * Fetches the companies with the given ids from the read side once it has applied the write {@code after} was
+     * returned for, so that the result reflects that write. Fails if the read side does not get there within
+     * {@code company.read-side.revision-wait.timeout}.
+     */
+    CompletionStage<CompanyBatch> getCompanies(Collection<String> ids, ConsistencyToken after);
+
+    CompletionStage<Done> deleteCompany(String id, Optional<String> traceId);
 }
@@ -1,26 +1,53 @@
 package com.bridge18.company.impl.services.objects;
 
 import akka.Done;
+import akka.NotUsed;
+import akka.pattern.AskTimeoutException;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
 import com.bridge18.company.entities.CompanyType;
 import com.bridge18.company.impl.entities.*;
+import com.bridge18.company.impl.repository.CompanyMongoRepository;
+import com.bridge18.company.impl.repository.ConsistencyToken;
+import com.bridge18.exception.LagomException;
 import com.lightbend.lagom.javadsl.persistence.PersistentEntityRef;
 import com.lightbend.lagom.javadsl.persistence.PersistentEntityRegistry;
 import org.pcollections.PVector;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 @Singleton
 public class CompanyServiceImpl implements CompanyService {
 
     private final PersistentEntityRegistry persistentEntityRegistry;
+    private final CompanyStateCache companyStateCache;
+    private final CompanyServiceSettings settings;
+    private final CompanyMongoRepository companyMongoRepository;
+    private final Materializer materializer;
 
     @Inject
-    public CompanyServiceImpl(PersistentEntityRegistry persistentEntityRegistry) {
+    public CompanyServiceImpl(PersistentEntityRegistry persistentEntityRegistry, CompanyStateCache companyStateCache,
+                              CompanyServiceSettings settings, CompanyMongoRepository companyMongoRepository,
+                              Materializer materializer) {
         this.persistentEntityRegistry = persistentEntityRegistry;
+        this.companyStateCache = companyStateCache;
+        this.settings = settings;
+        this.companyMongoRepository = companyMongoRepository;
+        this.materializer = materializer;
         persistentEntityRegistry.register(CompanyEntity.class);
     }
 
@@ -30,10 +57,11 @@ public class CompanyServiceImpl implements CompanyService {
                                                        Optional<String> mc,
                                                        Optional<CompanyType> companyType,
                                                        Optional<PVector<Contact>> contacts,
-                                                       Optional<PVector<Location>> locations) {
+                                                       Optional<PVector<Location>> locations,
+                                                       Optional<String> traceId) {
 
         PersistentEntityRef<CompanyCommand> ref = persistentEntityRegistry
-                .refFor(CompanyEntity.class, UUID.randomUUID().toString());
+                .refFor(CompanyEntity.class, settings.getIdGenerator().nextId());
 
         CreateCompany createCompany = CreateCompany.builder()
                 .name(name)
@@ -42,9 +70,58 @@ public class CompanyServiceImpl implements CompanyService {
                 .companyType(companyType)
                 .contacts(contacts)
                 .locations(locations)
+                .traceId(traceId)
                 .build();
 
-        return ref.ask(createCompany);
+        return ref.ask(createCompany).thenApply(this::cached);
+    }
+
+    @Override
+    public <T> Source<CompanyImportResult, NotUsed> importCompanies(Source<T, ?> records,
+                                                                    Function<? super T, CreateCompany> toCommand) {
+        return records
+                .zipWithIndex()
+                .mapAsyncUnordered(settings.getImportParallelism(), record ->
+                        importCompany(record.second(), record.first(), toCommand))
+                .mapMaterializedValue(mat -> NotUsed.getInstance());
+    }
+
+    private <T> CompletionStage<CompanyImportResult> importCompany(long index, T record,
+                                                                   Function<? super T, CreateCompany> toCommand) {
+        CreateCompany createCompany;
+        try {
+            createCompany = toCommand.apply(record);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(CompanyImportResult.failed(index, errorMessage(e)));
+        }
+
+        String id = settings.getIdGenerator().nextId();
+        PersistentEntityRef<CompanyCommand> ref = persistentEntityRegistry.refFor(CompanyEntity.class, id);
+
+        return ref.ask(createCompany)
+                .handle((companyState, error) -> {
+                    if (error == null) {
+                        return CompanyImportResult.created(index, companyState.getId());
+                    }
+                    // without a reply the command may still have been persisted
+                    return isTimeout(error) ?
+                            CompanyImportResult.unknown(index, id, errorMessage(error)) :
+                            CompanyImportResult.failed(index, errorMessage(error));
+                });
+    }
+
+    private static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        Throwable cause = cause(error);
+        return cause instanceof AskTimeoutException || cause instanceof TimeoutException;
+    }
+
+    private static String errorMessage(Throwable error) {
+        Throwable cause = cause(error);
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
     }
 
     @Override
@@ -53,7 +130,11 @@ public class CompanyServiceImpl implements CompanyService {
                                                        Optional<String> mc,
                                                        Optional<CompanyType> companyType,
                                                        Optional<PVector<Contact>> contacts,
-                                                       Optional<PVector<Location>> locations) {
+                                                       Optional<PVector<Location>> locations,
+                                                       Optional<String> traceId) {
+        if (companyStateCache.isDeleted(id)) {
+            return deleted(id);
+        }
         PersistentEntityRef<CompanyCommand> ref = persistentEntityRegistry.refFor(CompanyEntity.class, id);
 
         UpdateCompany updateCompany = UpdateCompany.builder()
@@ -63,25 +144,162 @@ public class CompanyServiceImpl implements CompanyService {
                 .companyType(companyType)
                 .contacts(contacts)
                 .locations(locations)
+                .traceId(traceId)
+                .build();
+
+        return ref.ask(updateCompany).thenApply(this::cached);
+    }
+
+    @Override
+    public CompletionStage<CompanyState> patchCompany(String id,
+                                                      Optional<String> name,
+                                                      Optional<String> taxId,
+                                                      Optional<String> mc,
+                                                      Optional<CompanyType> companyType,
+                                                      Optional<PVector<Contact>> contacts,
+                                                      Optional<PVector<String>> removedContactIds,
+                                                      Optional<PVector<Location>> locations,
+                                                      Optional<String> traceId) {
+        if (companyStateCache.isDeleted(id)) {
+            return deleted(id);
+        }
+        PersistentEntityRef<CompanyCommand> ref = persistentEntityRegistry.refFor(CompanyEntity.class, id);
+
+        PatchCompany patchCompany = PatchCompany.builder()
+                .name(name)
+                .mc(mc)
+                .taxId(taxId)
+                .companyType(companyType)
+                .contacts(contacts)
+                .removedContactIds(removedContactIds)
+                .locations(locations)
+                .traceId(traceId)
                 .build();
 
-        return ref.ask(updateCompany);
+        return ref.ask(patchCompany).thenApply(this::cached);
     }
 
     @Override
     public CompletionStage<CompanyState> getCompany(String id) {
+        if (companyStateCache.isDeleted(id)) {
+            return deleted(id);
+        }
+        Optional<CompanyState> cached = companyStateCache.get(id);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
         PersistentEntityRef<CompanyCommand> ref = persistentEntityRegistry.refFor(CompanyEntity.class, id);
         GetCompanyInformation getCompanyInformation = GetCompanyInformation.builder().build();
 
-        return ref.ask(getCompanyInformation);
+        return ref.ask(getCompanyInformation).thenApply(this::cached);
+    }
+
+    @Override
+    public CompletionStage<CompanyState> getCompany(String id, ReadConsistency consistency) {
+        if (consistency == ReadConsistency.STRONG) {
+            return getCompany(id);
+        }
+        if (companyStateCache.isDeleted(id)) {
+            return deleted(id);
+        }
+        Optional<CompanyState> cached = companyStateCache.get(id);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        return companyMongoRepository.getCompany(id).thenCompose(projected -> projected
+                .<CompletionStage<CompanyState>>map(CompletableFuture::completedFuture)
+                .orElseGet(() -> getCompany(id)));
+    }
+
+    @Override
+    public CompletionStage<CompanyBatch> getCompanies(Collection<String> ids, ReadConsistency consistency) {
+        Set<String> distinctIds = new LinkedHashSet<>(ids);
+        if (distinctIds.size() > settings.getMultiGetMaxIds()) {
+            return failed(tooManyIds());
+        }
+        if (distinctIds.isEmpty()) {
+            return CompletableFuture.completedFuture(CompanyBatch.of(distinctIds, new HashMap<>()));
+        }
+
+        CompletionStage<List<CompanyState>> companies = consistency == ReadConsistency.EVENTUAL ?
+                companyMongoRepository.getCompaniesByIds(distinctIds) :
+                Source.from(distinctIds)
+                        .mapAsyncUnordered(settings.getMultiGetParallelism(), this::findCompany)
+                        .filter(Optional::isPresent)
+                        .map(Optional::get)
+                        .runWith(Sink.seq(), materializer);
+
+        return companies.thenApply(found -> batch(distinctIds, found));
+    }
+
+    @Override
+    public CompletionStage<CompanyBatch> getCompanies(Collection<String> ids, ConsistencyToken after) {
+        Set<String> distinctIds = new LinkedHashSet<>(ids);
+        if (distinctIds.size() > settings.getMultiGetMaxIds()) {
+            return failed(tooManyIds());
+        }
+
+        return companyMongoRepository.getCompaniesByIds(distinctIds, Optional.of(after))
+                .thenApply(found -> batch(distinctIds, found));
+    }
+
+    private LagomException tooManyIds() {
+        return new LagomException("TOO_MANY_IDS", 400,
+                "At most " + settings.getMultiGetMaxIds() + " companies can be fetched at once", "ids");
+    }
+
+    private static CompanyBatch batch(Set<String> ids, List<CompanyState> found) {
+        Map<String, CompanyState> companiesById = new HashMap<>(found.size() * 2);
+        found.forEach(company -> companiesById.put(company.getId(), company));
+        return CompanyBatch.of(ids, companiesById);
+    }
+
+    /**
+     * {@link #getCompany(String)}, with a company that was never created or has been deleted as an empty result
+     * rather than a failure. Every other failure fails the result.
+     */
+    private CompletionStage<Optional<CompanyState>> findCompany(String id) {
+        return getCompany(id).handle((companyState, error) -> {
+            if (error == null) {
+                return Optional.of(companyState);
+            }
+            Throwable cause = cause(error);
+            if (CompanyErrors.isMissing(cause)) {
+                return Optional.empty();
+            }
+            throw new CompletionException(cause);
+        });
     }
 
     @Override
-    public CompletionStage<Done> deleteCompany(String id) {
+    public CompletionStage<Done> deleteCompany(String id, Optional<String> traceId) {
+        if (companyStateCache.isDeleted(id)) {
+            return CompletableFuture.completedFuture(Done.getInstance());
+        }
         PersistentEntityRef<CompanyCommand> ref = persistentEntityRegistry.refFor(CompanyEntity.class, id);
-        DeleteCompany deleteCompany = DeleteCompany.builder().build();
+        DeleteCompany deleteCompany = DeleteCompany.builder().traceId(traceId).build();
+
+        return ref.ask(deleteCompany).thenApply(done -> {
+            companyStateCache.markDeleted(id);
+            return done;
+        });
+    }
+
+    private static <T> CompletionStage<T> deleted(String id) {
+        return failed(CompanyErrors.deleted(id));
+    }
+
+    private static <T> CompletionStage<T> failed(Throwable error) {
+        CompletableFuture<T> failed = new CompletableFuture<>();
+        failed.completeExceptionally(error);
+        return failed;
+    }
 
-        return ref.ask(deleteCompany);
+    private CompanyState cached(CompanyState companyState) {
+        companyStateCache.put(companyState);
+        return companyState;
     }
 }
 
@@ -0,0 +1,48 @@
+package com.bridge18.company.impl.services.objects;
+
+import com.typesafe.config.Config;
+
+public class CompanyServiceSettings {
+    private final int importParallelism;
+    private final int multiGetParallelism;
+    private final int multiGetMaxIds;
+    private final CompanyIdGenerator idGenerator;
+
+    public CompanyServiceSettings(Config config) {
+        this(config.getInt("import-parallelism"),
+                config.getInt("multi-get.parallelism"),
+                config.getInt("multi-get.max-ids"),
+                CompanyIdGenerator.forName(config.getString("id-generator")));
+    }
+
+    public CompanyServiceSettings(int importParallelism, int multiGetParallelism, int multiGetMaxIds) {
+        this(importParallelism, multiGetParallelism, multiGetMaxIds, new TimeOrderedIdGenerator());
+    }
+
+    public CompanyServiceSettings(int importParallelism, int multiGetParallelism, int multiGetMaxIds,
+                                  CompanyIdGenerator idGenerator) {
+        if (importParallelism < 1 || multiGetParallelism < 1 || multiGetMaxIds < 1) {
+            throw new IllegalArgumentException("Parallelism and max-ids settings must be positive");
+        }
+        this.importParallelism = importParallelism;
+        this.multiGetParallelism = multiGetParallelism;
+        this.multiGetMaxIds = multiGetMaxIds;
+        this.idGenerator = idGenerator;
+    }
+
+    public int getImportParallelism() {
+        return importParallelism;
+    }
+
+    public int getMultiGetParallelism() {
+        return multiGetParallelism;
+    }
+
+    public int getMultiGetMaxIds() {
+        return multiGetMaxIds;
+    }
+
+    public CompanyIdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+}
@@ -0,0 +1,142 @@
+package com.bridge18.company.impl.services.objects;
+
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-local cache of company states served by {@link CompanyService#getCompany(String)} without asking the entity.
+ * Entries are refreshed by writes made through this node, dropped by {@link CompanyCacheInvalidator} when any node
+ * writes the company, and expire after {@code expire-after-write} as a bound on staleness.
+ * <p>
+ * A reply to an ask can arrive after the event of a later write has been seen, so each entry keeps the revision it
+ * is known to be at, and a state is only cached if it is at that revision or beyond. An invalidation leaves the
+ * revision of its event behind instead of removing the entry.
+ * <p>
+ * It also remembers the ids of deleted companies, so that commands to them fail without a round trip to the entity.
+ * Those tombstones are kept whenever {@code tombstones.max-size} is positive, whether or not states are cached.
+ */
+@Singleton
+public class CompanyStateCache {
+    private static final Boolean DELETED = Boolean.TRUE;
+
+    private final Cache<String, Entry> cache;
+    private final Cache<String, Boolean> tombstones;
+
+    @Inject
+    public CompanyStateCache(CompanyCacheSettings settings, MetricsRegistry metricsRegistry) {
+        if (settings.isEnabled()) {
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumSize(settings.getMaxSize())
+                    .expireAfterWrite(settings.getExpireAfterWrite().toMillis(), TimeUnit.MILLISECONDS)
+                    .recordStats()
+                    .build();
+
+            metricsRegistry.gauge("cache.company-state.size", cache::size);
+            metricsRegistry.gauge("cache.company-state.hits", () -> cache.stats().hitCount());
+            metricsRegistry.gauge("cache.company-state.misses", () -> cache.stats().missCount());
+            metricsRegistry.gauge("cache.company-state.evictions", () -> cache.stats().evictionCount());
+        } else {
+            this.cache = null;
+        }
+
+        if (settings.getTombstonesMaxSize() > 0) {
+            this.tombstones = CacheBuilder.newBuilder()
+                    .maximumSize(settings.getTombstonesMaxSize())
+                    .recordStats()
+                    .build();
+
+            metricsRegistry.gauge("cache.company-tombstones.size", tombstones::size);
+            metricsRegistry.gauge("cache.company-tombstones.hits", () -> tombstones.stats().hitCount());
+        } else {
+            this.tombstones = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public boolean keepsTombstones() {
+        return tombstones != null;
+    }
+
+    public Optional<CompanyState> get(String id) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        Entry entry = cache.getIfPresent(id);
+        return entry != null ? Optional.ofNullable(entry.state) : Optional.empty();
+    }
+
+    /**
+     * Caches the state unless the company is known to be at a later revision.
+     */
+    public void put(CompanyState companyState) {
+        if (isEnabled()) {
+            cache.asMap().compute(companyState.getId(), (id, entry) ->
+                    entry == null || companyState.getRevision() >= entry.revision ? new Entry(companyState) : entry);
+        }
+    }
+
+    /**
+     * Drops the cached state of a company an event at {@code revision} has been written for, unless the cached state
+     * already is at that revision or beyond.
+     */
+    public void invalidate(String id, long revision) {
+        if (isEnabled()) {
+            cache.asMap().compute(id, (key, entry) -> {
+                if (entry == null) {
+                    return new Entry(revision);
+                }
+                if (entry.state != null && entry.revision >= revision) {
+                    return entry;
+                }
+                return new Entry(Math.max(entry.revision, revision));
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        if (isEnabled()) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Records that the company has been deleted, and drops its cached state.
+     */
+    public void markDeleted(String id) {
+        if (isEnabled()) {
+            cache.put(id, new Entry(Long.MAX_VALUE));
+        }
+        if (keepsTombstones()) {
+            tombstones.put(id, DELETED);
+        }
+    }
+
+    public boolean isDeleted(String id) {
+        return keepsTombstones() && tombstones.getIfPresent(id) != null;
+    }
+
+    private static final class Entry {
+        private final long revision;
+        private final CompanyState state;
+
+        private Entry(CompanyState state) {
+            this.revision = state.getRevision();
+            this.state = state;
+        }
+
+        private Entry(long revision) {
+            this.revision = revision;
+            this.state = null;
+        }
+    }
+}
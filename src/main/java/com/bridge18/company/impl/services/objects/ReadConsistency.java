@@ -0,0 +1,15 @@
+package com.bridge18.company.impl.services.objects;
+
+/**
+ * Where a read is served from.
+ */
+public enum ReadConsistency {
+    /**
+     * The persistent entities: reflects every acknowledged write, at the cost of one ask per company.
+     */
+    STRONG,
+    /**
+     * The Mongo read side: one query, but it trails the journal by the projection lag.
+     */
+    EVENTUAL
+}
@@ -0,0 +1,58 @@
+package com.bridge18.company.impl.services.objects;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Version 7 UUIDs: a 48 bit millisecond timestamp, a 12 bit counter and 62 random bits. Ids compare, as UUIDs and
+ * as their lower case strings alike, in the order they were generated on a node, so new companies append to the
+ * right edge of the read side's id index and paging by id lists companies in creation order.
+ * <p>
+ * The timestamp and counter form one 60 bit tick that only moves forward, updated with a compare-and-set rather
+ * than a lock. The counter restarts every millisecond; once it overflows the tick runs ahead of the clock until the
+ * clock catches up, and likewise when the clock steps back. Ids of different nodes within the same millisecond are
+ * kept apart by the random bits, which come from {@link ThreadLocalRandom} rather than the shared
+ * {@link java.security.SecureRandom} of {@link UUID#randomUUID()}: the ids are unique, not unguessable.
+ */
+public final class TimeOrderedIdGenerator implements CompanyIdGenerator {
+    private static final int COUNTER_BITS = 12;
+    private static final long VERSION = 0x7000L;
+    private static final long VARIANT = 0x8000000000000000L;
+    private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    private final AtomicLong lastTick = new AtomicLong();
+    private final LongSupplier clock;
+
+    public TimeOrderedIdGenerator() {
+        this(System::currentTimeMillis);
+    }
+
+    TimeOrderedIdGenerator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        return nextUuid().toString();
+    }
+
+    public UUID nextUuid() {
+        long tick = nextTick();
+        long mostSigBits = (tick >>> COUNTER_BITS) << 16 | VERSION | tick & ((1L << COUNTER_BITS) - 1);
+        long leastSigBits = VARIANT | ThreadLocalRandom.current().nextLong() & RANDOM_MASK;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private long nextTick() {
+        long now = clock.getAsLong() << COUNTER_BITS;
+        while (true) {
+            long last = lastTick.get();
+            long next = Math.max(now, last + 1);
+            if (lastTick.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
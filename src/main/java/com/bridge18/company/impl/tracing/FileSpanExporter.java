@@ -0,0 +1,123 @@
+package com.bridge18.company.impl.tracing;
+
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends spans to a file, one JSON object per line, from a single background thread. {@link #export} only queues;
+ * spans that find the queue full are dropped and counted under {@code tracing.spans-dropped}, as are those written
+ * but not flushed when writing fails. The file is then reopened after a delay, so that exporting resumes once the
+ * disk has room again or the file can be created.
+ */
+class FileSpanExporter implements SpanExporter {
+    private static final Logger log = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    private final Path file;
+    private final long retryDelayMillis;
+    private final BlockingQueue<Span> queue;
+    private final LongAdder dropped;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+    private volatile boolean running = true;
+    private int unflushed;
+
+    FileSpanExporter(Path file, int queueSize, MetricsRegistry metricsRegistry) {
+        this(file, queueSize, metricsRegistry, RETRY_DELAY_MILLIS);
+    }
+
+    FileSpanExporter(Path file, int queueSize, MetricsRegistry metricsRegistry, long retryDelayMillis) {
+        this.file = file;
+        this.retryDelayMillis = retryDelayMillis;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.dropped = metricsRegistry.counter("tracing.spans-dropped");
+        metricsRegistry.gauge("tracing.spans-queued", queue::size);
+
+        Thread writer = new Thread(this::write, "company-span-exporter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void export(Span span) {
+        if (!queue.offer(span)) {
+            dropped.increment();
+        }
+    }
+
+    private void write() {
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    append();
+                } catch (IOException e) {
+                    dropped.add(unflushed);
+                    unflushed = 0;
+                    if (!running) {
+                        log.error("Could not write spans to {}, the spans left are dropped", file, e);
+                        break;
+                    }
+                    log.warn("Could not write spans to {}, reopening it in {} ms", file, retryDelayMillis, e);
+                    Thread.sleep(retryDelayMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            dropped.add(queue.size());
+            queue.clear();
+            stopped.complete(null);
+        }
+    }
+
+    /**
+     * Appends the queued spans until the exporter is closed and the queue is drained, flushing whenever it is empty.
+     */
+    private void append() throws IOException, InterruptedException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (running || !queue.isEmpty()) {
+                Span span = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (span == null) {
+                    flush(out);
+                    continue;
+                }
+                unflushed++;
+                out.write(mapper.writeValueAsString(span));
+                out.newLine();
+            }
+            flush(out);
+        }
+    }
+
+    private void flush(BufferedWriter out) throws IOException {
+        out.flush();
+        unflushed = 0;
+    }
+
+    @Override
+    public CompletionStage<Void> close() {
+        running = false;
+        return stopped;
+    }
+}
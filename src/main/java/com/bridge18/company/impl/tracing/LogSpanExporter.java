@@ -0,0 +1,28 @@
+package com.bridge18.company.impl.tracing;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs every span as a JSON line to the {@value #LOGGER} logger, for logback to route to a file or to an appender
+ * that ships to a collector.
+ */
+class LogSpanExporter implements SpanExporter {
+    static final String LOGGER = "company.spans";
+    private static final Logger spans = LoggerFactory.getLogger(LOGGER);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Override
+    public void export(Span span) {
+        if (spans.isInfoEnabled()) {
+            try {
+                spans.info(mapper.writeValueAsString(span));
+            } catch (JsonProcessingException e) {
+                spans.warn("Could not write span {} of trace {}", span.getName(), span.getTraceId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.bridge18.company.impl.tracing;
+
+import akka.stream.Materializer;
+import com.bridge18.company.v1.api.LagomCompanyService;
+import play.mvc.Filter;
+import play.mvc.Http;
+import play.mvc.Result;
+
+import javax.inject.Inject;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Times whole HTTP exchanges, from the request header until the result is ready, as {@code http.<route>.total}.
+ * Lagom has serialized a strict response by then, so the difference to {@code endpoints.<call>.total} is the time
+ * spent routing, decoding the request and encoding the response. A route is the method and the path template of
+ * the service call the request is for, or {@value RouteTemplates#OTHER} for requests that match no call, so that
+ * unknown paths cannot add metrics without bound.
+ */
+public class RequestTimingFilter extends Filter {
+    private final RequestTracing tracing;
+    private final RouteTemplates routes;
+
+    @Inject
+    public RequestTimingFilter(Materializer materializer, RequestTracing tracing, LagomCompanyService service) {
+        this(materializer, tracing, RouteTemplates.of(service.descriptor()));
+    }
+
+    RequestTimingFilter(Materializer materializer, RequestTracing tracing, RouteTemplates routes) {
+        super(materializer);
+        this.tracing = tracing;
+        this.routes = routes;
+    }
+
+    @Override
+    public CompletionStage<Result> apply(Function<Http.RequestHeader, CompletionStage<Result>> next,
+                                         Http.RequestHeader requestHeader) {
+        Trace trace = tracing.start("http", routes.key(requestHeader.method(), requestHeader.path()),
+                Optional.ofNullable(requestHeader.getHeader(RequestTracing.TRACE_ID_HEADER)));
+        return trace.finish(next.apply(requestHeader))
+                .thenApply(result -> result.withHeader(RequestTracing.TRACE_ID_HEADER, trace.getTraceId()));
+    }
+}
@@ -0,0 +1,93 @@
+package com.bridge18.company.impl.tracing;
+
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the stages of requests into latency histograms, and exports them as spans when {@code company.tracing} has an
+ * exporter. Histograms are named {@code <scope>.<name>.<stage>}: {@code http} for whole HTTP exchanges,
+ * {@code endpoints} for the service calls of {@link com.bridge18.company.v1.api.LagomCompanyService} and
+ * {@code entity} for the commands of the company entity.
+ */
+@Singleton
+public class RequestTracing {
+    /**
+     * Request header carrying the trace id of a request, echoed in the response. Without one the HTTP filter and the
+     * endpoint each start a trace of their own; the endpoint's is carried on to the entity in its commands.
+     */
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+    private final MetricsRegistry metricsRegistry;
+    private final SpanExporter exporter;
+
+    @Inject
+    public RequestTracing(MetricsRegistry metricsRegistry, TracingSettings settings, ApplicationLifecycle lifecycle) {
+        this(metricsRegistry, exporter(settings, metricsRegistry));
+        lifecycle.addStopHook(exporter::close);
+    }
+
+    public RequestTracing(MetricsRegistry metricsRegistry, SpanExporter exporter) {
+        this.metricsRegistry = metricsRegistry;
+        this.exporter = exporter;
+    }
+
+    /**
+     * Records into a registry of its own and exports nothing, for code constructed outside of the injector.
+     */
+    public static RequestTracing disabled() {
+        return new RequestTracing(new MetricsRegistry(), SpanExporter.NONE);
+    }
+
+    private static SpanExporter exporter(TracingSettings settings, MetricsRegistry metricsRegistry) {
+        switch (settings.getExporter()) {
+            case FILE:
+                return new FileSpanExporter(settings.getFile(), settings.getQueueSize(), metricsRegistry);
+            case LOG:
+                return new LogSpanExporter();
+            default:
+                return SpanExporter.NONE;
+        }
+    }
+
+    /**
+     * Starts timing a request of {@code name} in {@code scope}, under the given trace id or a new one.
+     */
+    public Trace start(String scope, String name, Optional<String> traceId) {
+        return new Trace(this, scope + "." + name, traceId.orElseGet(RequestTracing::newTraceId));
+    }
+
+    public static String newTraceId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Records a stage that started at {@code startNanos}, as given by {@link System#nanoTime()}, and ends now.
+     */
+    public void record(String scope, String name, String stage, long startNanos, String traceId,
+                       Map<String, String> attributes) {
+        record(scope + "." + name, stage, startNanos, traceId, attributes);
+    }
+
+    void record(String prefix, String stage, long startNanos, String traceId, Map<String, String> attributes) {
+        long durationNanos = System.nanoTime() - startNanos;
+        metricsRegistry.histogram(prefix + "." + stage).record(durationNanos, TimeUnit.NANOSECONDS);
+        if (exporter.isEnabled()) {
+            long durationMicros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+            long startEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()) - durationMicros;
+            exporter.export(new Span(traceId, prefix + "." + stage, startEpochMicros, durationMicros,
+                    attributes));
+        }
+    }
+
+    void record(String prefix, String stage, long startNanos, String traceId) {
+        record(prefix, stage, startNanos, traceId, Collections.emptyMap());
+    }
+}
@@ -0,0 +1,112 @@
+package com.bridge18.company.impl.tracing;
+
+import com.lightbend.lagom.javadsl.api.Descriptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Names requests after the path templates of the calls of a service descriptor, such as
+ * {@code GET /v1/api/companies/:id}, so that metrics get one key per call whatever the ids in the path. Requests no
+ * call matches are all named {@value #OTHER}.
+ */
+public final class RouteTemplates {
+    public static final String OTHER = "other";
+
+    /**
+     * The methods of a call matched on its path only, beyond which the method is not part of the key.
+     */
+    private static final Set<String> METHODS = new HashSet<>(Arrays.asList(
+            "GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
+    private static final String ANY_METHOD = "*";
+    private static final Pattern PARAMETER = Pattern.compile(":\\w+|\\*\\w+|\\$\\w+<([^>]+)>");
+
+    private final List<Route> routes = new ArrayList<>();
+
+    /**
+     * Routes given as {@code <method> <path pattern>}, with {@code *} for a call of any method.
+     */
+    RouteTemplates(Collection<String> routes) {
+        for (String route : routes) {
+            int space = route.indexOf(' ');
+            this.routes.add(new Route(route.substring(0, space), route.substring(space + 1)));
+        }
+    }
+
+    public static RouteTemplates of(Descriptor descriptor) {
+        List<String> routes = new ArrayList<>();
+        for (Descriptor.Call<?, ?> call : descriptor.calls()) {
+            Descriptor.CallId callId = call.callId();
+            if (callId instanceof Descriptor.RestCallId) {
+                Descriptor.RestCallId restCallId = (Descriptor.RestCallId) callId;
+                routes.add(restCallId.method().name() + " " + restCallId.pathPattern());
+            } else if (callId instanceof Descriptor.PathCallId) {
+                routes.add(ANY_METHOD + " " + ((Descriptor.PathCallId) callId).pathPattern());
+            } else if (callId instanceof Descriptor.NamedCallId) {
+                routes.add(ANY_METHOD + " /" + ((Descriptor.NamedCallId) callId).name());
+            }
+        }
+        return new RouteTemplates(routes);
+    }
+
+    /**
+     * The method and the template of the first call matching the request, else {@value #OTHER}.
+     */
+    public String key(String method, String path) {
+        for (Route route : routes) {
+            if (route.matches(method, path)) {
+                return method + " " + route.template;
+            }
+        }
+        return OTHER;
+    }
+
+    private static final class Route {
+        private final String method;
+        private final String template;
+        private final Pattern path;
+
+        Route(String method, String pathPattern) {
+            int query = pathPattern.indexOf('?');
+            this.method = method;
+            this.template = query < 0 ? pathPattern : pathPattern.substring(0, query);
+            this.path = Pattern.compile(regex(template));
+        }
+
+        boolean matches(String method, String path) {
+            return (this.method.equals(ANY_METHOD) ? METHODS.contains(method) : this.method.equals(method))
+                    && this.path.matcher(path).matches();
+        }
+
+        /**
+         * {@code :name} stands for one segment, {@code *name} for the rest of the path and {@code $name<regex>} for
+         * what the regex matches; everything else is literal.
+         */
+        private static String regex(String template) {
+            StringBuilder regex = new StringBuilder();
+            Matcher parameter = PARAMETER.matcher(template);
+            int literal = 0;
+            while (parameter.find()) {
+                regex.append(Pattern.quote(template.substring(literal, parameter.start())));
+                switch (template.charAt(parameter.start())) {
+                    case ':':
+                        regex.append("[^/]+");
+                        break;
+                    case '*':
+                        regex.append(".+");
+                        break;
+                    default:
+                        regex.append("(?:").append(parameter.group(1)).append(')');
+                }
+                literal = parameter.end();
+            }
+            return regex.append(Pattern.quote(template.substring(literal))).toString();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.bridge18.company.impl.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed stage of a request, as exported by a {@link SpanExporter}. Spans of one request share its trace id.
+ */
+public final class Span {
+    private final String traceId;
+    private final String name;
+    private final long startEpochMicros;
+    private final long durationMicros;
+    private final Map<String, String> attributes;
+
+    Span(String traceId, String name, long startEpochMicros, long durationMicros, Map<String, String> attributes) {
+        this.traceId = traceId;
+        this.name = name;
+        this.startEpochMicros = startEpochMicros;
+        this.durationMicros = durationMicros;
+        this.attributes = Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getStartEpochMicros() {
+        return startEpochMicros;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+}
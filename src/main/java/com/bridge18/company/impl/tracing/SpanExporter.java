@@ -0,0 +1,25 @@
+package com.bridge18.company.impl.tracing;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Where finished spans go. {@link #export} is called on the request path and must not block.
+ */
+public interface SpanExporter {
+    SpanExporter NONE = span -> {
+    };
+
+    void export(Span span);
+
+    default boolean isEnabled() {
+        return this != NONE;
+    }
+
+    /**
+     * Flushes and releases what the exporter holds; called when the application stops.
+     */
+    default CompletionStage<Void> close() {
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,56 @@
+package com.bridge18.company.impl.tracing;
+
+import java.util.Collections;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * The timing of one request, started by {@link RequestTracing#start}. Each stage is recorded when it completes;
+ * {@link #finish} records the whole request as the {@code total} stage.
+ */
+public final class Trace {
+    private final RequestTracing tracing;
+    private final String prefix;
+    private final String traceId;
+    private final long startNanos = System.nanoTime();
+
+    Trace(RequestTracing tracing, String prefix, String traceId) {
+        this.tracing = tracing;
+        this.prefix = prefix;
+        this.traceId = traceId;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public <T> T stage(String stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            tracing.record(prefix, stage, start, traceId);
+        }
+    }
+
+    /**
+     * Times {@code work} until the stage it returns completes, successfully or not.
+     */
+    public <T> CompletionStage<T> stageAsync(String stage, Supplier<? extends CompletionStage<T>> work) {
+        long start = System.nanoTime();
+        return work.get().whenComplete((result, failure) -> tracing.record(prefix, stage, start, traceId));
+    }
+
+    public <T> CompletionStage<T> finish(CompletionStage<T> result) {
+        return result.whenComplete((value, failure) -> tracing.record(prefix, "total", startNanos, traceId,
+                failure == null ? Collections.emptyMap() :
+                        Collections.singletonMap("error", errorName(failure))));
+    }
+
+    private static String errorName(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ?
+                failure.getCause() : failure;
+        return cause.getClass().getSimpleName();
+    }
+}
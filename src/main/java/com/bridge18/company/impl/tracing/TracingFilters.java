@@ -0,0 +1,23 @@
+package com.bridge18.company.impl.tracing;
+
+import play.http.HttpFilters;
+import play.mvc.EssentialFilter;
+
+import javax.inject.Inject;
+
+/**
+ * The HTTP filters of the service, enabled by {@code play.http.filters}.
+ */
+public class TracingFilters implements HttpFilters {
+    private final EssentialFilter[] filters;
+
+    @Inject
+    public TracingFilters(RequestTimingFilter requestTimingFilter) {
+        this.filters = new EssentialFilter[]{requestTimingFilter};
+    }
+
+    @Override
+    public EssentialFilter[] filters() {
+        return filters;
+    }
+}
@@ -0,0 +1,41 @@
+package com.bridge18.company.impl.tracing;
+
+import com.typesafe.config.Config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class TracingSettings {
+    public enum Exporter {NONE, FILE, LOG}
+
+    private final Exporter exporter;
+    private final Path file;
+    private final int queueSize;
+
+    public TracingSettings(Config config) {
+        this(Exporter.valueOf(config.getString("exporter").toUpperCase()),
+                Paths.get(config.getString("file.path")),
+                config.getInt("file.queue-size"));
+    }
+
+    public TracingSettings(Exporter exporter, Path file, int queueSize) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("file.queue-size must be positive");
+        }
+        this.exporter = exporter;
+        this.file = file;
+        this.queueSize = queueSize;
+    }
+
+    public Exporter getExporter() {
+        return exporter;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+}
@@ -0,0 +1,159 @@
+package com.bridge18.company.impl;
+
+import com.bridge18.company.impl.entities.CompactVector;
+import org.junit.Test;
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class CompactVectorTest {
+    private final CompactVector<String> abc = CompactVector.from(Arrays.asList("a", "b", "c"));
+
+    @Test
+    public void testPlusAtIndex() {
+        assertEquals(Arrays.asList("x", "a", "b", "c"), abc.plus(0, "x"));
+        assertEquals(Arrays.asList("a", "x", "b", "c"), abc.plus(1, "x"));
+        assertEquals(Arrays.asList("a", "b", "c", "x"), abc.plus(3, "x"));
+        assertEquals(Arrays.asList("a", "b", "c", "x"), abc.plus("x"));
+        assertEquals(Collections.singletonList("x"), CompactVector.<String>empty().plus(0, "x"));
+        assertEquals(Arrays.asList("a", "b", "c"), abc);
+    }
+
+    @Test
+    public void testWith() {
+        assertEquals(Arrays.asList("x", "b", "c"), abc.with(0, "x"));
+        assertEquals(Arrays.asList("a", "b", "x"), abc.with(2, "x"));
+        assertEquals(Arrays.asList("a", "b", "c"), abc);
+    }
+
+    @Test
+    public void testMinusIndexAndMinusElement() {
+        CompactVector<Integer> numbers = CompactVector.from(Arrays.asList(3, 1, 2, 1));
+
+        assertEquals(Arrays.asList(3, 2, 1), numbers.minus(1));
+        assertEquals(Arrays.asList(3, 2, 1), numbers.minus(Integer.valueOf(1)));
+        assertEquals(Arrays.asList(1, 2, 1), numbers.minus(Integer.valueOf(3)));
+        assertEquals(Arrays.asList(3, 1, 1), numbers.minus(2));
+        assertSame(numbers, numbers.minus(Integer.valueOf(4)));
+        assertEquals(Collections.emptyList(), CompactVector.from(Collections.singletonList("a")).minus(0));
+    }
+
+    @Test
+    public void testMinusAll() {
+        assertEquals(Collections.singletonList("b"), abc.minusAll(Arrays.asList("a", "c", "d")));
+        assertSame(abc, abc.minusAll(Collections.singletonList("d")));
+        assertEquals(Collections.emptyList(), abc.minusAll(abc));
+    }
+
+    @Test
+    public void testPlusAll() {
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), abc.plusAll(Arrays.asList("d", "e")));
+        assertEquals(Arrays.asList("d", "e", "a", "b", "c"), abc.plusAll(0, Arrays.asList("d", "e")));
+        assertEquals(Arrays.asList("a", "d", "e", "b", "c"), abc.plusAll(1, Arrays.asList("d", "e")));
+        assertSame(abc, abc.plusAll(1, Collections.<String>emptyList()));
+        assertEquals(abc, CompactVector.<String>empty().plusAll(abc));
+    }
+
+    @Test
+    public void testSubList() {
+        assertEquals(Arrays.asList("b", "c"), abc.subList(1, 3));
+        assertEquals(Collections.emptyList(), abc.subList(2, 2));
+        assertSame(abc, abc.subList(0, 3));
+        assertEquals(Collections.singletonList("x"), abc.subList(1, 2).with(0, "x"));
+    }
+
+    @Test
+    public void testIndexBounds() {
+        assertOutOfBounds(() -> abc.get(3));
+        assertOutOfBounds(() -> abc.get(-1));
+        assertOutOfBounds(() -> abc.with(3, "x"));
+        assertOutOfBounds(() -> abc.with(-1, "x"));
+        assertOutOfBounds(() -> abc.plus(4, "x"));
+        assertOutOfBounds(() -> abc.plus(-1, "x"));
+        assertOutOfBounds(() -> abc.plusAll(4, Collections.singletonList("x")));
+        assertOutOfBounds(() -> abc.minus(3));
+        assertOutOfBounds(() -> abc.minus(-1));
+        assertOutOfBounds(() -> CompactVector.<String>empty().minus(0));
+        assertOutOfBounds(() -> abc.subList(2, 1));
+        assertOutOfBounds(() -> abc.subList(-1, 2));
+        assertOutOfBounds(() -> abc.subList(0, 4));
+    }
+
+    @Test
+    public void testEqualToTreePVector() {
+        assertEquals(TreePVector.from(Arrays.asList("a", "b", "c")), abc);
+        assertEquals(abc, TreePVector.from(Arrays.asList("a", "b", "c")));
+        assertEquals(TreePVector.from(Arrays.asList("a", "b", "c")).hashCode(), abc.hashCode());
+        assertEquals(TreePVector.empty(), CompactVector.empty());
+    }
+
+    @Test
+    public void testSameResultsAsTreePVector() {
+        Random random = new Random(42);
+        PVector<Integer> expected = TreePVector.empty();
+        PVector<Integer> actual = CompactVector.empty();
+        for (int i = 0; i < 2000; i++) {
+            int size = expected.size();
+            Integer element = random.nextInt(10);
+            switch (random.nextInt(7)) {
+                case 0:
+                    expected = expected.plus(element);
+                    actual = actual.plus(element);
+                    break;
+                case 1:
+                    int at = random.nextInt(size + 1);
+                    expected = expected.plus(at, element);
+                    actual = actual.plus(at, element);
+                    break;
+                case 2:
+                    if (size > 0) {
+                        int index = random.nextInt(size);
+                        expected = expected.with(index, element);
+                        actual = actual.with(index, element);
+                    }
+                    break;
+                case 3:
+                    if (size > 0) {
+                        int index = random.nextInt(size);
+                        expected = expected.minus(index);
+                        actual = actual.minus(index);
+                    }
+                    break;
+                case 4:
+                    expected = expected.minus(element);
+                    actual = actual.minus(element);
+                    break;
+                case 5:
+                    int from = random.nextInt(size + 1);
+                    expected = expected.plusAll(from, Arrays.asList(element, element + 1));
+                    actual = actual.plusAll(from, Arrays.asList(element, element + 1));
+                    break;
+                default:
+                    expected = expected.plusAll(Arrays.asList(element, element));
+                    actual = actual.plusAll(Arrays.asList(element, element));
+            }
+            assertEquals(expected, actual);
+            if (!actual.isEmpty()) {
+                int from = random.nextInt(actual.size());
+                int to = from + random.nextInt(actual.size() - from + 1);
+                assertEquals(expected.subList(from, to), actual.subList(from, to));
+            }
+        }
+    }
+
+    private static void assertOutOfBounds(Runnable call) {
+        try {
+            call.run();
+            fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.bridge18.company.impl;
+
+import com.bridge18.company.entities.CompanyType;
+import com.bridge18.company.entities.ContactInfoType;
+import com.bridge18.company.impl.entities.Address;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.entities.Contact;
+import com.bridge18.company.impl.entities.ContactInfo;
+import com.bridge18.company.impl.entities.Location;
+import com.bridge18.company.impl.services.lagom.CompanyDTOMapper;
+import com.bridge18.company.v1.dto.company.AddressDTO;
+import com.bridge18.company.v1.dto.company.CompanyDTO;
+import com.bridge18.company.v1.dto.company.ContactDTO;
+import com.bridge18.company.v1.dto.company.ContactInfoDTO;
+import com.bridge18.company.v1.dto.company.LocationDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class CompanyDTOMapperTest {
+    private final ObjectMapper json = new ObjectMapper();
+
+    @Test
+    public void testCompanyDTOIsTheSameAsBefore() throws Exception {
+        CompanyState state = company();
+
+        assertEquals(json.writeValueAsString(legacyCompanyDTO(state)),
+                json.writeValueAsString(CompanyDTOMapper.toCompanyDTO(state)));
+    }
+
+    @Test
+    public void testImmutablesAreTheSameAsBefore() {
+        CompanyDTO dto = legacyCompanyDTO(company());
+
+        assertEquals(legacyContacts(dto.contacts), CompanyDTOMapper.toContacts(dto.contacts));
+        assertEquals(legacyLocations(dto.locations), CompanyDTOMapper.toLocations(dto.locations));
+    }
+
+    @Test
+    public void testMissingValuesMapToInstancesOfTheirOwn() {
+        CompanyDTO first = CompanyDTOMapper.toCompanyDTO(company());
+        CompanyDTO second = CompanyDTOMapper.toCompanyDTO(company());
+
+        ContactDTO bare = first.contacts.get(1);
+        assertNotSame(bare.address, first.locations.get(1).address);
+        assertNotSame(bare.address, second.contacts.get(1).address);
+        assertNotSame(bare.contactInfo, second.contacts.get(1).contactInfo);
+
+        bare.address.city = "Changed";
+        bare.contactInfo.add(new ContactInfoDTO("work", "+1 555 0100", ContactInfoType.NONE));
+        first.locations.get(1).contactInfo.add(new ContactInfoDTO("fax", "+1 555 0101", ContactInfoType.NONE));
+
+        CompanyDTO third = CompanyDTOMapper.toCompanyDTO(company());
+        assertNull(third.contacts.get(1).address.city);
+        assertNull(third.locations.get(1).address.city);
+        assertEquals(0, third.contacts.get(1).contactInfo.size());
+        assertEquals(0, third.locations.get(1).contactInfo.size());
+    }
+
+    /**
+     * A contact and a location with every value, then a contact with none and a location with empty contact infos.
+     */
+    private static CompanyState company() {
+        Address address = Address.builder()
+                .addressId(7)
+                .addressName("Head office")
+                .streetAddress1("1 Main Street")
+                .city("Chicago")
+                .state("IL")
+                .zip("60601")
+                .addressPhone("+1 555 0200")
+                .addressLatitude(41.88)
+                .addressLongitude(-87.63)
+                .build();
+        PVector<ContactInfo> contactInfos = TreePVector.from(Arrays.asList(
+                ContactInfo.builder().label("work").value("+1 555 0100").type(ContactInfoType.NONE).build(),
+                ContactInfo.builder().label("email").build()));
+        return CompanyState.builder()
+                .id("company-1")
+                .name("Company")
+                .mc("MC1")
+                .companyType(CompanyType.CARRIER)
+                .contacts(TreePVector.from(Arrays.asList(
+                        Contact.builder().id("1").firstName("First").lastName("Last").position("Dispatcher")
+                                .contactInfo(contactInfos).address(address).build(),
+                        Contact.builder().build())))
+                .locations(TreePVector.from(Arrays.asList(
+                        Location.builder().name("HQ").address(address).contactInfo(contactInfos).build(),
+                        Location.builder().contactInfo(TreePVector.empty()).build())))
+                .build();
+    }
+
+    // The conversions as LagomCompanyServiceImpl did them before CompanyDTOMapper.
+
+    private static CompanyDTO legacyCompanyDTO(CompanyState companyState) {
+        List<ContactDTO> contactDTOS = Lists.transform(companyState.getContacts().get(), contact ->
+                new ContactDTO(contact.getId().orElse(null),
+                        contact.getFirstName().orElse(null),
+                        contact.getMiddleName().orElse(null),
+                        contact.getLastName().orElse(null),
+                        legacyContactInfoDTOs(contact.getContactInfo().orElse(TreePVector.empty())),
+                        contact.getPosition().orElse(null),
+                        legacyAddressDTO(contact.getAddress().orElse(Address.builder().build()))));
+        List<LocationDTO> locationDTOS = Lists.transform(companyState.getLocations().get(), location ->
+                new LocationDTO(location.getName().orElse(null),
+                        legacyAddressDTO(location.getAddress().orElse(Address.builder().build())),
+                        legacyContactInfoDTOs(location.getContactInfo().orElse(TreePVector.empty()))));
+        return new CompanyDTO(companyState.getId(),
+                companyState.getName(),
+                companyState.getMc().orElse(null),
+                companyState.getTaxId().orElse(null),
+                companyState.getCompanyType().orElse(null),
+                contactDTOS,
+                locationDTOS);
+    }
+
+    private static List<ContactInfoDTO> legacyContactInfoDTOs(PVector<ContactInfo> contactInfos) {
+        return Lists.transform(contactInfos, contactInfo ->
+                new ContactInfoDTO(contactInfo.getLabel().orElse(null),
+                        contactInfo.getValue().orElse(null),
+                        contactInfo.getType().orElse(null)));
+    }
+
+    private static AddressDTO legacyAddressDTO(Address address) {
+        return new AddressDTO(address.getAddressId().orElse(null),
+                address.getAddressName().orElse(null), address.getStreetAddress1().orElse(null),
+                address.getStreetAddress2().orElse(null), address.getCity().orElse(null),
+                address.getAddressPhone().orElse(null), address.getState().orElse(null),
+                address.getZip().orElse(null), address.getAddressFax().orElse(null),
+                address.getAddressPhoneExtension().orElse(null), address.getAddressFaxExtension().orElse(null),
+                address.getAddressLatitude().orElse(null), address.getAddressLongitude().orElse(null));
+    }
+
+    private static PVector<Contact> legacyContacts(List<ContactDTO> contactDTOList) {
+        return TreePVector.from(Lists.transform(contactDTOList, contactDTO ->
+                Contact.builder()
+                        .id(Optional.ofNullable(contactDTO.id))
+                        .firstName(Optional.ofNullable(contactDTO.firstName))
+                        .middleName(Optional.ofNullable(contactDTO.middleName))
+                        .lastName(Optional.ofNullable(contactDTO.lastName))
+                        .contactInfo(Optional.ofNullable(contactDTO.contactInfo != null
+                                ? legacyContactInfos(contactDTO.contactInfo) : null))
+                        .position(Optional.ofNullable(contactDTO.position))
+                        .address(Optional.ofNullable(contactDTO.address != null
+                                ? legacyAddress(contactDTO.address) : null))
+                        .build()));
+    }
+
+    private static PVector<Location> legacyLocations(List<LocationDTO> locationDTOList) {
+        return TreePVector.from(Lists.transform(locationDTOList, locationDTO ->
+                Location.builder()
+                        .name(Optional.ofNullable(locationDTO.name))
+                        .address(Optional.ofNullable(locationDTO.address != null
+                                ? legacyAddress(locationDTO.address) : null))
+                        .contactInfo(Optional.ofNullable(locationDTO.contactInfo != null
+                                ? legacyContactInfos(locationDTO.contactInfo) : null))
+                        .build()));
+    }
+
+    private static PVector<ContactInfo> legacyContactInfos(List<ContactInfoDTO> contactInfos) {
+        return TreePVector.from(Lists.transform(contactInfos, contactInfoDTO ->
+                ContactInfo.builder()
+                        .label(Optional.ofNullable(contactInfoDTO.label))
+                        .value(Optional.ofNullable(contactInfoDTO.value))
+                        .type(Optional.ofNullable(contactInfoDTO.type))
+                        .build()));
+    }
+
+    private static Address legacyAddress(AddressDTO addressDTO) {
+        return Address.builder()
+                .addressId(Optional.ofNullable(addressDTO.id))
+                .addressName(Optional.ofNullable(addressDTO.name))
+                .streetAddress1(Optional.ofNullable(addressDTO.streetAddress1))
+                .streetAddress2(Optional.ofNullable(addressDTO.streetAddress2))
+                .city(Optional.ofNullable(addressDTO.city))
+                .addressPhone(Optional.ofNullable(addressDTO.phone))
+                .state(Optional.ofNullable(addressDTO.state))
+                .zip(Optional.ofNullable(addressDTO.zip))
+                .addressFax(Optional.ofNullable(addressDTO.fax))
+                .addressPhoneExtension(Optional.ofNullable(addressDTO.phoneExtension))
+                .addressFaxExtension(Optional.ofNullable(addressDTO.faxExtension))
+                .addressLatitude(Optional.ofNullable(addressDTO.latitude))
+                .addressLongitude(Optional.ofNullable(addressDTO.longitude))
+                .build();
+    }
+}
@@ -1,10 +1,15 @@
 package com.bridge18.company.impl;
 
+import akka.Done;
 import akka.actor.ActorSystem;
 import akka.testkit.JavaTestKit;
 import com.bridge18.company.entities.CompanyType;
 import com.bridge18.company.entities.ContactInfoType;
 import com.bridge18.company.impl.entities.*;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.bridge18.company.impl.tracing.RequestTracing;
+import com.bridge18.company.impl.tracing.Span;
+import com.bridge18.exception.LagomException;
 import com.lightbend.lagom.javadsl.testkit.PersistentEntityTestDriver;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -12,9 +17,13 @@ import org.junit.Test;
 import org.pcollections.TreePVector;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 public class CompanyEntityTest {
@@ -40,17 +49,22 @@ public class CompanyEntityTest {
         UpdateCompany updateCompanyCmd = UpdateCompany.builder().name("John").build();
         PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> updateOutcome = persistentEntityTestDriver
                 .run(updateCompanyCmd);
-        assertTrue(updateOutcome.issues().get(0) instanceof PersistentEntityTestDriver.UnhandledCommand);
+        assertFailed(CompanyErrors.notFound("test-company-1"), updateOutcome);
+
+        PatchCompany patchCompanyCmd = PatchCompany.builder().name("John").build();
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> patchOutcome = persistentEntityTestDriver
+                .run(patchCompanyCmd);
+        assertFailed(CompanyErrors.notFound("test-company-1"), patchOutcome);
 
         DeleteCompany deleteCompanyCmd = DeleteCompany.builder().build();
         PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> deleteOutcome = persistentEntityTestDriver
                 .run(deleteCompanyCmd);
-        assertTrue(deleteOutcome.issues().get(0) instanceof PersistentEntityTestDriver.UnhandledCommand);
+        assertFailed(CompanyErrors.notFound("test-company-1"), deleteOutcome);
 
         GetCompanyInformation getCompanyCmdInf = GetCompanyInformation.builder().build();
         PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> getOutcome =
                 persistentEntityTestDriver.run(getCompanyCmdInf);
-        assertTrue(getOutcome.issues().get(0) instanceof PersistentEntityTestDriver.UnhandledCommand);
+        assertFailed(CompanyErrors.notFound("test-company-1"), getOutcome);
     }
 
     @Test
@@ -72,16 +86,74 @@ public class CompanyEntityTest {
         GetCompanyInformation getCompanyInformation = GetCompanyInformation.builder().build();
         PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> getOutcome = persistentEntityTestDriver.run
                 (getCompanyInformation);
-        assertTrue(getOutcome.issues().get(0) instanceof PersistentEntityTestDriver.UnhandledCommand);
+        assertFailed(CompanyErrors.deleted("test-company-2"), getOutcome);
 
         UpdateCompany updateCompany = UpdateCompany.builder().name("John").build();
         PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> updateOutcome = persistentEntityTestDriver.run
                 (updateCompany);
-        assertTrue(updateOutcome.issues().get(0) instanceof PersistentEntityTestDriver.UnhandledCommand);
+        assertFailed(CompanyErrors.deleted("test-company-2"), updateOutcome);
 
         PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> createOutcome_2 = persistentEntityTestDriver.run
                 (createDriverCmd);
-        assertTrue(createOutcome_2.issues().get(0) instanceof PersistentEntityTestDriver.UnhandledCommand);
+        assertFailed(CompanyErrors.deleted("test-company-2"), createOutcome_2);
+
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> deleteOutcome = persistentEntityTestDriver.run
+                (deleteCompany);
+        assertEquals(Done.getInstance(), deleteOutcome.getReplies().get(0));
+    }
+
+    @Test
+    public void testUnchangedUpdateIsNotPersisted() {
+        PersistentEntityTestDriver<CompanyCommand, CompanyEvent, CompanyState> persistentEntityTestDriver =
+                new PersistentEntityTestDriver(system, new CompanyEntity(), "test-company-5");
+
+        TreePVector<Contact> contacts = TreePVector.singleton(Contact.builder().id("1").firstName("John")
+                .position("Dispatcher").build());
+        persistentEntityTestDriver.run(CreateCompany.builder().name("Company").mc("MC1").contacts(contacts).build());
+
+        UpdateCompany sameCompany = UpdateCompany.builder().name("Company").mc("MC1").contacts(contacts).build();
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> sameOutcome =
+                persistentEntityTestDriver.run(sameCompany);
+        assertTrue(sameOutcome.events().isEmpty());
+        assertEquals(sameOutcome.state(), sameOutcome.getReplies().get(0));
+        assertEquals(1, sameOutcome.state().getRevision());
+
+        UpdateCompany changedCompany = UpdateCompany.builder().name("Company").mc("MC2").contacts(contacts).build();
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> changedOutcome =
+                persistentEntityTestDriver.run(changedCompany);
+        assertEquals(1, changedOutcome.events().size());
+        assertEquals(Optional.of("MC2"), changedOutcome.state().getMc());
+        assertEquals(2, changedOutcome.state().getRevision());
+    }
+
+    @Test
+    public void testPersistSpansContinueTheCommandTrace() {
+        List<Span> spans = new CopyOnWriteArrayList<>();
+        CompanyEntity entity = new CompanyEntity(new RequestTracing(new MetricsRegistry(), spans::add),
+                new MetricsRegistry());
+        PersistentEntityTestDriver<CompanyCommand, CompanyEvent, CompanyState> persistentEntityTestDriver =
+                new PersistentEntityTestDriver(system, entity, "test-company-9");
+
+        persistentEntityTestDriver.run(CreateCompany.builder().name("Company").traceId("trace-1").build());
+        persistentEntityTestDriver.run(UpdateCompany.builder().name("Company-2").build());
+        persistentEntityTestDriver.run(DeleteCompany.builder().traceId("trace-3").build());
+
+        assertEquals(3, spans.size());
+        assertEquals("entity.CreateCompany.persist", spans.get(0).getName());
+        assertEquals("trace-1", spans.get(0).getTraceId());
+        assertEquals("test-company-9", spans.get(0).getAttributes().get("entityId"));
+        assertEquals("entity.UpdateCompany.persist", spans.get(1).getName());
+        assertNotEquals("trace-1", spans.get(1).getTraceId());
+        assertEquals("entity.DeleteCompany.persist", spans.get(2).getName());
+        assertEquals("trace-3", spans.get(2).getTraceId());
+    }
+
+    private static void assertFailed(LagomException expected,
+                                     PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> outcome) {
+        assertTrue(outcome.events().isEmpty());
+        Object reply = outcome.getReplies().get(0);
+        assertTrue(reply instanceof LagomException);
+        assertEquals(expected.getMessage(), ((LagomException) reply).getMessage());
     }
 
     @Test
@@ -167,6 +239,7 @@ public class CompanyEntityTest {
         assertEquals(Optional.of(CompanyType.CARRIER), companyState.getCompanyType());
         assertEquals(Optional.of(contacts), companyState.getContacts());
         assertEquals(Optional.of(locations), companyState.getLocations());
+        assertEquals(1, companyState.getRevision());
 
         //update command
         UpdateCompany updateCompanyCmd = UpdateCompany.builder()
@@ -182,6 +255,7 @@ public class CompanyEntityTest {
                 (updateCompanyCmd);
 
         assertEquals(1, updateOutcome.events().size());
+        assertEquals(2, updateOutcome.events().get(0).getRevision());
         companyState = (CompanyState) updateOutcome.getReplies().get(0);
         assertEquals("test-company-3", companyState.getId());
         assertEquals("company-2", companyState.getName());
@@ -190,6 +264,7 @@ public class CompanyEntityTest {
         assertEquals(Optional.of(CompanyType.CARRIER), companyState.getCompanyType());
         assertEquals(Optional.of(contacts), companyState.getContacts());
         assertEquals(Optional.of(locations), companyState.getLocations());
+        assertEquals(2, companyState.getRevision());
 
 
         //get Information command
@@ -213,8 +288,128 @@ public class CompanyEntityTest {
         PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> deleteCompanyOutcome = persistentEntityTestDriver
                 .run(deleteCompanyCmd);
         assertEquals(1, deleteCompanyOutcome.events().size());
-        assertEquals(CompanyDeleted.builder().id("test-company-3").build(), deleteCompanyOutcome.events().get(0));
+        assertEquals(CompanyDeleted.builder().id("test-company-3").revision(3).build(),
+                deleteCompanyOutcome.events().get(0));
     }
 
+    @Test
+    public void testPatchCompany() {
+        PersistentEntityTestDriver<CompanyCommand, CompanyEvent, CompanyState> persistentEntityTestDriver =
+                new PersistentEntityTestDriver(system, new CompanyEntity(), "test-company-4");
+
+        Contact contact1 = Contact.builder().id("1").firstName("firstName-1").build();
+        Contact contact2 = Contact.builder().id("2").firstName("firstName-2").build();
+        Location location1 = Location.builder().name("Location1").build();
+        Location location2 = Location.builder().name("Location2").build();
 
+        persistentEntityTestDriver.run(CreateCompany.builder()
+                .name("company")
+                .mc("MC1")
+                .contacts(TreePVector.from(Arrays.asList(contact1, contact2)))
+                .locations(TreePVector.from(Arrays.asList(location1, location2)))
+                .build());
+
+        Contact updatedContact2 = Contact.builder().id("2").firstName("firstName-2-updated").build();
+        Contact contact3 = Contact.builder().id("3").firstName("firstName-3").build();
+        Location updatedLocation1 = Location.builder().name("Location1-updated").build();
+
+        PatchCompany patchCompanyCmd = PatchCompany.builder()
+                .name("company-2")
+                .mc("MC1")
+                .contacts(TreePVector.from(Arrays.asList(updatedContact2, contact3)))
+                .removedContactIds(TreePVector.singleton("1"))
+                .locations(TreePVector.singleton(updatedLocation1))
+                .build();
+
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> patchOutcome = persistentEntityTestDriver
+                .run(patchCompanyCmd);
+
+        assertEquals(Arrays.asList(
+                CompanyNameChanged.of("test-company-4", "company-2").withRevision(2),
+                ContactRemoved.of("test-company-4", "1").withRevision(3),
+                ContactUpdated.of("test-company-4", updatedContact2).withRevision(4),
+                ContactAdded.of("test-company-4", contact3).withRevision(5),
+                LocationChanged.of("test-company-4", 0, updatedLocation1).withRevision(6),
+                LocationRemoved.of("test-company-4", 1).withRevision(7)
+        ), patchOutcome.events());
+
+        CompanyState companyState = (CompanyState) patchOutcome.getReplies().get(0);
+        assertEquals("company-2", companyState.getName());
+        assertEquals(Optional.of("MC1"), companyState.getMc());
+        assertEquals(Optional.of(TreePVector.from(Arrays.asList(updatedContact2, contact3))),
+                companyState.getContacts());
+        assertEquals(Optional.of(TreePVector.singleton(updatedLocation1)), companyState.getLocations());
+        assertEquals(7, companyState.getRevision());
+
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> repeatedOutcome = persistentEntityTestDriver
+                .run(patchCompanyCmd);
+        assertEquals(0, repeatedOutcome.events().size());
+        assertEquals(companyState, repeatedOutcome.getReplies().get(0));
+    }
+
+    @Test
+    public void testContactIdsMustBeUnique() {
+        PersistentEntityTestDriver<CompanyCommand, CompanyEvent, CompanyState> persistentEntityTestDriver =
+                new PersistentEntityTestDriver(system, new CompanyEntity(), "test-company-7");
+        TreePVector<Contact> duplicates = TreePVector.from(Arrays.asList(
+                Contact.builder().id("1").firstName("firstName-1").build(),
+                Contact.builder().id("2").firstName("firstName-2").build(),
+                Contact.builder().id("1").firstName("firstName-3").build()));
+
+        assertFailed(CompanyErrors.duplicateContactId("1"), persistentEntityTestDriver.run(
+                CreateCompany.builder().name("company").contacts(duplicates).build()));
+
+        persistentEntityTestDriver.run(CreateCompany.builder().name("company").build());
+        assertFailed(CompanyErrors.duplicateContactId("1"), persistentEntityTestDriver.run(
+                UpdateCompany.builder().name("company").contacts(duplicates).build()));
+    }
+
+    @Test
+    public void testPatchWithContactsWithoutIdIsIdempotent() {
+        PersistentEntityTestDriver<CompanyCommand, CompanyEvent, CompanyState> persistentEntityTestDriver =
+                new PersistentEntityTestDriver(system, new CompanyEntity(), "test-company-6");
+        persistentEntityTestDriver.run(CreateCompany.builder().name("company").build());
+
+        Contact withoutId = Contact.builder().firstName("firstName-1").build();
+        PatchCompany patchCompanyCmd = PatchCompany.builder().contacts(TreePVector.singleton(withoutId)).build();
+
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> patchOutcome = persistentEntityTestDriver
+                .run(patchCompanyCmd);
+        assertEquals(Collections.singletonList(ContactAdded.of("test-company-6", withoutId).withRevision(2)),
+                patchOutcome.events());
+
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> repeatedOutcome = persistentEntityTestDriver
+                .run(patchCompanyCmd);
+        assertEquals(0, repeatedOutcome.events().size());
+        assertEquals(Optional.of(TreePVector.singleton(withoutId)), repeatedOutcome.state().getContacts());
+    }
+
+    @Test
+    public void testRecoveryFromSnapshot() {
+        PersistentEntityTestDriver<CompanyCommand, CompanyEvent, CompanyState> persistentEntityTestDriver =
+                new PersistentEntityTestDriver(system, new CompanyEntity(), "test-company-7");
+        CompanyState snapshot = CompanyState.builder().id("test-company-7").name("company").revision(50).build();
+
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> recovered = persistentEntityTestDriver
+                .initialize(Optional.of(snapshot),
+                        CompanyUpdated.builder().id("test-company-7").name("company-2").revision(51).build());
+        assertEquals(snapshot.withName("company-2").withRevision(51), recovered.state());
+
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> updateOutcome = persistentEntityTestDriver
+                .run(UpdateCompany.builder().name("company-3").build());
+        assertEquals(52, updateOutcome.state().getRevision());
+        assertEquals("company-3", updateOutcome.state().getName());
+    }
+
+    @Test
+    public void testRecoveryFromSnapshotOfDeletedCompany() {
+        PersistentEntityTestDriver<CompanyCommand, CompanyEvent, CompanyState> persistentEntityTestDriver =
+                new PersistentEntityTestDriver(system, new CompanyEntity(), "test-company-8");
+        persistentEntityTestDriver.initialize(Optional.of(CompanyState.builder().id("test-company-8").name("company")
+                .revision(50).deleted(true).build()));
+
+        PersistentEntityTestDriver.Outcome<CompanyEvent, CompanyState> getOutcome = persistentEntityTestDriver
+                .run(GetCompanyInformation.builder().build());
+        assertFailed(CompanyErrors.deleted("test-company-8"), getOutcome);
+    }
 }
@@ -0,0 +1,109 @@
+package com.bridge18.company.impl;
+
+import com.bridge18.company.entities.CompanyType;
+import com.bridge18.company.entities.ContactInfoType;
+import com.bridge18.company.impl.entities.*;
+import com.bridge18.company.impl.serialization.CompanySerializer;
+import org.junit.Test;
+import org.pcollections.TreePVector;
+
+import java.io.NotSerializableException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompanySerializerTest {
+    private final CompanySerializer serializer = new CompanySerializer(null);
+
+    @Test
+    public void testCompanyState() throws NotSerializableException {
+        Address address = Address.builder()
+                .addressId(-7)
+                .addressName("AddressName")
+                .streetAddress1("address1")
+                .city("NY")
+                .state("NY")
+                .zip("78000")
+                .addressLatitude(48.2180675)
+                .addressLongitude(-48.2180675)
+                .build();
+
+        TreePVector<ContactInfo> contactInfos = TreePVector.from(
+                Arrays.asList(
+                        ContactInfo.builder().label("label-1").value("value-1").type(ContactInfoType.NONE).build(),
+                        ContactInfo.builder().value("value-2").build()
+                )
+        );
+
+        CompanyState companyState = CompanyState.builder()
+                .id("test-company-1")
+                .name("company")
+                .mc("MC1")
+                .companyType(CompanyType.CARRIER)
+                .contacts(TreePVector.singleton(
+                        Contact.builder().id("1").firstName("firstName-1").contactInfo(contactInfos)
+                                .address(address).build()))
+                .locations(TreePVector.from(Arrays.asList(
+                        Location.builder().name("Location1").address(address).contactInfo(contactInfos).build(),
+                        Location.builder().build())))
+                .revision(300)
+                .build();
+
+        assertEquals(companyState, roundTrip(companyState));
+
+        CompanyState emptyState = CompanyState.builder().id("test-company-2").name("").build();
+        assertEquals(emptyState, roundTrip(emptyState));
+
+        CompanyState deletedState = companyState.withRevision(301).withDeleted(true);
+        assertEquals(deletedState, roundTrip(deletedState));
+    }
+
+    @Test
+    public void testEventsAndCommands() throws NotSerializableException {
+        Contact contact = Contact.builder().id("1").firstName("firstName-1").position("position-1").build();
+        Location location = Location.builder().name("Location1")
+                .address(Address.builder().city("NY").build()).build();
+
+        List<Object> messages = Arrays.asList(
+                CompanyCreated.builder().id("test-company-1").name("company").mc("MC1")
+                        .contacts(TreePVector.singleton(contact)).build(),
+                CompanyCreated.builder().id("test-company-1").name("company").revision(1).build(),
+                CompanyUpdated.builder().id("test-company-1").name("company-2").taxId("2222")
+                        .companyType(CompanyType.BROKER).locations(TreePVector.singleton(location)).build(),
+                CompanyDeleted.builder().id("test-company-1").build(),
+                CompanyDeleted.builder().id("test-company-1").revision(12).build(),
+                CompanyNameChanged.of("test-company-1", "company-3"),
+                CompanyNameChanged.of("test-company-1", "company-3").withRevision(200),
+                CompanyDetailsChanged.builder().id("test-company-1").mc("MC3").build(),
+                CompanyDetailsChanged.builder().id("test-company-1").taxId("3333").revision(4).build(),
+                ContactAdded.of("test-company-1", contact),
+                ContactUpdated.of("test-company-1", contact),
+                ContactRemoved.of("test-company-1", "1"),
+                LocationChanged.of("test-company-1", 3, location),
+                LocationRemoved.of("test-company-1", 3),
+                LocationRemoved.of("test-company-1", 3).withRevision(5),
+                CreateCompany.builder().name("company").contacts(TreePVector.singleton(contact)).build(),
+                UpdateCompany.builder().name("company").mc("MC1").build(),
+                PatchCompany.builder().name("company").removedContactIds(TreePVector.singleton("1"))
+                        .locations(TreePVector.singleton(location)).build(),
+                CreateCompany.builder().name("company").traceId("trace-1").build(),
+                UpdateCompany.builder().name("company").locations(TreePVector.singleton(location))
+                        .traceId("trace-2").build(),
+                PatchCompany.builder().mc("MC2").traceId("trace-3").build(),
+                GetCompanyInformation.builder().build(),
+                DeleteCompany.builder().build(),
+                DeleteCompany.builder().traceId("trace-4").build(),
+                contact,
+                location
+        );
+
+        for (Object message : messages) {
+            assertEquals(message, roundTrip(message));
+        }
+    }
+
+    private Object roundTrip(Object o) throws NotSerializableException {
+        return serializer.fromBinary(serializer.toBinary(o), serializer.manifest(o));
+    }
+}
@@ -1,43 +1,91 @@
 package com.bridge18.company.impl;
 
+import akka.Done;
+import akka.actor.ActorSystem;
+import akka.pattern.AskTimeoutException;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.testkit.JavaTestKit;
 import com.bridge18.company.entities.CompanyType;
 import com.bridge18.company.entities.ContactInfoType;
 import com.bridge18.company.impl.entities.*;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.bridge18.company.impl.repository.CompanyMongoRepository;
+import com.bridge18.company.impl.repository.ConsistencyToken;
+import com.bridge18.company.impl.services.objects.CompanyBatch;
+import com.bridge18.company.impl.services.objects.CompanyCacheSettings;
+import com.bridge18.company.impl.services.objects.CompanyImportResult;
 import com.bridge18.company.impl.services.objects.CompanyService;
 import com.bridge18.company.impl.services.objects.CompanyServiceImpl;
+import com.bridge18.company.impl.services.objects.CompanyServiceSettings;
+import com.bridge18.company.impl.services.objects.CompanyStateCache;
+import com.bridge18.company.impl.services.objects.ReadConsistency;
+import com.bridge18.exception.LagomException;
 import com.lightbend.lagom.javadsl.persistence.PersistentEntityRef;
 import com.lightbend.lagom.javadsl.persistence.PersistentEntityRegistry;
+import org.junit.AfterClass;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.pcollections.PVector;
 import org.pcollections.TreePVector;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class CompanyServiceTest {
-
+    static ActorSystem system;
+    static Materializer materializer;
 
     private PersistentEntityRegistry persistentEntityRegistry;
+    private CompanyMongoRepository companyMongoRepository;
     private CompanyService companyService;
     private Address address;
     private PVector<ContactInfo> contactInfos;
     private PVector<Location> locations;
     private PVector<Contact> contacts;
 
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("CompanyServiceTest");
+        materializer = ActorMaterializer.create(system);
+    }
+
+    @AfterClass
+    public static void teardown() {
+        JavaTestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
     @Before
     public void before() {
         persistentEntityRegistry = Mockito.mock(PersistentEntityRegistry.class);
         Mockito.doNothing().doThrow(Throwable.class).when(persistentEntityRegistry).register(CompanyEntity.class);
-        companyService = new CompanyServiceImpl(persistentEntityRegistry);
+        companyMongoRepository = Mockito.mock(CompanyMongoRepository.class);
+        companyService = new CompanyServiceImpl(persistentEntityRegistry,
+                new CompanyStateCache(CompanyCacheSettings.disabled(), new MetricsRegistry()),
+                new CompanyServiceSettings(4, 4, 10),
+                companyMongoRepository,
+                materializer);
 
         address = Address.builder()
                 .addressName("AddressName")
@@ -116,7 +164,8 @@ public class CompanyServiceTest {
                 Optional.of("MC1"),
                 Optional.of(CompanyType.BROKER),
                 Optional.of(contacts),
-                Optional.of(locations)
+                Optional.of(locations),
+                Optional.empty()
         ).toCompletableFuture().get(5, SECONDS);
 
         assertNotNull(companyState.getId());
@@ -149,7 +198,8 @@ public class CompanyServiceTest {
                 Optional.of("MC-2"),
                 Optional.of(CompanyType.CARRIER),
                 Optional.of(contacts),
-                Optional.of(locations)
+                Optional.of(locations),
+                Optional.empty()
         ).toCompletableFuture().get(5, SECONDS);
 
         assertNotNull(companyState.getId());
@@ -186,7 +236,8 @@ public class CompanyServiceTest {
                 Optional.empty(),
                 Optional.empty(),
                 Optional.of(contacts),
-                Optional.of(locations)
+                Optional.of(locations),
+                Optional.empty()
         ).toCompletableFuture().get(5, SECONDS);
 
         assertEquals("company-2", companyUpdateState.getName());
@@ -196,4 +247,226 @@ public class CompanyServiceTest {
         assertEquals(Optional.of(contacts), companyUpdateState.getContacts());
         assertEquals(Optional.of(locations), companyUpdateState.getLocations());
     }
+
+    @Test
+    public void testImportCompanies() throws InterruptedException, ExecutionException, TimeoutException {
+        PersistentEntityRef ref = Mockito.mock(PersistentEntityRef.class);
+        Mockito.when(persistentEntityRegistry.refFor(Mockito.any(), Mockito.any())).thenReturn(ref);
+
+        Mockito.when(ref.ask(Mockito.any(CreateCompany.class))).thenAnswer(invocation -> {
+            CreateCompany createCompany = invocation.getArgument(0);
+            if (createCompany.getName().equals("rejected")) {
+                CompletableFuture<CompanyState> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IllegalStateException("rejected by entity"));
+                return failed;
+            }
+            if (createCompany.getName().equals("slow")) {
+                CompletableFuture<CompanyState> timedOut = new CompletableFuture<>();
+                timedOut.completeExceptionally(new AskTimeoutException("Ask timed out"));
+                return timedOut;
+            }
+            return CompletableFuture.completedFuture(
+                    CompanyState.builder().id("id-" + createCompany.getName()).name(createCompany.getName()).build());
+        });
+
+        List<CompanyImportResult> results = companyService.importCompanies(
+                Source.from(Arrays.asList("company-1", "", "rejected", "company-2", "slow")),
+                name -> {
+                    if (name.isEmpty()) {
+                        throw new IllegalArgumentException("Name could not be empty");
+                    }
+                    return CreateCompany.builder().name(name).contacts(contacts).locations(locations).build();
+                })
+                .runWith(Sink.seq(), materializer)
+                .toCompletableFuture().get(5, SECONDS)
+                .stream()
+                .sorted(Comparator.comparingLong(CompanyImportResult::getIndex))
+                .collect(Collectors.toList());
+
+        assertEquals(5, results.size());
+        assertEquals(Optional.of("id-company-1"), results.get(0).getId());
+        assertEquals(Optional.of("Name could not be empty"), results.get(1).getError());
+        assertEquals(CompanyImportResult.Status.FAILED, results.get(1).getStatus());
+        assertFalse(results.get(2).isCreated());
+        assertEquals(Optional.of("rejected by entity"), results.get(2).getError());
+        assertEquals(CompanyImportResult.Status.FAILED, results.get(2).getStatus());
+        assertTrue(results.get(3).isCreated());
+        assertEquals(CompanyImportResult.Status.UNKNOWN, results.get(4).getStatus());
+        assertFalse(results.get(4).isCreated());
+        assertTrue(results.get(4).getId().isPresent());
+    }
+
+    @Test
+    public void testGetCompaniesFromEntities() throws InterruptedException, ExecutionException, TimeoutException {
+        PersistentEntityRef found = Mockito.mock(PersistentEntityRef.class);
+        PersistentEntityRef missing = Mockito.mock(PersistentEntityRef.class);
+        Mockito.when(persistentEntityRegistry.refFor(Mockito.any(), Mockito.any())).thenReturn(found);
+        Mockito.when(persistentEntityRegistry.refFor(Mockito.any(), Mockito.eq("2"))).thenReturn(missing);
+
+        Mockito.when(found.ask(Mockito.any(GetCompanyInformation.class))).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(CompanyState.builder().id("1").name("company").build()));
+        CompletableFuture<CompanyState> unhandled = new CompletableFuture<>();
+        unhandled.completeExceptionally(CompanyErrors.notFound("2"));
+        Mockito.when(missing.ask(Mockito.any(GetCompanyInformation.class))).thenReturn(unhandled);
+
+        CompanyBatch batch = companyService.getCompanies(Arrays.asList("1", "2", "1"), ReadConsistency.STRONG)
+                .toCompletableFuture().get(5, SECONDS);
+
+        assertEquals(1, batch.getFound().size());
+        assertEquals("1", batch.getFound().get(0).getId());
+        assertEquals(TreePVector.singleton("2"), batch.getMissing());
+    }
+
+    @Test
+    public void testGetCompaniesFailsOnOtherErrors() throws InterruptedException {
+        PersistentEntityRef deleted = Mockito.mock(PersistentEntityRef.class);
+        PersistentEntityRef broken = Mockito.mock(PersistentEntityRef.class);
+        Mockito.when(persistentEntityRegistry.refFor(Mockito.any(), Mockito.eq("1"))).thenReturn(deleted);
+        Mockito.when(persistentEntityRegistry.refFor(Mockito.any(), Mockito.eq("2"))).thenReturn(broken);
+
+        CompletableFuture<CompanyState> gone = new CompletableFuture<>();
+        gone.completeExceptionally(CompanyErrors.deleted("1"));
+        Mockito.when(deleted.ask(Mockito.any(GetCompanyInformation.class))).thenReturn(gone);
+        LagomException unavailable = new LagomException("UNAVAILABLE", 503, "Journal unavailable", "id");
+        CompletableFuture<CompanyState> failure = new CompletableFuture<>();
+        failure.completeExceptionally(unavailable);
+        Mockito.when(broken.ask(Mockito.any(GetCompanyInformation.class))).thenReturn(failure);
+
+        try {
+            companyService.getCompanies(Arrays.asList("1", "2"), ReadConsistency.STRONG)
+                    .toCompletableFuture().get(5, SECONDS);
+            fail("A failure other than a missing company must fail the batch");
+        } catch (ExecutionException | TimeoutException e) {
+            assertEquals(unavailable.getMessage(), e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testMissingCompaniesAreToldByStatus() {
+        assertTrue(CompanyErrors.isMissing(CompanyErrors.notFound("1")));
+        assertTrue(CompanyErrors.isMissing(CompanyErrors.deleted("1")));
+        assertTrue(CompanyErrors.isMissing(new LagomException("COMPANY_NOT_FOUND", 404, "No company 1", "id")));
+        assertFalse(CompanyErrors.isMissing(new LagomException("UNAVAILABLE", 503, "Company 1 does not exist", "id")));
+        assertFalse(CompanyErrors.isMissing(new IllegalStateException("Company 1 does not exist")));
+    }
+
+    @Test
+    public void testTombstonesWithoutCache() throws InterruptedException, ExecutionException, TimeoutException {
+        CompanyService uncachedService = new CompanyServiceImpl(persistentEntityRegistry,
+                new CompanyStateCache(new CompanyCacheSettings(false, 0, Duration.ZERO, 10), new MetricsRegistry()),
+                new CompanyServiceSettings(4, 4, 10),
+                companyMongoRepository,
+                materializer);
+
+        PersistentEntityRef ref = Mockito.mock(PersistentEntityRef.class);
+        Mockito.when(persistentEntityRegistry.refFor(Mockito.any(), Mockito.any())).thenReturn(ref);
+        Mockito.when(ref.ask(Mockito.any(DeleteCompany.class)))
+                .thenReturn(CompletableFuture.completedFuture(Done.getInstance()));
+
+        uncachedService.deleteCompany("1", Optional.empty()).toCompletableFuture().get(5, SECONDS);
+
+        assertTrue(uncachedService.getCompany("1").toCompletableFuture().isCompletedExceptionally());
+        assertTrue(uncachedService.getCompany("1", ReadConsistency.EVENTUAL).toCompletableFuture()
+                .isCompletedExceptionally());
+        Mockito.verify(ref, Mockito.times(1)).ask(Mockito.any());
+        Mockito.verifyZeroInteractions(companyMongoRepository);
+    }
+
+    @Test
+    public void testGetCompaniesFromReadSide() throws InterruptedException, ExecutionException, TimeoutException {
+        Mockito.when(companyMongoRepository.getCompaniesByIds(Mockito.any())).thenReturn(
+                CompletableFuture.completedFuture(Arrays.asList(
+                        CompanyState.builder().id("3").name("company-3").build(),
+                        CompanyState.builder().id("1").name("company-1").build())));
+
+        CompanyBatch batch = companyService.getCompanies(Arrays.asList("1", "2", "3"), ReadConsistency.EVENTUAL)
+                .toCompletableFuture().get(5, SECONDS);
+
+        assertEquals("1", batch.getFound().get(0).getId());
+        assertEquals("3", batch.getFound().get(1).getId());
+        assertEquals(TreePVector.singleton("2"), batch.getMissing());
+        Mockito.verify(persistentEntityRegistry, Mockito.never()).refFor(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testTooManyIdsFailsTheStage() throws InterruptedException {
+        List<String> ids = Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11");
+
+        for (CompletionStage<CompanyBatch> batch : Arrays.asList(
+                companyService.getCompanies(ids, ReadConsistency.EVENTUAL),
+                companyService.getCompanies(ids, ConsistencyToken.of("1", 2)))) {
+            try {
+                batch.toCompletableFuture().get();
+                fail("More than 10 ids must be rejected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof LagomException);
+            }
+        }
+        Mockito.verifyZeroInteractions(companyMongoRepository);
+    }
+
+    @Test
+    public void testGetCompaniesAfterWrite() throws InterruptedException, ExecutionException, TimeoutException {
+        ConsistencyToken token = ConsistencyToken.of("1", 2);
+        Mockito.when(companyMongoRepository.getCompaniesByIds(Mockito.any(), Mockito.eq(Optional.of(token))))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singletonList(
+                        CompanyState.builder().id("1").name("company-1").revision(2).build())));
+
+        CompanyBatch batch = companyService.getCompanies(Arrays.asList("1", "2"), token)
+                .toCompletableFuture().get(5, SECONDS);
+
+        assertEquals(2, batch.getFound().get(0).getRevision());
+        assertEquals(TreePVector.singleton("2"), batch.getMissing());
+        assertEquals(token, ConsistencyToken.decode(token.encode()));
+    }
+
+    @Test
+    public void testDeletedCompanyFailsFast() throws InterruptedException, ExecutionException, TimeoutException {
+        CompanyService cachingService = new CompanyServiceImpl(persistentEntityRegistry,
+                new CompanyStateCache(new CompanyCacheSettings(true, 10, Duration.ofMinutes(1), 10),
+                        new MetricsRegistry()),
+                new CompanyServiceSettings(4, 4, 10),
+                companyMongoRepository,
+                materializer);
+
+        PersistentEntityRef ref = Mockito.mock(PersistentEntityRef.class);
+        Mockito.when(persistentEntityRegistry.refFor(Mockito.any(), Mockito.any())).thenReturn(ref);
+        Mockito.when(ref.ask(Mockito.any(DeleteCompany.class)))
+                .thenReturn(CompletableFuture.completedFuture(Done.getInstance()));
+
+        cachingService.deleteCompany("1", Optional.empty()).toCompletableFuture().get(5, SECONDS);
+
+        CompletionStage<CompanyState> get = cachingService.getCompany("1");
+        assertTrue(get.toCompletableFuture().isCompletedExceptionally());
+        try {
+            get.toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            assertEquals(CompanyErrors.deleted("1").getMessage(), e.getCause().getMessage());
+        }
+        assertEquals(Done.getInstance(),
+                cachingService.deleteCompany("1", Optional.empty()).toCompletableFuture().get(5, SECONDS));
+        Mockito.verify(ref, Mockito.times(1)).ask(Mockito.any());
+    }
+
+    @Test
+    public void testGetCompanyFromReadSide() throws InterruptedException, ExecutionException, TimeoutException {
+        PersistentEntityRef ref = Mockito.mock(PersistentEntityRef.class);
+        Mockito.when(persistentEntityRegistry.refFor(Mockito.any(), Mockito.any())).thenReturn(ref);
+        Mockito.when(ref.ask(Mockito.any(GetCompanyInformation.class))).thenReturn(CompletableFuture.completedFuture(
+                CompanyState.builder().id("2").name("company-2").build()));
+
+        Mockito.when(companyMongoRepository.getCompany("1")).thenReturn(CompletableFuture.completedFuture(
+                Optional.of(CompanyState.builder().id("1").name("company-1").build())));
+        Mockito.when(companyMongoRepository.getCompany("2")).thenReturn(
+                CompletableFuture.completedFuture(Optional.empty()));
+
+        CompanyState projected = companyService.getCompany("1", ReadConsistency.EVENTUAL)
+                .toCompletableFuture().get(5, SECONDS);
+        assertEquals("company-1", projected.getName());
+        Mockito.verify(persistentEntityRegistry, Mockito.never()).refFor(Mockito.any(), Mockito.eq("1"));
+
+        CompanyState notProjectedYet = companyService.getCompany("2", ReadConsistency.EVENTUAL)
+                .toCompletableFuture().get(5, SECONDS);
+        assertEquals("company-2", notProjectedYet.getName());
+    }
 }
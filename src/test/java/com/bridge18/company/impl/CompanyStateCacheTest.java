@@ -0,0 +1,155 @@
+package com.bridge18.company.impl;
+
+import akka.NotUsed;
+import akka.actor.ActorSystem;
+import akka.japi.Pair;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Source;
+import akka.testkit.JavaTestKit;
+import com.bridge18.company.impl.entities.CompanyDeleted;
+import com.bridge18.company.impl.entities.CompanyEvent;
+import com.bridge18.company.impl.entities.CompanyEventShards;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.entities.CompanyUpdated;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.bridge18.company.impl.services.objects.CompanyCacheInvalidator;
+import com.bridge18.company.impl.services.objects.CompanyCacheSettings;
+import com.bridge18.company.impl.services.objects.CompanyStateCache;
+import com.lightbend.lagom.javadsl.persistence.Offset;
+import com.lightbend.lagom.javadsl.persistence.PersistentEntityRegistry;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.inject.ApplicationLifecycle;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompanyStateCacheTest {
+    static ActorSystem system;
+    static Materializer materializer;
+
+    private CompanyStateCache cache;
+
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("CompanyStateCacheTest");
+        materializer = ActorMaterializer.create(system);
+    }
+
+    @AfterClass
+    public static void teardown() {
+        JavaTestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Before
+    public void before() {
+        cache = new CompanyStateCache(new CompanyCacheSettings(true, 10, Duration.ofMinutes(1), 10),
+                new MetricsRegistry());
+    }
+
+    @Test
+    public void testPutKeepsTheLatestRevision() {
+        cache.put(company("1", 3));
+        cache.put(company("1", 2));
+        assertEquals(3, cache.get("1").get().getRevision());
+
+        cache.put(company("1", 4));
+        assertEquals(4, cache.get("1").get().getRevision());
+    }
+
+    @Test
+    public void testStaleReplyIsNotCachedAfterInvalidation() {
+        cache.put(company("1", 1));
+        cache.invalidate("1", 2);
+        assertEquals(Optional.empty(), cache.get("1"));
+
+        cache.put(company("1", 1));
+        assertEquals(Optional.empty(), cache.get("1"));
+
+        cache.put(company("1", 2));
+        assertEquals(2, cache.get("1").get().getRevision());
+    }
+
+    @Test
+    public void testLateInvalidationKeepsNewerState() {
+        cache.put(company("1", 5));
+        cache.invalidate("1", 4);
+        assertEquals(5, cache.get("1").get().getRevision());
+
+        cache.invalidate("1", 6);
+        assertEquals(Optional.empty(), cache.get("1"));
+        cache.invalidate("1", 5);
+        cache.put(company("1", 5));
+        assertEquals(Optional.empty(), cache.get("1"));
+    }
+
+    @Test
+    public void testDeletedCompanyIsNotCachedAgain() {
+        cache.put(company("1", 1));
+        cache.markDeleted("1");
+        cache.put(company("1", 1));
+
+        assertTrue(cache.isDeleted("1"));
+        assertEquals(Optional.empty(), cache.get("1"));
+    }
+
+    @Test
+    public void testDisabledCacheHoldsNothing() {
+        CompanyStateCache disabled = new CompanyStateCache(CompanyCacheSettings.disabled(), new MetricsRegistry());
+        disabled.put(company("1", 1));
+
+        assertFalse(disabled.isEnabled());
+        assertEquals(Optional.empty(), disabled.get("1"));
+    }
+
+    @Test
+    public void testInvalidatorFollowsEvents() throws InterruptedException {
+        cache.put(company("1", 1));
+        cache.put(company("2", 1));
+        cache.put(company("3", 7));
+
+        PersistentEntityRegistry registry = Mockito.mock(PersistentEntityRegistry.class);
+        CompanyEventShards eventShards = new CompanyEventShards(1, 0);
+        Mockito.when(registry.eventStream(Mockito.any(), Mockito.any())).thenAnswer(invocation ->
+                events(CompanyUpdated.builder().id("1").name("company").revision(2).build(),
+                        CompanyUpdated.builder().id("3").name("company").revision(6).build(),
+                        CompanyDeleted.builder().id("2").revision(2).build()));
+
+        new CompanyCacheInvalidator(registry, cache, system, materializer, eventShards,
+                Mockito.mock(ApplicationLifecycle.class));
+
+        for (int i = 0; i < 50 && !cache.isDeleted("2"); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(Optional.empty(), cache.get("1"));
+        assertTrue(cache.isDeleted("2"));
+        assertEquals(7, cache.get("3").get().getRevision());
+
+        cache.put(company("1", 1));
+        assertEquals(Optional.empty(), cache.get("1"));
+    }
+
+    /**
+     * The events, then a stream that stays open as the journal's does.
+     */
+    private static Source<Pair<CompanyEvent, Offset>, NotUsed> events(CompanyEvent... events) {
+        return Source.from(Arrays.asList(events))
+                .map(event -> Pair.<CompanyEvent, Offset>create(event, Offset.NONE))
+                .concat(Source.<Pair<CompanyEvent, Offset>>maybe())
+                .mapMaterializedValue(mat -> NotUsed.getInstance());
+    }
+
+    private static CompanyState company(String id, long revision) {
+        return CompanyState.builder().id(id).name("company-" + id).revision(revision).build();
+    }
+}
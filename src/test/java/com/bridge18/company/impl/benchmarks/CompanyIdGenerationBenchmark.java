@@ -0,0 +1,50 @@
+package com.bridge18.company.impl.benchmarks;
+
+import com.bridge18.company.impl.services.objects.CompanyIdGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ids generated per second by each {@link CompanyIdGenerator} while several threads create companies at once, as a
+ * bulk import does. Random ids share the lock of one {@code SecureRandom}; time-ordered ids share the
+ * compare-and-set of one counter.
+ * <p>
+ * Run {@link #main} to measure with 1, 4 and 16 threads, or
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main CompanyIdGenerationBenchmark -t <threads>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompanyIdGenerationBenchmark {
+    @Param({"random", "time-ordered"})
+    public String idGenerator;
+
+    private CompanyIdGenerator generator;
+
+    @Setup
+    public void setup() {
+        generator = CompanyIdGenerator.forName(idGenerator);
+    }
+
+    @Benchmark
+    public String nextId() {
+        return generator.nextId();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16}) {
+            new Runner(new OptionsBuilder()
+                    .include(CompanyIdGenerationBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build())
+                    .run();
+        }
+    }
+}
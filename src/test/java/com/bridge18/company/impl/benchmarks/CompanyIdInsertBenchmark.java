@@ -0,0 +1,74 @@
+package com.bridge18.company.impl.benchmarks;
+
+import com.bridge18.company.impl.services.objects.CompanyIdGenerator;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts per second into a collection indexed on {@code id} like the company read side, with ids of each
+ * {@link CompanyIdGenerator}. Time-ordered ids always land on the rightmost leaf of the index; random ids land
+ * anywhere, so once the index outgrows the cache every insert may have to read a leaf back first. The gap therefore
+ * widens with {@code preloaded}, the number of documents in the collection before the measurement starts.
+ * <p>
+ * Needs a MongoDB at {@code localhost:27017}; it uses, and drops, the {@code company_id_benchmark} database. Run with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main CompanyIdInsertBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompanyIdInsertBenchmark {
+    private static final String DATABASE = "company_id_benchmark";
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"random", "time-ordered"})
+    public String idGenerator;
+
+    @Param({"0", "1000000"})
+    public int preloaded;
+
+    private MongoClient client;
+    private DBCollection companies;
+    private CompanyIdGenerator generator;
+
+    @Setup
+    public void setup() {
+        client = new MongoClient("localhost", 27017);
+        client.dropDatabase(DATABASE);
+        companies = client.getDB(DATABASE).getCollection("companyState");
+        companies.createIndex(new BasicDBObject("id", 1));
+        generator = CompanyIdGenerator.forName(idGenerator);
+        for (int i = 0; i < preloaded; i += BATCH_SIZE) {
+            insertBatch();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.dropDatabase(DATABASE);
+        client.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insert() {
+        insertBatch();
+    }
+
+    private void insertBatch() {
+        List<DBObject> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new BasicDBObject("id", generator.nextId()).append("name", "Company"));
+        }
+        companies.insert(batch);
+    }
+}
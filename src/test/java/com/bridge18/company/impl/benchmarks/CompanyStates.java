@@ -0,0 +1,79 @@
+package com.bridge18.company.impl.benchmarks;
+
+import com.bridge18.company.entities.CompanyType;
+import com.bridge18.company.entities.ContactInfoType;
+import com.bridge18.company.impl.entities.*;
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Realistic company payloads for the benchmarks.
+ */
+final class CompanyStates {
+    private CompanyStates() {
+    }
+
+    static CompanyState company(String id, int contacts, int locations) {
+        return CompanyState.builder()
+                .id(id)
+                .name("Company " + id)
+                .mc("MC" + Math.abs(id.hashCode()))
+                .taxId("12-" + Math.abs(id.hashCode()))
+                .companyType(CompanyType.CARRIER)
+                .contacts(contacts(contacts))
+                .locations(locations(locations))
+                .build();
+    }
+
+    static PVector<Contact> contacts(int count) {
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            contacts.add(Contact.builder()
+                    .id(String.valueOf(i))
+                    .firstName("firstName-" + i)
+                    .lastName("lastName-" + i)
+                    .position("Dispatcher")
+                    .contactInfo(contactInfos(i))
+                    .address(address(i))
+                    .build());
+        }
+        return TreePVector.from(contacts);
+    }
+
+    static PVector<Location> locations(int count) {
+        List<Location> locations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            locations.add(Location.builder()
+                    .name("Location-" + i)
+                    .address(address(i))
+                    .contactInfo(contactInfos(i))
+                    .build());
+        }
+        return TreePVector.from(locations);
+    }
+
+    static PVector<ContactInfo> contactInfos(int seed) {
+        List<ContactInfo> contactInfos = new ArrayList<>(2);
+        contactInfos.add(ContactInfo.builder().label("work").value("+1 555 01" + seed).type(ContactInfoType.NONE)
+                .build());
+        contactInfos.add(ContactInfo.builder().label("email").value("contact" + seed + "@example.com")
+                .type(ContactInfoType.NONE).build());
+        return TreePVector.from(contactInfos);
+    }
+
+    static Address address(int seed) {
+        return Address.builder()
+                .addressName("Address-" + seed)
+                .streetAddress1(seed + " Main Street")
+                .city("Chicago")
+                .state("IL")
+                .zip("606" + (10 + seed % 90))
+                .addressPhone("+1 555 02" + seed)
+                .addressLatitude(41.8 + seed * 0.001)
+                .addressLongitude(-87.6 - seed * 0.001)
+                .build();
+    }
+}
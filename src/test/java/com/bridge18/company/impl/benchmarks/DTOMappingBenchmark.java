@@ -0,0 +1,76 @@
+package com.bridge18.company.impl.benchmarks;
+
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.entities.Contact;
+import com.bridge18.company.impl.entities.Location;
+import com.bridge18.company.impl.services.lagom.CompanyDTOMapper;
+import com.bridge18.company.v1.dto.company.CompanyDTO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pcollections.PVector;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link CompanyDTOMapper} in both directions. The response direction also walks the produced DTO, as
+ * serialization does, so that a lazily mapped result would pay for its mapping here too.
+ * <p>
+ * Run {@link #main} to get the allocation per operation ({@code gc.alloc.rate.norm}) next to the timings, or
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main DTOMappingBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DTOMappingBenchmark {
+    @Param({"5", "50"})
+    public int contacts;
+
+    @Param({"5", "200"})
+    public int locations;
+
+    private CompanyState state;
+    private CompanyDTO dto;
+
+    @Setup
+    public void setup() {
+        state = CompanyStates.company("company-1", contacts, locations);
+        dto = CompanyDTOMapper.toCompanyDTO(state);
+    }
+
+    @Benchmark
+    public int toCompanyDTO() {
+        CompanyDTO companyDTO = CompanyDTOMapper.toCompanyDTO(state);
+        int hash = 0;
+        for (Object contact : companyDTO.contacts) {
+            hash += System.identityHashCode(contact);
+        }
+        for (Object location : companyDTO.locations) {
+            hash += System.identityHashCode(location);
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public PVector<Contact> toContacts() {
+        return CompanyDTOMapper.toContacts(dto.contacts);
+    }
+
+    @Benchmark
+    public PVector<Location> toLocations() {
+        return CompanyDTOMapper.toLocations(dto.locations);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DTOMappingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
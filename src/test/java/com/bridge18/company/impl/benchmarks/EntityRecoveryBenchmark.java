@@ -0,0 +1,143 @@
+package com.bridge18.company.impl.benchmarks;
+
+import akka.actor.ActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.serialization.SerializerWithStringManifest;
+import com.bridge18.company.impl.entities.*;
+import com.lightbend.lagom.javadsl.testkit.PersistentEntityTestDriver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done by the recovery of a company entity: deserializing its latest snapshot, if any, and replaying the events
+ * journaled after it through the {@link CompanyEntity} itself. Without snapshots ({@code snapshotAfter = 0}) the
+ * {@link CompanyCreated} event and every {@link CompanyUpdated} event are replayed; with them at most
+ * {@code snapshotAfter - 1} are, which is the case measured here.
+ * <p>
+ * Events are applied by a {@link PersistentEntityTestDriver}, so each recovery also pays for a fresh driver.
+ * <p>
+ * Run with {@code java -cp <test classpath> org.openjdk.jmh.Main EntityRecoveryBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EntityRecoveryBenchmark {
+    private static final String ENTITY_ID = "company-1";
+
+    @Param({"100", "1000"})
+    public int journaledEvents;
+
+    @Param({"0", "50"})
+    public int snapshotAfter;
+
+    @Param({"5", "50"})
+    public int contacts;
+
+    @Param({"5", "200"})
+    public int locations;
+
+    private ActorSystem system;
+    private byte[] snapshot;
+    private Serializer snapshotSerializer;
+    private String snapshotManifest;
+    private List<Journaled> events;
+
+    @Setup
+    public void setup() {
+        system = ActorSystem.create("EntityRecoveryBenchmark");
+        Serialization serialization = SerializationExtension.get(system);
+
+        CompanyState state = CompanyStates.company(ENTITY_ID, contacts, locations);
+        int replayed = snapshotAfter == 0 ? journaledEvents : Math.min(journaledEvents, snapshotAfter - 1);
+        long revision = journaledEvents - replayed;
+
+        if (snapshotAfter > 0) {
+            CompanyState snapshotted = state.withRevision(revision);
+            snapshotSerializer = serialization.findSerializerFor(snapshotted);
+            snapshotManifest = manifestFor(snapshotSerializer, snapshotted);
+            snapshot = snapshotSerializer.toBinary(snapshotted);
+        }
+
+        events = new ArrayList<>(replayed);
+        for (int i = 0; i < replayed; i++) {
+            revision++;
+            CompanyEvent event = revision == 1 ?
+                    CompanyCreated.builder()
+                            .id(ENTITY_ID)
+                            .name(state.getName())
+                            .mc(state.getMc())
+                            .taxId(state.getTaxId())
+                            .companyType(state.getCompanyType())
+                            .contacts(state.getContacts())
+                            .locations(state.getLocations())
+                            .revision(revision)
+                            .build() :
+                    CompanyUpdated.builder()
+                            .id(ENTITY_ID)
+                            .name(state.getName() + " " + revision)
+                            .mc(state.getMc())
+                            .taxId(state.getTaxId())
+                            .companyType(state.getCompanyType())
+                            .contacts(state.getContacts())
+                            .locations(state.getLocations())
+                            .revision(revision)
+                            .build();
+            events.add(new Journaled(serialization.findSerializerFor(event), event));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        system.terminate();
+    }
+
+    @Benchmark
+    public CompanyState recover() throws Exception {
+        Optional<CompanyState> snapshotState = snapshot == null ? Optional.empty() :
+                Optional.of((CompanyState) fromBinary(snapshotSerializer, snapshot, snapshotManifest));
+
+        CompanyEvent[] replayed = new CompanyEvent[events.size()];
+        for (int i = 0; i < replayed.length; i++) {
+            Journaled event = events.get(i);
+            replayed[i] = (CompanyEvent) fromBinary(event.serializer, event.bytes, event.manifest);
+        }
+
+        PersistentEntityTestDriver<CompanyCommand, CompanyEvent, CompanyState> driver =
+                new PersistentEntityTestDriver<>(system, new CompanyEntity(), ENTITY_ID);
+        return driver.initialize(snapshotState, replayed).state();
+    }
+
+    private static Object fromBinary(Serializer serializer, byte[] bytes, String manifest) throws Exception {
+        if (serializer instanceof SerializerWithStringManifest) {
+            return ((SerializerWithStringManifest) serializer).fromBinary(bytes, manifest);
+        }
+        return serializer.fromBinary(bytes);
+    }
+
+    private static String manifestFor(Serializer serializer, Object o) {
+        return serializer instanceof SerializerWithStringManifest
+                ? ((SerializerWithStringManifest) serializer).manifest(o)
+                : "";
+    }
+
+    private static final class Journaled {
+        private final Serializer serializer;
+        private final String manifest;
+        private final byte[] bytes;
+
+        private Journaled(Serializer serializer, Object event) {
+            this.serializer = serializer;
+            this.manifest = manifestFor(serializer, event);
+            this.bytes = serializer.toBinary(event);
+        }
+    }
+}
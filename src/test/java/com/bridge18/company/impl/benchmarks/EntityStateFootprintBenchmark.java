@@ -0,0 +1,83 @@
+package com.bridge18.company.impl.benchmarks;
+
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import com.bridge18.company.impl.entities.CompactStates;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.serialization.CompanySerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.NotSerializableException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap held by the state of a company entity, as recovered from a snapshot: {@code tree} keeps the decoded state as
+ * it is, with {@code TreePVector} lists and a copy of every string, {@code compact} passes it through
+ * {@link CompactStates} as the entity does. The setup retains {@code ENTITIES} states and prints the bytes per
+ * entity; the benchmark itself measures the recovery of one state, compaction included.
+ * <p>
+ * Run with {@code java -cp <test classpath> org.openjdk.jmh.Main EntityStateFootprintBenchmark}. The printed sizes
+ * are only steady with a heap large enough for the retained states.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EntityStateFootprintBenchmark {
+    private static final int ENTITIES = 1000;
+
+    @Param({"tree", "compact"})
+    public String representation;
+
+    @Param({"5", "50"})
+    public int contacts;
+
+    @Param({"5", "200"})
+    public int locations;
+
+    private ActorSystem system;
+    private CompanySerializer serializer;
+    private String manifest;
+    private byte[] snapshot;
+
+    @Setup
+    public void setup() throws NotSerializableException {
+        system = ActorSystem.create("EntityStateFootprintBenchmark");
+        serializer = new CompanySerializer((ExtendedActorSystem) system);
+        CompanyState state = CompanyStates.company("company-1", contacts, locations);
+        manifest = serializer.manifest(state);
+        snapshot = serializer.toBinary(state);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        CompanyState[] retained = new CompanyState[ENTITIES];
+        long before = usedHeap(memory);
+        for (int i = 0; i < ENTITIES; i++) {
+            retained[i] = recover();
+        }
+        long after = usedHeap(memory);
+        System.out.printf("%n%s contacts=%d locations=%d: %d bytes per entity%n",
+                representation, contacts, locations, (after - before) / retained.length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        system.terminate();
+    }
+
+    @Benchmark
+    public CompanyState recover() throws NotSerializableException {
+        CompanyState state = (CompanyState) serializer.fromBinary(snapshot, manifest);
+        return representation.equals("compact") ? CompactStates.compact(state) : state;
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
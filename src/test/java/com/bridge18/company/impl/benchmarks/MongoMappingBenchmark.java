@@ -0,0 +1,91 @@
+package com.bridge18.company.impl.benchmarks;
+
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.repository.CompanyStateCodec;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.DefaultDBEncoder;
+import com.mongodb.MongoClient;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.Morphia;
+import org.mongodb.morphia.mapping.Mapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping a {@link CompanyState} read-side document to and from BSON bytes, as the driver sends and receives it:
+ * Morphia's reflective mapper, which goes through an intermediate {@link DBObject}, against {@link CompanyStateCodec}.
+ * Each path decodes the bytes it encoded itself. No database is involved; the Morphia datastore is only needed by
+ * the mapper and never connects.
+ * <p>
+ * Run with {@code java -cp <test classpath> org.openjdk.jmh.Main MongoMappingBenchmark -prof gc} to see the
+ * allocation per operation as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MongoMappingBenchmark {
+    @Param({"5", "50"})
+    public int contacts;
+
+    @Param({"5", "200"})
+    public int locations;
+
+    private final CompanyStateCodec codec = new CompanyStateCodec();
+    private MongoClient client;
+    private Datastore datastore;
+    private Mapper mapper;
+    private CompanyState state;
+    private byte[] morphiaBytes;
+    private byte[] codecBytes;
+
+    @Setup
+    public void setup() {
+        client = new MongoClient();
+        datastore = new Morphia().createDatastore(client, "company_mapping_benchmark");
+        mapper = datastore.getMapper();
+        state = CompanyStates.company("company-1", contacts, locations);
+        morphiaBytes = morphiaEncode();
+        codecBytes = codecEncode();
+        System.out.println("\nMorphia document: " + morphiaBytes.length + " bytes, codec document: "
+                + codecBytes.length + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public byte[] morphiaEncode() {
+        return new DefaultDBEncoder().encode(mapper.toDBObject(state));
+    }
+
+    @Benchmark
+    public byte[] codecEncode() {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(buffer), state, EncoderContext.builder().build());
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public CompanyState morphiaDecode() {
+        DBObject document = new DefaultDBDecoder().decode(morphiaBytes, null);
+        return mapper.fromDBObject(datastore, CompanyState.class, document, mapper.createEntityCache());
+    }
+
+    @Benchmark
+    public CompanyState codecDecode() {
+        return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(codecBytes)), DecoderContext.builder().build());
+    }
+}
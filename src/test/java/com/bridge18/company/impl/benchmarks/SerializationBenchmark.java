@@ -0,0 +1,96 @@
+package com.bridge18.company.impl.benchmarks;
+
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.serialization.SerializerWithStringManifest;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.entities.CompanyUpdated;
+import com.bridge18.company.impl.serialization.CompanySerializer;
+import com.lightbend.lagom.serialization.Jsonable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode time of {@link CompanySerializer} against the Lagom Jackson serializer the company messages
+ * were bound to before, for a full-state {@link CompanyUpdated} event. The serialized sizes are printed by the setup.
+ * <p>
+ * Run with {@code java -cp <test classpath> org.openjdk.jmh.Main SerializationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"5", "50"})
+    public int contacts;
+
+    @Param({"5", "200"})
+    public int locations;
+
+    private ActorSystem system;
+    private Serializer json;
+    private CompanySerializer binary;
+    private CompanyUpdated event;
+    private String jsonManifest;
+    private byte[] jsonBytes;
+    private byte[] binaryBytes;
+
+    @Setup
+    public void setup() {
+        system = ActorSystem.create("SerializationBenchmark");
+        json = SerializationExtension.get(system).serializerFor(Jsonable.class);
+        binary = new CompanySerializer((ExtendedActorSystem) system);
+
+        CompanyState state = CompanyStates.company("company-1", contacts, locations);
+        event = CompanyUpdated.builder()
+                .id(state.getId())
+                .name(state.getName())
+                .mc(state.getMc())
+                .taxId(state.getTaxId())
+                .companyType(state.getCompanyType())
+                .contacts(state.getContacts())
+                .locations(state.getLocations())
+                .build();
+
+        jsonManifest = json instanceof SerializerWithStringManifest
+                ? ((SerializerWithStringManifest) json).manifest(event)
+                : "";
+        jsonBytes = json.toBinary(event);
+        binaryBytes = binary.toBinary(event);
+
+        System.out.printf("%ncontacts=%d locations=%d: json %d bytes, binary %d bytes%n",
+                contacts, locations, jsonBytes.length, binaryBytes.length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        system.terminate();
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return json.toBinary(event);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return binary.toBinary(event);
+    }
+
+    @Benchmark
+    public Object decodeJson() throws Exception {
+        return json instanceof SerializerWithStringManifest
+                ? ((SerializerWithStringManifest) json).fromBinary(jsonBytes, jsonManifest)
+                : json.fromBinary(jsonBytes, CompanyUpdated.class);
+    }
+
+    @Benchmark
+    public Object decodeBinary() throws Exception {
+        return binary.fromBinary(binaryBytes, "CompanyUpdated");
+    }
+}
@@ -0,0 +1,82 @@
+package com.bridge18.company.impl.concurrent;
+
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InstrumentedExecutorTest {
+    private MetricsRegistry metricsRegistry;
+    private InstrumentedExecutor executor;
+    private CountDownLatch release;
+
+    @Before
+    public void before() {
+        metricsRegistry = new MetricsRegistry();
+        executor = new InstrumentedExecutor("test", new ExecutorSettings(1, 1), metricsRegistry);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void after() throws Exception {
+        release.countDown();
+        executor.shutdown().toCompletableFuture().get(30, SECONDS);
+    }
+
+    @Test
+    public void testRunsTasksAndRecordsTheirLatency() throws Exception {
+        assertEquals("done", executor.supply(() -> "done").toCompletableFuture().get(5, SECONDS));
+        executor.run(() -> { }).toCompletableFuture().get(5, SECONDS);
+        executor.shutdown().toCompletableFuture().get(30, SECONDS);
+
+        assertEquals(2L, metricsRegistry.value("executors.test.queue-wait.count"));
+        assertEquals(2L, metricsRegistry.value("executors.test.execution.count"));
+        assertEquals(2L, metricsRegistry.value("executors.test.completed"));
+        assertEquals(0L, metricsRegistry.value("executors.test.rejected"));
+    }
+
+    @Test
+    public void testFailsTheStageInsteadOfBlockingWhenTheQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletionStage<Void> running = executor.run(() -> {
+            started.countDown();
+            await(release);
+        });
+        started.await(5, SECONDS);
+        CompletionStage<Void> queued = executor.run(() -> { });
+
+        CompletionStage<Void> rejected = executor.run(() -> { });
+
+        try {
+            rejected.toCompletableFuture().get(5, SECONDS);
+            fail("A full queue should reject the task");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(1L, metricsRegistry.value("executors.test.rejected"));
+        assertEquals(1, metricsRegistry.value("executors.test.queue-depth"));
+        assertEquals(1.0, metricsRegistry.value("executors.test.utilization"));
+
+        release.countDown();
+        running.toCompletableFuture().get(5, SECONDS);
+        queued.toCompletableFuture().get(5, SECONDS);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(30, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.bridge18.company.impl.concurrent;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReadSideExecutorsTest {
+
+    @Test
+    public void testAutoProjectionThreadsCoverEveryLaneOfEveryProjectedTag() {
+        Config company = ConfigFactory.parseString("executors.read-side-projections { threads = auto, "
+                + "queue-size = 100 }, event-shards { count = 8, previous-count = 4 }, read-side.lanes.count = 3");
+
+        ExecutorSettings settings = ReadSideExecutors.projectionSettings(company);
+
+        // while resharding, only the tags of the previous count are projected
+        assertEquals(12, settings.getThreads());
+        assertEquals(100, settings.getQueueSize());
+    }
+
+    @Test
+    public void testExplicitProjectionThreads() {
+        Config company = ConfigFactory.parseString("executors.read-side-projections { threads = 5, "
+                + "queue-size = 100 }, event-shards { count = 8, previous-count = 0 }, read-side.lanes.count = 3");
+
+        assertEquals(5, ReadSideExecutors.projectionSettings(company).getThreads());
+    }
+}
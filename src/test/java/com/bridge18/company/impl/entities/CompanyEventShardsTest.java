@@ -0,0 +1,102 @@
+package com.bridge18.company.impl.entities;
+
+import com.lightbend.lagom.javadsl.persistence.AggregateEventShards;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompanyEventShardsTest {
+
+    @After
+    public void after() {
+        CompanyEventShards.reset();
+    }
+
+    @Test
+    public void testLegacyCountKeepsItsTagNames() {
+        CompanyEventShards shards = new CompanyEventShards(4, 0);
+
+        assertEquals(AggregateEventTag.sharded(CompanyEvent.class, 4).allTags(), shards.readSideTags());
+        assertEquals(shards.readSideTags(), shards.allTags());
+    }
+
+    @Test
+    public void testReshardProjectsOnlyThePreviousTags() {
+        CompanyEventShards shards = new CompanyEventShards(ConfigFactory.parseString("count = 8, previous-count = 4"));
+
+        assertEquals(CompanyEventShards.forCount(4).allTags(), shards.readSideTags());
+        assertEquals(12, shards.allTags().size());
+        Set<AggregateEventTag<CompanyEvent>> oldTags = new HashSet<>(CompanyEventShards.forCount(4).allTags());
+        for (AggregateEventTag<CompanyEvent> tag : CompanyEventShards.forCount(8).allTags()) {
+            assertFalse(tag.tag() + " is also an old tag", oldTags.contains(tag));
+            assertTrue(shards.allTags().contains(tag));
+        }
+    }
+
+    @Test
+    public void testPreviousCountEqualToCountIsNoReshard() {
+        CompanyEventShards shards = new CompanyEventShards(8, 8);
+
+        assertFalse(shards.getPreviousCount().isPresent());
+        assertEquals(CompanyEventShards.forCount(8).allTags(), shards.readSideTags());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEventsAreTaggedWithTheShardsInUse() {
+        CompanyEventShards.use(new CompanyEventShards(16, 4));
+
+        CompanyEvent event = CompanyNameChanged.of("company-1", "Name");
+
+        AggregateEventShards<CompanyEvent> tagger = (AggregateEventShards<CompanyEvent>) event.aggregateTag();
+        assertEquals(CompanyEventShards.forCount(16).allTags(), tagger.allTags());
+        assertEquals(CompanyEventShards.forCount(16).forEntityId("company-1"), tagger.forEntityId("company-1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEventsWrittenDuringAReshardAreOnlyProjectedOnceItEnds() {
+        CompanyEventShards.use(new CompanyEventShards(16, 4));
+
+        AggregateEventTag<CompanyEvent> tag = ((AggregateEventShards<CompanyEvent>)
+                CompanyNameChanged.of("company-1", "Name").aggregateTag()).forEntityId("company-1");
+
+        assertFalse(CompanyEventShards.current().readSideTags().contains(tag));
+        assertTrue(CompanyEventShards.current().allTags().contains(tag));
+        assertTrue(new CompanyEventShards(16, 0).readSideTags().contains(tag));
+    }
+
+    @Test
+    public void testShardsInUseAreNotReplacedByOthers() {
+        CompanyEventShards.use(new CompanyEventShards(16, 4));
+        CompanyEventShards.use(new CompanyEventShards(16, 4));
+
+        try {
+            CompanyEventShards.use(new CompanyEventShards(16, 0));
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        try {
+            CompanyEventShards.use(new CompanyEventShards(4, 0));
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertEquals(16, CompanyEventShards.current().getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNoShards() {
+        new CompanyEventShards(0, 0);
+    }
+}
@@ -0,0 +1,70 @@
+package com.bridge18.company.impl.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValueWithinTheirError() {
+        for (long micros = 0; micros < 1_000_000; micros += 1 + micros / 100) {
+            long upperBound = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(micros));
+            assertTrue(micros + " above " + upperBound, upperBound >= micros);
+            assertTrue(micros + " far below " + upperBound, upperBound <= micros + Math.max(1, micros / 8));
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testBucketOfItsUpperBoundIsTheBucket() {
+        for (int bucket = 0; bucket < 400; bucket++) {
+            assertEquals(bucket, LatencyHistogram.bucketOf(LatencyHistogram.upperBoundOf(bucket)));
+        }
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMicros(), 0);
+        assertEquals(0, histogram.getPercentileMicros(99));
+        assertEquals(0, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros, TimeUnit.MICROSECONDS);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMeanMicros(), 0.001);
+        assertEquals(1000, histogram.getMaxMicros());
+        assertWithin(500, histogram.getPercentileMicros(50));
+        assertWithin(950, histogram.getPercentileMicros(95));
+        assertWithin(990, histogram.getPercentileMicros(99));
+        assertEquals(1000, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void testRecordsInMicroseconds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3, TimeUnit.MILLISECONDS);
+        histogram.record(-5, TimeUnit.NANOSECONDS);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(3000, histogram.getMaxMicros());
+        assertEquals(1500, histogram.getMeanMicros(), 0);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " is not within 12.5% above " + expected,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
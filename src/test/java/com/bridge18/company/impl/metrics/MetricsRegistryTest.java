@@ -0,0 +1,50 @@
+package com.bridge18.company.impl.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testValueReadsOnlyTheNamedMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+        AtomicInteger otherGaugeReads = new AtomicInteger();
+        registry.counter("requests").add(3);
+        registry.gauge("queue-depth", () -> 7);
+        registry.gauge("expensive", otherGaugeReads::incrementAndGet);
+        registry.histogram("latency").record(40, TimeUnit.MICROSECONDS);
+        registry.meter("events").mark(5);
+
+        assertEquals(3L, registry.value("requests"));
+        assertEquals(7, registry.value("queue-depth"));
+        assertEquals(1L, registry.value("latency.count"));
+        assertEquals(40L, registry.value("latency.max-us"));
+        assertEquals(5L, registry.value("events.count"));
+        assertNull(registry.value("latency.p42-us"));
+        assertNull(registry.value("missing"));
+        assertEquals(0, otherGaugeReads.get());
+    }
+
+    @Test
+    public void testNamesMatchTheSnapshotWithoutReadingGauges() {
+        MetricsRegistry registry = new MetricsRegistry();
+        AtomicInteger gaugeReads = new AtomicInteger();
+        registry.counter("requests");
+        registry.gauge("expensive", gaugeReads::incrementAndGet);
+        registry.histogram("latency");
+        registry.meter("events");
+
+        assertEquals(new TreeSet<>(Arrays.asList("requests", "expensive",
+                "latency.count", "latency.mean-us", "latency.p50-us", "latency.p95-us", "latency.p99-us",
+                "latency.p999-us", "latency.max-us", "events.count", "events.per-second")), registry.names());
+        assertEquals(0, gaugeReads.get());
+        assertEquals(registry.names(), registry.snapshot().keySet());
+    }
+}
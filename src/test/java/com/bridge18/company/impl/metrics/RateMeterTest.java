@@ -0,0 +1,59 @@
+package com.bridge18.company.impl.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class RateMeterTest {
+    private static final long TICK = TimeUnit.SECONDS.toNanos(5);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final RateMeter meter = new RateMeter(clock::get);
+
+    @Test
+    public void testCountIsExact() {
+        meter.mark(3);
+        meter.mark(4);
+        clock.set(3 * TICK + 1);
+        meter.mark(5);
+
+        assertEquals(12, meter.getCount());
+    }
+
+    @Test
+    public void testFirstTickSetsTheRate() {
+        meter.mark(10);
+        assertEquals(0, meter.getRatePerSecond(), 0);
+
+        clock.set(TICK);
+        assertEquals(0, meter.getRatePerSecond(), 0);
+
+        clock.set(TICK + 1);
+        assertEquals(2, meter.getRatePerSecond(), 1e-9);
+    }
+
+    @Test
+    public void testIdleMeterDecays() {
+        meter.mark(10);
+        clock.set(TICK + 1);
+        assertEquals(2, meter.getRatePerSecond(), 1e-9);
+
+        clock.set(2 * TICK + 1);
+        assertEquals(2 * Math.exp(-5 / 60.0), meter.getRatePerSecond(), 1e-9);
+
+        clock.set(14 * TICK + 1);
+        assertEquals(2 * Math.exp(-13 * 5 / 60.0), meter.getRatePerSecond(), 1e-9);
+    }
+
+    @Test
+    public void testSteadyRate() {
+        for (int tick = 1; tick <= 120; tick++) {
+            meter.mark(50);
+            clock.set(tick * TICK + 1);
+        }
+        assertEquals(10, meter.getRatePerSecond(), 1e-6);
+    }
+}
@@ -0,0 +1,83 @@
+package com.bridge18.company.impl.repository;
+
+import akka.actor.ActorSystem;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.testkit.JavaTestKit;
+import com.bridge18.company.impl.entities.CompanyState;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+
+public class CompanyExportTest {
+    static ActorSystem system;
+    static Materializer materializer;
+
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("CompanyExportTest");
+        materializer = ActorMaterializer.create(system);
+    }
+
+    @AfterClass
+    public static void teardown() {
+        JavaTestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Test
+    public void testExportResumesEachBatchAfterTheLastId() throws InterruptedException, ExecutionException,
+            TimeoutException {
+        List<String> ids = Arrays.asList("a", "b", "c", "d", "e", "f", "g");
+        List<Optional<String>> queries = new ArrayList<>();
+
+        List<CompanyState> exported = CompanyMongoRepository.exportInBatches(lastId -> {
+            queries.add(lastId);
+            return ids.stream()
+                    .filter(id -> !lastId.isPresent() || id.compareTo(lastId.get()) > 0)
+                    .limit(3)
+                    .map(id -> CompanyState.builder().id(id).name("company-" + id).build())
+                    .collect(Collectors.toList());
+        }).runWith(Sink.seq(), materializer).toCompletableFuture().get(5, SECONDS);
+
+        assertEquals(ids, exported.stream().map(CompanyState::getId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(Optional.empty(), Optional.of("c"), Optional.of("f"), Optional.of("g")), queries);
+    }
+
+    @Test
+    public void testExportOfEmptyCollection() throws InterruptedException, ExecutionException, TimeoutException {
+        List<CompanyState> exported = CompanyMongoRepository.exportInBatches(lastId -> Collections.emptyList())
+                .runWith(Sink.seq(), materializer).toCompletableFuture().get(5, SECONDS);
+
+        assertEquals(Collections.emptyList(), exported);
+    }
+
+    @Test
+    public void testExportReadsOnlyWhatIsDemanded() throws InterruptedException, ExecutionException,
+            TimeoutException {
+        List<Optional<String>> queries = new ArrayList<>();
+
+        List<CompanyState> exported = CompanyMongoRepository.exportInBatches(lastId -> {
+            queries.add(lastId);
+            String next = lastId.map(id -> id + "x").orElse("x");
+            return Arrays.asList(CompanyState.builder().id(next).name("").build(),
+                    CompanyState.builder().id(next + "y").name("").build());
+        }).take(3).runWith(Sink.seq(), materializer).toCompletableFuture().get(5, SECONDS);
+
+        assertEquals(3, exported.size());
+        assertEquals(2, queries.size());
+    }
+}
@@ -0,0 +1,171 @@
+package com.bridge18.company.impl.repository;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.bridge18.company.impl.concurrent.ExecutorSettings;
+import com.bridge18.company.impl.concurrent.InstrumentedExecutor;
+import com.bridge18.company.impl.concurrent.ReadSideExecutors;
+import com.bridge18.company.impl.entities.Address;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.entities.Location;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.bridge18.v1.dto.PaginatedSequence;
+import com.mongodb.MongoClient;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.conversions.Bson;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.pcollections.TreePVector;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompanyLocationSearchTest {
+    static ActorSystem system;
+
+    private InstrumentedExecutor queries;
+    private ReadSideExecutors readSideExecutors;
+
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("CompanyLocationSearchTest");
+    }
+
+    @AfterClass
+    public static void teardown() {
+        JavaTestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Before
+    public void before() {
+        queries = new InstrumentedExecutor("test", new ExecutorSettings(1, 10), new MetricsRegistry());
+        readSideExecutors = Mockito.mock(ReadSideExecutors.class);
+        Mockito.when(readSideExecutors.queries()).thenReturn(queries);
+    }
+
+    @After
+    public void after() throws Exception {
+        queries.shutdown().toCompletableFuture().get(30, SECONDS);
+    }
+
+    @Test
+    public void testPipelineCutsThePageAfterGeoNear() {
+        List<BsonDocument> firstPage = render(CompanyMongoRepository.nearPipeline(
+                GeoArea.circle(41.8781, -87.6298, 5000), 0, 20));
+        assertEquals(Arrays.asList("$geoNear", "$limit"), stages(firstPage));
+        BsonDocument geoNear = firstPage.get(0).getDocument("$geoNear");
+        assertFalse(geoNear.containsKey("limit"));
+        assertFalse(geoNear.containsKey("num"));
+        assertFalse(geoNear.containsKey("query"));
+        assertEquals(5000, geoNear.getNumber("maxDistance").doubleValue(), 0);
+        assertEquals(new BsonArray(Arrays.asList(new BsonDouble(-87.6298), new BsonDouble(41.8781))),
+                geoNear.getDocument("near").getArray("coordinates"));
+        assertEquals(20, firstPage.get(1).getNumber("$limit").intValue());
+
+        List<BsonDocument> thirdPage = render(CompanyMongoRepository.nearPipeline(
+                GeoArea.box(41, -88, 42, -87), 40, 20));
+        assertEquals(Arrays.asList("$geoNear", "$skip", "$limit"), stages(thirdPage));
+        assertTrue(thirdPage.get(0).getDocument("$geoNear").getDocument("query")
+                .getDocument("locations").containsKey("$elemMatch"));
+        assertEquals(40, thirdPage.get(1).getNumber("$skip").intValue());
+        assertEquals(20, thirdPage.get(2).getNumber("$limit").intValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMatchesComeWithTheirNearestLocation() throws Exception {
+        Location far = location("far", 41.95, -87.65);
+        Location near = location("near", 41.88, -87.63);
+        CompanyState company = CompanyState.builder().id("company-1").name("Company")
+                .locations(TreePVector.from(Arrays.asList(far, near))).revision(3).build();
+        InMemoryCompanies documents = new InMemoryCompanies();
+        documents.write(CompanyStateWrites.upsert(company));
+
+        BsonDocument matched = documents.documents().get("company-1").clone();
+        matched.put("_distance", new BsonDouble(123.5));
+        matched.put("_matchedPoint", new BsonDocument("type", new BsonString("Point"))
+                .append("coordinates", new BsonArray(Arrays.asList(new BsonDouble(-87.63), new BsonDouble(41.88)))));
+
+        MongoCollection<CompanyState> companies = Mockito.mock(MongoCollection.class);
+        MongoCollection<RawBsonDocument> raw = Mockito.mock(MongoCollection.class);
+        AggregateIterable<RawBsonDocument> aggregate = Mockito.mock(AggregateIterable.class);
+        Mockito.when(companies.withDocumentClass(RawBsonDocument.class)).thenReturn(raw);
+        Mockito.when(raw.aggregate(Mockito.anyList())).thenReturn(aggregate);
+        Mockito.when(aggregate.iterator()).thenAnswer(invocation -> InMemoryCompanies.cursorOf(
+                Arrays.asList(new RawBsonDocument(matched, new BsonDocumentCodec()))));
+
+        CompanyMongoRepository repository = new CompanyMongoRepository(companies, null, readSideExecutors,
+                new ExportSettings(10), new RevisionWaitSettings(Duration.ofSeconds(1), Duration.ofMillis(100)),
+                new ProjectedRevisions(), system);
+        PaginatedSequence<CompanyLocationMatch> page = repository
+                .findCompaniesNear(GeoArea.circle(41.8781, -87.6298, 5000), 2, 10)
+                .toCompletableFuture().get(5, SECONDS);
+
+        assertEquals(1, page.getValues().size());
+        CompanyLocationMatch match = page.getValues().get(0);
+        assertEquals(company, match.getCompany());
+        assertEquals(near, match.getLocation());
+        assertEquals(123.5, match.getDistanceMeters(), 0);
+    }
+
+    @Test
+    public void testBoxFollowsParallelsOnWideBoxes() {
+        InMemoryCompanies documents = new InMemoryCompanies();
+        // the great circle between the southern corners crosses -95 at about 32.5 degrees north
+        add(documents, "just-inside-south", location("inside", 30.05, -95));
+        add(documents, "just-outside-north", location("outside", 50.05, -95));
+        add(documents, "just-outside-east", location("outside", 40, -69.95));
+        add(documents, "center", location("center", 40, -95));
+        add(documents, "no-coordinates", Location.builder().name("unknown").build());
+
+        List<String> found = documents.collection().find(GeoArea.box(30, -120, 50, -70).getBox().get())
+                .into(new ArrayList<>()).stream()
+                .map(CompanyState::getId)
+                .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("center", "just-inside-south"), found);
+    }
+
+    private static void add(InMemoryCompanies documents, String id, Location location) {
+        documents.write(CompanyStateWrites.upsert(CompanyState.builder().id(id).name("Company " + id)
+                .locations(TreePVector.singleton(location)).revision(1).build()));
+    }
+
+    private static Location location(String name, double latitude, double longitude) {
+        return Location.builder()
+                .name(name)
+                .address(Address.builder().city("Chicago").addressLatitude(latitude).addressLongitude(longitude)
+                        .build())
+                .build();
+    }
+
+    private static List<BsonDocument> render(List<Bson> pipeline) {
+        return pipeline.stream()
+                .map(stage -> stage.toBsonDocument(BsonDocument.class, MongoClient.getDefaultCodecRegistry()))
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> stages(List<BsonDocument> pipeline) {
+        return pipeline.stream().map(stage -> stage.keySet().iterator().next()).collect(Collectors.toList());
+    }
+}
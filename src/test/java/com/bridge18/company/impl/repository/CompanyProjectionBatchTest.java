@@ -0,0 +1,181 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.entities.CompanyType;
+import com.bridge18.company.impl.entities.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.pcollections.TreePVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The batched projection must leave every document exactly as the per-event projection does, whatever the events
+ * and however they are cut into batches.
+ */
+public class CompanyProjectionBatchTest {
+    private final Map<String, CompanyState> states = new HashMap<>();
+    private List<CompanyEvent> setup;
+    private List<CompanyEvent> events;
+
+    @Before
+    public void before() {
+        setup = new ArrayList<>();
+        events = setup;
+        create("existing-1", 3, 2);
+        create("existing-2", 1, 1);
+
+        events = new ArrayList<>();
+        create("new-1", 2, 2);
+        patch("new-1", PatchCompany.builder()
+                .name("New One")
+                .mc("MC-NEW")
+                .contacts(TreePVector.singleton(contact("0", "changed")).plus(contact("9", "added")))
+                .removedContactIds(TreePVector.singleton("1"))
+                .locations(TreePVector.singleton(location(7)))
+                .build());
+        update("new-1", CompanyUpdated.builder().id("new-1").name("New 1").contacts(contacts(1)).build());
+        patch("existing-1", PatchCompany.builder()
+                .contacts(TreePVector.singleton(contact("1", "changed")).plus(contact("5", "added")))
+                .locations(TreePVector.singleton(location(0)))
+                .build());
+        update("existing-2", CompanyUpdated.builder().id("existing-2").name("Second").taxId("12-3").build());
+        patch("existing-2", PatchCompany.builder().name("Second Company").companyType(CompanyType.CARRIER).build());
+        update("existing-1", CompanyUpdated.builder().id("existing-1").name("First").mc("MC-1").build());
+        update("existing-1", CompanyUpdated.builder().id("existing-1").name("").locations(locations(3)).build());
+        create("new-2", 1, 0);
+        delete("new-2");
+        delete("existing-2");
+        update("existing-2", CompanyUpdated.builder().id("existing-2").name("Gone").build());
+        patch("existing-1", PatchCompany.builder()
+                .removedContactIds(TreePVector.singleton("0"))
+                .locations(locations(2))
+                .build());
+        patch("new-1", PatchCompany.builder().taxId("99-9").contacts(TreePVector.singleton(contact("2", "new")))
+                .build());
+    }
+
+    @Test
+    public void testBatchesWriteTheSameDocumentsAsSingleEvents() {
+        InMemoryCompanies perEvent = perEvent();
+        assertTrue(perEvent.documents().containsKey("new-1"));
+        assertFalse(perEvent.documents().containsKey("new-2"));
+
+        for (int batchSize = 1; batchSize <= events.size(); batchSize++) {
+            InMemoryCompanies batched = new InMemoryCompanies();
+            setup.forEach(event -> CompanyStateWrites.forEvent(event).ifPresent(batched::write));
+            for (int from = 0; from < events.size(); from += batchSize) {
+                CompanyProjectionBatch batch = new CompanyProjectionBatch();
+                events.subList(from, Math.min(from + batchSize, events.size())).forEach(batch::add);
+                batch.write(batched.collection());
+            }
+
+            assertEquals("batches of " + batchSize, perEvent.documents(), batched.documents());
+        }
+    }
+
+    @Test
+    public void testContactRemovalAgreesWithTheEntityOnDuplicateIds() {
+        // contact ids were not checked for uniqueness when this company was created
+        CompanyCreated created = CompanyCreated.builder()
+                .id("legacy-1")
+                .name("Legacy")
+                .contacts(TreePVector.from(Arrays.asList(contact("1", "first"), contact("2", "first"),
+                        contact("1", "second"))))
+                .revision(1)
+                .build();
+        ContactRemoved removed = ContactRemoved.of("legacy-1", "1").withRevision(2);
+        InMemoryCompanies companies = new InMemoryCompanies();
+        CompanyStateWrites.forEvent(created).ifPresent(companies::write);
+        CompanyStateWrites.forEvent(removed).ifPresent(companies::write);
+
+        CompanyState entityState = CompanyDeltas.apply(CompanyStateWrites.created(created), removed);
+        CompanyState projected = companies.collection().find(CompanyStateWrites.byId("legacy-1")).first();
+
+        assertEquals(TreePVector.singleton(contact("2", "first")), entityState.getContacts().get());
+        assertEquals(entityState.getContacts(), projected.getContacts());
+    }
+
+    private InMemoryCompanies perEvent() {
+        InMemoryCompanies companies = new InMemoryCompanies();
+        setup.forEach(event -> CompanyStateWrites.forEvent(event).ifPresent(companies::write));
+        events.forEach(event -> CompanyStateWrites.forEvent(event).ifPresent(companies::write));
+        return companies;
+    }
+
+    private void create(String id, int contacts, int locations) {
+        CompanyCreated created = CompanyCreated.builder()
+                .id(id)
+                .name("Company " + id)
+                .mc("MC-" + id)
+                .contacts(contacts(contacts))
+                .locations(locations(locations))
+                .revision(1)
+                .build();
+        events.add(created);
+        states.put(id, CompanyStateWrites.created(created));
+    }
+
+    private void update(String id, CompanyUpdated updated) {
+        CompanyState state = states.get(id);
+        CompanyUpdated event = updated.withRevision(state.getRevision() + 1);
+        events.add(event);
+        states.put(id, CompanyStateWrites.updated(state, event));
+    }
+
+    private void patch(String id, PatchCompany patch) {
+        CompanyState state = states.get(id);
+        for (CompanyEvent delta : CompanyDeltas.diff(state, patch)) {
+            events.add(delta);
+            state = CompanyDeltas.apply(state, (CompanyEvent.CompanyDelta) delta).withRevision(delta.getRevision());
+        }
+        states.put(id, state);
+    }
+
+    private void delete(String id) {
+        events.add(CompanyDeleted.builder().id(id).revision(states.get(id).getRevision() + 1).build());
+    }
+
+    private static TreePVector<Contact> contacts(int count) {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            contacts.add(contact(String.valueOf(i), "first"));
+        }
+        return TreePVector.from(contacts);
+    }
+
+    private static Contact contact(String id, String firstName) {
+        return Contact.builder()
+                .id(id)
+                .firstName(firstName + "-" + id)
+                .position("Dispatcher")
+                .address(Address.builder().city("Chicago").zip("606" + id).build())
+                .build();
+    }
+
+    private static TreePVector<Location> locations(int count) {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            locations.add(location(i));
+        }
+        return TreePVector.from(locations);
+    }
+
+    private static Location location(int seed) {
+        return Location.builder()
+                .name("Location-" + seed)
+                .address(Address.builder()
+                        .city("Chicago")
+                        .addressLatitude(41.8 + seed * 0.01)
+                        .addressLongitude(-87.6)
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.bridge18.company.impl.repository;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.bridge18.company.impl.concurrent.ExecutorSettings;
+import com.bridge18.company.impl.concurrent.InstrumentedExecutor;
+import com.bridge18.company.impl.concurrent.ReadSideExecutors;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.bridge18.exception.LagomException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompanyReadSideTest {
+    static ActorSystem system;
+
+    private InstrumentedExecutor queries;
+    private InMemoryCompanies companies;
+    private ProjectionProgressStore progressStore;
+    private CompanyMongoRepository repository;
+
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("CompanyReadSideTest");
+    }
+
+    @AfterClass
+    public static void teardown() {
+        JavaTestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Before
+    public void before() {
+        queries = new InstrumentedExecutor("test", new ExecutorSettings(1, 10), new MetricsRegistry());
+        ReadSideExecutors readSideExecutors = Mockito.mock(ReadSideExecutors.class);
+        Mockito.when(readSideExecutors.queries()).thenReturn(queries);
+
+        companies = new InMemoryCompanies();
+        progressStore = Mockito.mock(ProjectionProgressStore.class);
+        repository = new CompanyMongoRepository(companies.collection(), progressStore, readSideExecutors,
+                new ExportSettings(10), new RevisionWaitSettings(Duration.ofSeconds(1), Duration.ofMillis(100)),
+                new ProjectedRevisions(), system);
+    }
+
+    @After
+    public void after() throws Exception {
+        queries.shutdown().toCompletableFuture().get(30, SECONDS);
+    }
+
+    @Test
+    public void testGetCompanyReadsTheProjection() throws Exception {
+        CompanyState company = CompanyState.builder().id("company-1").name("Company").revision(4).build();
+        companies.write(CompanyStateWrites.upsert(company));
+
+        assertEquals(Optional.of(company), repository.getCompany("company-1").toCompletableFuture().get(5, SECONDS));
+        assertEquals(Optional.empty(), repository.getCompany("company-2").toCompletableFuture().get(5, SECONDS));
+    }
+
+    @Test
+    public void testMalformedCursorFailsTheStage() throws Exception {
+        CompletionStage<CursorPaginatedSequence<CompanyState>> page =
+                repository.getCompanies(Optional.of("not a cursor"), 10);
+
+        try {
+            page.toCompletableFuture().get(5, SECONDS);
+            fail("Expected the page to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof LagomException);
+        }
+    }
+
+    @Test
+    public void testTagLag() {
+        long now = 100_000;
+        assertEquals(300, progress("tag", 40_000, 40_300, 0).lagMillis(now));
+        assertEquals(59_700, progress("tag", 40_000, 40_300, 5).lagMillis(now));
+        assertEquals(900, progress("tag", 99_000, 99_900, 5).lagMillis(now));
+        assertEquals(0, progress("tag", 40_300, 40_000, 0).lagMillis(now));
+    }
+
+    @Test
+    public void testProjectionLagIsTheLargestOfTheTags() throws Exception {
+        long now = System.currentTimeMillis();
+        Mockito.when(progressStore.load()).thenReturn(Arrays.asList(
+                progress("tag-0", now - 1_000, now - 800, 0),
+                progress("tag-1", now - 60_000, now - 59_950, 3)));
+
+        Duration lag = repository.getProjectionLag().toCompletableFuture().get(5, SECONDS).get();
+        assertTrue(lag.toMillis() >= 59_950);
+
+        repository.getProjectionLag().toCompletableFuture().get(5, SECONDS);
+        Mockito.verify(progressStore, Mockito.times(1)).load();
+    }
+
+    @Test
+    public void testNoLagBeforeAnyTagReported() throws Exception {
+        Mockito.when(progressStore.load()).thenReturn(Collections.emptyList());
+
+        assertEquals(Optional.empty(), repository.getProjectionLag().toCompletableFuture().get(5, SECONDS));
+    }
+
+    private static ProjectionProgressStore.TagProgress progress(String tag, long eventTime, long appliedAt,
+                                                               long pendingEvents) {
+        return new ProjectionProgressStore.TagProgress(tag, eventTime, appliedAt, pendingEvents);
+    }
+}
@@ -0,0 +1,169 @@
+package com.bridge18.company.impl.repository;
+
+import akka.Done;
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.bridge18.company.impl.concurrent.ExecutorSettings;
+import com.bridge18.company.impl.concurrent.InstrumentedExecutor;
+import com.bridge18.company.impl.concurrent.ReadSideExecutors;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.bridge18.exception.LagomException;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompanyRevisionWaitTest {
+    static ActorSystem system;
+
+    private InstrumentedExecutor queries;
+    private InMemoryCompanies companies;
+    private ProjectedRevisions projectedRevisions;
+    private CompanyMongoRepository repository;
+
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("CompanyRevisionWaitTest");
+    }
+
+    @AfterClass
+    public static void teardown() {
+        JavaTestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Before
+    public void before() {
+        queries = new InstrumentedExecutor("test", new ExecutorSettings(1, 10), new MetricsRegistry());
+        companies = new InMemoryCompanies();
+        companies.write(CompanyStateWrites.upsert(
+                CompanyState.builder().id("company-1").name("Company").revision(1).build()));
+        projectedRevisions = new ProjectedRevisions();
+        repository = new CompanyMongoRepository(companies.collection(), null, readSideExecutors(),
+                new ExportSettings(10), new RevisionWaitSettings(Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                projectedRevisions, system);
+    }
+
+    @After
+    public void after() throws Exception {
+        queries.shutdown().toCompletableFuture().get(30, SECONDS);
+    }
+
+    @Test
+    public void testRevisionAlreadyProjected() throws Exception {
+        assertEquals(Done.getInstance(), repository.awaitRevision(ConsistencyToken.of("company-1", 1),
+                Duration.ofSeconds(1)).toCompletableFuture().get(5, SECONDS));
+        assertEquals(Done.getInstance(), repository.awaitRevision(Optional.empty())
+                .toCompletableFuture().get(5, SECONDS));
+    }
+
+    @Test
+    public void testWaitEndsWhenThisNodeProjectsTheRevision() throws Exception {
+        CompletableFuture<Done> reached = repository.awaitRevision(ConsistencyToken.of("company-1", 3),
+                Duration.ofSeconds(10)).toCompletableFuture();
+        Thread.sleep(200);
+        assertFalse(reached.isDone());
+
+        projectedRevisions.applied("company-1", 2);
+        Thread.sleep(50);
+        assertFalse(reached.isDone());
+
+        projectedRevisions.applied("company-1", 4);
+        assertEquals(Done.getInstance(), reached.get(1, SECONDS));
+    }
+
+    @Test
+    public void testWaitEndsWhenAnotherNodeProjectsTheRevision() throws Exception {
+        repository = new CompanyMongoRepository(companies.collection(), null, readSideExecutors(),
+                new ExportSettings(10), new RevisionWaitSettings(Duration.ofSeconds(10), Duration.ofMillis(50)),
+                projectedRevisions, system);
+        CompletableFuture<Done> reached = repository.awaitRevision(ConsistencyToken.of("company-1", 2),
+                Duration.ofSeconds(10)).toCompletableFuture();
+        Thread.sleep(200);
+        assertFalse(reached.isDone());
+
+        BsonDocument projected = companies.documents().get("company-1").clone();
+        projected.put(CompanyStateWrites.REVISION, new BsonInt64(2));
+        companies.documents().put("company-1", projected);
+        assertEquals(Done.getInstance(), reached.get(5, SECONDS));
+    }
+
+    @Test
+    public void testWaitEndsWhenTheCompanyIsGone() throws Exception {
+        companies.documents().remove("company-1");
+
+        assertEquals(Done.getInstance(), repository.awaitRevision(ConsistencyToken.of("company-1", 2),
+                Duration.ofSeconds(10)).toCompletableFuture().get(5, SECONDS));
+    }
+
+    @Test
+    public void testCreationWaitsForItsDocument() throws Exception {
+        repository = new CompanyMongoRepository(companies.collection(), null, readSideExecutors(),
+                new ExportSettings(10), new RevisionWaitSettings(Duration.ofSeconds(10), Duration.ofMillis(50)),
+                projectedRevisions, system);
+        CompletableFuture<Done> reached = repository.awaitRevision(ConsistencyToken.of("company-2", 1),
+                Duration.ofSeconds(10)).toCompletableFuture();
+        Thread.sleep(200);
+        assertFalse(reached.isDone());
+
+        companies.write(CompanyStateWrites.upsert(
+                CompanyState.builder().id("company-2").name("Second").revision(1).build()));
+        assertEquals(Done.getInstance(), reached.get(5, SECONDS));
+    }
+
+    @Test
+    public void testWaitTimesOut() throws Exception {
+        CompletableFuture<Done> reached = repository.awaitRevision(ConsistencyToken.of("company-1", 2),
+                Duration.ofMillis(300)).toCompletableFuture();
+        try {
+            reached.get(5, SECONDS);
+            fail("The read side never reaches revision 2");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof LagomException);
+        }
+
+        projectedRevisions.applied("company-1", 2);
+        assertTrue(reached.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testProjectedRevisions() throws Exception {
+        CompletableFuture<Done> second = projectedRevisions.await("company-1", 2);
+        CompletableFuture<Done> third = projectedRevisions.await("company-1", 3);
+        CompletableFuture<Done> other = projectedRevisions.await("company-2", 1);
+
+        projectedRevisions.applied("company-1", 2);
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+        assertFalse(other.isDone());
+
+        third.completeExceptionally(new IllegalStateException("timed out"));
+        projectedRevisions.applied("company-1", 5);
+        assertTrue(third.isCompletedExceptionally());
+
+        projectedRevisions.applied("company-2", 7);
+        assertEquals(Done.getInstance(), other.get(1, SECONDS));
+    }
+
+    private ReadSideExecutors readSideExecutors() {
+        ReadSideExecutors readSideExecutors = Mockito.mock(ReadSideExecutors.class);
+        Mockito.when(readSideExecutors.queries()).thenReturn(queries);
+        return readSideExecutors;
+    }
+}
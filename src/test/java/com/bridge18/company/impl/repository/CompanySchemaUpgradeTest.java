@@ -0,0 +1,70 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.impl.entities.CompanyState;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt64;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompanySchemaUpgradeTest {
+    @Test
+    public void testOutdatedDocumentsGetTheQueryFields() {
+        InMemoryCompanies companies = new InMemoryCompanies();
+        companies.documents().put("company-1", morphiaDocument("company-1", "Acme Trucking"));
+        companies.documents().put("company-2", morphiaDocument("company-2", "Bravo Freight"));
+
+        CompanyStateWrites.upgradeOutdated(companies.collection(), 1);
+
+        for (String id : Arrays.asList("company-1", "company-2")) {
+            BsonDocument upgraded = companies.documents().get(id);
+            assertEquals(CompanyStateWrites.CURRENT_SCHEMA_VERSION,
+                    upgraded.getNumber(CompanyStateWrites.SCHEMA_VERSION).intValue());
+            assertEquals(new BsonArray(Arrays.asList(new BsonDouble(-87.63), new BsonDouble(41.88))),
+                    upgraded.getArray("locations").get(0).asDocument()
+                            .getDocument(CompanyStateWrites.POINT).getArray("coordinates"));
+            assertEquals(2, upgraded.getNumber(CompanyStateWrites.REVISION).longValue());
+        }
+        assertEquals(CompanyStateWrites.searchName("Acme Trucking"),
+                companies.documents().get("company-1").getString(CompanyStateWrites.SEARCH_NAME).getValue());
+        assertEquals(CompanyStateWrites.searchName("Bravo Freight"),
+                companies.documents().get("company-2").getString(CompanyStateWrites.SEARCH_NAME).getValue());
+    }
+
+    @Test
+    public void testCurrentDocumentsAreLeftAlone() {
+        InMemoryCompanies companies = new InMemoryCompanies();
+        companies.write(CompanyStateWrites.upsert(
+                CompanyState.builder().id("company-1").name("Acme Trucking").revision(1).build()));
+        companies.documents().get("company-1").put(CompanyStateWrites.SEARCH_NAME, new BsonString("stale"));
+
+        CompanyStateWrites.upgradeOutdated(companies.collection(), 10);
+
+        assertEquals("stale",
+                companies.documents().get("company-1").getString(CompanyStateWrites.SEARCH_NAME).getValue());
+    }
+
+    /**
+     * A company as Morphia stored it, before the read side wrote its query fields.
+     */
+    private static BsonDocument morphiaDocument(String id, String name) {
+        BsonDocument address = new BsonDocument("city", new BsonString("Chicago"))
+                .append("addressLatitude", new BsonDouble(41.88))
+                .append("addressLongitude", new BsonDouble(-87.63));
+        return new BsonDocument("_id", new BsonObjectId(new ObjectId()))
+                .append("className", new BsonString("com.bridge18.company.impl.entities.CompanyState"))
+                .append("id", new BsonString(id))
+                .append("name", new BsonString(name))
+                .append("contacts", new BsonArray())
+                .append("locations", new BsonArray(Arrays.asList(
+                        new BsonDocument("name", new BsonString("HQ")).append("address", address))))
+                .append("revision", new BsonInt64(2));
+    }
+}
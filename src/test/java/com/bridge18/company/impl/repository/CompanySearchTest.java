@@ -0,0 +1,161 @@
+package com.bridge18.company.impl.repository;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.bridge18.company.impl.concurrent.ExecutorSettings;
+import com.bridge18.company.impl.concurrent.InstrumentedExecutor;
+import com.bridge18.company.impl.concurrent.ReadSideExecutors;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.bridge18.exception.LagomException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompanySearchTest {
+    static ActorSystem system;
+
+    private InstrumentedExecutor queries;
+    private InMemoryCompanies companies;
+    private CompanyMongoRepository repository;
+
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("CompanySearchTest");
+    }
+
+    @AfterClass
+    public static void teardown() {
+        JavaTestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Before
+    public void before() {
+        queries = new InstrumentedExecutor("test", new ExecutorSettings(1, 10), new MetricsRegistry());
+        ReadSideExecutors readSideExecutors = Mockito.mock(ReadSideExecutors.class);
+        Mockito.when(readSideExecutors.queries()).thenReturn(queries);
+
+        companies = new InMemoryCompanies();
+        repository = new CompanyMongoRepository(companies.collection(), null, readSideExecutors,
+                new ExportSettings(10), new RevisionWaitSettings(Duration.ofSeconds(1), Duration.ofMillis(100)),
+                new ProjectedRevisions(), system);
+    }
+
+    @After
+    public void after() throws Exception {
+        queries.shutdown().toCompletableFuture().get(30, SECONDS);
+    }
+
+    @Test
+    public void testPrefixUpperBound() {
+        assertEquals(Optional.of("acmf"), CompanySearch.prefixUpperBound("acme"));
+        assertEquals(Optional.of("ac\uE000"), CompanySearch.prefixUpperBound("ac\uD7FF"));
+        assertEquals(Optional.of("a\uD83D\uDE01"), CompanySearch.prefixUpperBound("a\uD83D\uDE00"));
+        assertEquals(Optional.of("b"), CompanySearch.prefixUpperBound("a" + new String(Character.toChars(0x10FFFF))));
+        assertEquals(Optional.empty(), CompanySearch.prefixUpperBound(new String(Character.toChars(0x10FFFF))));
+    }
+
+    @Test
+    public void testNamePrefixMatchesEveryNameStartingWithIt() throws Exception {
+        List<String> names = Arrays.asList("Acme", "acme trucking", "Acme\uFFFF", "Acme\uD83D\uDE9A Freight",
+                "Acme" + new String(Character.toChars(0x10FFFF)), "Acmf", "Acm", "Bacme", "Acme\0Zero");
+        for (int i = 0; i < names.size(); i++) {
+            add("id-" + i, names.get(i));
+        }
+
+        List<String> found = searchAll(Optional.of("ACME"), 100);
+
+        assertEquals(Arrays.asList("id-0", "id-8", "id-1", "id-2", "id-3", "id-4"), found);
+    }
+
+    @Test
+    public void testPagesCoverEveryMatchOnce() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            // names repeat, so pages also break between companies of the same name
+            String id = String.format("id-%02d", i);
+            add(id, "Acme" + (i % 2 == 0 ? "\0" : ":") + (i % 5));
+            add("other-" + i, "Other " + i);
+        }
+        for (int i = 0; i < 23; i++) {
+            expected.add(String.format("id-%02d", i));
+        }
+
+        for (int pageSize : new int[]{1, 2, 5, 22, 23, 50}) {
+            List<String> found = searchAll(Optional.of("acme"), pageSize);
+            assertEquals("pages of " + pageSize, expected, found.stream().sorted().collect(Collectors.toList()));
+            assertEquals("pages of " + pageSize, expected.size(), found.size());
+        }
+
+        List<String> byId = searchAll(Optional.empty(), 4);
+        assertEquals(46, byId.size());
+        assertEquals(byId.stream().sorted().collect(Collectors.toList()), byId);
+    }
+
+    @Test
+    public void testCursorOfLastPageIsAbsent() throws Exception {
+        add("id-1", "Acme");
+        add("id-2", "Acme");
+
+        CursorPaginatedSequence<CompanyState> first = search(Optional.of("acme"), Optional.empty(), 1);
+        assertTrue(first.getNextCursor().isPresent());
+        CursorPaginatedSequence<CompanyState> second = search(Optional.of("acme"), first.getNextCursor(), 1);
+        assertEquals("id-2", second.getValues().get(0).getId());
+        assertFalse(second.getNextCursor().isPresent());
+    }
+
+    @Test
+    public void testCursorOfTheOtherOrderFailsTheStage() throws Exception {
+        add("id-1", "Acme");
+        add("id-2", "Acme");
+        Optional<String> byIdCursor = search(Optional.empty(), Optional.empty(), 1).getNextCursor();
+
+        try {
+            search(Optional.of("acme"), byIdCursor, 1);
+            fail("Expected the search to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof LagomException);
+        }
+    }
+
+    private List<String> searchAll(Optional<String> namePrefix, int pageSize) throws Exception {
+        List<String> ids = new ArrayList<>();
+        Optional<String> cursor = Optional.empty();
+        do {
+            CursorPaginatedSequence<CompanyState> page = search(namePrefix, cursor, pageSize);
+            assertTrue(page.getValues().size() <= pageSize);
+            page.getValues().forEach(company -> ids.add(company.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor.isPresent());
+        return ids;
+    }
+
+    private CursorPaginatedSequence<CompanyState> search(Optional<String> namePrefix, Optional<String> cursor,
+                                                         int pageSize) throws Exception {
+        return repository.searchCompanies(
+                new CompanySearch(namePrefix, Optional.empty(), Optional.empty(), Optional.empty()),
+                cursor, pageSize).toCompletableFuture().get(5, SECONDS);
+    }
+
+    private void add(String id, String name) {
+        companies.write(CompanyStateWrites.upsert(CompanyState.builder().id(id).name(name).revision(1).build()));
+    }
+}
@@ -0,0 +1,138 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.entities.CompanyType;
+import com.bridge18.company.entities.ContactInfoType;
+import com.bridge18.company.impl.entities.Address;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.entities.Contact;
+import com.bridge18.company.impl.entities.ContactInfo;
+import com.bridge18.company.impl.entities.Location;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonDouble;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.pcollections.TreePVector;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CompanyStateCodecTest {
+    private static final CompanyStateCodec CODEC = new CompanyStateCodec();
+
+    private static final Contact CONTACT = Contact.builder().id("1").firstName("John").lastName("Smith")
+            .position("Dispatcher")
+            .contactInfo(TreePVector.singleton(ContactInfo.builder().label("work").value("555-0100")
+                    .type(ContactInfoType.NONE).build()))
+            .address(Address.builder().addressId(7).city("Chicago").build())
+            .build();
+    private static final Location LOCATION = Location.builder().name("HQ")
+            .address(Address.builder().city("Chicago").addressLatitude(41.88).addressLongitude(-87.63).build())
+            .build();
+
+    @Test
+    public void testRoundTrip() {
+        CompanyState company = CompanyState.builder().id("company-1").name("Acme Trucking").mc("MC1")
+                .taxId("1111").companyType(CompanyType.BROKER)
+                .contacts(TreePVector.singleton(CONTACT)).locations(TreePVector.singleton(LOCATION))
+                .revision(3).build();
+
+        assertEquals(company, decode(encode(company)));
+    }
+
+    @Test
+    public void testMorphiaDocumentsDecode() {
+        CompanyState inserted = decode(morphiaDocument()
+                .append("mc", new BsonString("MC1"))
+                .append("taxId", BsonNull.VALUE)
+                .append("companyType", new BsonString("BROKER"))
+                .append("contacts", new BsonArray(Arrays.asList(encode(CONTACT))))
+                .append("locations", new BsonArray()));
+
+        assertEquals(CompanyState.builder().id("company-1").name("Acme Trucking").mc("MC1")
+                .companyType(CompanyType.BROKER).contacts(TreePVector.singleton(CONTACT))
+                .locations(TreePVector.empty()).build(), inserted);
+    }
+
+    @Test
+    public void testOptionalsSetByMorphiaUpdatesDecode() {
+        CompanyState updated = decode(morphiaUpdatedDocument());
+
+        assertEquals(CompanyState.builder().id("company-1").name("Acme Trucking").mc("MC2")
+                .companyType(CompanyType.CARRIER).contacts(TreePVector.singleton(CONTACT))
+                .locations(TreePVector.singleton(LOCATION)).build(), updated);
+    }
+
+    @Test
+    public void testUpgradeRewritesMorphiaOptionals() {
+        InMemoryCompanies companies = new InMemoryCompanies();
+        companies.documents().put("company-1", morphiaUpdatedDocument());
+        CompanyState before = decode(morphiaUpdatedDocument());
+
+        CompanyStateWrites.upgradeOutdated(companies.collection(), 10);
+
+        BsonDocument upgraded = companies.documents().get("company-1");
+        assertEquals(new BsonString("MC2"), upgraded.get("mc"));
+        assertFalse(upgraded.containsKey("taxId"));
+        assertEquals(new BsonString("CARRIER"), upgraded.get("companyType"));
+        assertEquals(new BsonArray(Arrays.asList(encode(CONTACT))), upgraded.get("contacts"));
+        assertEquals(before, decode(upgraded));
+    }
+
+    /**
+     * A company as Morphia inserted it, without the fields that differ between an insert and an update.
+     */
+    private static BsonDocument morphiaDocument() {
+        return new BsonDocument("_id", new BsonObjectId(new ObjectId()))
+                .append("className", new BsonString("com.bridge18.company.impl.entities.CompanyState"))
+                .append("id", new BsonString("company-1"))
+                .append("name", new BsonString("Acme Trucking"));
+    }
+
+    /**
+     * A company after the Morphia read side applied an update: it set the {@link Optional}s of the event as they were,
+     * which Morphia stored as documents holding the value, if any, under {@code value}.
+     */
+    private static BsonDocument morphiaUpdatedDocument() {
+        return morphiaDocument()
+                .append("mc", morphiaOptional(new BsonString("MC2")))
+                .append("taxId", morphiaOptional(null))
+                .append("companyType", morphiaOptional(new BsonString("CARRIER")))
+                .append("contacts", morphiaOptional(new BsonArray(Arrays.asList(encode(CONTACT)))))
+                .append("locations", new BsonDocument("value", new BsonArray(Arrays.asList(
+                        new BsonDocument("name", new BsonString("HQ"))
+                                .append("address", new BsonDocument("city", new BsonString("Chicago"))
+                                        .append("addressLatitude", new BsonDouble(41.88))
+                                        .append("addressLongitude", new BsonDouble(-87.63)))))));
+    }
+
+    private static BsonDocument morphiaOptional(BsonValue value) {
+        BsonDocument optional = new BsonDocument("className", new BsonString("java.util.Optional"));
+        return value == null ? optional : optional.append("value", value);
+    }
+
+    private static BsonDocument encode(CompanyState company) {
+        BsonDocument document = new BsonDocument();
+        CODEC.encode(new BsonDocumentWriter(document), company, EncoderContext.builder().build());
+        return document;
+    }
+
+    private static BsonDocument encode(Contact contact) {
+        return CompanyStateCodec.toDocument(contact);
+    }
+
+    private static CompanyState decode(BsonDocument document) {
+        return CODEC.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+}
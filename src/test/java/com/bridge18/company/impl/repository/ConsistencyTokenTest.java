@@ -0,0 +1,45 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.exception.LagomException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ConsistencyTokenTest {
+    @Test
+    public void testRoundTrip() {
+        for (ConsistencyToken token : Arrays.asList(
+                ConsistencyToken.of("company-1", 0),
+                ConsistencyToken.of("company-1", Long.MAX_VALUE),
+                ConsistencyToken.of("a\0b:c", 7),
+                ConsistencyToken.of("\u00E9\uD83D\uDE9A", 3),
+                ConsistencyToken.of(CompanyState.builder().id("company-2").name("Company").revision(12).build()))) {
+            assertEquals(token, ConsistencyToken.decode(token.encode()));
+        }
+        assertEquals(12, ConsistencyToken.of(
+                CompanyState.builder().id("company-2").name("Company").revision(12).build()).getRevision());
+    }
+
+    @Test
+    public void testMalformedTokens() {
+        for (String token : Arrays.asList("not base64!", "", encode("1:company-1"), encode("2:company-1\u00002"),
+                encode("1:\u00002"), encode("1:company-1\u0000two"), encode("company-1\u00002"))) {
+            try {
+                ConsistencyToken.decode(token);
+                fail(token + " must be rejected");
+            } catch (LagomException e) {
+                // expected
+            }
+        }
+    }
+
+    private static String encode(String decoded) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+}
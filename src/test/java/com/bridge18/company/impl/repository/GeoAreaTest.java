@@ -0,0 +1,68 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.exception.LagomException;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class GeoAreaTest {
+
+    @Test
+    public void testDistance() {
+        assertEquals(111_195, GeoArea.distanceMeters(41, -87.6, 42, -87.6), 1);
+        assertEquals(0, GeoArea.distanceMeters(41.8781, -87.6298, 41.8781, -87.6298), 0);
+        assertEquals(Math.PI * 6_371_008.8, GeoArea.distanceMeters(0, 0, 0, 180), 1);
+        assertEquals(GeoArea.distanceMeters(41.8781, -87.6298, 40.7128, -74.0060),
+                GeoArea.distanceMeters(40.7128, -74.0060, 41.8781, -87.6298), 1e-6);
+    }
+
+    @Test
+    public void testCircle() {
+        GeoArea circle = GeoArea.circle(41.8781, -87.6298, 5000);
+
+        assertEquals(41.8781, circle.getCenterLatitude(), 0);
+        assertEquals(-87.6298, circle.getCenterLongitude(), 0);
+        assertEquals(5000, circle.getMaxDistanceMeters(), 0);
+        assertFalse(circle.getBox().isPresent());
+    }
+
+    @Test
+    public void testBox() {
+        GeoArea box = GeoArea.box(41, -88, 42, -87);
+
+        assertEquals(41.5, box.getCenterLatitude(), 0);
+        assertEquals(-87.5, box.getCenterLongitude(), 0);
+        // the southern corners are farther from the center than the northern ones
+        assertEquals(GeoArea.distanceMeters(41.5, -87.5, 41, -87), box.getMaxDistanceMeters(), 1e-6);
+        DBObject bounds = (DBObject) ((DBObject) box.getBox().get().get("locations")).get("$elemMatch");
+        assertEquals(new BasicDBObject("$gte", 41.0).append("$lte", 42.0), bounds.get("address.addressLatitude"));
+        assertEquals(new BasicDBObject("$gte", -88.0).append("$lte", -87.0), bounds.get("address.addressLongitude"));
+    }
+
+    @Test
+    public void testInvalidAreasAreRejected() {
+        List<Runnable> invalid = Arrays.asList(
+                () -> GeoArea.circle(91, 0, 1000),
+                () -> GeoArea.circle(0, -181, 1000),
+                () -> GeoArea.circle(0, 0, 0),
+                () -> GeoArea.box(42, -88, 41, -87),
+                () -> GeoArea.box(41, -87, 42, -88),
+                () -> GeoArea.box(41, -88, 41, -87),
+                () -> GeoArea.box(-91, -88, 42, -87));
+        for (int i = 0; i < invalid.size(); i++) {
+            try {
+                invalid.get(i).run();
+                fail("Area " + i + " must be rejected");
+            } catch (LagomException e) {
+                // expected
+            }
+        }
+    }
+}
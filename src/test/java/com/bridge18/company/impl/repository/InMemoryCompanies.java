@@ -0,0 +1,381 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.impl.entities.CompanyState;
+import com.mongodb.MongoClient;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.codecs.DecoderContext;
+import org.bson.conversions.Bson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Company documents kept in memory, changed by the write models of the projection the way Mongo would change them.
+ * Knows only the filters and update operators {@link CompanyStateWrites} produces: equality on {@code id} and, for
+ * the positional operator, on {@code contacts.id}; {@code $set}, {@code $unset}, {@code $max}, {@code $push},
+ * {@code $pull} by equal fields and {@code $pop}.
+ * <p>
+ * {@link #collection()} also answers the finds of the repository, with filters of equality, {@code $gt},
+ * {@code $gte}, {@code $lt}, {@code $lte}, {@code $in}, {@code $not}, {@code $elemMatch}, {@code $and} and
+ * {@code $or} on fields of embedded documents, strings compared by their UTF-8 bytes as Mongo does.
+ */
+class InMemoryCompanies {
+    private static final CompanyStateCodec CODEC = new CompanyStateCodec();
+
+    private final Map<String, BsonDocument> documents = new ConcurrentSkipListMap<>();
+
+    Map<String, BsonDocument> documents() {
+        return documents;
+    }
+
+    /**
+     * A collection backed by these documents, for bulk writes and finds.
+     */
+    @SuppressWarnings("unchecked")
+    MongoCollection<CompanyState> collection() {
+        MongoCollection<CompanyState> collection = mock(MongoCollection.class);
+        doAnswer(invocation -> {
+            write((List) invocation.getArgument(0));
+            return null;
+        }).when(collection).bulkWrite(anyList(), any(BulkWriteOptions.class));
+        doAnswer(invocation -> {
+            write((List) invocation.getArgument(0));
+            return null;
+        }).when(collection).bulkWrite(anyList());
+        when(collection.find()).thenAnswer(invocation -> query(new BsonDocument()));
+        when(collection.find(any(Bson.class))).thenAnswer(invocation -> query(filter(invocation.getArgument(0))));
+
+        MongoCollection<BsonDocument> raw = mock(MongoCollection.class);
+        when(raw.find(any(Bson.class))).thenAnswer(invocation -> rawQuery(filter(invocation.getArgument(0))));
+        when(collection.withDocumentClass(BsonDocument.class)).thenReturn(raw);
+        return collection;
+    }
+
+    List<CompanyState> find(BsonDocument filter, BsonDocument sort, int skip, int limit) {
+        return documents.values().stream()
+                .filter(document -> matches(document, filter))
+                .sorted((first, second) -> compare(first, second, sort))
+                .skip(skip)
+                .limit(limit > 0 ? limit : Long.MAX_VALUE)
+                .map(document -> CODEC.decode(new BsonDocumentReader(document), DecoderContext.builder().build()))
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private FindIterable<CompanyState> query(BsonDocument filter) {
+        FindIterable<CompanyState> iterable = mock(FindIterable.class);
+        BsonDocument[] sort = {new BsonDocument()};
+        int[] skip = {0};
+        int[] limit = {0};
+        when(iterable.sort(any())).thenAnswer(invocation -> {
+            sort[0] = filter(invocation.getArgument(0));
+            return iterable;
+        });
+        when(iterable.skip(anyInt())).thenAnswer(invocation -> {
+            skip[0] = invocation.getArgument(0);
+            return iterable;
+        });
+        when(iterable.limit(anyInt())).thenAnswer(invocation -> {
+            limit[0] = invocation.getArgument(0);
+            return iterable;
+        });
+        when(iterable.into(any())).thenAnswer(invocation -> {
+            Collection<CompanyState> target = invocation.getArgument(0);
+            target.addAll(find(filter, sort[0], skip[0], limit[0]));
+            return target;
+        });
+        when(iterable.first()).thenAnswer(invocation ->
+                find(filter, sort[0], skip[0], 1).stream().findFirst().orElse(null));
+        when(iterable.batchSize(anyInt())).thenReturn(iterable);
+        when(iterable.iterator()).thenAnswer(invocation -> cursorOf(find(filter, sort[0], skip[0], limit[0])));
+        return iterable;
+    }
+
+    /**
+     * A find of whole documents, whatever the projection asks for.
+     */
+    @SuppressWarnings("unchecked")
+    private FindIterable<BsonDocument> rawQuery(BsonDocument filter) {
+        FindIterable<BsonDocument> iterable = mock(FindIterable.class);
+        when(iterable.projection(any())).thenReturn(iterable);
+        when(iterable.first()).thenAnswer(invocation -> documents.values().stream()
+                .filter(document -> matches(document, filter))
+                .findFirst()
+                .map(BsonDocument::clone)
+                .orElse(null));
+        return iterable;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> MongoCursor<T> cursorOf(List<T> results) {
+        Iterator<T> iterator = results.iterator();
+        MongoCursor<T> cursor = mock(MongoCursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+
+    private static boolean matches(BsonDocument document, BsonDocument filter) {
+        for (Map.Entry<String, BsonValue> condition : filter.entrySet()) {
+            switch (condition.getKey()) {
+                case "$and":
+                    if (!condition.getValue().asArray().stream()
+                            .allMatch(part -> matches(document, part.asDocument()))) {
+                        return false;
+                    }
+                    break;
+                case "$or":
+                    if (condition.getValue().asArray().stream()
+                            .noneMatch(part -> matches(document, part.asDocument()))) {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (!matches(field(document, condition.getKey()), condition.getValue())) {
+                        return false;
+                    }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The value at a dotted path through embedded documents, null if there is none.
+     */
+    private static BsonValue field(BsonDocument document, String path) {
+        BsonValue value = document;
+        for (String name : path.split("\\.")) {
+            if (value == null || !value.isDocument()) {
+                return null;
+            }
+            value = value.asDocument().get(name);
+        }
+        return value;
+    }
+
+    private static boolean matches(BsonValue value, BsonValue condition) {
+        if (!condition.isDocument() || !condition.asDocument().keySet().stream().allMatch(key -> key.startsWith("$"))
+                || condition.asDocument().isEmpty()) {
+            return condition.equals(value);
+        }
+        for (Map.Entry<String, BsonValue> operator : condition.asDocument().entrySet()) {
+            BsonValue operand = operator.getValue();
+            boolean matched;
+            switch (operator.getKey()) {
+                case "$gt":
+                    matched = value != null && comparable(value, operand) && compare(value, operand) > 0;
+                    break;
+                case "$gte":
+                    matched = value != null && comparable(value, operand) && compare(value, operand) >= 0;
+                    break;
+                case "$lt":
+                    matched = value != null && comparable(value, operand) && compare(value, operand) < 0;
+                    break;
+                case "$lte":
+                    matched = value != null && comparable(value, operand) && compare(value, operand) <= 0;
+                    break;
+                case "$elemMatch":
+                    matched = value != null && value.isArray() && value.asArray().stream()
+                            .anyMatch(element -> element.isDocument() && matches(element.asDocument(),
+                                    operand.asDocument()));
+                    break;
+                case "$in":
+                    matched = operand.asArray().contains(value);
+                    break;
+                case "$not":
+                    matched = !matches(value, operand);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unexpected operator " + operator.getKey());
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compare(BsonDocument first, BsonDocument second, BsonDocument sort) {
+        for (Map.Entry<String, BsonValue> field : sort.entrySet()) {
+            BsonValue a = first.get(field.getKey());
+            BsonValue b = second.get(field.getKey());
+            int order = a == null || b == null ? Boolean.compare(a != null, b != null) : compare(a, b);
+            if (order != 0) {
+                return field.getValue().asNumber().intValue() * order;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean comparable(BsonValue a, BsonValue b) {
+        return a.isString() && b.isString() || a.isNumber() && b.isNumber();
+    }
+
+    private static int compare(BsonValue a, BsonValue b) {
+        if (a.isNumber() && b.isNumber()) {
+            return Double.compare(a.asNumber().doubleValue(), b.asNumber().doubleValue());
+        }
+        byte[] first = a.asString().getValue().getBytes(StandardCharsets.UTF_8);
+        byte[] second = b.asString().getValue().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < Math.min(first.length, second.length); i++) {
+            int order = Integer.compare(first[i] & 0xFF, second[i] & 0xFF);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(first.length, second.length);
+    }
+
+    void write(List<? extends WriteModel<CompanyState>> writes) {
+        writes.forEach(this::write);
+    }
+
+    void write(WriteModel<CompanyState> write) {
+        if (write instanceof DeleteOneModel) {
+            documents.remove(filter(((DeleteOneModel<CompanyState>) write).getFilter()).getString("id").getValue());
+        } else if (write instanceof UpdateOneModel) {
+            UpdateOneModel<CompanyState> update = (UpdateOneModel<CompanyState>) write;
+            update(filter(update.getFilter()), (BsonDocument) update.getUpdate(), update.getOptions().isUpsert());
+        } else {
+            throw new IllegalArgumentException("Unexpected write " + write);
+        }
+    }
+
+    private static BsonDocument filter(Bson filter) {
+        return filter.toBsonDocument(BsonDocument.class, MongoClient.getDefaultCodecRegistry());
+    }
+
+    private void update(BsonDocument filter, BsonDocument operations, boolean upsert) {
+        String id = filter.getString("id").getValue();
+        BsonDocument document = documents.get(id);
+        if (document == null) {
+            if (!upsert) {
+                return;
+            }
+            document = new BsonDocument("id", new BsonString(id));
+        }
+        int position = -1;
+        if (filter.containsKey("contacts.id")) {
+            position = indexOf(document.getArray("contacts", new BsonArray()), filter.get("contacts.id"));
+            if (position < 0) {
+                return;
+            }
+        }
+
+        for (Map.Entry<String, BsonValue> operator : operations.entrySet()) {
+            for (Map.Entry<String, BsonValue> operand : operator.getValue().asDocument().entrySet()) {
+                apply(document, operator.getKey(), operand.getKey().split("\\."), operand.getValue(), position);
+            }
+        }
+        documents.put(id, document);
+    }
+
+    private static void apply(BsonDocument document, String operator, String[] path, BsonValue value, int position) {
+        BsonValue parent = document;
+        for (int i = 0; i < path.length - 1; i++) {
+            parent = child(parent, path[i], position);
+        }
+        String last = path[path.length - 1];
+        BsonValue current = parent.isDocument() ? parent.asDocument().get(last) : element(parent, last, position);
+
+        switch (operator) {
+            case "$set":
+                set(parent, last, value, position);
+                break;
+            case "$unset":
+                parent.asDocument().remove(last);
+                break;
+            case "$max":
+                if (current == null || current.asNumber().longValue() < value.asNumber().longValue()) {
+                    set(parent, last, value, position);
+                }
+                break;
+            case "$push":
+                array(parent, last).add(value);
+                break;
+            case "$pull":
+                array(parent, last).removeIf(element -> matches(element, value.asDocument()));
+                break;
+            case "$pop":
+                BsonArray array = array(parent, last);
+                if (!array.isEmpty()) {
+                    array.remove(value.asNumber().intValue() > 0 ? array.size() - 1 : 0);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected operator " + operator);
+        }
+    }
+
+    private static BsonValue child(BsonValue parent, String key, int position) {
+        return parent.isDocument() ? parent.asDocument().get(key) : element(parent, key, position);
+    }
+
+    private static BsonValue element(BsonValue array, String key, int position) {
+        int index = key.equals("$") ? position : Integer.parseInt(key);
+        return index < array.asArray().size() ? array.asArray().get(index) : null;
+    }
+
+    private static void set(BsonValue parent, String key, BsonValue value, int position) {
+        if (parent.isDocument()) {
+            parent.asDocument().put(key, value);
+            return;
+        }
+        BsonArray array = parent.asArray();
+        int index = key.equals("$") ? position : Integer.parseInt(key);
+        while (array.size() < index) {
+            array.add(BsonNull.VALUE);
+        }
+        if (index == array.size()) {
+            array.add(value);
+        } else {
+            array.set(index, value);
+        }
+    }
+
+    private static BsonArray array(BsonValue parent, String key) {
+        BsonDocument document = parent.asDocument();
+        if (!document.containsKey(key)) {
+            document.put(key, new BsonArray());
+        }
+        return document.getArray(key);
+    }
+
+    private static boolean matches(BsonValue element, BsonDocument condition) {
+        return element.isDocument() && condition.entrySet().stream()
+                .allMatch(field -> field.getValue().equals(element.asDocument().get(field.getKey())));
+    }
+
+    private static int indexOf(BsonArray array, BsonValue id) {
+        for (int i = 0; i < array.size(); i++) {
+            if (array.get(i).isDocument() && id.equals(array.get(i).asDocument().get("id"))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
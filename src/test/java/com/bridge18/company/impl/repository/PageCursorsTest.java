@@ -0,0 +1,61 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.exception.LagomException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PageCursorsTest {
+
+    @Test
+    public void testSingleKeyRoundTrip() {
+        for (String key : new String[]{"0158d1f0-4b8a-11e7-a919-92ebcb67fe33", "a:b", "\0", "company \uD83D\uDE00"}) {
+            assertEquals(key, PageCursors.decode(PageCursors.encode(key)));
+        }
+    }
+
+    @Test
+    public void testCompoundKeyRoundTrip() {
+        String[][] keys = {
+                {"acme", "id-1"},
+                {"acme\0trucking", "id\0with\0separators"},
+                {"3:abc", "12:"},
+                {"", ""},
+                {"\uD83D\uDE9A freight", "id-2"}
+        };
+        for (String[] key : keys) {
+            assertArrayEquals(key, PageCursors.decode(PageCursors.encode(key), key.length));
+        }
+    }
+
+    @Test
+    public void testMalformedCursorsAreRejected() {
+        String[] cursors = {
+                "not base64!",
+                PageCursors.encode("single"),
+                PageCursors.encode("a", "b", "c"),
+                encoded("2:5:ab"),
+                encoded("2:-1:ab"),
+                encoded("2:x:ab1:c"),
+                encoded("2:2:ab1:cd"),
+                encoded("1:acme\0id")
+        };
+        for (String cursor : cursors) {
+            try {
+                PageCursors.decode(cursor, 2);
+                fail("Expected " + cursor + " to be rejected");
+            } catch (LagomException e) {
+                // expected
+            }
+        }
+    }
+
+    private static String encoded(String decoded) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+}
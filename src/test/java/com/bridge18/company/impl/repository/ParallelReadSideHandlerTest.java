@@ -0,0 +1,225 @@
+package com.bridge18.company.impl.repository;
+
+import akka.Done;
+import akka.actor.ActorSystem;
+import akka.japi.Pair;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.testkit.JavaTestKit;
+import com.lightbend.lagom.javadsl.persistence.AggregateEvent;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.lightbend.lagom.javadsl.persistence.Offset;
+import com.lightbend.lagom.javadsl.persistence.ReadSideProcessor.ReadSideHandler;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelReadSideHandlerTest {
+    private static final int EVENTS = 2000;
+    private static final int COMPANIES = 50;
+    private static final int LANES = 8;
+    private static final int MAX_IN_FLIGHT = 32;
+
+    static ActorSystem system;
+    static Materializer materializer;
+
+    private ScheduledExecutorService mongo;
+    private Random random;
+    private List<Pair<TestEvent, Offset>> events;
+    private Map<String, List<Long>> appliedByCompany;
+    private Set<Long> applied;
+    private Map<String, AtomicInteger> inFlightByCompany;
+    private List<String> violations;
+
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("ParallelReadSideHandlerTest");
+        materializer = ActorMaterializer.create(system);
+    }
+
+    @AfterClass
+    public static void teardown() {
+        JavaTestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Before
+    public void before() {
+        mongo = Executors.newScheduledThreadPool(LANES);
+        random = new Random(42);
+        events = new ArrayList<>(EVENTS);
+        for (long sequence = 1; sequence <= EVENTS; sequence++) {
+            events.add(Pair.create(new TestEvent("company-" + random.nextInt(COMPANIES), sequence),
+                    Offset.sequence(sequence)));
+        }
+        appliedByCompany = new ConcurrentHashMap<>();
+        applied = ConcurrentHashMap.newKeySet();
+        inFlightByCompany = new ConcurrentHashMap<>();
+        violations = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void after() {
+        mongo.shutdownNow();
+    }
+
+    @Test
+    public void testAppliesEventsOfACompanyInOrderAndCommitsOnlyAppliedOffsets() throws Exception {
+        CommittingHandler committing = new CommittingHandler();
+
+        run(committing, events, -1);
+
+        assertEquals(Collections.emptyList(), violations);
+        assertEquals(EVENTS, applied.size());
+        assertAppliedInOrder();
+        assertEquals(Long.valueOf(EVENTS), committing.lastCommitted());
+    }
+
+    @Test
+    public void testResumesFromTheLowestUnappliedOffsetAfterAFailure() throws Exception {
+        long failing = EVENTS / 3;
+        CommittingHandler committing = new CommittingHandler();
+
+        try {
+            run(committing, events, failing);
+            fail("The failed event should have failed the stream");
+        } catch (ExecutionException expected) {
+        }
+        long resumeAfter = committing.lastCommitted() != null ? committing.lastCommitted() : 0;
+        assertTrue("committed " + resumeAfter + " past the failed event " + failing, resumeAfter < failing);
+
+        // a restarted processor resumes after the committed offset; events applied past it are applied again
+        appliedByCompany.clear();
+        run(committing, events.subList((int) resumeAfter, EVENTS), -1);
+
+        assertEquals(Collections.emptyList(), violations);
+        assertEquals(EVENTS, applied.size());
+        assertAppliedInOrder();
+        assertEquals(Long.valueOf(EVENTS), committing.lastCommitted());
+    }
+
+    private void run(CommittingHandler committing, List<Pair<TestEvent, Offset>> elements, long failing)
+            throws Exception {
+        ParallelReadSideHandler<TestEvent> handler = new ParallelReadSideHandler<>(committing,
+                event -> apply(event, failing),
+                TestEvent::getCompanyId,
+                TestEvent.COMMIT,
+                LANES,
+                MAX_IN_FLIGHT);
+
+        Source.from(elements)
+                .via(handler.handle())
+                .runWith(Sink.ignore(), materializer)
+                .toCompletableFuture()
+                .get(30, SECONDS);
+    }
+
+    /**
+     * A write taking a random time, that checks no other write of the same company is in flight.
+     */
+    private CompletionStage<Done> apply(TestEvent event, long failing) {
+        AtomicInteger inFlight = inFlightByCompany.computeIfAbsent(event.companyId, id -> new AtomicInteger());
+        if (inFlight.incrementAndGet() > 1) {
+            violations.add("event " + event.sequence + " applied concurrently with another of " + event.companyId);
+        }
+        CompletableFuture<Done> written = new CompletableFuture<>();
+        mongo.schedule(() -> {
+            inFlight.decrementAndGet();
+            if (event.sequence == failing) {
+                written.completeExceptionally(new IllegalStateException("write failed"));
+                return;
+            }
+            appliedByCompany.computeIfAbsent(event.companyId, id -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(event.sequence);
+            applied.add(event.sequence);
+            written.complete(Done.getInstance());
+        }, random.nextInt(500), MICROSECONDS);
+        return written;
+    }
+
+    private void assertAppliedInOrder() {
+        appliedByCompany.forEach((companyId, sequences) -> {
+            for (int i = 1; i < sequences.size(); i++) {
+                assertTrue(companyId + " applied " + sequences, sequences.get(i - 1) < sequences.get(i));
+            }
+        });
+    }
+
+    /**
+     * Stands in for the handler of the offset store: checks that every event up to an offset has been applied when
+     * the offset is committed.
+     */
+    private class CommittingHandler extends ReadSideHandler<TestEvent> {
+        private final List<Long> committed = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public Flow<Pair<TestEvent, Offset>, Done, ?> handle() {
+            return Flow.<Pair<TestEvent, Offset>>create().map(element -> {
+                long offset = ((Offset.Sequence) element.second()).value();
+                for (long sequence = 1; sequence <= offset; sequence++) {
+                    if (!applied.contains(sequence)) {
+                        violations.add("offset " + offset + " committed before event " + sequence + " was applied");
+                        break;
+                    }
+                }
+                Long last = lastCommitted();
+                if (last != null && last >= offset) {
+                    violations.add("offset " + offset + " committed after " + last);
+                }
+                committed.add(offset);
+                return Done.getInstance();
+            });
+        }
+
+        Long lastCommitted() {
+            return committed.isEmpty() ? null : committed.get(committed.size() - 1);
+        }
+    }
+
+    private static final class TestEvent implements AggregateEvent<TestEvent> {
+        static final AggregateEventTag<TestEvent> TAG = AggregateEventTag.of(TestEvent.class);
+        static final TestEvent COMMIT = new TestEvent("", 0);
+
+        final String companyId;
+        final long sequence;
+
+        TestEvent(String companyId, long sequence) {
+            this.companyId = companyId;
+            this.sequence = sequence;
+        }
+
+        String getCompanyId() {
+            return companyId;
+        }
+
+        @Override
+        public AggregateEventTag<TestEvent> aggregateTag() {
+            return TAG;
+        }
+    }
+}
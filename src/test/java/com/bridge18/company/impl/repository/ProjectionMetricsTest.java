@@ -0,0 +1,113 @@
+package com.bridge18.company.impl.repository;
+
+import akka.actor.ActorSystem;
+import akka.japi.Pair;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Source;
+import akka.testkit.JavaTestKit;
+import com.bridge18.company.impl.entities.CompanyEvent;
+import com.bridge18.company.impl.entities.CompanyUpdated;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import com.datastax.driver.core.utils.UUIDs;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.lightbend.lagom.javadsl.persistence.Offset;
+import com.lightbend.lagom.javadsl.persistence.PersistentEntityRegistry;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProjectionMetricsTest {
+    static ActorSystem system;
+    static Materializer materializer;
+
+    private final AggregateEventTag<CompanyEvent> tag = AggregateEventTag.of(CompanyEvent.class, "CompanyEvent0");
+    private MetricsRegistry metricsRegistry;
+    private PersistentEntityRegistry persistentEntityRegistry;
+    private AtomicInteger counts;
+
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("ProjectionMetricsTest");
+        materializer = ActorMaterializer.create(system);
+    }
+
+    @AfterClass
+    public static void teardown() {
+        JavaTestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Before
+    public void before() {
+        metricsRegistry = new MetricsRegistry();
+        persistentEntityRegistry = Mockito.mock(PersistentEntityRegistry.class);
+        counts = new AtomicInteger();
+        List<Pair<CompanyEvent, Offset>> pending = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            pending.add(Pair.create(CompanyUpdated.builder().id("company-" + i).name("company").revision(2).build(),
+                    Offset.timeBasedUUID(UUIDs.timeBased())));
+        }
+        Mockito.when(persistentEntityRegistry.eventStream(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            counts.incrementAndGet();
+            return Source.from(pending);
+        });
+    }
+
+    @Test
+    public void testBacklogIsCountedInTheBackground() throws InterruptedException {
+        ProjectionMetrics metrics = metrics();
+        List<Long> counted = new CopyOnWriteArrayList<>();
+        metrics.onBacklogCounted(counted::add);
+        assertEquals(0L, metricsRegistry.value("projection.CompanyEvent0.lag-events"));
+        Thread.sleep(100);
+        assertEquals(0, counts.get());
+
+        metrics.resumed(Offset.NONE);
+        for (int i = 0; i < 100 && counted.size() < 2; i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(counted.size() >= 2);
+        assertEquals(3L, (long) counted.get(0));
+        assertEquals(3L, metricsRegistry.value("projection.CompanyEvent0.lag-events"));
+        Mockito.verify(persistentEntityRegistry, Mockito.atLeast(2)).eventStream(tag, Offset.NONE);
+
+        metrics.stopped();
+        Thread.sleep(100);
+        int stoppedAt = counts.get();
+        Thread.sleep(300);
+        assertEquals(stoppedAt, counts.get());
+    }
+
+    @Test
+    public void testAppliedOffset() {
+        ProjectionMetrics metrics = metrics();
+        long eventTime = System.currentTimeMillis() - 60_000;
+
+        metrics.applied(Offset.timeBasedUUID(UUIDs.startOf(eventTime)));
+        assertEquals(eventTime, metricsRegistry.value("projection.CompanyEvent0.offset"));
+        assertTrue(metricsRegistry.value("projection.CompanyEvent0.lag-ms").longValue() >= 60_000);
+        assertTrue(metricsRegistry.value("projection.CompanyEvent0.idle-ms").longValue() < 60_000);
+
+        metrics.written(4);
+        assertEquals(4L, metricsRegistry.value("projection.CompanyEvent0.events.count"));
+        assertFalse(counts.get() > 0);
+    }
+
+    private ProjectionMetrics metrics() {
+        return new ProjectionMetrics(tag, metricsRegistry, persistentEntityRegistry, materializer,
+                new ProjectionMetricsSettings(Duration.ofMillis(50), Duration.ofSeconds(1), 100));
+    }
+}
@@ -0,0 +1,144 @@
+package com.bridge18.company.impl.repository;
+
+import com.bridge18.company.impl.entities.CompanyCreated;
+import com.bridge18.company.impl.entities.CompanyDetailsChanged;
+import com.bridge18.company.impl.entities.CompanyEvent;
+import com.bridge18.company.impl.entities.CompanyEventShards;
+import com.bridge18.company.impl.entities.CompanyNameChanged;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.entities.CompanyUpdated;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventShards;
+import com.lightbend.lagom.javadsl.persistence.AggregateEventTag;
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Indexes;
+import org.mongodb.morphia.Morphia;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events projected per second against the number of event shards. Events are spread over the tags by company id
+ * exactly as {@link CompanyEventShards} tags them, and every tag is projected by a thread of its own that applies one
+ * event at a time, keeping the order of the events of a company, with the write the projection makes for it:
+ * {@link CompanyStateWrites#forEvent} sent as a single bulk write to a real collection.
+ * <p>
+ * It lives next to the projection because the write path is package-private. Needs a MongoDB at
+ * {@code localhost:27017}; it uses, and drops, the {@code company_projection_benchmark} database. Run with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main ProjectionShardsBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProjectionShardsBenchmark {
+    private static final String DATABASE = "company_projection_benchmark";
+    private static final int COMPANIES = 2_000;
+    private static final int EVENTS_PER_COMPANY = 10;
+    private static final int EVENTS = COMPANIES * EVENTS_PER_COMPANY;
+
+    @Param({"4", "16", "64"})
+    public int shards;
+
+    private MongoClient client;
+    private MongoCollection<CompanyState> companies;
+    private List<List<String>> idsPerTag;
+    private List<List<CompanyEvent>> eventsPerTag;
+    private ExecutorService processors;
+    private long revision;
+
+    @Setup
+    public void setup() {
+        client = new MongoClient("localhost", 27017);
+        client.dropDatabase(DATABASE);
+        companies = CompanyStateWrites.companies(new Morphia().createDatastore(client, DATABASE));
+        companies.createIndex(Indexes.ascending(CompanyStateWrites.ID));
+
+        AggregateEventShards<CompanyEvent> eventShards = CompanyEventShards.forCount(shards);
+        Map<AggregateEventTag<CompanyEvent>, List<String>> idsByTag = new LinkedHashMap<>();
+        for (int i = 0; i < COMPANIES; i++) {
+            String id = UUID.randomUUID().toString();
+            idsByTag.computeIfAbsent(eventShards.forEntityId(id), tag -> new ArrayList<>()).add(id);
+        }
+        idsPerTag = new ArrayList<>(idsByTag.values());
+        eventsPerTag = new ArrayList<>();
+        for (List<String> ids : idsPerTag) {
+            for (String id : ids) {
+                CompanyStateWrites.forEvent(CompanyCreated.builder().id(id).name("Company " + id).revision(1).build())
+                        .ifPresent(write -> companies.bulkWrite(Collections.singletonList(write)));
+            }
+            eventsPerTag.add(new ArrayList<>());
+        }
+        revision = 1;
+        processors = Executors.newFixedThreadPool(shards);
+    }
+
+    /**
+     * The events of the next invocation: each company gets a name change, a details change and a full update in
+     * turns, with revisions above those already written so that no write is skipped by the revision guard.
+     */
+    @Setup(Level.Invocation)
+    public void nextEvents() {
+        for (int tag = 0; tag < idsPerTag.size(); tag++) {
+            List<CompanyEvent> events = eventsPerTag.get(tag);
+            events.clear();
+            for (String id : idsPerTag.get(tag)) {
+                for (int i = 0; i < EVENTS_PER_COMPANY; i++) {
+                    long eventRevision = revision + i + 1;
+                    switch (i % 3) {
+                        case 0:
+                            events.add(CompanyNameChanged.of(id, "Company " + eventRevision)
+                                    .withRevision(eventRevision));
+                            break;
+                        case 1:
+                            events.add(CompanyDetailsChanged.builder().id(id).mc("MC" + eventRevision)
+                                    .revision(eventRevision).build());
+                            break;
+                        default:
+                            events.add(CompanyUpdated.builder().id(id).name("Company " + eventRevision)
+                                    .taxId(Long.toString(eventRevision)).revision(eventRevision).build());
+                    }
+                }
+            }
+        }
+        revision += EVENTS_PER_COMPANY;
+    }
+
+    @TearDown
+    public void tearDown() {
+        processors.shutdownNow();
+        client.dropDatabase(DATABASE);
+        client.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int project() throws Exception {
+        List<Future<Integer>> tags = new ArrayList<>();
+        for (List<CompanyEvent> events : eventsPerTag) {
+            tags.add(processors.submit(() -> {
+                for (CompanyEvent event : events) {
+                    CompanyStateWrites.forEvent(event)
+                            .ifPresent(write -> companies.bulkWrite(Collections.singletonList(write)));
+                }
+                return events.size();
+            }));
+        }
+        int applied = 0;
+        for (Future<Integer> tag : tags) {
+            applied += tag.get();
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,74 @@
+package com.bridge18.company.impl.serialization;
+
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.entities.CompanyUpdated;
+import org.junit.Test;
+
+import java.io.NotSerializableException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A new version of the encoding of one type must leave the data written in the previous version readable, and the
+ * versions of the other types untouched.
+ */
+public class CompanySerializerVersionsTest {
+    private final CompanyState state = CompanyState.builder().id("company-1").name("company").mc("MC1").revision(4)
+            .build();
+    private final CompanyUpdated updated = CompanyUpdated.builder().id("company-1").name("company-2").revision(5)
+            .build();
+
+    @Test
+    public void testReadsPreviousVersionAfterBump() throws NotSerializableException {
+        CompanySerializer v1 = new CompanySerializer(null);
+        byte[] stateV1 = v1.toBinary(state);
+        byte[] updatedV1 = v1.toBinary(updated);
+
+        CompanySerializer v2 = bumped();
+        byte[] stateV2 = v2.toBinary(state);
+
+        assertEquals(1, stateV1[0]);
+        assertEquals(2, stateV2[0]);
+        assertEquals(state, v2.fromBinary(stateV1, "CompanyState"));
+        assertEquals(state, v2.fromBinary(stateV2, "CompanyState"));
+        assertEquals(1, v2.toBinary(updated)[0]);
+        assertEquals(updated, v2.fromBinary(updatedV1, "CompanyUpdated"));
+    }
+
+    @Test
+    public void testRejectsUnknownVersion() {
+        byte[] newer = bumped().toBinary(state);
+        try {
+            new CompanySerializer(null).fromBinary(newer, "CompanyState");
+            fail("Version 2 is unknown to a serializer at version 1");
+        } catch (NotSerializableException e) {
+            assertTrue(e.getMessage().contains("version 2"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpgradeMustBeOlder() {
+        new CompanySerializer(null).registerUpgrade(CompanyState.class, 1, CompanyBinaryCodec::readCompanyState);
+    }
+
+    /**
+     * The serializer with {@link CompanyState} at a version 2 that writes the name of the company ahead of its
+     * version 1 encoding.
+     */
+    private static CompanySerializer bumped() {
+        CompanySerializer serializer = new CompanySerializer(null);
+        serializer.register(CompanyState.class, "CompanyState", 2,
+                (out, state) -> {
+                    out.writeString(state.getName());
+                    CompanyBinaryCodec.writeCompanyState(out, state);
+                },
+                in -> {
+                    String name = in.readString();
+                    return CompanyBinaryCodec.readCompanyState(in).withName(name);
+                });
+        serializer.registerUpgrade(CompanyState.class, 1, CompanyBinaryCodec::readCompanyState);
+        return serializer;
+    }
+}
@@ -0,0 +1,174 @@
+package com.bridge18.company.impl.services.lagom;
+
+import akka.NotUsed;
+import akka.japi.Pair;
+import com.bridge18.company.impl.entities.CompanyState;
+import com.bridge18.company.impl.repository.CompanyMongoRepository;
+import com.bridge18.company.impl.repository.ConsistencyToken;
+import com.bridge18.company.impl.repository.CursorPaginatedSequence;
+import com.bridge18.company.impl.repository.PaginationSettings;
+import com.bridge18.company.impl.services.objects.CompanyService;
+import com.bridge18.company.impl.services.objects.ReadConsistency;
+import com.bridge18.company.impl.tracing.RequestTracing;
+import com.bridge18.company.v1.dto.company.CompanyDTO;
+import com.bridge18.exception.LagomException;
+import com.bridge18.v1.dto.PaginatedSequence;
+import com.lightbend.lagom.javadsl.api.transport.RequestHeader;
+import com.lightbend.lagom.javadsl.api.transport.ResponseHeader;
+import com.lightbend.lagom.javadsl.server.ServerServiceCall;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.pcollections.TreePVector;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LagomCompanyServiceImplTest {
+    private CompanyService companyService;
+    private CompanyMongoRepository repository;
+    private LagomCompanyServiceImpl service;
+
+    @Before
+    public void before() {
+        companyService = Mockito.mock(CompanyService.class);
+        repository = Mockito.mock(CompanyMongoRepository.class);
+        service = new LagomCompanyServiceImpl(companyService, repository, new PaginationSettings(20, 100),
+                RequestTracing.disabled());
+    }
+
+    @Test
+    public void testPagesFollowTheCursorHeaders() throws Exception {
+        Mockito.when(repository.getCompanies(Optional.empty(), 2, Optional.empty()))
+                .thenReturn(CompletableFuture.completedFuture(new CursorPaginatedSequence<>(
+                        TreePVector.singleton(company("company-1")), 2, Optional.of("cursor-1"))));
+        Mockito.when(repository.getCompanies(Optional.of("cursor-1"), 2, Optional.empty()))
+                .thenReturn(CompletableFuture.completedFuture(new CursorPaginatedSequence<>(
+                        TreePVector.singleton(company("company-2")), 2, Optional.empty())));
+
+        Pair<ResponseHeader, PaginatedSequence<CompanyDTO>> first =
+                getCompanies(Optional.empty(), RequestHeader.DEFAULT);
+        Pair<ResponseHeader, PaginatedSequence<CompanyDTO>> second = getCompanies(Optional.empty(),
+                RequestHeader.DEFAULT.withHeader(LagomCompanyServiceImpl.PAGE_CURSOR_HEADER,
+                        first.first().getHeader(LagomCompanyServiceImpl.NEXT_CURSOR_HEADER).get()));
+
+        assertEquals("company-1", first.second().getValues().get(0).id);
+        assertEquals("company-2", second.second().getValues().get(0).id);
+        assertEquals(Optional.empty(), second.first().getHeader(LagomCompanyServiceImpl.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    public void testPageNumberKeepsOffsetPaging() throws Exception {
+        Mockito.when(repository.getCompanies(3, 2, Optional.empty())).thenReturn(CompletableFuture.completedFuture(
+                new PaginatedSequence<>(TreePVector.singleton(company("company-5")), 3, 2)));
+
+        Pair<ResponseHeader, PaginatedSequence<CompanyDTO>> page = getCompanies(Optional.of(3), RequestHeader.DEFAULT);
+
+        assertEquals("company-5", page.second().getValues().get(0).id);
+        assertEquals(3, page.second().getPageNumber());
+        assertEquals(Optional.empty(), page.first().getHeader(LagomCompanyServiceImpl.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    public void testWritesReturnTheirConsistencyToken() throws Exception {
+        CompanyState created = company("company-1");
+        Mockito.when(companyService.createCompany(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(),
+                Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(CompletableFuture.completedFuture(created));
+
+        Pair<ResponseHeader, CompanyDTO> response = ((ServerServiceCall<CompanyDTO, CompanyDTO>)
+                service.createCompany())
+                .invokeWithHeaders(RequestHeader.DEFAULT, CompanyDTOMapper.toCompanyDTO(created))
+                .toCompletableFuture().get(5, SECONDS);
+
+        assertEquals(Optional.of(ConsistencyToken.of(created).encode()),
+                response.first().getHeader(LagomCompanyServiceImpl.CONSISTENCY_TOKEN_HEADER));
+    }
+
+    @Test
+    public void testPagesWaitForTheConsistencyToken() throws Exception {
+        ConsistencyToken token = ConsistencyToken.of("company-1", 3);
+        Mockito.when(repository.getCompanies(Optional.empty(), 2, Optional.of(token)))
+                .thenReturn(CompletableFuture.completedFuture(new CursorPaginatedSequence<>(
+                        TreePVector.singleton(company("company-1")), 2, Optional.empty())));
+
+        Pair<ResponseHeader, PaginatedSequence<CompanyDTO>> page = getCompanies(Optional.empty(), RequestHeader.DEFAULT
+                .withHeader(LagomCompanyServiceImpl.CONSISTENCY_TOKEN_HEADER, token.encode()));
+
+        assertEquals("company-1", page.second().getValues().get(0).id);
+    }
+
+    @Test
+    public void testMalformedConsistencyTokenIsRejected() throws Exception {
+        try {
+            getCompanies(Optional.empty(), RequestHeader.DEFAULT
+                    .withHeader(LagomCompanyServiceImpl.CONSISTENCY_TOKEN_HEADER, "not a token"));
+            fail("Expected the read to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof LagomException);
+        }
+        Mockito.verifyZeroInteractions(repository);
+    }
+
+    @Test
+    public void testEventualReadsComeWithTheProjectionLag() throws Exception {
+        Mockito.when(companyService.getCompany("company-1", ReadConsistency.EVENTUAL))
+                .thenReturn(CompletableFuture.completedFuture(company("company-1")));
+        Mockito.when(repository.getProjectionLag())
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(Duration.ofMillis(1500))));
+
+        Pair<ResponseHeader, CompanyDTO> eventual = getCompany("company-1", RequestHeader.DEFAULT
+                .withHeader(LagomCompanyServiceImpl.READ_CONSISTENCY_HEADER, "eventual"));
+
+        assertEquals("company-1", eventual.second().id);
+        assertEquals(Optional.of("1500"), eventual.first().getHeader(LagomCompanyServiceImpl.PROJECTION_LAG_HEADER));
+        Mockito.verify(companyService, Mockito.never()).getCompany("company-1");
+    }
+
+    @Test
+    public void testReadsAreStrongByDefault() throws Exception {
+        Mockito.when(companyService.getCompany("company-1"))
+                .thenReturn(CompletableFuture.completedFuture(company("company-1")));
+
+        Pair<ResponseHeader, CompanyDTO> strong = getCompany("company-1", RequestHeader.DEFAULT);
+
+        assertEquals("company-1", strong.second().id);
+        assertEquals(Optional.empty(), strong.first().getHeader(LagomCompanyServiceImpl.PROJECTION_LAG_HEADER));
+        Mockito.verify(repository, Mockito.never()).getProjectionLag();
+    }
+
+    @Test
+    public void testUnknownConsistencyIsRejected() throws Exception {
+        try {
+            getCompany("company-1", RequestHeader.DEFAULT
+                    .withHeader(LagomCompanyServiceImpl.READ_CONSISTENCY_HEADER, "sometimes"));
+            fail("Expected the read to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof LagomException);
+        }
+        Mockito.verifyZeroInteractions(companyService);
+    }
+
+    private Pair<ResponseHeader, CompanyDTO> getCompany(String id, RequestHeader header) throws Exception {
+        return ((ServerServiceCall<NotUsed, CompanyDTO>) service.getCompany(id))
+                .invokeWithHeaders(header, NotUsed.getInstance()).toCompletableFuture().get(5, SECONDS);
+    }
+
+    private Pair<ResponseHeader, PaginatedSequence<CompanyDTO>> getCompanies(Optional<Integer> pageNumber,
+                                                                              RequestHeader header) throws Exception {
+        return ((ServerServiceCall<NotUsed, PaginatedSequence<CompanyDTO>>)
+                service.getCompanies(pageNumber, Optional.of(2)))
+                .invokeWithHeaders(header, NotUsed.getInstance()).toCompletableFuture().get(5, SECONDS);
+    }
+
+    static CompanyState company(String id) {
+        return CompanyState.builder().id(id).name("Company " + id).revision(1)
+                .contacts(TreePVector.empty()).locations(TreePVector.empty()).build();
+    }
+}
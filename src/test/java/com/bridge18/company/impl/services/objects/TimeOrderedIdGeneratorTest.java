@@ -0,0 +1,103 @@
+package com.bridge18.company.impl.services.objects;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimeOrderedIdGeneratorTest {
+    private static final long NOW = 1_500_000_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(NOW);
+    private final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(clock::get);
+
+    @Test
+    public void testVersionVariantAndTimestamp() {
+        UUID id = generator.nextUuid();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(NOW, timestamp(id));
+        assertEquals(0, counter(id));
+        assertEquals(id, UUID.fromString(id.toString()));
+    }
+
+    @Test
+    public void testIdsIncreaseWithinOneMillisecond() {
+        UUID previous = generator.nextUuid();
+        Set<UUID> ids = new HashSet<>();
+        ids.add(previous);
+        for (int i = 1; i < 4096; i++) {
+            UUID id = generator.nextUuid();
+            assertIncreasing(previous, id);
+            assertEquals(NOW, timestamp(id));
+            assertEquals(i, counter(id));
+            ids.add(id);
+            previous = id;
+        }
+        assertEquals(4096, ids.size());
+    }
+
+    @Test
+    public void testCounterOverflowRunsAheadOfTheClock() {
+        UUID previous = null;
+        for (int i = 0; i < 4097; i++) {
+            previous = generator.nextUuid();
+        }
+        assertEquals(NOW + 1, timestamp(previous));
+        assertEquals(0, counter(previous));
+
+        clock.set(NOW + 1);
+        UUID next = generator.nextUuid();
+        assertIncreasing(previous, next);
+        assertEquals(NOW + 1, timestamp(next));
+        assertEquals(1, counter(next));
+    }
+
+    @Test
+    public void testClockGoingBackwardsKeepsIdsIncreasing() {
+        generator.nextUuid();
+        UUID before = generator.nextUuid();
+
+        clock.set(NOW - 1000);
+        UUID after = generator.nextUuid();
+        assertIncreasing(before, after);
+        assertEquals(NOW, timestamp(after));
+        assertEquals(2, counter(after));
+
+        clock.set(NOW + 1);
+        UUID caughtUp = generator.nextUuid();
+        assertIncreasing(after, caughtUp);
+        assertEquals(NOW + 1, timestamp(caughtUp));
+        assertEquals(0, counter(caughtUp));
+    }
+
+    @Test
+    public void testForName() {
+        assertTrue(CompanyIdGenerator.forName("time-ordered") instanceof TimeOrderedIdGenerator);
+        assertEquals(4, UUID.fromString(CompanyIdGenerator.forName("random").nextId()).version());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownName() {
+        CompanyIdGenerator.forName("sequential");
+    }
+
+    private static void assertIncreasing(UUID previous, UUID next) {
+        assertTrue(previous + " < " + next, previous.compareTo(next) < 0);
+        assertTrue(previous + " < " + next, previous.toString().compareTo(next.toString()) < 0);
+    }
+
+    private static long timestamp(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    private static long counter(UUID id) {
+        return id.getMostSignificantBits() & 0xFFF;
+    }
+}
@@ -0,0 +1,95 @@
+package com.bridge18.company.impl.tracing;
+
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileSpanExporterTest {
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void before() throws IOException {
+        directory = Files.createTempDirectory("spans");
+        file = directory.resolve("spans.json");
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testSpansAreAppendedOnePerLine() throws Exception {
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        FileSpanExporter exporter = new FileSpanExporter(file, 10, metricsRegistry, 10);
+
+        exporter.export(span("trace-1"));
+        exporter.export(span("trace-2"));
+        exporter.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"trace-1\""));
+        assertTrue(lines.get(1).contains("\"trace-2\""));
+        assertEquals(0L, metricsRegistry.value("tracing.spans-dropped").longValue());
+    }
+
+    @Test
+    public void testFileIsReopenedAfterWritingFails() throws Exception {
+        Files.createDirectory(file);
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        FileSpanExporter exporter = new FileSpanExporter(file, 10, metricsRegistry, 10);
+
+        exporter.export(span("trace-1"));
+        Thread.sleep(50);
+        Files.delete(file);
+        exporter.export(span("trace-2"));
+
+        for (int i = 0; i < 100 && readLines().size() < 2; i++) {
+            Thread.sleep(20);
+        }
+        exporter.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        List<String> lines = readLines();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"trace-1\""));
+        assertTrue(lines.get(1).contains("\"trace-2\""));
+        assertEquals(0L, metricsRegistry.value("tracing.spans-dropped").longValue());
+    }
+
+    @Test
+    public void testSpansLeftAreCountedWhenClosedWhileFailing() throws Exception {
+        Files.createDirectory(file);
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        FileSpanExporter exporter = new FileSpanExporter(file, 10, metricsRegistry, 10);
+
+        exporter.export(span("trace-1"));
+        exporter.export(span("trace-2"));
+        exporter.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        assertEquals(2L, metricsRegistry.value("tracing.spans-dropped").longValue());
+    }
+
+    private List<String> readLines() throws IOException {
+        return Files.isRegularFile(file) ? Files.readAllLines(file, StandardCharsets.UTF_8) :
+                Collections.<String>emptyList();
+    }
+
+    private static Span span(String traceId) {
+        return new Span(traceId, "http.GET /v1/api/companies/:id.total", 1000, 10, Collections.emptyMap());
+    }
+}
@@ -0,0 +1,78 @@
+package com.bridge18.company.impl.tracing;
+
+import akka.stream.Materializer;
+import com.bridge18.company.impl.metrics.MetricsRegistry;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class RouteTemplatesTest {
+    private final RouteTemplates routes = new RouteTemplates(Arrays.asList(
+            "POST /v1/api/companies",
+            "GET /v1/api/companies?pageNumber&pageSize",
+            "GET /v1/api/companies/:id",
+            "PUT /v1/api/companies/:id",
+            "GET /v1/api/companies/:id/contacts/$index<[0-9]+>",
+            "* /v1/api/files/*path"));
+
+    @Test
+    public void testCallsAreKeyedByTheirTemplate() {
+        assertEquals("POST /v1/api/companies", routes.key("POST", "/v1/api/companies"));
+        assertEquals("GET /v1/api/companies", routes.key("GET", "/v1/api/companies"));
+        assertEquals("GET /v1/api/companies/:id", routes.key("GET", "/v1/api/companies/company-1"));
+        assertEquals("PUT /v1/api/companies/:id",
+                routes.key("PUT", "/v1/api/companies/0158e6c0-5d1c-7000-8000-000000000001"));
+        assertEquals("GET /v1/api/companies/:id/contacts/$index<[0-9]+>",
+                routes.key("GET", "/v1/api/companies/1/contacts/12"));
+        assertEquals("GET /v1/api/files/*path", routes.key("GET", "/v1/api/files/a/b.json"));
+        assertEquals("POST /v1/api/files/*path", routes.key("POST", "/v1/api/files/a"));
+    }
+
+    @Test
+    public void testRequestsMatchingNoCallShareOneKey() {
+        assertEquals(RouteTemplates.OTHER, routes.key("DELETE", "/v1/api/companies/1"));
+        assertEquals(RouteTemplates.OTHER, routes.key("GET", "/v1/api/companies/1/2"));
+        assertEquals(RouteTemplates.OTHER, routes.key("GET", "/v1/api/companies/1/contacts/first"));
+        assertEquals(RouteTemplates.OTHER, routes.key("GET", "/v1/api/companies/"));
+        assertEquals(RouteTemplates.OTHER, routes.key("GET", "/v1/api/files"));
+        assertEquals(RouteTemplates.OTHER, routes.key("BREW", "/v1/api/files/a"));
+        assertEquals(RouteTemplates.OTHER, routes.key("GET", "/v1xapi/companies"));
+        assertEquals(RouteTemplates.OTHER, routes.key("GET", "/favicon.ico"));
+    }
+
+    @Test
+    public void testFilterTimesRequestsUnderTheirRoute() throws Exception {
+        List<Span> spans = new CopyOnWriteArrayList<>();
+        RequestTimingFilter filter = new RequestTimingFilter(Mockito.mock(Materializer.class),
+                new RequestTracing(new MetricsRegistry(), spans::add), routes);
+
+        Result result = filter.apply(header -> CompletableFuture.completedFuture(Results.ok()),
+                request("GET", "/v1/api/companies/42", "trace-1")).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        filter.apply(header -> CompletableFuture.completedFuture(Results.notFound()),
+                request("GET", "/wp-login.php", null)).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        assertEquals("trace-1", result.header(RequestTracing.TRACE_ID_HEADER).get());
+        assertEquals(2, spans.size());
+        assertEquals("http.GET /v1/api/companies/:id.total", spans.get(0).getName());
+        assertEquals("trace-1", spans.get(0).getTraceId());
+        assertEquals("http.other.total", spans.get(1).getName());
+    }
+
+    private static Http.RequestHeader request(String method, String path, String traceId) {
+        Http.RequestHeader header = Mockito.mock(Http.RequestHeader.class);
+        Mockito.when(header.method()).thenReturn(method);
+        Mockito.when(header.path()).thenReturn(path);
+        Mockito.when(header.getHeader(RequestTracing.TRACE_ID_HEADER)).thenReturn(traceId);
+        return header;
+    }
+}